@@ -0,0 +1,86 @@
+package pl.poznan.put.varna.benchmark;
+
+import fr.orsay.lri.varna.exceptions.ExceptionFileFormatOrSyntax;
+import fr.orsay.lri.varna.exceptions.ExceptionNAViewAlgorithm;
+import fr.orsay.lri.varna.exceptions.ExceptionUnmatchedClosingParentheses;
+import fr.orsay.lri.varna.exceptions.ExceptionWritingForbidden;
+import fr.orsay.lri.varna.models.VARNAConfig;
+import fr.orsay.lri.varna.models.rna.RNA;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Time needed to write an already drawn RNA in each of the export formats. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExportBenchmark {
+  @Param({"100", "1000", "10000", "100000"})
+  public int length;
+
+  @Param({"0.0", "0.05"})
+  public double pseudoknotDensity;
+
+  @Param({"SVG", "EPS", "XFIG", "TIKZ"})
+  public String format;
+
+  private RNA rna;
+  private VARNAConfig config;
+  private Path output;
+
+  @Setup
+  public void setUp()
+      throws ExceptionUnmatchedClosingParentheses,
+          ExceptionFileFormatOrSyntax,
+          ExceptionNAViewAlgorithm,
+          IOException {
+    GeneratedStructure structure = GeneratedStructure.generate(length, pseudoknotDensity, 0.0, 42);
+    rna = new RNA();
+    rna.setRNA(structure.sequence(), structure.dotBracket());
+    config = new VARNAConfig();
+    rna.drawRNA(RNA.DRAW_MODE_RADIATE, config);
+    output = Files.createTempFile("varna-benchmark", "." + format.toLowerCase());
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(output);
+  }
+
+  @Benchmark
+  public void export() throws ExceptionWritingForbidden {
+    String path = output.toString();
+    switch (format) {
+      case "SVG":
+        rna.saveRNASVG(path, config);
+        break;
+      case "EPS":
+        rna.saveRNAEPS(path, config);
+        break;
+      case "XFIG":
+        rna.saveRNAXFIG(path, config);
+        break;
+      case "TIKZ":
+        rna.saveRNATIKZ(path, config);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown export format: " + format);
+    }
+  }
+}
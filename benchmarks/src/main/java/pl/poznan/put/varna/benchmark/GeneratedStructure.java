@@ -0,0 +1,249 @@
+package pl.poznan.put.varna.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import fr.orsay.lri.varna.models.rna.ModeleBP;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A random but reproducible RNA structure used as benchmark input: nested helices, optional
+ * pseudoknotted stems and optional non-canonical base pairs, with their sequence chosen so that
+ * every canonical pair is a Watson-Crick or wobble pair.
+ */
+public final class GeneratedStructure {
+  private static final int MIN_STEM = 3;
+  private static final int MAX_STEM = 8;
+  private static final int MIN_HAIRPIN = 3;
+  private static final int MAX_HELIX_SPAN = 400;
+  private static final ModeleBP.Edge[] EDGES = ModeleBP.Edge.values();
+  private static final ModeleBP.Stericity[] STERICITIES = ModeleBP.Stericity.values();
+
+  private final char[] sequence;
+  // 0-based partner of each base in the canonical structure, or -1
+  private final int[] pairs;
+  // Whether the pair starting at each base crosses the nested structure
+  private final boolean[] pseudoknotted;
+  private final List<int[]> nonCanonicalPairs = new ArrayList<>();
+  private final Random random;
+
+  private GeneratedStructure(int length, long seed) {
+    sequence = new char[length];
+    pairs = new int[length];
+    pseudoknotted = new boolean[length];
+    Arrays.fill(pairs, -1);
+    random = new Random(seed);
+  }
+
+  /**
+   * @param length number of nucleotides
+   * @param pseudoknotDensity fraction of the nucleotides which form pseudoknotted pairs
+   * @param nonCanonicalDensity number of additional non-canonical pairs per nucleotide
+   * @param seed seed of the random generator, equal arguments give equal structures
+   */
+  public static GeneratedStructure generate(
+      int length, double pseudoknotDensity, double nonCanonicalDensity, long seed) {
+    GeneratedStructure structure = new GeneratedStructure(length, seed);
+    structure.addNestedHelices();
+    structure.addPseudoknots(pseudoknotDensity);
+    structure.addNonCanonicalPairs(nonCanonicalDensity);
+    structure.assignSequence();
+    return structure;
+  }
+
+  private void addNestedHelices() {
+    Deque<int[]> ranges = new ArrayDeque<>();
+    ranges.push(new int[] {0, sequence.length - 1});
+    while (!ranges.isEmpty()) {
+      int[] range = ranges.pop();
+      int i = range[0];
+      int hi = range[1];
+      while (i < hi) {
+        int span = Math.min(hi - i + 1, MAX_HELIX_SPAN);
+        int stem = MIN_STEM + random.nextInt(MAX_STEM - MIN_STEM + 1);
+        int minSpan = 2 * stem + MIN_HAIRPIN;
+        if (span < minSpan || random.nextDouble() < 0.3) {
+          i++;
+          continue;
+        }
+        int j = i + minSpan - 1 + random.nextInt(span - minSpan + 1);
+        for (int k = 0; k < stem; k++) {
+          pair(i + k, j - k);
+        }
+        ranges.push(new int[] {i + stem, j - stem});
+        i = j + 1;
+      }
+    }
+  }
+
+  private void addPseudoknots(double density) {
+    int target = (int) (density * sequence.length);
+    int paired = 0;
+    for (int attempt = 0; paired < target && attempt < 10 * sequence.length; attempt++) {
+      int stem = 2 + random.nextInt(3);
+      int i = random.nextInt(sequence.length);
+      int j = i + 2 * stem + MIN_HAIRPIN + random.nextInt(MAX_HELIX_SPAN);
+      if (j >= sequence.length || !unpaired(i, stem) || !unpaired(j - stem + 1, stem)) {
+        continue;
+      }
+      for (int k = 0; k < stem; k++) {
+        pair(i + k, j - k);
+        pseudoknotted[i + k] = true;
+      }
+      paired += 2 * stem;
+    }
+  }
+
+  private void addNonCanonicalPairs(double density) {
+    int count = (int) (density * sequence.length);
+    for (int k = 0; k < count && sequence.length > 1; k++) {
+      int i = random.nextInt(sequence.length - 1);
+      int j = i + 1 + random.nextInt(Math.min(sequence.length - i - 1, MAX_HELIX_SPAN));
+      nonCanonicalPairs.add(
+          new int[] {
+            i, j, random.nextInt(EDGES.length), random.nextInt(EDGES.length), random.nextInt(2)
+          });
+    }
+  }
+
+  private void assignSequence() {
+    String bases = "ACGU";
+    String[] canonical = {"GC", "CG", "AU", "UA", "GU", "UG"};
+    for (int i = 0; i < sequence.length; i++) {
+      if (pairs[i] == -1) {
+        sequence[i] = bases.charAt(random.nextInt(bases.length()));
+      } else if (pairs[i] > i) {
+        String pair = canonical[random.nextInt(canonical.length)];
+        sequence[i] = pair.charAt(0);
+        sequence[pairs[i]] = pair.charAt(1);
+      }
+    }
+  }
+
+  private boolean unpaired(int from, int count) {
+    for (int k = from; k < from + count; k++) {
+      if (pairs[k] != -1) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void pair(int i, int j) {
+    pairs[i] = j;
+    pairs[j] = i;
+  }
+
+  public int length() {
+    return sequence.length;
+  }
+
+  public String sequence() {
+    return new String(sequence);
+  }
+
+  /** The canonical structure, pseudoknotted pairs being written with square brackets. */
+  public String dotBracket() {
+    StringBuilder builder = new StringBuilder(sequence.length);
+    for (int i = 0; i < sequence.length; i++) {
+      int j = pairs[i];
+      if (j == -1) {
+        builder.append('.');
+      } else if (j > i) {
+        builder.append(pseudoknotted[i] ? '[' : '(');
+      } else {
+        builder.append(pseudoknotted[j] ? ']' : ')');
+      }
+    }
+    return builder.toString();
+  }
+
+  public String dbnFile() {
+    return ">generated-" + sequence.length + "\n" + sequence() + "\n" + dotBracket() + "\n";
+  }
+
+  public String bpseqFile() {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < sequence.length; i++) {
+      builder
+          .append(i + 1)
+          .append(' ')
+          .append(sequence[i])
+          .append(' ')
+          .append(pairs[i] + 1)
+          .append('\n');
+    }
+    return builder.toString();
+  }
+
+  public String ctFile() {
+    StringBuilder builder = new StringBuilder();
+    builder.append(sequence.length).append(" generated-").append(sequence.length).append('\n');
+    for (int i = 0; i < sequence.length; i++) {
+      builder
+          .append(i + 1)
+          .append(' ')
+          .append(sequence[i])
+          .append(' ')
+          .append(i)
+          .append(' ')
+          .append(i + 2 > sequence.length ? 0 : i + 2)
+          .append(' ')
+          .append(pairs[i] + 1)
+          .append(' ')
+          .append(i + 1)
+          .append('\n');
+    }
+    return builder.toString();
+  }
+
+  /** The structure as a JSON document read by {@link pl.poznan.put.varna.AdvancedDrawer}. */
+  public byte[] json(String drawingAlgorithm) throws JsonProcessingException {
+    ObjectMapper mapper = new ObjectMapper();
+    ObjectNode root = mapper.createObjectNode();
+    root.put("drawingAlgorithm", drawingAlgorithm);
+    ArrayNode nucleotides = root.putArray("nucleotides");
+    for (int i = 0; i < sequence.length; i++) {
+      nucleotides
+          .addObject()
+          .put("id", i + 1)
+          .put("number", i + 1)
+          .put("char", String.valueOf(sequence[i]));
+    }
+    ArrayNode basePairs = root.putArray("basePairs");
+    for (int i = 0; i < sequence.length; i++) {
+      if (pairs[i] > i) {
+        ModeleBP.Edge wc = ModeleBP.Edge.WC;
+        addBasePair(basePairs, i, pairs[i], wc, wc, ModeleBP.Stericity.CIS, true);
+      }
+    }
+    for (int[] p : nonCanonicalPairs) {
+      addBasePair(basePairs, p[0], p[1], EDGES[p[2]], EDGES[p[3]], STERICITIES[p[4]], false);
+    }
+    return mapper.writeValueAsBytes(root);
+  }
+
+  private static void addBasePair(
+      ArrayNode basePairs,
+      int i,
+      int j,
+      ModeleBP.Edge edge5,
+      ModeleBP.Edge edge3,
+      ModeleBP.Stericity stericity,
+      boolean canonical) {
+    basePairs
+        .addObject()
+        .put("id1", i + 1)
+        .put("id2", j + 1)
+        .put("edge5", edge5.name())
+        .put("edge3", edge3.name())
+        .put("stericity", stericity.name())
+        .put("canonical", canonical);
+  }
+}
@@ -0,0 +1,64 @@
+package pl.poznan.put.varna.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.orsay.lri.varna.exceptions.ExceptionFileFormatOrSyntax;
+import fr.orsay.lri.varna.exceptions.ExceptionUnmatchedClosingParentheses;
+import fr.orsay.lri.varna.models.rna.RNA;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.poznan.put.varna.AdvancedDrawer;
+import pl.poznan.put.varna.model.StructureData;
+
+/** Time needed by {@link AdvancedDrawer} to turn a JSON document into an RNA, before layout. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonIngestionBenchmark {
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+  private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+
+  @Param({"100", "1000", "10000", "100000"})
+  public int length;
+
+  @Param({"0.0", "0.05"})
+  public double pseudoknotDensity;
+
+  @Param({"0.0", "0.1", "0.5"})
+  public double nonCanonicalDensity;
+
+  @Param({"exact", "greedy", "first-fit"})
+  public String pseudoknotOrder;
+
+  private byte[] json;
+
+  @Setup
+  public void setUp() throws IOException {
+    GeneratedStructure structure =
+        GeneratedStructure.generate(length, pseudoknotDensity, nonCanonicalDensity, 42);
+    json = structure.json("NAVIEW");
+  }
+
+  @Benchmark
+  public RNA ingest()
+      throws IOException, ExceptionUnmatchedClosingParentheses, ExceptionFileFormatOrSyntax {
+    StructureData structureData = OBJECT_MAPPER.readValue(json, StructureData.class);
+    structureData.pseudoknotOrder = pseudoknotOrder;
+    return AdvancedDrawer.createRNA(structureData, DISCARD, DISCARD);
+  }
+}
@@ -0,0 +1,75 @@
+package pl.poznan.put.varna.benchmark;
+
+import fr.orsay.lri.varna.exceptions.ExceptionFileFormatOrSyntax;
+import fr.orsay.lri.varna.exceptions.ExceptionNAViewAlgorithm;
+import fr.orsay.lri.varna.exceptions.ExceptionUnmatchedClosingParentheses;
+import fr.orsay.lri.varna.models.VARNAConfig;
+import fr.orsay.lri.varna.models.rna.RNA;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Layout time of every drawing algorithm usable without extra input. The motif view and the
+ * template layout need a motif or a template besides the structure and are not covered. Neither is
+ * the VARNA view, which fails on any structure in this tree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LayoutBenchmark {
+  @Param({"100", "1000", "10000", "100000"})
+  public int length;
+
+  @Param({"0.0", "0.05"})
+  public double pseudoknotDensity;
+
+  @Param({"CIRCULAR", "RADIATE", "NAVIEW", "LINEAR"})
+  public String algorithm;
+
+  private RNA rna;
+  private VARNAConfig config;
+  private int drawMode;
+
+  @Setup
+  public void setUp() throws ExceptionUnmatchedClosingParentheses, ExceptionFileFormatOrSyntax {
+    GeneratedStructure structure = GeneratedStructure.generate(length, pseudoknotDensity, 0.0, 42);
+    rna = new RNA();
+    rna.setRNA(structure.sequence(), structure.dotBracket());
+    config = new VARNAConfig();
+    drawMode = drawMode(algorithm);
+  }
+
+  @Benchmark
+  public RNA layout() throws ExceptionNAViewAlgorithm {
+    rna.drawRNA(drawMode, config);
+    return rna;
+  }
+
+  static int drawMode(String algorithm) {
+    switch (algorithm) {
+      case "CIRCULAR":
+        return RNA.DRAW_MODE_CIRCULAR;
+      case "RADIATE":
+        return RNA.DRAW_MODE_RADIATE;
+      case "NAVIEW":
+        return RNA.DRAW_MODE_NAVIEW;
+      case "LINEAR":
+        return RNA.DRAW_MODE_LINEAR;
+      default:
+        throw new IllegalArgumentException("Unknown drawing algorithm: " + algorithm);
+    }
+  }
+}
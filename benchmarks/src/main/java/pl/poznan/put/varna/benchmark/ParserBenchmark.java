@@ -0,0 +1,64 @@
+package pl.poznan.put.varna.benchmark;
+
+import fr.orsay.lri.varna.exceptions.ExceptionFileFormatOrSyntax;
+import fr.orsay.lri.varna.factories.RNAFactory;
+import fr.orsay.lri.varna.factories.RNAFactory.RNAFileType;
+import fr.orsay.lri.varna.models.rna.RNA;
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Time needed by the {@link RNAFactory} parsers to load a structure from memory. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+  @Param({"100", "1000", "10000", "100000"})
+  public int length;
+
+  @Param({"0.0", "0.05"})
+  public double pseudoknotDensity;
+
+  @Param({"FILE_TYPE_DBN", "FILE_TYPE_BPSEQ", "FILE_TYPE_CT"})
+  public RNAFileType fileType;
+
+  private String content;
+
+  @Setup
+  public void setUp() {
+    GeneratedStructure structure = GeneratedStructure.generate(length, pseudoknotDensity, 0.0, 42);
+    switch (fileType) {
+      case FILE_TYPE_DBN:
+        content = structure.dbnFile();
+        break;
+      case FILE_TYPE_BPSEQ:
+        content = structure.bpseqFile();
+        break;
+      case FILE_TYPE_CT:
+        content = structure.ctFile();
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported file type: " + fileType);
+    }
+  }
+
+  @Benchmark
+  public ArrayList<RNA> parse() throws ExceptionFileFormatOrSyntax {
+    return RNAFactory.loadSecStr(new BufferedReader(new StringReader(content)), fileType);
+  }
+}
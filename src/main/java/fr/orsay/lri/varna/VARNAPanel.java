@@ -664,8 +664,10 @@ import fr.orsay.lri.varna.models.VARNAConfig;
 import fr.orsay.lri.varna.models.annotations.ChemProbAnnotation;
 import fr.orsay.lri.varna.models.annotations.HighlightRegionAnnotation;
 import fr.orsay.lri.varna.models.annotations.TextAnnotation;
+import fr.orsay.lri.varna.models.export.SwingGlyphCache;
 import fr.orsay.lri.varna.models.export.SwingGraphics;
 import fr.orsay.lri.varna.models.export.VueVARNAGraphics;
+import fr.orsay.lri.varna.models.geom.PointGrid;
 import fr.orsay.lri.varna.models.rna.Mapping;
 import fr.orsay.lri.varna.models.rna.ModeleBP;
 import fr.orsay.lri.varna.models.rna.ModeleBackbone;
@@ -743,6 +745,9 @@ public class VARNAPanel extends JPanel {
   /** */
   private static final long serialVersionUID = 8194421570308956001L;
 
+  /** Bases drawn smaller than this diameter, in pixels, are reduced to the backbone polyline. */
+  private static final double LOW_DETAIL_BASE_DIAMETER = 1.0;
+
   private RNA _RNA = new RNA();
 
   private boolean _debug = false;
@@ -764,6 +769,10 @@ public class VARNAPanel extends JPanel {
 
   private Point2D.Double[] _realCoords = new Point2D.Double[0];
   private Point2D.Double[] _realCenters = new Point2D.Double[0];
+  // Spatial index of _realCoords for hit-testing, built on demand
+  private PointGrid _realCoordsGrid = null;
+
+  private final transient SwingGlyphCache _glyphCache = new SwingGlyphCache();
   private double _scaleFactor = 1.0;
   private Point2D.Double _offsetPanel = new Point2D.Double();
   private Point2D.Double _offsetRNA = new Point2D.Double();
@@ -1631,21 +1640,43 @@ public class VARNAPanel extends JPanel {
         g2D.drawCircle(p.getX() - 1.5 * newRadius, p.getY() - 1.5 * newRadius, 3.0 * newRadius);
         g2D.setPlainStroke();
       }
-      if (_conf._fillBases) {
-        // Filling inner circle
-        g2D.setColor(baseInnerColor);
-        g2D.fillCircle(p.getX() - newRadius, p.getY() - newRadius, 2.0 * newRadius);
-      }
+      // Selected bases blink, so their colours are not worth caching
+      if (localView
+          && g2D instanceof SwingGraphics
+          && !_selectedBases.contains(mb)
+          && ((SwingGraphics) g2D)
+              .drawCachedGlyph(
+                  _glyphCache,
+                  String.valueOf(res),
+                  p.getX(),
+                  p.getY(),
+                  newRadius,
+                  _conf._fillBases ? baseInnerColor : null,
+                  _conf._drawOutlineBases ? baseOuterColor : null,
+                  _conf._baseThickness * _scaleFactor,
+                  baseNameColor)) {
+        // Leave the stroke as the outline would have, for base numbers
+        if (_conf._drawOutlineBases) {
+          g2D.setStrokeThickness(_conf._baseThickness * _scaleFactor);
+        }
+        g2D.setColor(baseNameColor);
+      } else {
+        if (_conf._fillBases) {
+          // Filling inner circle
+          g2D.setColor(baseInnerColor);
+          g2D.fillCircle(p.getX() - newRadius, p.getY() - newRadius, 2.0 * newRadius);
+        }
 
-      if (_conf._drawOutlineBases) {
-        // Drawing outline
-        g2D.setColor(baseOuterColor);
-        g2D.setStrokeThickness(_conf._baseThickness * _scaleFactor);
-        g2D.drawCircle(p.getX() - newRadius, p.getY() - newRadius, 2.0 * newRadius);
+        if (_conf._drawOutlineBases) {
+          // Drawing outline
+          g2D.setColor(baseOuterColor);
+          g2D.setStrokeThickness(_conf._baseThickness * _scaleFactor);
+          g2D.drawCircle(p.getX() - newRadius, p.getY() - newRadius, 2.0 * newRadius);
+        }
+        // Drawing label
+        g2D.setColor(baseNameColor);
+        g2D.drawStringCentered(String.valueOf(res), p.getX(), p.getY());
       }
-      // Drawing label
-      g2D.setColor(baseNameColor);
-      g2D.drawStringCentered(String.valueOf(res), p.getX(), p.getY());
     } else if (mb instanceof ModeleBasesComparison) {
 
       ModeleBasesComparison mbc = (ModeleBasesComparison) mb;
@@ -1683,7 +1714,7 @@ public class VARNAPanel extends JPanel {
       String label2 = String.valueOf(mbc.getBase2());
 
       // On leur donne une couleur
-      g2D.setColor(getRNA().get_listeBases().get(i).getStyleBase().getBaseNameColor());
+      g2D.setColor(getRNA().get_listeBases().get(i).getStyleBaseReadOnly().getBaseNameColor());
 
       // Et on les dessine.
       g2D.drawStringCentered(label1, p.getX() - (.75 * newRadius), p.getY());
@@ -1694,7 +1725,7 @@ public class VARNAPanel extends JPanel {
     if (_RNA.isNumberDrawn(mb, getNumPeriod())) {
 
       Point2D.Double vn = computeExcentricUnitVector(i, points, centers);
-      g2D.setColor(mb.getStyleBase().getBaseNumberColor());
+      g2D.setColor(mb.getStyleBaseReadOnly().getBaseNumberColor());
       g2D.setFont(_conf._numbersFont);
       double factorMin = Math.min(.5, _conf._distNumbers);
       double factorMax = Math.min(_conf._distNumbers - 1.5, _conf._distNumbers);
@@ -1893,8 +1924,22 @@ public class VARNAPanel extends JPanel {
 
   public void drawBackbone(
       VueVARNAGraphics g2D, Point2D.Double[] newCoords, double newRadius, double _scaleFactor) {
+    drawBackbone(g2D, newCoords, newRadius, _scaleFactor, null);
+  }
+
+  /**
+   * Draws the backbone, skipping the segments which cannot intersect {@code visible}, unless it is
+   * {@code null}.
+   */
+  private void drawBackbone(
+      VueVARNAGraphics g2D,
+      Point2D.Double[] newCoords,
+      double newRadius,
+      double _scaleFactor,
+      Rectangle2D.Double visible) {
     // Drawing backbone
     if (getDrawBackbone()) {
+      double margin = 2.0 * RNA.VIRTUAL_LOOP_RADIUS * _scaleFactor + newRadius;
       g2D.setStrokeThickness(1.5 * _scaleFactor);
       g2D.setColor(_conf._backboneColor);
 
@@ -1903,6 +1948,9 @@ public class VARNAPanel extends JPanel {
       for (int i = 1; i < _RNA.get_listeBases().size(); i++) {
         Point2D.Double p1 = newCoords[i - 1];
         Point2D.Double p2 = newCoords[i];
+        if (!isVisible(visible, p1.x, p1.y, p2.x, p2.y, margin)) {
+          continue;
+        }
         double dist = p1.distance(p2);
         int a = _RNA.getBaseAt(i - 1).getElementStructure();
         int b = _RNA.getBaseAt(i).getElementStructure();
@@ -1980,6 +2028,62 @@ public class VARNAPanel extends JPanel {
     }
   }
 
+  // Backbone as a single polyline, for structures drawn too small to show bases
+  private void drawBackbonePolyline(
+      VueVARNAGraphics g2D,
+      Point2D.Double[] newCoords,
+      double _scaleFactor,
+      Rectangle2D.Double visible) {
+    if (!getDrawBackbone() || newCoords.length == 0) {
+      return;
+    }
+    ModeleBackbone bck = _RNA.getBackbone();
+    GeneralPath path = new GeneralPath();
+    // Index of the last point added to the path, which is continued from there
+    int last = -1;
+    for (int i = 1; i < newCoords.length; i++) {
+      Point2D.Double p1 = newCoords[i - 1];
+      Point2D.Double p2 = newCoords[i];
+      if (bck.getTypeBefore(i) != BackboneType.DISCONTINUOUS_TYPE
+          && isVisible(visible, p1.x, p1.y, p2.x, p2.y, 1.0)) {
+        if (last != i - 1) {
+          path.moveTo(p1.x, p1.y);
+        }
+        path.lineTo(p2.x, p2.y);
+        last = i;
+      }
+    }
+    g2D.setStrokeThickness(1.5 * _scaleFactor);
+    g2D.setPlainStroke();
+    g2D.setColor(_conf._backboneColor);
+    g2D.draw(path);
+  }
+
+  // Whether a base pair, drawn as a segment or in linear mode as an arc, may be visible
+  private boolean isPairVisible(
+      Rectangle2D.Double visible, int i, int j, Point2D.Double[] newCoords, double margin) {
+    Point2D.Double p1 = newCoords[i];
+    Point2D.Double p2 = newCoords[j];
+    if (_RNA.get_drawMode() == RNA.DRAW_MODE_LINEAR) {
+      // Arcs rise above the bases, by at most this height
+      double height = 1.75 * getBPHeightIncrement() * Math.abs(p2.x - p1.x);
+      return isVisible(
+          visible, p1.x, Math.min(p1.y, p2.y) - height, p2.x, Math.max(p1.y, p2.y), margin);
+    }
+    return isVisible(visible, p1.x, p1.y, p2.x, p2.y, margin);
+  }
+
+  // Whether the box spanned by two points, grown by a margin, intersects the visible area
+  private static boolean isVisible(
+      Rectangle2D.Double visible, double x1, double y1, double x2, double y2, double margin) {
+    return visible == null
+        || visible.intersects(
+            Math.min(x1, x2) - margin,
+            Math.min(y1, y2) - margin,
+            Math.abs(x2 - x1) + 2.0 * margin,
+            Math.abs(y2 - y1) + 2.0 * margin);
+  }
+
   public Point2D.Double logicToPanel(Point2D.Double logicPoint) {
     return new Point2D.Double(
         _offX + (getScaleFactor() * (logicPoint.x - _offsetRNA.x)),
@@ -2054,15 +2158,22 @@ public class VARNAPanel extends JPanel {
         offsetRNA = _offsetRNA;
       }
 
-      // Re-scaling once and for all
-      Point2D.Double[] newCoords = new Point2D.Double[_RNA.get_listeBases().size()];
-      Point2D.Double[] newCenters = new Point2D.Double[_RNA.get_listeBases().size()];
-      for (int i = 0; i < _RNA.get_listeBases().size(); i++) {
+      // Re-scaling once and for all, in place of the previous coordinates when possible
+      int size = _RNA.get_listeBases().size();
+      boolean reuse = localView && _realCoords.length == size && _realCenters.length == size;
+      Point2D.Double[] newCoords = reuse ? _realCoords : new Point2D.Double[size];
+      Point2D.Double[] newCenters = reuse ? _realCenters : new Point2D.Double[size];
+      int moved = 0;
+      for (int i = 0; i < size; i++) {
         ModeleBase mb = _RNA.getBaseAt(i);
-        newCoords[i] =
-            new Point2D.Double(
-                offX + (scaleFactor * (mb.getCoords().x - offsetRNA.x)),
-                offY + (scaleFactor * (mb.getCoords().y - offsetRNA.y)));
+        double x = offX + (scaleFactor * (mb.getCoords().x - offsetRNA.x));
+        double y = offY + (scaleFactor * (mb.getCoords().y - offsetRNA.y));
+        if (!reuse) {
+          newCoords[i] = new Point2D.Double(x, y);
+        } else if (newCoords[i].x != x || newCoords[i].y != y) {
+          newCoords[i].setLocation(x, y);
+          realCoordMoved(i, ++moved);
+        }
 
         Point2D.Double centerBck = _RNA.getCenter(i);
         // si la base est dans un angle entre une boucle et une helice
@@ -2091,32 +2202,46 @@ public class VARNAPanel extends JPanel {
             }
           }
         }
-        newCenters[i] =
-            new Point2D.Double(
-                offX + (scaleFactor * (centerBck.x - offsetRNA.x)),
-                offY + (scaleFactor * (centerBck.y - offsetRNA.y)));
+        double cx = offX + (scaleFactor * (centerBck.x - offsetRNA.x));
+        double cy = offY + (scaleFactor * (centerBck.y - offsetRNA.y));
+        if (reuse) {
+          newCenters[i].setLocation(cx, cy);
+        } else {
+          newCenters[i] = new Point2D.Double(cx, cy);
+        }
       }
       // Keep track of coordinates for mouse interactions
       if (localView) {
         _realCoords = newCoords;
         _realCenters = newCenters;
+        _glyphCache.setScale(scaleFactor);
       }
 
+      // Only what may intersect the panel is drawn, and tiny bases are not drawn at all
+      Rectangle2D.Double visible =
+          localView ? new Rectangle2D.Double(0, 0, getWidth(), getHeight()) : null;
+      boolean lowDetail = 2.0 * scaleFactor * RNA.BASE_RADIUS < LOW_DETAIL_BASE_DIAMETER;
+      double pairMargin = 3.0 * newRadius;
+
       g2D.setStrokeThickness(1.5 * scaleFactor);
       g2D.setPlainStroke();
       g2D.setFont(_conf._fontBasesGeneral);
 
       // Drawing region highlights Annotation
       drawRegionHighlightsAnnotation(g2D, _realCoords, _realCenters, scaleFactor);
-      drawBackbone(g2D, newCoords, newRadius, scaleFactor);
+      if (lowDetail) {
+        drawBackbonePolyline(g2D, newCoords, scaleFactor, visible);
+      } else {
+        drawBackbone(g2D, newCoords, newRadius, scaleFactor, visible);
+      }
 
       // Drawing base-pairs
       // pour chaque base
-      for (int i = 0; i < _RNA.get_listeBases().size(); i++) {
+      for (int i = 0; i < _RNA.get_listeBases().size() && !lowDetail; i++) {
         int j = _RNA.get_listeBases().get(i).getElementStructure();
         // si c'est une parenthese ouvrante (premiere base du
         // couple)
-        if (j > i) {
+        if (j > i && isPairVisible(visible, i, j, newCoords, pairMargin)) {
           ModeleBP msbp = _RNA.get_listeBases().get(i).getStyleBP();
           // System.err.println(msbp);
           if (msbp.isCanonical() || _conf._drawnNonCanonicalBP) {
@@ -2138,13 +2263,16 @@ public class VARNAPanel extends JPanel {
       }
 
       // Liaisons additionelles (non planaires)
-      if (_conf._drawnNonPlanarBP) {
+      if (_conf._drawnNonPlanarBP && !lowDetail) {
         ArrayList<ModeleBP> bpaux = _RNA.getStructureAux();
         for (int k = 0; k < bpaux.size(); k++) {
           ModeleBP msbp = bpaux.get(k);
           if (msbp.isCanonical() || _conf._drawnNonCanonicalBP) {
             int i = msbp.getPartner5().getIndex();
             int j = msbp.getPartner3().getIndex();
+            if (j > i && !isPairVisible(visible, i, j, newCoords, pairMargin)) {
+              continue;
+            }
             if (_RNA.get_drawMode() == RNA.DRAW_MODE_LINEAR) {
               g2D.setStrokeThickness(
                   _RNA.getBasePairThickness(msbp, _conf) * 2.5 * scaleFactor * _conf._bpThickness);
@@ -2169,8 +2297,24 @@ public class VARNAPanel extends JPanel {
 
       // Drawing bases
       g2D.setPlainStroke();
-      for (int i = 0; i < Math.min(_RNA.get_listeBases().size(), newCoords.length); i++) {
-        drawBase(g2D, i, newCoords, newCenters, newRadius, scaleFactor, localView);
+      int drawnBases = Math.min(_RNA.get_listeBases().size(), newCoords.length);
+      if (lowDetail) {
+        // Only the backbone is drawn
+      } else if (visible != null) {
+        double margin = newRadius * (3.0 + 2.0 * _conf._distNumbers) + 4.0 * newFontSize;
+        Rectangle2D.Double area =
+            new Rectangle2D.Double(
+                visible.x - margin,
+                visible.y - margin,
+                visible.width + 2.0 * margin,
+                visible.height + 2.0 * margin);
+        for (int i : getRealCoordsGrid().inRectangle(area, i -> i < drawnBases)) {
+          drawBase(g2D, i, newCoords, newCenters, newRadius, scaleFactor, localView);
+        }
+      } else {
+        for (int i = 0; i < drawnBases; i++) {
+          drawBase(g2D, i, newCoords, newCenters, newRadius, scaleFactor, localView);
+        }
       }
 
       rnaMultiBox =
@@ -3033,6 +3177,21 @@ public class VARNAPanel extends JPanel {
     _realCoords = coords;
   }
 
+  // Keeps the spatial index in step with a base whose displayed position changed in place
+  private void realCoordMoved(int i, int moved) {
+    if (_realCoordsGrid != null
+        && (moved > _realCoords.length / 16 || !_realCoordsGrid.update(i))) {
+      _realCoordsGrid = null;
+    }
+  }
+
+  private PointGrid getRealCoordsGrid() {
+    if (_realCoordsGrid == null || _realCoordsGrid.getPoints() != _realCoords) {
+      _realCoordsGrid = new PointGrid(_realCoords);
+    }
+    return _realCoordsGrid;
+  }
+
   /**
    * Returns the popup menu used for user mouse iteractions
    *
@@ -3772,19 +3931,18 @@ public class VARNAPanel extends JPanel {
   }
 
   public ArrayList<Integer> getBasesInRectangleDiff(Rectangle recIn, Rectangle recOut) {
-    ArrayList<Integer> result = new ArrayList<Integer>();
-    for (int i = 0; i < _realCoords.length; i++) {
-      if (recIn.contains(_realCoords[i]) ^ recOut.contains(_realCoords[i])) result.add(i);
-    }
-    return result;
+    double minX = Math.min(recIn.getMinX(), recOut.getMinX());
+    double minY = Math.min(recIn.getMinY(), recOut.getMinY());
+    double maxX = Math.max(recIn.getMaxX(), recOut.getMaxX());
+    double maxY = Math.max(recIn.getMaxY(), recOut.getMaxY());
+    Rectangle2D.Double union = new Rectangle2D.Double(minX, minY, maxX - minX, maxY - minY);
+    return getRealCoordsGrid()
+        .inRectangle(
+            union, i -> recIn.contains(_realCoords[i]) ^ recOut.contains(_realCoords[i]));
   }
 
   public ArrayList<Integer> getBasesInRectangle(Rectangle rec) {
-    ArrayList<Integer> result = new ArrayList<Integer>();
-    for (int i = 0; i < _realCoords.length; i++) {
-      if (rec.contains(_realCoords[i])) result.add(i);
-    }
-    return result;
+    return getRealCoordsGrid().inRectangle(rec, i -> rec.contains(_realCoords[i]));
   }
 
   public void setSelectionRectangle(Rectangle rec) {
@@ -4016,10 +4174,10 @@ public class VARNAPanel extends JPanel {
 
   public static FullBackup importSession(InputStream fis, String path)
       throws ExceptionLoadingFailed {
-    System.setProperty(
-        "javax.xml.parsers.SAXParserFactory",
-        "com.sun.org.apache.xerces.internal.jaxp.SAXParserFactoryImpl");
-    SAXParserFactory saxFact = javax.xml.parsers.SAXParserFactory.newInstance();
+    // Request the JDK parser for this factory only, leaving the JVM-wide default untouched
+    SAXParserFactory saxFact =
+        javax.xml.parsers.SAXParserFactory.newInstance(
+            "com.sun.org.apache.xerces.internal.jaxp.SAXParserFactoryImpl", null);
     saxFact.setValidating(false);
     saxFact.setXIncludeAware(false);
     saxFact.setNamespaceAware(false);
@@ -4289,10 +4447,11 @@ public class VARNAPanel extends JPanel {
       double dist = Double.MAX_VALUE;
       double d2;
       Point2D.Double position;
+      Rectangle2D.Double rnabbox = getExtendedRNABBox();
       for (TextAnnotation textAnnot : getListeAnnotations()) {
         // calcul de la distance
         position = textAnnot.getCenterPosition();
-        position = transformCoord(position);
+        position = transformCoord(position, _offX, _offY, rnabbox.x, rnabbox.y, getScaleFactor());
         d2 = Math.sqrt(Math.pow((position.x - x), 2) + Math.pow((position.y - y), 2));
         // si la valeur est inferieur au minimum actuel
         if ((dist > d2)
@@ -4316,22 +4475,16 @@ public class VARNAPanel extends JPanel {
   }
 
   public int getNearestBaseIndex(int x, int y, boolean always, boolean onlyPaired) {
-    double d2, dist = Double.MAX_VALUE;
-    int mb = -1;
-    for (int i = 0; i < getRealCoords().length; i++) {
-      if (!onlyPaired || (getRNA().get_listeBases().get(i).getElementStructure() != -1)) {
-        d2 =
-            Math.sqrt(
-                Math.pow((getRealCoords()[i].x - x), 2) + Math.pow((getRealCoords()[i].y - y), 2));
-        if ((dist > d2)
-            && ((d2 < getScaleFactor() * ControleurClicMovement.MIN_SELECTION_DISTANCE)
-                || always)) {
-          dist = d2;
-          mb = i;
-        }
-      }
-    }
-    return mb;
+    double maxDistance =
+        always
+            ? Double.POSITIVE_INFINITY
+            : getScaleFactor() * ControleurClicMovement.MIN_SELECTION_DISTANCE;
+    return getRealCoordsGrid()
+        .nearest(
+            x,
+            y,
+            maxDistance,
+            i -> !onlyPaired || (getRNA().get_listeBases().get(i).getElementStructure() != -1));
   }
 
   public void globalRescale(double factor) {
@@ -774,16 +774,18 @@ public class NussinovDesignDemo extends JFrame
         for (ModeleBase mb : rfolded.get_listeBases()) {
           ModeleBase mbref = target.getBaseAt(mb.getIndex());
           if (mb.getElementStructure() == mbref.getElementStructure()) {
-            mb.getStyleBase().setBaseInnerColor(_okColor);
-            mb.getStyleBase().setBaseNameColor(Color.white);
+            mb.setStyleBase(
+                mb.getStyleBaseReadOnly()
+                    .withBaseInnerColor(_okColor)
+                    .withBaseNameColor(Color.white));
           }
         }
         for (ModeleBase mb : target.get_listeBases()) {
           ModeleBase mbref = rfolded.getBaseAt(mb.getIndex());
           if (mb.getElementStructure() == mbref.getElementStructure()) {
-            mb.getStyleBase().setBaseInnerColor(_okColor);
+            mb.setStyleBase(mb.getStyleBaseReadOnly().withBaseInnerColor(_okColor));
           } else {
-            mb.getStyleBase().setBaseInnerColor(Color.white);
+            mb.setStyleBase(mb.getStyleBaseReadOnly().withBaseInnerColor(Color.white));
           }
         }
         rfolded.drawRNARadiate(_vpMaster.getConfig());
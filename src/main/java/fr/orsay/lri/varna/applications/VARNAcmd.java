@@ -35,7 +35,6 @@ import fr.orsay.lri.varna.models.VARNAConfig;
 import fr.orsay.lri.varna.models.VARNAConfigLoader;
 import fr.orsay.lri.varna.models.rna.RNA;
 import java.awt.Graphics2D;
-import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FileInputStream;
@@ -341,44 +340,33 @@ public class VARNAcmd implements InterfaceParameterLoader {
         confs.add(new FullBackup(r, "From Params"));
       }
       if (!_outFile.isEmpty()) {
+        // Only sessions and comparisons need panels, other formats are drawn from the model alone
+        boolean usePanels =
+            _outFile.toLowerCase().endsWith(".varna")
+                || Boolean.parseBoolean(
+                    getParameterValue(VARNAConfigLoader.comparisonModeOpt, "false"));
         int index = 1;
         for (FullBackup r : confs) {
           VARNAcfg.setRNA(r.rna);
-          vpl = VARNAcfg.createVARNAPanels();
-          if (vpl.size() > 0) {
-            VARNAPanel _vp = vpl.get(0);
-            if (r.hasConfig()) {
-              _vp.setConfig(r.config);
+          String path = formatOutputPath(_outFile, index, confs.size());
+          if (usePanels) {
+            vpl = VARNAcfg.createVARNAPanels();
+            if (vpl.size() > 0) {
+              VARNAPanel _vp = vpl.get(0);
+              if (r.hasConfig()) {
+                _vp.setConfig(r.config);
+              }
+              if (_outFile.toLowerCase().endsWith(".varna")) {
+                _vp.saveSession(path);
+              } else {
+                export(_vp.getRNA(), _vp.getConfig(), path);
+              }
             }
-            RNA _rna = _vp.getRNA();
-            Rectangle2D.Double bbox = _vp.getRNA().getBBox();
-            // System.out.println(_vp.getRNA().getBBox());
-
-            if (_outFile.toLowerCase().endsWith(".jpeg")
-                || _outFile.toLowerCase().endsWith(".jpg")
-                || _outFile.toLowerCase().endsWith(".png")) {
-              _vp.setTitleFontSize((int) (_scale * _vp.getTitleFont().getSize()));
-              _vp.setSize(
-                  (int) (_baseWidth * _scale),
-                  (int) ((_scale * _baseWidth * bbox.height) / ((double) bbox.width)));
-            }
-
-            if (_outFile.toLowerCase().endsWith(".eps")) {
-              _rna.saveRNAEPS(formatOutputPath(_outFile, index, confs.size()), _vp.getConfig());
-            } else if (_outFile.toLowerCase().endsWith(".xfig")
-                || _outFile.toLowerCase().endsWith(".fig")) {
-              _rna.saveRNAXFIG(formatOutputPath(_outFile, index, confs.size()), _vp.getConfig());
-            } else if (_outFile.toLowerCase().endsWith(".svg")) {
-              _rna.saveRNASVG(formatOutputPath(_outFile, index, confs.size()), _vp.getConfig());
-            } else if (_outFile.toLowerCase().endsWith(".jpeg")
-                || _outFile.toLowerCase().endsWith(".jpg")) {
-              this.saveToJPEG(formatOutputPath(_outFile, index, confs.size()), _vp);
-            } else if (_outFile.toLowerCase().endsWith(".png")) {
-              this.saveToPNG(formatOutputPath(_outFile, index, confs.size()), _vp);
-            } else if (_outFile.toLowerCase().endsWith(".varna")) {
-              _vp.saveSession(formatOutputPath(_outFile, index, confs.size()));
-            } else {
-              errorExit("Unknown extension for output file \"" + _outFile + "\"");
+          } else {
+            ArrayList<FullBackup> drawn = VARNAcfg.createConfigurations();
+            if (drawn.size() > 0) {
+              FullBackup b = drawn.get(0);
+              export(b.rna, r.hasConfig() ? r.config : b.config, path);
             }
           }
           index++;
@@ -443,16 +431,35 @@ public class VARNAcmd implements InterfaceParameterLoader {
     if (!_outFile.isEmpty()) throw (new ExitCode(0, ""));
   }
 
+  private void export(RNA rna, VARNAConfig conf, String path)
+      throws ExceptionWritingForbidden, ExceptionJPEGEncoding, ExceptionExportFailed, ExitCode {
+    String lower = path.toLowerCase();
+    if (lower.endsWith(".eps")) {
+      rna.saveRNAEPS(path, conf);
+    } else if (lower.endsWith(".xfig") || lower.endsWith(".fig")) {
+      rna.saveRNAXFIG(path, conf);
+    } else if (lower.endsWith(".svg")) {
+      rna.saveRNASVG(path, conf);
+    } else if (lower.endsWith(".jpeg") || lower.endsWith(".jpg") || lower.endsWith(".png")) {
+      BufferedImage image = rna.renderRNAImage(conf, _baseWidth * _scale);
+      if (lower.endsWith(".png")) {
+        saveToPNG(path, image);
+      } else {
+        saveToJPEG(path, image);
+      }
+    } else {
+      errorExit("Unknown extension for output file \"" + _outFile + "\"");
+    }
+  }
+
+  /** Saves what the panel shows, at its size, as a JPEG file. */
   public void saveToJPEG(String filename, VARNAPanel vp)
       throws ExceptionJPEGEncoding, ExceptionExportFailed {
+    saveToJPEG(filename, paintPanel(vp));
+  }
 
-    BufferedImage myImage =
-        new BufferedImage(
-            (int) Math.round(vp.getWidth()),
-            (int) Math.round(vp.getHeight()),
-            BufferedImage.TYPE_INT_RGB);
-    Graphics2D g2 = myImage.createGraphics();
-    vp.paintComponent(g2);
+  public void saveToJPEG(String filename, BufferedImage myImage)
+      throws ExceptionJPEGEncoding, ExceptionExportFailed {
     try {
       FileImageOutputStream out = new FileImageOutputStream(new File(filename));
       ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
@@ -468,7 +475,20 @@ public class VARNAcmd implements InterfaceParameterLoader {
     }
   }
 
+  /** Saves what the panel shows, at its size, as a PNG file. */
   public void saveToPNG(String filename, VARNAPanel vp) throws ExceptionExportFailed {
+    saveToPNG(filename, paintPanel(vp));
+  }
+
+  public void saveToPNG(String filename, BufferedImage myImage) throws ExceptionExportFailed {
+    try {
+      ImageIO.write(myImage, "PNG", new File(filename));
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  private static BufferedImage paintPanel(VARNAPanel vp) {
     BufferedImage myImage =
         new BufferedImage(
             (int) Math.round(vp.getWidth()),
@@ -477,11 +497,7 @@ public class VARNAcmd implements InterfaceParameterLoader {
     Graphics2D g2 = myImage.createGraphics();
     vp.paintComponent(g2);
     g2.dispose();
-    try {
-      ImageIO.write(myImage, "PNG", new File(filename));
-    } catch (IOException e) {
-      e.printStackTrace();
-    }
+    return myImage;
   }
 
   public static void main(String[] argv) {
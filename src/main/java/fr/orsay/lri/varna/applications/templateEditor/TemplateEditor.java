@@ -5,6 +5,7 @@ import fr.orsay.lri.varna.applications.FileNameExtensionFilter;
 import fr.orsay.lri.varna.exceptions.ExceptionInvalidRNATemplate;
 import fr.orsay.lri.varna.exceptions.ExceptionNonEqualLength;
 import fr.orsay.lri.varna.exceptions.ExceptionXMLGeneration;
+import fr.orsay.lri.varna.models.rna.ModeleBase;
 import fr.orsay.lri.varna.models.templates.Benchmark;
 import fr.orsay.lri.varna.models.templates.DrawRNATemplateCurveMethod;
 import fr.orsay.lri.varna.models.templates.DrawRNATemplateMethod;
@@ -377,7 +378,8 @@ public class TemplateEditor extends JFrame
         for (int i : map.getSourceElemsAsSet()) {
           RNATemplateElement t = map.getPartner(i);
           Color c = _sk.getElement(t).getDominantColor();
-          _vp.getRNA().getBaseAt(i).getStyleBase().setBaseInnerColor(c);
+          ModeleBase mb = _vp.getRNA().getBaseAt(i);
+          mb.setStyleBase(mb.getStyleBaseReadOnly().withBaseInnerColor(c));
         }
         _vp.repaint();
       } catch (RNATemplateDrawingAlgorithmException e1) {
@@ -70,13 +70,13 @@ public class ControleurBaseSpecialColorEditor implements ActionListener {
 
   private void applyColor(String titreCol, Color couleur, ModeleBase mb) {
     if (titreCol.equals("Inner Color")) {
-      mb.getStyleBase().setBaseInnerColor(couleur);
+      mb.setStyleBase(mb.getStyleBaseReadOnly().withBaseInnerColor(couleur));
     } else if (titreCol.equals("Outline Color")) {
-      mb.getStyleBase().setBaseOutlineColor(couleur);
+      mb.setStyleBase(mb.getStyleBaseReadOnly().withBaseOutlineColor(couleur));
     } else if (titreCol.equals("Name Color")) {
-      mb.getStyleBase().setBaseNameColor(couleur);
+      mb.setStyleBase(mb.getStyleBaseReadOnly().withBaseNameColor(couleur));
     } else if (titreCol.equals("Number Color")) {
-      mb.getStyleBase().setBaseNumberColor(couleur);
+      mb.setStyleBase(mb.getStyleBaseReadOnly().withBaseNumberColor(couleur));
     }
   }
 }
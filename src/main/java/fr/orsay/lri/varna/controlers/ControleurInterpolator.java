@@ -23,20 +23,41 @@ import fr.orsay.lri.varna.models.VARNAConfig;
 import fr.orsay.lri.varna.models.rna.Mapping;
 import fr.orsay.lri.varna.models.rna.ModeleBase;
 import fr.orsay.lri.varna.models.rna.RNA;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.geom.Point2D;
+import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.Vector;
-
+import java.util.concurrent.CountDownLatch;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * Animates transitions between structures. Trajectories are computed on this thread, then frames
+ * are applied by a Swing timer, on the event dispatch thread, so that painting never sees a frame
+ * half applied. Each frame places the bases where they should be at that time, so a transition
+ * takes the same time whatever the size of the structures, frames being skipped when painting falls
+ * behind.
+ */
 public class ControleurInterpolator extends Thread {
 
   VARNAPanel _vpn;
-  private int _numSteps = 25;
-  private long _timeDelay = 15;
-  private boolean _running = false;
+
+  /** Duration of a transition, in milliseconds. */
+  private long _duration = 375;
+
+  /** Delay between two frames, in milliseconds, about the refresh rate of displays. */
+  private static final int FRAME_DELAY = 16;
+
+  private volatile boolean _running = false;
   Targets _d = new Targets();
 
+  /** The transition being played, only accessed on the event dispatch thread. */
+  private Transition _current = null;
+
   public ControleurInterpolator(VARNAPanel vpn) {
     _vpn = vpn;
   }
@@ -61,19 +82,67 @@ public class ControleurInterpolator extends Thread {
     return _running;
   }
 
-  private Point2D.Double computeDestination(
-      Point2D pli, Point2D pri, Point2D pi, int i, int n, Point2D plf, Point2D prf) {
-    Point2D.Double plm =
-        new Point2D.Double((pli.getX() + plf.getX()) / 2.0, (pli.getY() + plf.getY()) / 2.0);
-    Point2D.Double prm =
-        new Point2D.Double((pri.getX() + prf.getX()) / 2.0, (pri.getY() + prf.getY()) / 2.0);
-    Point2D.Double pm =
-        new Point2D.Double(
-            ((n - i) * plm.getX() + i * prm.getX()) / n,
-            ((n - i) * plm.getY() + i * prm.getY()) / n);
-    Point2D.Double v = new Point2D.Double(pm.getX() - pi.getX(), pm.getY() - pi.getY());
-    Point2D.Double pf = new Point2D.Double(pi.getX() + 2.0 * v.getX(), pi.getY() + 2.0 * v.getY());
-    return pf;
+  /**
+   * Computes where an unmatched base should go, from its position (fromX[index], fromY[index]) and
+   * the moves of its nearest matched neighbors left and right, as the i-th of n-1 unmatched bases
+   * between them. The result goes to (toX[index], toY[index]).
+   */
+  private static void computeDestination(
+      double[] fromX,
+      double[] fromY,
+      double[] toX,
+      double[] toY,
+      int left,
+      int right,
+      int index,
+      int i,
+      int n) {
+    double plmX = (fromX[left] + toX[left]) / 2.0;
+    double plmY = (fromY[left] + toY[left]) / 2.0;
+    double prmX = (fromX[right] + toX[right]) / 2.0;
+    double prmY = (fromY[right] + toY[right]) / 2.0;
+    double pmX = ((n - i) * plmX + i * prmX) / n;
+    double pmY = ((n - i) * plmY + i * prmY) / n;
+    toX[index] = fromX[index] + 2.0 * (pmX - fromX[index]);
+    toY[index] = fromY[index] + 2.0 * (pmY - fromY[index]);
+  }
+
+  /**
+   * Sets the destination of the unmatched bases, clustered as by clusterIndices(), from the moves
+   * of the matched ones.
+   */
+  private static void computeUnmatchedDestinations(
+      Vector<Vector<Integer>> clusters,
+      double[] fromX,
+      double[] fromY,
+      double[] toX,
+      double[] toY) {
+    for (int i = 0; i < clusters.size(); i += 2) {
+      int matchedNeighborLeft, matchedNeighborRight;
+      if (i == 0) {
+        matchedNeighborLeft = clusters.get(1).get(0);
+        matchedNeighborRight = clusters.get(1).get(0);
+      } else if (i == clusters.size() - 1) {
+        matchedNeighborLeft = clusters.get(clusters.size() - 2).get(0);
+        matchedNeighborRight = clusters.get(clusters.size() - 2).get(0);
+      } else {
+        matchedNeighborLeft = clusters.get(i - 1).get(0);
+        matchedNeighborRight = clusters.get(i + 1).get(0);
+      }
+      Vector<Integer> v = clusters.get(i);
+      for (int j = 0; j < v.size(); j++) {
+        computeDestination(
+            fromX,
+            fromY,
+            toX,
+            toY,
+            matchedNeighborLeft,
+            matchedNeighborRight,
+            v.get(j),
+            j + 1,
+            v.size() + 1);
+      }
+    }
   }
 
   private Vector<Vector<Integer>> clusterIndices(int numIndices, int[] mappedIndices)
@@ -329,142 +398,34 @@ public class ControleurInterpolator extends Thread {
   /**
    * The argument moveTarget specifies whether the RNA _target should be rotated so that bases move
    * as little as possible when switching from the current RNA to _target using the animation. Note
-   * that this will modify the _target object directly.
+   * that this will modify the _target object directly. Returns once the transition is over, except
+   * on the event dispatch thread: it applies the frames, so it returns once the transition started.
    */
   public void nextTarget(RNA _target, VARNAConfig _conf, Mapping _mapping, boolean moveTarget) {
     try {
       RNA source = _vpn.getRNA();
-      RNA current = source;
 
-      if (moveTarget) moveNearOtherRNA(source, _target, _mapping);
+      // The displayed RNA is read on the event dispatch thread, which paints it
+      double[][] coords = new double[4][];
+      runOnEDT(
+          () -> {
+            if (moveTarget) moveNearOtherRNA(source, _target, _mapping);
+            coords[0] = source.getXCoords();
+            coords[1] = source.getYCoords();
+            coords[2] = _target.getXCoords();
+            coords[3] = _target.getYCoords();
+          });
 
       if (source.getSize() != 0 && _target.getSize() != 0) {
-        ArrayList<ModeleBase> currBases = current.get_listeBases();
-        ArrayList<ModeleBase> destBases = _target.get_listeBases();
-        Vector<Vector<Integer>> intArrSource = new Vector<Vector<Integer>>();
-        Vector<Vector<Integer>> intArrTarget = new Vector<Vector<Integer>>();
-        // Building interval arrays
-        intArrSource = clusterIndices(currBases.size(), _mapping.getSourceElems());
-        intArrTarget = clusterIndices(destBases.size(), _mapping.getTargetElems());
-
-        // Duplicating source and target coordinates
-        Point2D.Double[] initPosSource = new Point2D.Double[currBases.size()];
-        Point2D.Double[] finalPosTarget = new Point2D.Double[destBases.size()];
-
-        for (int i = 0; i < currBases.size(); i++) {
-          Point2D tmp = currBases.get(i).getCoords();
-          initPosSource[i] = new Point2D.Double(tmp.getX(), tmp.getY());
-        }
-        for (int i = 0; i < destBases.size(); i++) {
-          Point2D tmp = destBases.get(i).getCoords();
-          finalPosTarget[i] = new Point2D.Double(tmp.getX(), tmp.getY());
-        }
-
-        /** Assigning final (Source) and initial (Target) coordinates */
-        Point2D.Double[] finalPosSource = new Point2D.Double[initPosSource.length];
-        Point2D.Double[] initPosTarget = new Point2D.Double[finalPosTarget.length];
-        // Final position of source model
-        for (int i = 0; i < finalPosSource.length; i++) {
-          if (_mapping.getPartner(i) != Mapping.UNKNOWN) {
-            Point2D dest;
-            dest = finalPosTarget[_mapping.getPartner(i)];
-            finalPosSource[i] = new Point2D.Double(dest.getX(), dest.getY());
-          }
-        }
-
-        for (int i = 0; i < intArrSource.size(); i += 2) {
-          int matchedNeighborLeft, matchedNeighborRight;
-          if (i == 0) {
-            matchedNeighborLeft = intArrSource.get(1).get(0);
-            matchedNeighborRight = intArrSource.get(1).get(0);
-          } else if (i == intArrSource.size() - 1) {
-            matchedNeighborLeft = intArrSource.get(intArrSource.size() - 2).get(0);
-            matchedNeighborRight = intArrSource.get(intArrSource.size() - 2).get(0);
-          } else {
-            matchedNeighborLeft = intArrSource.get(i - 1).get(0);
-            matchedNeighborRight = intArrSource.get(i + 1).get(0);
-          }
-          Vector<Integer> v = intArrSource.get(i);
-          for (int j = 0; j < v.size(); j++) {
-            int index = v.get(j);
-            finalPosSource[index] =
-                computeDestination(
-                    initPosSource[matchedNeighborLeft],
-                    initPosSource[matchedNeighborRight],
-                    initPosSource[index],
-                    j + 1,
-                    v.size() + 1,
-                    finalPosSource[matchedNeighborLeft],
-                    finalPosSource[matchedNeighborRight]);
-          }
-        }
-        for (int i = 0; i < initPosTarget.length; i++) {
-          if (_mapping.getAncestor(i) != Mapping.UNKNOWN) {
-            Point2D dest;
-            dest = initPosSource[_mapping.getAncestor(i)];
-            initPosTarget[i] = new Point2D.Double(dest.getX(), dest.getY());
-          }
-        }
-        for (int i = 0; i < intArrTarget.size(); i += 2) {
-          int matchedNeighborLeft, matchedNeighborRight;
-          if (i == 0) {
-            matchedNeighborLeft = intArrTarget.get(1).get(0);
-            matchedNeighborRight = intArrTarget.get(1).get(0);
-          } else if (i == intArrTarget.size() - 1) {
-            matchedNeighborLeft = intArrTarget.get(intArrTarget.size() - 2).get(0);
-            matchedNeighborRight = intArrTarget.get(intArrTarget.size() - 2).get(0);
-          } else {
-            matchedNeighborLeft = intArrTarget.get(i - 1).get(0);
-            matchedNeighborRight = intArrTarget.get(i + 1).get(0);
-          }
-          Vector<Integer> v = intArrTarget.get(i);
-          for (int j = 0; j < v.size(); j++) {
-            int index = v.get(j);
-            initPosTarget[index] =
-                computeDestination(
-                    finalPosTarget[matchedNeighborLeft],
-                    finalPosTarget[matchedNeighborRight],
-                    finalPosTarget[index],
-                    j + 1,
-                    v.size() + 1,
-                    initPosTarget[matchedNeighborLeft],
-                    initPosTarget[matchedNeighborRight]);
-          }
-        }
-
-        boolean firstHalf = true;
-        for (int i = 0; i < _numSteps; i++) {
-          if (i == _numSteps / 2) {
-            _vpn.showRNA(_target);
-            current = _target;
-            currBases = current.get_listeBases();
-            firstHalf = false;
-            if (_conf != null) {
-              _vpn.setConfig(_conf);
-            }
-
-            for (int j = 0; j < initPosSource.length; j++) {
-              source.setCoord(j, initPosSource[j]);
-            }
-          }
-          for (int j = 0; j < currBases.size(); j++) {
-            ModeleBase m = currBases.get(j);
-            Point2D mpc, mnc;
-            if (firstHalf) {
-              mpc = initPosSource[j];
-              mnc = finalPosSource[j];
-            } else {
-              mpc = initPosTarget[j];
-              mnc = finalPosTarget[j];
-            }
-            m.setCoords(
-                new Point2D.Double(
-                    ((_numSteps - 1 - i) * mpc.getX() + (i) * mnc.getX()) / (_numSteps - 1),
-                    ((_numSteps - 1 - i) * mpc.getY() + i * mnc.getY()) / (_numSteps - 1)));
-          }
-          _vpn.repaint();
-          sleep(_timeDelay);
+        Transition transition =
+            new Transition(
+                source, _target, _conf, _mapping, coords[0], coords[1], coords[2], coords[3]);
+        if (SwingUtilities.isEventDispatchThread()) {
+          // The last frame displays the target
+          transition.start();
+          return;
         }
+        transition.play();
       }
     } catch (InterruptedException e) {
       e.printStackTrace();
@@ -473,8 +434,181 @@ public class ControleurInterpolator extends Thread {
     } catch (Exception e) {
       e.printStackTrace();
     }
-    _vpn.showRNA(_target);
-    _vpn.repaint();
+    runOnEDT(
+        () -> {
+          _vpn.showRNA(_target);
+          _vpn.repaint();
+        });
+  }
+
+  /** Runs r on the event dispatch thread, and waits for it. */
+  private static void runOnEDT(Runnable r) {
+    if (SwingUtilities.isEventDispatchThread()) {
+      r.run();
+    } else {
+      try {
+        SwingUtilities.invokeAndWait(r);
+      } catch (InterruptedException e) {
+        e.printStackTrace();
+      } catch (InvocationTargetException e) {
+        e.getCause().printStackTrace();
+      }
+    }
+  }
+
+  /**
+   * A transition from the displayed RNA to a target RNA. The bases of the source move from their
+   * positions towards those of their partners in the target during the first half, then the
+   * target is displayed, its bases moving from the positions of their ancestors in the source to
+   * their own. Positions are kept in primitive arrays, indexed like the bases.
+   */
+  private class Transition implements ActionListener {
+    private final RNA _source;
+    private final RNA _target;
+    private final VARNAConfig _conf;
+
+    private final double[] _initSourceX, _initSourceY, _finalSourceX, _finalSourceY;
+    private final double[] _initTargetX, _initTargetY, _finalTargetX, _finalTargetY;
+
+    // Only accessed on the event dispatch thread, once the transition started
+    private long _start = -1;
+    private boolean _firstHalf = true;
+
+    private final CountDownLatch _done = new CountDownLatch(1);
+    private Timer _timer;
+
+    /** The coordinates of the bases are given, as read on the event dispatch thread. */
+    private Transition(
+        RNA source,
+        RNA target,
+        VARNAConfig conf,
+        Mapping mapping,
+        double[] sourceX,
+        double[] sourceY,
+        double[] targetX,
+        double[] targetY)
+        throws MappingException {
+      _source = source;
+      _target = target;
+      _conf = conf;
+      int sourceSize = source.get_listeBases().size();
+      int targetSize = target.get_listeBases().size();
+      // Building interval arrays
+      Vector<Vector<Integer>> intArrSource = clusterIndices(sourceSize, mapping.getSourceElems());
+      Vector<Vector<Integer>> intArrTarget = clusterIndices(targetSize, mapping.getTargetElems());
+
+      _initSourceX = sourceX;
+      _initSourceY = sourceY;
+      _finalTargetX = targetX;
+      _finalTargetY = targetY;
+
+      // Final position of source model, and initial position of target model
+      _finalSourceX = new double[sourceSize];
+      _finalSourceY = new double[sourceSize];
+      for (int i = 0; i < sourceSize; i++) {
+        int partner = mapping.getPartner(i);
+        if (partner != Mapping.UNKNOWN) {
+          _finalSourceX[i] = _finalTargetX[partner];
+          _finalSourceY[i] = _finalTargetY[partner];
+        }
+      }
+      computeUnmatchedDestinations(
+          intArrSource, _initSourceX, _initSourceY, _finalSourceX, _finalSourceY);
+      _initTargetX = new double[targetSize];
+      _initTargetY = new double[targetSize];
+      for (int i = 0; i < targetSize; i++) {
+        int ancestor = mapping.getAncestor(i);
+        if (ancestor != Mapping.UNKNOWN) {
+          _initTargetX[i] = _initSourceX[ancestor];
+          _initTargetY[i] = _initSourceY[ancestor];
+        }
+      }
+      computeUnmatchedDestinations(
+          intArrTarget, _finalTargetX, _finalTargetY, _initTargetX, _initTargetY);
+    }
+
+    /** Plays the transition, and waits for its end. Not called on the event dispatch thread. */
+    private void play() throws InterruptedException {
+      SwingUtilities.invokeLater(this::start);
+      try {
+        _done.await();
+      } catch (InterruptedException e) {
+        SwingUtilities.invokeLater(this::finish);
+        throw e;
+      }
+    }
+
+    /** Starts playing the transition, on the event dispatch thread, ending the previous one. */
+    private void start() {
+      if (_current != null) {
+        _current.finish();
+      }
+      _current = this;
+      _timer = new Timer(FRAME_DELAY, this);
+      _timer.setInitialDelay(0);
+      _timer.setCoalesce(true);
+      _timer.start();
+    }
+
+    /** Applies the last frame at once, and stops. */
+    private void finish() {
+      if (_done.getCount() > 0) {
+        applyFrame(1.0);
+        stop();
+      }
+    }
+
+    private void stop() {
+      if (_timer != null) {
+        _timer.stop();
+      }
+      if (_current == this) {
+        _current = null;
+      }
+      _done.countDown();
+    }
+
+    /** Applies the frame for the current time. */
+    public void actionPerformed(ActionEvent e) {
+      long now = System.nanoTime();
+      if (_start < 0) {
+        _start = now;
+      }
+      double f = Math.min(1.0, (now - _start) / (_duration * 1e6));
+      applyFrame(f);
+      if (f >= 1.0) {
+        stop();
+      }
+    }
+
+    private void applyFrame(double f) {
+      if (_firstHalf && f >= 0.5) {
+        _vpn.showRNA(_target);
+        _firstHalf = false;
+        if (_conf != null) {
+          _vpn.setConfig(_conf);
+        }
+        for (int j = 0; j < _initSourceX.length; j++) {
+          _source.setCoord(j, _initSourceX[j], _initSourceY[j]);
+        }
+      }
+      if (_firstHalf) {
+        setFrame(_source, _initSourceX, _initSourceY, _finalSourceX, _finalSourceY, f);
+      } else {
+        setFrame(_target, _initTargetX, _initTargetY, _finalTargetX, _finalTargetY, f);
+      }
+      _vpn.repaint();
+    }
+
+    private void setFrame(
+        RNA rna, double[] fromX, double[] fromY, double[] toX, double[] toY, double f) {
+      ArrayList<ModeleBase> bases = rna.get_listeBases();
+      for (int j = 0; j < bases.size(); j++) {
+        bases
+            .get(j)
+            .setCoords((1.0 - f) * fromX[j] + f * toX[j], (1.0 - f) * fromY[j] + f * toY[j]);
+      }
+    }
   }
 
   private class TargetsHolder {
@@ -225,7 +225,8 @@ public class ControleurMenu implements InterfaceVARNAListener, ActionListener {
       if (c != null) {
         listBase = listSwitchType(_type);
         for (int i = 0; i < listBase.size(); i++) {
-          _vp.getRNA().get_listeBases().get(listBase.get(i)).getStyleBase().setBaseInnerColor(c);
+          ModeleBase mb = _vp.getRNA().get_listeBases().get(listBase.get(i));
+          mb.setStyleBase(mb.getStyleBaseReadOnly().withBaseInnerColor(c));
         }
         _vp.repaint();
       }
@@ -235,7 +236,8 @@ public class ControleurMenu implements InterfaceVARNAListener, ActionListener {
       if (c != null) {
         listBase = listSwitchType(_type);
         for (int i = 0; i < listBase.size(); i++) {
-          _vp.getRNA().get_listeBases().get(listBase.get(i)).getStyleBase().setBaseOutlineColor(c);
+          ModeleBase mb = _vp.getRNA().get_listeBases().get(listBase.get(i));
+          mb.setStyleBase(mb.getStyleBaseReadOnly().withBaseOutlineColor(c));
         }
         _vp.repaint();
       }
@@ -245,7 +247,8 @@ public class ControleurMenu implements InterfaceVARNAListener, ActionListener {
       if (c != null) {
         listBase = listSwitchType(_type);
         for (int i = 0; i < listBase.size(); i++) {
-          _vp.getRNA().get_listeBases().get(listBase.get(i)).getStyleBase().setBaseNameColor(c);
+          ModeleBase mb = _vp.getRNA().get_listeBases().get(listBase.get(i));
+          mb.setStyleBase(mb.getStyleBaseReadOnly().withBaseNameColor(c));
         }
         _vp.repaint();
       }
@@ -255,7 +258,8 @@ public class ControleurMenu implements InterfaceVARNAListener, ActionListener {
       if (c != null) {
         listBase = listSwitchType(_type);
         for (int i = 0; i < listBase.size(); i++) {
-          _vp.getRNA().get_listeBases().get(listBase.get(i)).getStyleBase().setBaseNumberColor(c);
+          ModeleBase mb = _vp.getRNA().get_listeBases().get(listBase.get(i));
+          mb.setStyleBase(mb.getStyleBaseReadOnly().withBaseNumberColor(c));
         }
         _vp.repaint();
       }
@@ -267,7 +271,7 @@ public class ControleurMenu implements InterfaceVARNAListener, ActionListener {
         for (int i = 0; i < listBase.size(); i++) {
           for (ModeleBP msbp : _vp.getRNA().getBPsAt(listBase.get(i))) {
             if (msbp != null) {
-              msbp.getStyle().setCustomColor(c);
+              msbp.setStyle(msbp.getStyleReadOnly().withCustomColor(c));
             }
           }
         }
@@ -281,7 +285,7 @@ public class ControleurMenu implements InterfaceVARNAListener, ActionListener {
         for (int i = 0; i < listBase.size(); i++) {
           ModeleBase mb = _vp.getRNA().get_listeBases().get(listBase.get(i));
           if (mb.getElementStructure() != -1) {
-            mb.getStyleBP().getStyle().setCustomColor(c);
+            mb.getStyleBP().setStyle(mb.getStyleBP().getStyleReadOnly().withCustomColor(c));
           }
         }
         _vp.repaint();
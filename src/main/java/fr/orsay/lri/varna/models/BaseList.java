@@ -70,7 +70,7 @@ public class BaseList {
   public Color getAverageOutlineColor() {
     ArrayList<Color> cols = new ArrayList<Color>();
     for (ModeleBase mb : _bases) {
-      cols.add(mb.getStyleBase().getBaseOutlineColor());
+      cols.add(mb.getStyleBaseReadOnly().getBaseOutlineColor());
     }
     return getAverageColor(cols);
   }
@@ -78,7 +78,7 @@ public class BaseList {
   public Color getAverageNameColor() {
     ArrayList<Color> cols = new ArrayList<Color>();
     for (ModeleBase mb : _bases) {
-      cols.add(mb.getStyleBase().getBaseNameColor());
+      cols.add(mb.getStyleBaseReadOnly().getBaseNameColor());
     }
     return getAverageColor(cols);
   }
@@ -86,7 +86,7 @@ public class BaseList {
   public Color getAverageNumberColor() {
     ArrayList<Color> cols = new ArrayList<Color>();
     for (ModeleBase mb : _bases) {
-      cols.add(mb.getStyleBase().getBaseNumberColor());
+      cols.add(mb.getStyleBaseReadOnly().getBaseNumberColor());
     }
     return getAverageColor(cols);
   }
@@ -94,7 +94,7 @@ public class BaseList {
   public Color getAverageInnerColor() {
     ArrayList<Color> cols = new ArrayList<Color>();
     for (ModeleBase mb : _bases) {
-      cols.add(mb.getStyleBase().getBaseInnerColor());
+      cols.add(mb.getStyleBaseReadOnly().getBaseInnerColor());
     }
     return getAverageColor(cols);
   }
@@ -40,8 +40,10 @@ import fr.orsay.lri.varna.exceptions.ExceptionDrawingAlgorithm;
 import fr.orsay.lri.varna.exceptions.ExceptionFileFormatOrSyntax;
 import fr.orsay.lri.varna.exceptions.ExceptionLoadingFailed;
 import fr.orsay.lri.varna.exceptions.ExceptionModeleStyleBaseSyntaxError;
+import fr.orsay.lri.varna.exceptions.ExceptionNAViewAlgorithm;
 import fr.orsay.lri.varna.exceptions.ExceptionNonEqualLength;
 import fr.orsay.lri.varna.exceptions.ExceptionParameterError;
+import fr.orsay.lri.varna.exceptions.ExceptionUnmatchedClosingParentheses;
 import fr.orsay.lri.varna.factories.RNAFactory;
 import fr.orsay.lri.varna.interfaces.InterfaceParameterLoader;
 import fr.orsay.lri.varna.models.annotations.ChemProbAnnotation;
@@ -247,6 +249,11 @@ public class VARNAConfigLoader {
 
   protected ArrayList<VARNAPanel> _VARNAPanelList = new ArrayList<VARNAPanel>();
 
+  protected ArrayList<FullBackup> _configurationList = new ArrayList<FullBackup>();
+
+  // Whether structures are loaded without creating any panel
+  private boolean _headless = false;
+
   InterfaceParameterLoader _optionProducer;
 
   public VARNAConfigLoader(InterfaceParameterLoader il) {
@@ -265,6 +272,31 @@ public class VARNAConfigLoader {
     return _VARNAPanelList;
   }
 
+  /**
+   * Applies the parameters like {@link #createVARNAPanels()}, but to bare RNAs and configurations,
+   * without creating any Swing component. Meant for exporting drawings in headless mode. The
+   * comparison mode needs a panel and is not supported.
+   *
+   * @return The drawn RNA of each panel, with its configuration
+   */
+  public ArrayList<FullBackup> createConfigurations()
+      throws ExceptionParameterError,
+          ExceptionModeleStyleBaseSyntaxError,
+          ExceptionNonEqualLength,
+          IOException,
+          ExceptionFileFormatOrSyntax,
+          ExceptionLoadingFailed {
+    _configurationList.clear();
+    _mainSurface = null;
+    _headless = true;
+    try {
+      retrieveParametersValues();
+    } finally {
+      _headless = false;
+    }
+    return _configurationList;
+  }
+
   public int getNbRows() {
     return this._numRows;
   }
@@ -859,7 +891,6 @@ public class VARNAConfigLoader {
           IOException,
           ExceptionFileFormatOrSyntax,
           ExceptionLoadingFailed {
-    boolean applyOptions = true;
     int algoCode;
     if (_algo.equals(ALGORITHM_CIRCULAR)) algoCode = RNA.DRAW_MODE_CIRCULAR;
     else if (_algo.equals(ALGORITHM_NAVIEW)) algoCode = RNA.DRAW_MODE_NAVIEW;
@@ -869,6 +900,12 @@ public class VARNAConfigLoader {
     else if (_algo.equals(ALGORITHM_MOTIF_VIEW)) algoCode = RNA.DRAW_MODE_MOTIFVIEW;
     else algoCode = RNA.DRAW_MODE_RADIATE;
 
+    if (_headless) {
+      applyValuesHeadless(n, algoCode);
+      return;
+    }
+
+    boolean applyOptions = true;
     if (_comparisonMode) {
       _mainSurface =
           new VARNAPanel(
@@ -935,95 +972,191 @@ public class VARNAConfigLoader {
       }
     }
     if (applyOptions) {
-      if (_useInnerBaseColor) {
-        _mainSurface.setBaseInnerColor(_baseInnerColor);
+      applyOptions(_mainSurface.getRNA(), _mainSurface.getConfig(), _mainSurface, n);
+      _mainSurface.getPopupMenu().get_itemShowWarnings().setState(_warning);
+      _mainSurface.setErrorsOn(_error);
+      _mainSurface.setZoom(_zoom);
+      _mainSurface.setBorderSize(_border);
+    }
+    // ajoute le VARNAPanel au conteneur
+  }
+
+  private void applyValuesHeadless(String n, int algoCode)
+      throws ExceptionParameterError,
+          IOException,
+          ExceptionFileFormatOrSyntax,
+          ExceptionLoadingFailed {
+    if (_comparisonMode) {
+      throw new ExceptionParameterError(
+          "The comparison mode is not available without a graphical interface.");
+    }
+    VARNAConfig conf = new VARNAConfig();
+    conf._spaceBetweenBases = _spaceBetweenBases;
+    RNA rna;
+    if (!_URL.isEmpty()) {
+      URL url = new URL(_URL);
+      URLConnection connexion = url.openConnection();
+      connexion.setUseCaches(false);
+      InputStream r = connexion.getInputStream();
+      if (_URL.toLowerCase().endsWith(VARNAPanel.VARNA_SESSION_EXTENSION)) {
+        FullBackup f = VARNAPanel.importSession(r, _URL);
+        if (!_title.isEmpty()) {
+          f.rna.setName(_title);
+        }
+        _configurationList.add(f);
+        return;
+      }
+      Collection<RNA> rnas;
+      try {
+        rnas =
+            RNAFactory.loadSecStr(
+                new BufferedReader(new InputStreamReader(r)),
+                RNAFactory.guessFileTypeFromExtension(_URL));
+      } catch (ExceptionFileFormatOrSyntax e) {
+        e.setPath(url.getPath());
+        throw e;
       }
-      if (_useBaseOutlineColor) {
-        _mainSurface.setBaseOutlineColor(_baseOutlineColor);
+      if (rnas.isEmpty()) {
+        throw new ExceptionFileFormatOrSyntax("No RNA in file '" + _URL + "'.");
       }
-      if (_useBaseNameColor) {
-        _mainSurface.setBaseNameColor(_baseNameColor);
+      rna = rnas.iterator().next();
+      if (!_title.isEmpty()) {
+        rna.setName(_title);
       }
-      if (_useBaseNumbersColor) {
-        _mainSurface.setBaseNumbersColor(_baseNumColor);
+    } else if (!_sstruct.isEmpty()) {
+      rna = new RNA();
+      rna.setName(_title);
+      try {
+        rna.setRNA(_sseq, _sstruct);
+      } catch (ExceptionUnmatchedClosingParentheses e) {
+        throw new ExceptionParameterError(e.getMessage(), "Bad structure: " + _sstruct);
       }
+    } else {
+      // As with panels, the title only applies to structures given by the parameters
+      rna = _defaultRNA;
+    }
+    rna.setDrawMode(algoCode);
+    applyOptions(rna, conf, null, n);
+    _configurationList.add(new FullBackup(conf, rna, rna.getName()));
+  }
 
-      _mainSurface.setBackground(_backgroundColor);
-      _mainSurface.setNumPeriod(_periodResNum);
-      _mainSurface.setBackboneColor(_backboneColor);
-      _mainSurface.setDefaultBPColor(_bondColor);
-      _mainSurface.setBPHeightIncrement(_bpIncrement);
-      _mainSurface.setBPStyle(_bpStyle);
-      _mainSurface.setDrawBackbone(_drawBackbone);
+  /**
+   * Applies the options which only concern the RNA and its drawing configuration. When they are
+   * shown by a panel, the layout, rotation, title and automatic annotations go through the panel,
+   * which then updates its title area, notifies its listeners and repaints.
+   *
+   * @param vp The panel showing the RNA, or {@code null} without graphical interface
+   */
+  private void applyOptions(RNA rna, VARNAConfig conf, VARNAPanel vp, String n)
+      throws ExceptionParameterError {
+    if (_useInnerBaseColor) {
+      rna.setBaseInnerColor(_baseInnerColor);
+    }
+    if (_useBaseOutlineColor) {
+      rna.setBaseOutlineColor(_baseOutlineColor);
+    }
+    if (_useBaseNameColor) {
+      rna.setBaseNameColor(_baseNameColor);
+    }
+    if (_useBaseNumbersColor) {
+      rna.setBaseNumbersColor(_baseNumColor);
+    }
 
-      _mainSurface.setTitleFontColor(_titleColor);
-      _mainSurface.setTitleFontSize(_titleSize);
+    conf._backgroundColor = _backgroundColor;
+    conf._drawBackground = !_backgroundColor.equals(VARNAConfig.DEFAULT_BACKGROUND_COLOR);
+    conf._numPeriod = _periodResNum;
+    conf._backboneColor = _backboneColor;
+    conf._bondColor = _bondColor;
+    rna._bpHeightIncrement = _bpIncrement;
+    conf._mainBPStyle = _bpStyle;
+    conf._drawBackbone = _drawBackbone;
+
+    if (vp != null) {
+      vp.setTitleFontColor(_titleColor);
+      vp.setTitleFontSize(_titleSize);
+    } else {
+      conf._titleColor = _titleColor;
+      conf._titleFont = conf._titleFont.deriveFont((float) _titleSize);
+    }
 
-      _mainSurface.getPopupMenu().get_itemShowWarnings().setState(_warning);
-      _mainSurface.setErrorsOn(_error);
-      _mainSurface.setFlatExteriorLoop(_flatExteriorLoop);
-      _mainSurface.setZoom(_zoom);
-      _mainSurface.setZoomIncrement(_zoomAmount);
-      _mainSurface.setBorderSize(_border);
+    conf._flatExteriorLoop = _flatExteriorLoop;
+    conf._zoomAmount = _zoomAmount;
 
-      if (_useGapsColor) {
-        _mainSurface.setGapsBasesColor(this._gapsColor);
-        _mainSurface.setColorGapsBases(true);
-      }
+    if (_useGapsColor) {
+      conf._dashBasesColor = _gapsColor;
+      conf._colorDashBases = true;
+    }
 
-      if (_useNonStandardColor) {
-        _mainSurface.setNonStandardBasesColor(_nonStandardColor);
-        _mainSurface.setColorNonStandardBases(true);
-      }
+    if (_useNonStandardColor) {
+      conf._specialBasesColor = _nonStandardColor;
+      conf._colorSpecialBases = true;
+    }
 
-      _mainSurface.setShowNonPlanarBP(_drawTertiary);
-      _mainSurface.setShowNonCanonicalBP(_drawNC);
+    conf._drawnNonPlanarBP = _drawTertiary;
+    conf._drawnNonCanonicalBP = _drawNC;
 
-      applyBasesStyle(n);
+    applyBasesStyle(rna, n);
 
-      if (!_customBases.isEmpty()) applyBasesCustomStyles(_mainSurface);
+    if (!_customBases.isEmpty()) applyBasesCustomStyles(rna);
 
-      if (!_highlightRegion.isEmpty()) applyHighlightRegion(_mainSurface);
+    if (!_highlightRegion.isEmpty()) applyHighlightRegion(rna);
 
-      if (!_auxBPs.isEmpty()) applyAuxBPs(_mainSurface);
+    if (!_auxBPs.isEmpty()) applyAuxBPs(rna);
 
-      if (!_chemProbs.isEmpty()) applyChemProbs(_mainSurface);
+    if (!_chemProbs.isEmpty()) applyChemProbs(rna);
 
-      if (!_customBPs.isEmpty()) applyBPsCustomStyles(_mainSurface);
+    if (!_customBPs.isEmpty()) applyBPsCustomStyles(rna);
 
-      _mainSurface.setDrawOutlineBases(_drawBases);
-      _mainSurface.setFillBases(_fillBases);
-      _mainSurface.drawRNA();
+    conf._drawOutlineBases = _drawBases;
+    conf._fillBases = _fillBases;
+    if (vp != null) {
+      vp.drawRNA();
+    } else {
+      try {
+        rna.drawRNA(rna.get_drawMode(), conf);
+      } catch (ExceptionNAViewAlgorithm e) {
+        e.printStackTrace();
+      }
+    }
 
-      if (!_annotations.isEmpty()) applyAnnotations(_mainSurface);
-      if (_autoHelices) _mainSurface.getVARNAUI().UIAutoAnnotateHelices();
-      if (_autoTerminalLoops) _mainSurface.getVARNAUI().UIAutoAnnotateTerminalLoops();
-      if (_autoInteriorLoops) _mainSurface.getVARNAUI().UIAutoAnnotateInteriorLoops();
+    if (!_annotations.isEmpty()) applyAnnotations(rna);
+    if (vp != null) {
+      // Only done if the panel is modifiable
+      if (_autoHelices) vp.getVARNAUI().UIAutoAnnotateHelices();
+      if (_autoTerminalLoops) vp.getVARNAUI().UIAutoAnnotateTerminalLoops();
+      if (_autoInteriorLoops) vp.getVARNAUI().UIAutoAnnotateInteriorLoops();
+    } else {
+      if (_autoHelices) rna.autoAnnotateHelices();
+      if (_autoTerminalLoops) rna.autoAnnotateTerminalLoops();
+      if (_autoInteriorLoops) rna.autoAnnotateInteriorLoops();
+    }
 
-      if (!_orientation.isEmpty()) {
-        try {
-          double d = 360 * _mainSurface.getOrientation() / (2. * Math.PI);
-          _rotation = Double.parseDouble(_orientation) - d;
-        } catch (NumberFormatException e) {
-          // TODO : Add some code here...
-        }
+    if (!_orientation.isEmpty()) {
+      try {
+        double d = 360 * rna.getOrientation() / (2. * Math.PI);
+        _rotation = Double.parseDouble(_orientation) - d;
+      } catch (NumberFormatException e) {
+        // TODO : Add some code here...
       }
-      _mainSurface.globalRotation(_rotation);
+    }
+    if (vp != null) {
+      vp.globalRotation(_rotation);
+    } else {
+      rna.globalRotation(_rotation);
+    }
 
-      _mainSurface.setModifiable(_modifiable);
+    conf._modifiable = _modifiable;
 
-      _mainSurface.setColorMapCaption(_colorMapCaption);
-      applyColorMapStyle(_mainSurface);
-      applyFlips(_mainSurface);
-      applyColorMapValues(_mainSurface);
+    conf._colorMapCaption = _colorMapCaption;
+    applyColorMapStyle(conf);
+    applyFlips(rna);
+    applyColorMapValues(rna, conf);
 
-      // if (!_drawColorMap)
-      // _mainSurface.drawColorMap(_drawColorMap);
-    }
-    // ajoute le VARNAPanel au conteneur
+    // if (!_drawColorMap)
+    // _mainSurface.drawColorMap(_drawColorMap);
   }
 
-  private void applyBasesStyle(String n) throws ExceptionParameterError {
+  private void applyBasesStyle(RNA rna, String n) throws ExceptionParameterError {
     String tmp = null;
     for (int numStyle = 0; numStyle < _basesStyleList.size(); numStyle++) {
       if (_basesStyleList.get(numStyle) != null) {
@@ -1038,15 +1171,15 @@ public class VARNAConfigLoader {
               String[] args = cand.split("-");
               if (args.length == 1) {
                 int baseNum = Integer.parseInt(cand);
-                int index = _mainSurface.getRNA().getIndexFromBaseNumber(baseNum);
+                int index = rna.getIndexFromBaseNumber(baseNum);
                 if (index != -1) {
                   indicesList.add(index);
                 }
               } else if (args.length == 2) {
                 int baseNumFrom = Integer.parseInt(args[0].trim());
-                int indexFrom = _mainSurface.getRNA().getIndexFromBaseNumber(baseNumFrom);
+                int indexFrom = rna.getIndexFromBaseNumber(baseNumFrom);
                 int baseNumTo = Integer.parseInt(args[1].trim());
-                int indexTo = _mainSurface.getRNA().getIndexFromBaseNumber(baseNumTo);
+                int indexTo = rna.getIndexFromBaseNumber(baseNumTo);
                 if ((indexFrom != -1) && (indexTo != -1)) {
                   for (int l = indexFrom; l <= indexTo; l++) indicesList.add(l);
                 }
@@ -1057,12 +1190,8 @@ public class VARNAConfigLoader {
           }
           for (int k = 0; k < indicesList.size(); k++) {
             int index = indicesList.get(k);
-            if ((index >= 0) && (index < _mainSurface.getRNA().get_listeBases().size())) {
-              _mainSurface
-                  .getRNA()
-                  .get_listeBases()
-                  .get(index)
-                  .setStyleBase(_basesStyleList.get(numStyle));
+            if ((index >= 0) && (index < rna.get_listeBases().size())) {
+              rna.get_listeBases().get(index).setStyleBase(_basesStyleList.get(numStyle));
             }
           }
         }
@@ -1070,19 +1199,19 @@ public class VARNAConfigLoader {
     } // fin de boucle sur les styles
   }
 
-  private void applyColorMapStyle(VARNAPanel vp) {
+  private void applyColorMapStyle(VARNAConfig conf) {
     if (_colorMapStyle.length() != 0) {
-      vp.setColorMap(ModeleColorMap.parseColorMap(_colorMapStyle));
+      conf._cm = ModeleColorMap.parseColorMap(_colorMapStyle);
     }
   }
 
-  private void applyColorMapValues(VARNAPanel vp) {
+  private void applyColorMapValues(RNA rna, VARNAConfig conf) {
     if (!_colorMapValues.isEmpty()) {
       File f = new File(_colorMapValues);
       if (f.exists() && !f.isDirectory()) {
         try {
-          vp.readValues(new FileReader(f));
-          vp.drawColorMap(true);
+          rna.readValues(new FileReader(f), conf._cm);
+          conf._drawColorMap = true;
           System.err.println("Loaded " + _colorMapValues);
         } catch (FileNotFoundException e) {
           e.printStackTrace();
@@ -1099,9 +1228,10 @@ public class VARNAConfigLoader {
         }
         Double[] result = new Double[vals.size()];
         vals.toArray(result);
-        vp.setColorMapValues(result);
+        rna.setColorMapValues(result, conf._cm, true);
+        conf._drawColorMap = true;
       }
-      ModeleColorMap cm = vp.getColorMap();
+      ModeleColorMap cm = conf._cm;
       if (_colorMapMin != Double.MIN_VALUE) {
         // System.out.println("[A]"+_colorMapMin);
         cm.setMinValue(_colorMapMin);
@@ -1113,7 +1243,7 @@ public class VARNAConfigLoader {
     }
   }
 
-  private void applyBasesCustomStyles(VARNAPanel vp) {
+  private void applyBasesCustomStyles(RNA rna) {
     String[] baseStyles = _customBases.split(";");
     for (int i = 0; i < baseStyles.length; i++) {
       String thisStyle = baseStyles[i];
@@ -1121,12 +1251,12 @@ public class VARNAConfigLoader {
       try {
         if (data.length == 2) {
           int baseNum = Integer.parseInt(data[0]);
-          int index = _mainSurface.getRNA().getIndexFromBaseNumber(baseNum);
+          int index = rna.getIndexFromBaseNumber(baseNum);
           if (index != -1) {
             String style = data[1];
-            ModelBaseStyle msb = vp.getRNA().get_listeBases().get(index).getStyleBase().clone();
+            ModelBaseStyle msb = rna.get_listeBases().get(index).getStyleBaseReadOnly().clone();
             msb.assignParameters(style);
-            vp.getRNA().get_listeBases().get(index).setStyleBase(msb);
+            rna.get_listeBases().get(index).setStyleBase(msb);
           }
         }
       } catch (Exception e) {
@@ -1135,15 +1265,15 @@ public class VARNAConfigLoader {
     }
   }
 
-  private void applyHighlightRegion(VARNAPanel vp) {
+  private void applyHighlightRegion(RNA rna) {
     String[] regions = _highlightRegion.split(";");
     for (int i = 0; i < regions.length; i++) {
       String region = regions[i];
       try {
         HighlightRegionAnnotation nt =
-            HighlightRegionAnnotation.parseHighlightRegionAnnotation(region, vp);
+            HighlightRegionAnnotation.parseHighlightRegionAnnotation(region, rna);
         if (nt != null) {
-          vp.addHighlightRegion(nt);
+          rna.addHighlightRegion(nt);
         }
       } catch (Exception e) {
         System.err.println("Error in applyHighlightRegion: " + e.toString());
@@ -1165,7 +1295,7 @@ public class VARNAConfigLoader {
     return d;
   }
 
-  private void applyBPsCustomStyles(VARNAPanel vp) {
+  private void applyBPsCustomStyles(RNA rna) {
     String[] baseStyles = _customBPs.split(";");
     for (int i = 0; i < baseStyles.length; i++) {
       String thisStyle = baseStyles[i];
@@ -1181,7 +1311,7 @@ public class VARNAConfigLoader {
             if (s1.startsWith("(") && s2.endsWith(")")) {
               int a = Integer.parseInt(s1.substring(1));
               int b = Integer.parseInt(s2.substring(0, s2.length() - 1));
-              ModeleBP msbp = vp.getRNA().getBPStyle(a, b);
+              ModeleBP msbp = rna.getBPStyle(a, b);
               if (msbp != null) {
                 msbp.assignParameters(style);
               }
@@ -1194,7 +1324,7 @@ public class VARNAConfigLoader {
     }
   }
 
-  private void applyChemProbs(VARNAPanel vp) {
+  private void applyChemProbs(RNA rna) {
     String[] chemProbs = _chemProbs.split(";");
     for (int i = 0; i < chemProbs.length; i++) {
       String thisAnn = chemProbs[i];
@@ -1207,11 +1337,11 @@ public class VARNAConfigLoader {
           if (data2.length == 2) {
             int a = Integer.parseInt(data2[0]);
             int b = Integer.parseInt(data2[1]);
-            int c = vp.getRNA().getIndexFromBaseNumber(a);
-            int d = vp.getRNA().getIndexFromBaseNumber(b);
-            ArrayList<ModeleBase> mbl = vp.getRNA().get_listeBases();
+            int c = rna.getIndexFromBaseNumber(a);
+            int d = rna.getIndexFromBaseNumber(b);
+            ArrayList<ModeleBase> mbl = rna.get_listeBases();
             ChemProbAnnotation cpa = new ChemProbAnnotation(mbl.get(c), mbl.get(d), style);
-            vp.getRNA().addChemProbAnnotation(cpa);
+            rna.addChemProbAnnotation(cpa);
           }
         }
       } catch (Exception e) {
@@ -1220,7 +1350,7 @@ public class VARNAConfigLoader {
     }
   }
 
-  private void applyAuxBPs(VARNAPanel vp) {
+  private void applyAuxBPs(RNA rna) {
     String[] baseStyles = _auxBPs.split(";");
 
     for (int i = 0; i < baseStyles.length; i++) {
@@ -1236,17 +1366,16 @@ public class VARNAConfigLoader {
             if (s1.startsWith("(") && s2.endsWith(")")) {
               int a = Integer.parseInt(s1.substring(1));
               int b = Integer.parseInt(s2.substring(0, s2.length() - 1));
-              int c = vp.getRNA().getIndexFromBaseNumber(a);
-              int d = vp.getRNA().getIndexFromBaseNumber(b);
+              int c = rna.getIndexFromBaseNumber(a);
+              int d = rna.getIndexFromBaseNumber(b);
 
               ModeleBP msbp =
-                  new ModeleBP(
-                      vp.getRNA().get_listeBases().get(c), vp.getRNA().get_listeBases().get(d));
+                  new ModeleBP(rna.get_listeBases().get(c), rna.get_listeBases().get(d));
               if (data.length >= 2) {
                 String style = data[1];
                 msbp.assignParameters(style);
               }
-              vp.getRNA().addBPToStructureUsingNumbers(a, b, msbp);
+              rna.addBPToStructureUsingNumbers(a, b, msbp);
             }
           }
         }
@@ -1259,7 +1388,7 @@ public class VARNAConfigLoader {
     }
   }
 
-  private void applyFlips(VARNAPanel vp) {
+  private void applyFlips(RNA rna) {
     String[] flips = _flip.split(";");
     for (String s : flips) {
       if (!s.isEmpty()) {
@@ -1272,9 +1401,9 @@ public class VARNAConfigLoader {
             number = Integer.parseInt(data[1]);
           }
           if (number != -1) {
-            int i = vp.getRNA().getIndexFromBaseNumber(number);
-            Point h = vp.getRNA().getExteriorHelix(i);
-            vp.getRNA().flipHelix(h);
+            int i = rna.getIndexFromBaseNumber(number);
+            Point h = rna.getExteriorHelix(i);
+            rna.flipHelix(h);
           }
         } catch (Exception e) {
           System.err.println("Flip Helices: " + e.toString());
@@ -1286,14 +1415,17 @@ public class VARNAConfigLoader {
   /**
    * Format: string:[type=[H|B|L|P]|x=double|y=double|anchor=int|size=int|color =Color];
    *
-   * @param vp
+   * @param rna
    */
-  private void applyAnnotations(VARNAPanel vp) {
+  private void applyAnnotations(RNA rna) {
     String[] annotations = _annotations.split(";");
     for (int i = 0; i < annotations.length; i++) {
       String thisAnn = annotations[i];
-      TextAnnotation ann = TextAnnotation.parse(thisAnn, vp);
-      vp.addAnnotation(ann);
+      TextAnnotation ann =
+          _mainSurface != null
+              ? TextAnnotation.parse(thisAnn, _mainSurface)
+              : TextAnnotation.parse(thisAnn, rna);
+      rna.addAnnotation(ann);
     }
   }
 }
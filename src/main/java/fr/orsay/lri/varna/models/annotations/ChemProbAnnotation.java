@@ -96,6 +96,14 @@ public class ChemProbAnnotation implements Serializable {
     _outward = out;
   }
 
+  public ModeleBase getFirstBase() {
+    return _mbfst;
+  }
+
+  public ModeleBase getSecondBase() {
+    return _mbsnd;
+  }
+
   public boolean isOut() {
     return _outward;
   }
@@ -217,7 +225,12 @@ public class ChemProbAnnotation implements Serializable {
   }
 
   public ChemProbAnnotation clone() {
-    ChemProbAnnotation result = new ChemProbAnnotation(this._mbfst, this._mbsnd);
+    return clone(_mbfst, _mbsnd);
+  }
+
+  /** Returns a copy of this annotation between two other bases. */
+  public ChemProbAnnotation clone(ModeleBase mbfst, ModeleBase mbsnd) {
+    ChemProbAnnotation result = new ChemProbAnnotation(mbfst, mbsnd);
     result._intensity = _intensity;
     result._type = _type;
     result._color = _color;
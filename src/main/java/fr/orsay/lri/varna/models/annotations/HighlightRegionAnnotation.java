@@ -66,7 +66,12 @@ public class HighlightRegionAnnotation implements Serializable {
   }
 
   public HighlightRegionAnnotation clone() {
-    return new HighlightRegionAnnotation(_bases, _fillColor, _outlineColor, _radius);
+    return clone(_bases);
+  }
+
+  /** Returns a copy of this annotation over other bases. */
+  public HighlightRegionAnnotation clone(ArrayList<ModeleBase> bases) {
+    return new HighlightRegionAnnotation(bases, _fillColor, _outlineColor, _radius);
   }
 
   public int getMinIndex() {
@@ -269,17 +274,21 @@ public class HighlightRegionAnnotation implements Serializable {
 
   public static HighlightRegionAnnotation parseHighlightRegionAnnotation(
       String txt, VARNAPanel vp) {
+    return parseHighlightRegionAnnotation(txt, vp.getRNA());
+  }
+
+  public static HighlightRegionAnnotation parseHighlightRegionAnnotation(String txt, RNA rna) {
     try {
       String[] parts = txt.split(":");
       String[] coords = parts[0].split("-");
       int from = Integer.parseInt(coords[0]);
       int to = Integer.parseInt(coords[1]);
-      int i = vp.getRNA().getIndexFromBaseNumber(from);
-      int j = vp.getRNA().getIndexFromBaseNumber(to);
+      int i = rna.getIndexFromBaseNumber(from);
+      int j = rna.getIndexFromBaseNumber(to);
       Color fill = HighlightRegionAnnotation.DEFAULT_FILL_COLOR;
       Color outline = HighlightRegionAnnotation.DEFAULT_OUTLINE_COLOR;
       double radius = HighlightRegionAnnotation.DEFAULT_RADIUS;
-      ArrayList<ModeleBase> bases = vp.getRNA().getBasesBetween(i, j);
+      ArrayList<ModeleBase> bases = rna.getBasesBetween(i, j);
       if (parts.length > 1) {
         try {
           String[] options = parts[1].split(",");
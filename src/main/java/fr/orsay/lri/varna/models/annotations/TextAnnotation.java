@@ -20,6 +20,7 @@ package fr.orsay.lri.varna.models.annotations;
 import fr.orsay.lri.varna.VARNAPanel;
 import fr.orsay.lri.varna.models.VARNAConfigLoader;
 import fr.orsay.lri.varna.models.rna.ModeleBase;
+import fr.orsay.lri.varna.models.rna.RNA;
 import fr.orsay.lri.varna.models.rna.VARNAPoint;
 import fr.orsay.lri.varna.utils.XMLUtils;
 import java.awt.Color;
@@ -356,6 +357,17 @@ public class TextAnnotation implements Serializable {
     return textAnnot;
   }
 
+  /**
+   * Returns a copy of this annotation attached to another anchor of the same type: a base, a list
+   * of bases or a {@link VARNAPoint}.
+   */
+  public TextAnnotation clone(Object anchor) {
+    TextAnnotation result = new TextAnnotation(this);
+    result.copy(this);
+    result._anchor = anchor;
+    return result;
+  }
+
   /**
    * copy a textAnnotation
    *
@@ -395,6 +407,18 @@ public class TextAnnotation implements Serializable {
   }
 
   public static TextAnnotation parse(String thisAnn, VARNAPanel vp) {
+    return parse(thisAnn, vp.getRNA(), vp);
+  }
+
+  /**
+   * Parses an annotation without a panel: the coordinates of a {@code type=P} annotation are then
+   * those of the RNA layout rather than panel coordinates.
+   */
+  public static TextAnnotation parse(String thisAnn, RNA rna) {
+    return parse(thisAnn, rna, null);
+  }
+
+  private static TextAnnotation parse(String thisAnn, RNA rna, VARNAPanel vp) {
     String[] data = thisAnn.split(":");
 
     String text = "";
@@ -441,24 +465,27 @@ public class TextAnnotation implements Serializable {
         switch (type) {
           case POSITION:
             if ((x != -1) && (y != -1)) {
-              Point2D.Double p = vp.panelToLogicPoint(new Point2D.Double(x, y));
+              Point2D.Double p = new Point2D.Double(x, y);
+              if (vp != null) {
+                p = vp.panelToLogicPoint(p);
+              }
               ann = new TextAnnotation(text, p.x, p.y);
             }
             break;
           case BASE:
             if (anchor != -1) {
-              int index = vp.getRNA().getIndexFromBaseNumber(anchor);
-              ModeleBase mb = vp.getRNA().get_listeBases().get(index);
+              int index = rna.getIndexFromBaseNumber(anchor);
+              ModeleBase mb = rna.get_listeBases().get(index);
               ann = new TextAnnotation(text, mb);
             }
             break;
           case HELIX:
             if (anchor != -1) {
               ArrayList<ModeleBase> mbl = new ArrayList<ModeleBase>();
-              int index = vp.getRNA().getIndexFromBaseNumber(anchor);
-              ArrayList<Integer> il = vp.getRNA().findHelix(index);
+              int index = rna.getIndexFromBaseNumber(anchor);
+              ArrayList<Integer> il = rna.findHelix(index);
               for (int k : il) {
-                mbl.add(vp.getRNA().get_listeBases().get(k));
+                mbl.add(rna.get_listeBases().get(k));
               }
               ann = new TextAnnotation(text, mbl, type);
             }
@@ -466,10 +493,10 @@ public class TextAnnotation implements Serializable {
           case LOOP:
             if (anchor != -1) {
               ArrayList<ModeleBase> mbl = new ArrayList<ModeleBase>();
-              int index = vp.getRNA().getIndexFromBaseNumber(anchor);
-              ArrayList<Integer> il = vp.getRNA().findLoop(index);
+              int index = rna.getIndexFromBaseNumber(anchor);
+              ArrayList<Integer> il = rna.findLoop(index);
               for (int k : il) {
-                mbl.add(vp.getRNA().get_listeBases().get(k));
+                mbl.add(rna.get_listeBases().get(k));
               }
               ann = new TextAnnotation(text, mbl, type);
             }
@@ -305,36 +305,36 @@ public class PSExport extends SecStrDrawingProducer {
 
   @Override
   public String drawPolygonS(Double[] points, double thickness) {
-    String tmp = PSNewPath();
-    tmp += PSSetLineWidth(thickness);
+    StringBuilder tmp = new StringBuilder(PSNewPath());
+    tmp.append(PSSetLineWidth(thickness));
     for (int i = 0; i < points.length; i++) {
       if (i == 0) {
-        tmp += PSMoveTo(points[i].x, points[i].y);
+        tmp.append(PSMoveTo(points[i].x, points[i].y));
       } else {
-        tmp += PSLineTo(points[i].x, points[i].y);
+        tmp.append(PSLineTo(points[i].x, points[i].y));
       }
     }
-    tmp += PSClosePath();
-    tmp += PSStroke();
-    return tmp;
+    tmp.append(PSClosePath());
+    tmp.append(PSStroke());
+    return tmp.toString();
   }
 
   @Override
   public String fillPolygonS(Double[] points, Color color) {
     Color bck = _curColor;
-    String tmp = PSNewPath();
+    StringBuilder tmp = new StringBuilder(PSNewPath());
     for (int i = 0; i < points.length; i++) {
       if (i == 0) {
-        tmp += PSMoveTo(points[i].x, points[i].y);
+        tmp.append(PSMoveTo(points[i].x, points[i].y));
       } else {
-        tmp += PSLineTo(points[i].x, points[i].y);
+        tmp.append(PSLineTo(points[i].x, points[i].y));
       }
     }
-    tmp += PSClosePath();
-    tmp += PSSetColor(color);
-    tmp += PSFill();
-    tmp += PSSetColor(bck);
-    return tmp;
+    tmp.append(PSClosePath());
+    tmp.append(PSSetColor(color));
+    tmp.append(PSFill());
+    tmp.append(PSSetColor(bck));
+    return tmp.toString();
   }
 
   @Override
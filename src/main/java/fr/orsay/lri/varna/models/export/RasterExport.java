@@ -0,0 +1,217 @@
+package fr.orsay.lri.varna.models.export;
+
+import fr.orsay.lri.varna.models.rna.ModeleBP;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * Draws a secondary structure into a {@link BufferedImage} instead of producing a document.
+ *
+ * <p>The image is allocated by {@link #headerS(Rectangle2D.Double)}, so a drawing must be
+ * produced with the measure-then-stream protocol of {@link SecStrDrawingProducer}; the text
+ * returned by every command is empty. Only Java2D is used, no component nor event thread is
+ * involved, and the export runs in headless mode.
+ */
+public class RasterExport extends SecStrDrawingProducer {
+
+  private BufferedImage _image;
+  private Graphics2D _g;
+  private Rectangle2D.Double _bb = new Rectangle2D.Double(0, 0, 10, 10);
+
+  public RasterExport() {
+    super();
+  }
+
+  /** Returns the image drawn by the last streaming pass, or {@code null} before the first one. */
+  public BufferedImage getImage() {
+    return _image;
+  }
+
+  private double flip(double y) {
+    return _bb.height - y;
+  }
+
+  private void stroke(double thickness) {
+    _g.setStroke(new BasicStroke((float) thickness));
+  }
+
+  private static Font toAWTFont(int font, double size) {
+    String family;
+    int style = Font.PLAIN;
+    switch (font) {
+      case FONT_TIMES_ROMAN:
+      case FONT_TIMES_BOLD:
+      case FONT_TIMES_ITALIC:
+      case FONT_TIMES_BOLD_ITALIC:
+        family = Font.SERIF;
+        break;
+      case FONT_COURIER:
+      case FONT_COURIER_BOLD:
+      case FONT_COURIER_OBLIQUE:
+      case FONT_COURIER_BOLD_OBLIQUE:
+        family = Font.MONOSPACED;
+        break;
+      default:
+        family = Font.SANS_SERIF;
+        break;
+    }
+    if (font == FONT_TIMES_BOLD
+        || font == FONT_TIMES_BOLD_ITALIC
+        || font == FONT_COURIER_BOLD
+        || font == FONT_COURIER_BOLD_OBLIQUE
+        || font == FONT_HELVETICA_BOLD
+        || font == FONT_HELVETICA_BOLD_OBLIQUE) {
+      style |= Font.BOLD;
+    }
+    if (font == FONT_TIMES_ITALIC
+        || font == FONT_TIMES_BOLD_ITALIC
+        || font == FONT_COURIER_OBLIQUE
+        || font == FONT_COURIER_BOLD_OBLIQUE
+        || font == FONT_HELVETICA_OBLIQUE
+        || font == FONT_HELVETICA_BOLD_OBLIQUE) {
+      style |= Font.ITALIC;
+    }
+    return new Font(family, style, 1).deriveFont((float) Math.max(1.0, size));
+  }
+
+  private Path2D.Double toPath(Point2D.Double[] points) {
+    Path2D.Double p = new Path2D.Double();
+    for (int i = 0; i < points.length; i++) {
+      if (i == 0) {
+        p.moveTo(points[i].x, flip(points[i].y));
+      } else {
+        p.lineTo(points[i].x, flip(points[i].y));
+      }
+    }
+    p.closePath();
+    return p;
+  }
+
+  public String headerS(Rectangle2D.Double bb) {
+    _bb = bb;
+    int width = Math.max(1, (int) Math.ceil(bb.width));
+    int height = Math.max(1, (int) Math.ceil(bb.height));
+    _image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    _g = _image.createGraphics();
+    _g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    _g.setRenderingHint(
+        RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+    _g.setColor(_backgroundColor != null ? _backgroundColor : Color.WHITE);
+    _g.fillRect(0, 0, width, height);
+    _g.setFont(toAWTFont(_font, _fontsize * getScale()));
+    return "";
+  }
+
+  public String footerS() {
+    _g.dispose();
+    return "";
+  }
+
+  public String setFontS(int font, double size) {
+    _g.setFont(toAWTFont(font, size * getScale()));
+    return "";
+  }
+
+  public String drawLineS(Point2D.Double orig, Point2D.Double dest, double thickness) {
+    stroke(thickness);
+    _g.setColor(_curColor);
+    _g.draw(new Line2D.Double(orig.x, flip(orig.y), dest.x, flip(dest.y)));
+    return "";
+  }
+
+  public String drawArcS(
+      Point2D.Double o, double width, double height, double startAngle, double endAngle) {
+    double extent = endAngle - startAngle;
+    if (extent < 0) {
+      extent += 360.;
+    }
+    _g.setColor(_curColor);
+    _g.draw(
+        new Arc2D.Double(
+            o.x - width / 2.,
+            flip(o.y) - height / 2.,
+            width,
+            height,
+            startAngle,
+            extent,
+            Arc2D.OPEN));
+    return "";
+  }
+
+  public String drawTextS(Point2D.Double base, String txt) {
+    _g.setColor(_curColor);
+    float x = (float) (base.x - _g.getFontMetrics().stringWidth(txt) / 2.0);
+    float y = (float) (flip(base.y) + 0.4 * _g.getFont().getSize2D());
+    _g.drawString(txt, x, y);
+    return "";
+  }
+
+  public String drawRectangleS(Point2D.Double orig, Point2D.Double dims, double thickness) {
+    stroke(thickness);
+    _g.setColor(_curColor);
+    _g.draw(new Rectangle2D.Double(orig.x, flip(orig.y) - dims.y, dims.x, dims.y));
+    return "";
+  }
+
+  public String drawCircleS(Point2D.Double base, double radius, double thickness) {
+    stroke(thickness);
+    _g.setColor(_curColor);
+    _g.draw(
+        new Ellipse2D.Double(base.x - radius, flip(base.y) - radius, 2 * radius, 2 * radius));
+    return "";
+  }
+
+  public String fillCircleS(Point2D.Double base, double radius, double thickness, Color color) {
+    _g.setColor(color);
+    _g.fill(
+        new Ellipse2D.Double(base.x - radius, flip(base.y) - radius, 2 * radius, 2 * radius));
+    return "";
+  }
+
+  public String drawPolygonS(Point2D.Double[] points, double thickness) {
+    stroke(thickness);
+    _g.setColor(_curColor);
+    _g.draw(toPath(points));
+    return "";
+  }
+
+  public String fillPolygonS(Point2D.Double[] points, Color color) {
+    _g.setColor(color);
+    _g.fill(toPath(points));
+    return "";
+  }
+
+  public String drawBaseStartS(int index) {
+    return "";
+  }
+
+  public String drawBaseEndS(int index) {
+    return "";
+  }
+
+  public String drawBasePairStartS(int i, int j, ModeleBP bps) {
+    return "";
+  }
+
+  public String drawBasePairEndS(int index) {
+    return "";
+  }
+
+  public String drawBackboneStartS(int i, int j) {
+    return "";
+  }
+
+  public String drawBackboneEndS(int index) {
+    return "";
+  }
+}
@@ -188,35 +188,37 @@ public class SVGExport extends SecStrDrawingProducer {
   }
 
   public String drawPolygonS(Double[] points, double thickness) {
-    String result = "<path d=\"";
+    StringBuilder result = new StringBuilder("<path d=\"");
     for (int i = 0; i < points.length; i++) {
-      if (i == 0) {
-        result += "M " + points[i].x + " " + (_bb.height - points[i].y) + " ";
-      } else {
-        result += "L " + points[i].x + " " + (_bb.height - points[i].y) + " ";
-      }
+      result
+          .append(i == 0 ? "M " : "L ")
+          .append(points[i].x)
+          .append(' ')
+          .append(_bb.height - points[i].y)
+          .append(' ');
     }
-    result +=
-        "z\" style=\"fill:none; stroke:"
-            + getRGBString(_curColor)
-            + "; stroke-width:"
-            + thickness
-            + ";\"/>\n";
-    return result;
+    result
+        .append("z\" style=\"fill:none; stroke:")
+        .append(getRGBString(_curColor))
+        .append("; stroke-width:")
+        .append(thickness)
+        .append(";\"/>\n");
+    return result.toString();
   }
 
   @Override
   public String fillPolygonS(Double[] points, Color col) {
-    String result = "<path d=\"";
+    StringBuilder result = new StringBuilder("<path d=\"");
     for (int i = 0; i < points.length; i++) {
-      if (i == 0) {
-        result += "M " + points[i].x + " " + (_bb.height - points[i].y) + " ";
-      } else {
-        result += "L " + points[i].x + " " + (_bb.height - points[i].y) + " ";
-      }
+      result
+          .append(i == 0 ? "M " : "L ")
+          .append(points[i].x)
+          .append(' ')
+          .append(_bb.height - points[i].y)
+          .append(' ');
     }
-    result += "z\" fill=\"" + getRGBString(col) + "\" style=\"stroke:none;\"/>\n";
-    return result;
+    result.append("z\" fill=\"").append(getRGBString(col)).append("\" style=\"stroke:none;\"/>\n");
+    return result.toString();
   }
 
   @Override
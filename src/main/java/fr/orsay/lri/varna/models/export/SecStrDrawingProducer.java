@@ -23,6 +23,10 @@ import java.awt.geom.GeneralPath;
 import java.awt.geom.PathIterator;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.Vector;
 
 public abstract class SecStrDrawingProducer {
@@ -41,6 +45,13 @@ public abstract class SecStrDrawingProducer {
 
   private Vector<GraphicElement> _commands = new Vector<GraphicElement>();
 
+  // When measuring, commands only update the bounding box. When streaming, they are converted and
+  // written to _stream as soon as they are issued, shifted by (_streamDx, _streamDy).
+  private boolean _measuring = false;
+  private Writer _stream = null;
+  private double _streamDx = 0.0;
+  private double _streamDy = 0.0;
+
   private double _scale = 1.0;
   private double _xmin = Double.MAX_VALUE;
   private double _ymin = Double.MAX_VALUE;
@@ -106,7 +117,6 @@ public abstract class SecStrDrawingProducer {
 
   public abstract String footerS();
 
-  @SuppressWarnings("unused")
   private void resetBoundingBox() {
     _xmin = Double.MAX_VALUE;
     _ymin = Double.MAX_VALUE;
@@ -114,6 +124,18 @@ public abstract class SecStrDrawingProducer {
     _ymax = -Double.MAX_VALUE;
   }
 
+  private void emit(GraphicElement ge) {
+    if (_stream != null) {
+      try {
+        _stream.write(exportCommand(ge, _streamDx, _streamDy));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    } else if (!_measuring) {
+      _commands.add(ge);
+    }
+  }
+
   private void updateBoundingBox(double x, double y) {
     _xmin = Math.min(_xmin, x - 10);
     _ymin = Math.min(_ymin, y - 10);
@@ -124,7 +146,7 @@ public abstract class SecStrDrawingProducer {
   public void drawLine(double x0, double y0, double x1, double y1, double thickness) {
     updateBoundingBox(x0, y0);
     updateBoundingBox(x1, y1);
-    _commands.add(
+    emit(
         new LineCommand(new Point2D.Double(x0, y0), new Point2D.Double(x1, y1), thickness));
   }
 
@@ -132,20 +154,20 @@ public abstract class SecStrDrawingProducer {
       Point2D.Double origine, double width, double height, double startAngle, double endAngle) {
     updateBoundingBox(origine.x + width / 2., origine.y + height / 2.);
     updateBoundingBox(origine.x - width / 2., origine.y - height / 2.);
-    _commands.add(new ArcCommand(origine, width, height, startAngle, endAngle));
+    emit(new ArcCommand(origine, width, height, startAngle, endAngle));
   }
 
   public void drawText(double x, double y, String txt) {
     updateBoundingBox(x, y);
 
-    _commands.add(new TextCommand(new Point2D.Double(x, y), new String(txt)));
+    emit(new TextCommand(new Point2D.Double(x, y), new String(txt)));
   }
 
   public void drawRectangle(double x, double y, double w, double h, double thickness) {
     updateBoundingBox(x, y);
     updateBoundingBox(x + w, y + h);
 
-    _commands.add(
+    emit(
         new RectangleCommand(new Point2D.Double(x, y), new Point2D.Double(w, h), thickness));
   }
 
@@ -167,12 +189,12 @@ public abstract class SecStrDrawingProducer {
     updateBoundingBox(x - radius, y - radius);
     updateBoundingBox(x + radius, y + radius);
 
-    _commands.add(new CircleCommand(new Point2D.Double(x, y), radius, thickness));
+    emit(new CircleCommand(new Point2D.Double(x, y), radius, thickness));
   }
 
   public void setColor(Color col) {
     _curColor = col;
-    _commands.add(new ColorCommand(col));
+    emit(new ColorCommand(col));
   }
 
   public void setBackgroundColor(Color col) {
@@ -187,7 +209,7 @@ public abstract class SecStrDrawingProducer {
     updateBoundingBox(x - radius, y - radius);
     updateBoundingBox(x + radius, y + radius);
 
-    _commands.add(new FillCircleCommand(new Point2D.Double(x, y), radius, thickness, color));
+    emit(new FillCircleCommand(new Point2D.Double(x, y), radius, thickness, color));
   }
 
   public void drawPolygon(double[] xtab, double[] ytab, double thickness) {
@@ -197,7 +219,7 @@ public abstract class SecStrDrawingProducer {
         points[i] = new Point2D.Double(xtab[i], ytab[i]);
         updateBoundingBox(xtab[i], ytab[i]);
       }
-      _commands.add(new PolygonCommand(points, thickness));
+      emit(new PolygonCommand(points, thickness));
     }
   }
 
@@ -254,14 +276,14 @@ public abstract class SecStrDrawingProducer {
         points[i] = new Point2D.Double(xtab[i], ytab[i]);
         updateBoundingBox(xtab[i], ytab[i]);
       }
-      _commands.add(new FillPolygonCommand(points, color));
+      emit(new FillPolygonCommand(points, color));
     }
   }
 
   public void setFont(int font, double size) {
     _fontsize = size;
     _font = font;
-    _commands.add(new FontCommand(font, size));
+    emit(new FontCommand(font, size));
   }
 
   public void setScale(double sc) {
@@ -286,13 +308,65 @@ public abstract class SecStrDrawingProducer {
   }
 
   public String export() {
+    StringWriter buf = new StringWriter();
+    try {
+      export(buf);
+    } catch (IOException e) {
+      // Cannot happen when writing to a StringWriter
+      throw new UncheckedIOException(e);
+    }
+    return buf.toString();
+  }
+
+  /** Writes the recorded drawing to {@code out}, one command at a time. */
+  public void export(Writer out) throws IOException {
+    Rectangle2D.Double oldbb = getBoundingBox();
+    exportHeader(out, oldbb);
+    for (int i = 0; i < _commands.size(); i++) {
+      out.write(exportCommand(_commands.elementAt(i), -oldbb.x, -oldbb.y));
+    }
+    out.write(footerS());
+  }
+
+  /**
+   * Starts a measuring pass: subsequent drawing commands only update the bounding box and are not
+   * recorded. Used together with {@link #startStreaming(Writer)} to export a drawing without
+   * holding it in memory.
+   */
+  public void startMeasuring() {
+    _commands.clear();
+    _measuring = true;
+    resetBoundingBox();
+  }
+
+  /**
+   * Writes the header for the bounding box found by the measuring pass, then writes every
+   * subsequent drawing command to {@code out} as soon as it is issued. The caller must issue exactly
+   * the same commands as during the measuring pass, then call {@link #finishStreaming()}. The
+   * output is identical to the one produced by {@link #export(Writer)}.
+   */
+  public void startStreaming(Writer out) throws IOException {
     Rectangle2D.Double oldbb = getBoundingBox();
-    double dx = -oldbb.x;
-    double dy = -oldbb.y;
+    _measuring = false;
+    _streamDx = -oldbb.x;
+    _streamDy = -oldbb.y;
+    exportHeader(out, oldbb);
+    _stream = out;
+    resetBoundingBox();
+  }
+
+  /** Writes the footer of a streamed drawing and flushes the underlying writer. */
+  public void finishStreaming() throws IOException {
+    Writer out = _stream;
+    _stream = null;
+    out.write(footerS());
+    out.flush();
+  }
+
+  private void exportHeader(Writer out, Rectangle2D.Double oldbb) throws IOException {
     Rectangle2D.Double nbb =
         new Rectangle2D.Double(0, 0, oldbb.width * _scale, oldbb.height * _scale);
-    StringBuffer buf = new StringBuffer();
-    buf.append(headerS(nbb));
+    out.write(headerS(nbb));
     if (_backgroundColor != null) {
       double w = oldbb.width * _scale;
       double h = oldbb.height * _scale;
@@ -301,85 +375,67 @@ public abstract class SecStrDrawingProducer {
       tab[1] = new Point2D.Double(w, 0);
       tab[2] = new Point2D.Double(w, h);
       tab[3] = new Point2D.Double(0, h);
-      buf.append(this.fillPolygonS(tab, _backgroundColor));
+      out.write(this.fillPolygonS(tab, _backgroundColor));
     }
-    for (int i = 0; i < _commands.size(); i++) {
-      GraphicElement ge = _commands.elementAt(i);
-      if (ge instanceof LineCommand) {
-        LineCommand c = (LineCommand) ge;
-        String tmp =
-            drawLineS(
-                transform(c.get_orig(), _scale, dx, dy),
-                transform(c.get_dest(), _scale, dx, dy),
-                c.get_thickness());
-        buf.append(tmp);
-      } else if (ge instanceof TextCommand) {
-        TextCommand c = (TextCommand) ge;
-        String tmp = drawTextS(transform(c.get_base(), _scale, dx, dy), c.get_txt());
-        buf.append(tmp);
-      } else if (ge instanceof RectangleCommand) {
-        RectangleCommand c = (RectangleCommand) ge;
-        String tmp =
-            drawRectangleS(
-                transform(c.get_orig(), _scale, dx, dy),
-                transform(c.get_dims(), _scale, 0.0, 0.0),
-                c.get_thickness());
-        buf.append(tmp);
-      } else if (ge instanceof CircleCommand) {
-        CircleCommand c = (CircleCommand) ge;
-        String tmp =
-            drawCircleS(
-                transform(c.get_base(), _scale, dx, dy),
-                c.get_radius() * _scale,
-                c.get_thickness());
-        buf.append(tmp);
-      } else if (ge instanceof FillCircleCommand) {
-        FillCircleCommand c = (FillCircleCommand) ge;
-        String tmp =
-            fillCircleS(
-                transform(c.get_base(), _scale, dx, dy),
-                c.get_radius() * _scale,
-                c.get_thickness(),
-                c.get_color());
-        buf.append(tmp);
-      } else if (ge instanceof FontCommand) {
-        FontCommand c = (FontCommand) ge;
-        String tmp = setFontS(c.get_font(), c.get_size());
-        buf.append(tmp);
-      } else if (ge instanceof ColorCommand) {
-        ColorCommand c = (ColorCommand) ge;
-        String tmp = setColorS(c.getColor());
-        buf.append(tmp);
-      } else if (ge instanceof ArcCommand) {
-        ArcCommand c = (ArcCommand) ge;
-        String tmp =
-            drawArcS(
-                transform(c.getCenter(), _scale, dx, dy),
-                c.getWidth() * _scale,
-                c.getHeight() * _scale,
-                c.getStartAngle(),
-                c.getEndAngle());
-        buf.append(tmp);
-      } else if (ge instanceof PolygonCommand) {
-        PolygonCommand c = (PolygonCommand) ge;
-        Point2D.Double[] points = c.get_points();
-        for (int j = 0; j < points.length; j++) {
-          points[j] = transform(points[j], _scale, dx, dy);
-        }
-        String tmp = drawPolygonS(points, c.get_thickness());
-        buf.append(tmp);
-      } else if (ge instanceof FillPolygonCommand) {
-        FillPolygonCommand c = (FillPolygonCommand) ge;
-        Point2D.Double[] points = c.get_points();
-        for (int j = 0; j < points.length; j++) {
-          points[j] = transform(points[j], _scale, dx, dy);
-        }
-        String tmp = fillPolygonS(points, c.get_color());
-        buf.append(tmp);
+  }
+
+  private String exportCommand(GraphicElement ge, double dx, double dy) {
+    if (ge instanceof LineCommand) {
+      LineCommand c = (LineCommand) ge;
+      return drawLineS(
+          transform(c.get_orig(), _scale, dx, dy),
+          transform(c.get_dest(), _scale, dx, dy),
+          c.get_thickness());
+    } else if (ge instanceof TextCommand) {
+      TextCommand c = (TextCommand) ge;
+      return drawTextS(transform(c.get_base(), _scale, dx, dy), c.get_txt());
+    } else if (ge instanceof RectangleCommand) {
+      RectangleCommand c = (RectangleCommand) ge;
+      return drawRectangleS(
+          transform(c.get_orig(), _scale, dx, dy),
+          transform(c.get_dims(), _scale, 0.0, 0.0),
+          c.get_thickness());
+    } else if (ge instanceof CircleCommand) {
+      CircleCommand c = (CircleCommand) ge;
+      return drawCircleS(
+          transform(c.get_base(), _scale, dx, dy), c.get_radius() * _scale, c.get_thickness());
+    } else if (ge instanceof FillCircleCommand) {
+      FillCircleCommand c = (FillCircleCommand) ge;
+      return fillCircleS(
+          transform(c.get_base(), _scale, dx, dy),
+          c.get_radius() * _scale,
+          c.get_thickness(),
+          c.get_color());
+    } else if (ge instanceof FontCommand) {
+      FontCommand c = (FontCommand) ge;
+      return setFontS(c.get_font(), c.get_size());
+    } else if (ge instanceof ColorCommand) {
+      ColorCommand c = (ColorCommand) ge;
+      return setColorS(c.getColor());
+    } else if (ge instanceof ArcCommand) {
+      ArcCommand c = (ArcCommand) ge;
+      return drawArcS(
+          transform(c.getCenter(), _scale, dx, dy),
+          c.getWidth() * _scale,
+          c.getHeight() * _scale,
+          c.getStartAngle(),
+          c.getEndAngle());
+    } else if (ge instanceof PolygonCommand) {
+      PolygonCommand c = (PolygonCommand) ge;
+      Point2D.Double[] points = c.get_points();
+      for (int j = 0; j < points.length; j++) {
+        points[j] = transform(points[j], _scale, dx, dy);
       }
+      return drawPolygonS(points, c.get_thickness());
+    } else if (ge instanceof FillPolygonCommand) {
+      FillPolygonCommand c = (FillPolygonCommand) ge;
+      Point2D.Double[] points = c.get_points();
+      for (int j = 0; j < points.length; j++) {
+        points[j] = transform(points[j], _scale, dx, dy);
+      }
+      return fillPolygonS(points, c.get_color());
     }
-    buf.append(footerS());
-    return buf.toString();
+    return "";
   }
 
   public void reset() {}
@@ -0,0 +1,273 @@
+package fr.orsay.lri.varna.models.export;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+
+/**
+ * Pre-rendered images of nucleotide glyphs (filled circle, outline and centred label), so that a
+ * repaint copies a few images instead of measuring and drawing text for every base.
+ *
+ * <p>Glyphs are keyed by their label, colours, font and outline thickness, which are resolved from
+ * the base styles at drawing time: a style change simply leads to other keys. The cache holds a
+ * single zoom level and is emptied by {@link #setScale(double)} when the zoom changes. Entries are
+ * evicted in least recently used order once their images exceed a total number of pixels, and
+ * glyphs too large to be worth caching are drawn directly.
+ *
+ * <p>Glyphs are copied at whole device pixels, from images rendered at {@value #PHASES} subpixel
+ * offsets along each axis, so they are shifted by at most {@code 1 / (2 * PHASES)} pixel.
+ */
+public class SwingGlyphCache {
+  /** Total number of pixels kept, about 16 MB of ARGB images. */
+  private static final long MAX_PIXELS = 4L * 1024 * 1024;
+
+  /** Glyphs whose image has more pixels than this are drawn directly. */
+  private static final int MAX_GLYPH_PIXELS = 128 * 128;
+
+  /** Number of subpixel positions a glyph is rendered at, along each axis. */
+  private static final int PHASES = 4;
+
+  private final LinkedHashMap<Key, Glyph> _glyphs = new LinkedHashMap<Key, Glyph>(64, 0.75f, true);
+  private long _pixels = 0;
+  private double _scale = Double.NaN;
+
+  /** Empties the cache if glyphs were rendered for another zoom level. */
+  public void setScale(double scale) {
+    if (scale != _scale) {
+      clear();
+      _scale = scale;
+    }
+  }
+
+  public void clear() {
+    _glyphs.clear();
+    _pixels = 0;
+  }
+
+  /**
+   * Draws a glyph centred on (x, y), as a circle of the given radius filled with {@code inner} and
+   * outlined with {@code outer} (either may be {@code null} to skip that part), and its label in
+   * {@code labelColor}.
+   *
+   * @return {@code false} if nothing was drawn because the glyph cannot be cached for this device,
+   *     in which case the caller must draw it itself
+   */
+  public boolean draw(
+      Graphics2D g,
+      String label,
+      double x,
+      double y,
+      double radius,
+      Color inner,
+      Color outer,
+      double thickness,
+      Color labelColor) {
+    AffineTransform at = g.getTransform();
+    int type = at.getType() & ~AffineTransform.TYPE_TRANSLATION;
+    if (type != AffineTransform.TYPE_IDENTITY && type != AffineTransform.TYPE_UNIFORM_SCALE) {
+      return false;
+    }
+    double deviceScale = at.getScaleX();
+    if (!(deviceScale > 0)) {
+      return false;
+    }
+    double deviceX = deviceScale * x + at.getTranslateX();
+    double deviceY = deviceScale * y + at.getTranslateY();
+    int left = (int) Math.floor(deviceX);
+    int top = (int) Math.floor(deviceY);
+    int phaseX = (int) Math.round((deviceX - left) * PHASES);
+    int phaseY = (int) Math.round((deviceY - top) * PHASES);
+    Key key =
+        new Key(
+            label,
+            radius,
+            inner,
+            outer,
+            thickness,
+            labelColor,
+            g.getFont(),
+            deviceScale,
+            phaseX,
+            phaseY);
+    Glyph glyph = _glyphs.get(key);
+    if (glyph == null) {
+      glyph = render(g, key);
+      if (glyph == null) {
+        return false;
+      }
+      _glyphs.put(key, glyph);
+      _pixels += glyph.pixels();
+      evict();
+    }
+    g.setTransform(new AffineTransform());
+    g.drawImage(glyph._image, left - glyph._anchorX, top - glyph._anchorY, null);
+    g.setTransform(at);
+    return true;
+  }
+
+  private void evict() {
+    Iterator<Glyph> it = _glyphs.values().iterator();
+    while (_pixels > MAX_PIXELS && it.hasNext()) {
+      _pixels -= it.next().pixels();
+      it.remove();
+    }
+  }
+
+  // Draws the glyph the way SwingGraphics would, into an image in device pixels
+  private static Glyph render(Graphics2D g, Key key) {
+    double s = key._deviceScale;
+    Font font = key._font;
+    FontMetrics fm = g.getFontMetrics(font);
+    Rectangle2D bounds = fm.getStringBounds(key._label, g);
+    // Same placement as SwingGraphics.drawStringCentered, relative to the glyph's center
+    int width = (int) bounds.getWidth();
+    int height = fm.getAscent() - fm.getDescent();
+    double textX = -width / 2.0;
+    double textY = height / 2.0;
+
+    double extent = key._radius + key._thickness / 2.0;
+    double minX = Math.min(-extent, textX + bounds.getMinX());
+    double maxX = Math.max(extent, textX + bounds.getMaxX());
+    double minY = Math.min(-extent, textY + bounds.getMinY());
+    double maxY = Math.max(extent, textY + bounds.getMaxY());
+    // One spare pixel on each side for antialiasing and one for the subpixel offset
+    int anchorX = (int) Math.ceil(-minX * s) + 1;
+    int anchorY = (int) Math.ceil(-minY * s) + 1;
+    int imageWidth = anchorX + (int) Math.ceil(maxX * s) + 2;
+    int imageHeight = anchorY + (int) Math.ceil(maxY * s) + 2;
+    if ((long) imageWidth * imageHeight > MAX_GLYPH_PIXELS) {
+      return null;
+    }
+
+    BufferedImage image = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_ARGB);
+    Graphics2D ig = image.createGraphics();
+    ig.setRenderingHints(g.getRenderingHints());
+    Object textAntialiasing = g.getRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING);
+    if (textAntialiasing != RenderingHints.VALUE_TEXT_ANTIALIAS_OFF
+        && textAntialiasing != RenderingHints.VALUE_TEXT_ANTIALIAS_DEFAULT
+        && textAntialiasing != RenderingHints.VALUE_TEXT_ANTIALIAS_GASP) {
+      // Subpixel text needs an opaque background, which the image does not have
+      ig.setRenderingHint(
+          RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+    }
+    ig.translate(
+        anchorX + key._phaseX / (double) PHASES, anchorY + key._phaseY / (double) PHASES);
+    ig.scale(s, s);
+    double r = key._radius;
+    if (key._inner != null) {
+      ig.setColor(key._inner);
+      ig.fill(new Ellipse2D.Double(-r, -r, 2.0 * r, 2.0 * r));
+    }
+    if (key._outer != null) {
+      ig.setColor(key._outer);
+      ig.setStroke(
+          new BasicStroke(
+              (float) key._thickness, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND, 3.0f));
+      ig.draw(new Ellipse2D.Double(-r, -r, 2.0 * r, 2.0 * r));
+    }
+    ig.setColor(key._labelColor);
+    ig.setFont(font);
+    ig.drawString(key._label, (float) textX, (float) textY);
+    ig.dispose();
+    return new Glyph(image, anchorX, anchorY);
+  }
+
+  private static final class Glyph {
+    private final BufferedImage _image;
+    private final int _anchorX;
+    private final int _anchorY;
+
+    private Glyph(BufferedImage image, int anchorX, int anchorY) {
+      _image = image;
+      _anchorX = anchorX;
+      _anchorY = anchorY;
+    }
+
+    private long pixels() {
+      return (long) _image.getWidth() * _image.getHeight();
+    }
+  }
+
+  private static final class Key {
+    private final String _label;
+    private final double _radius;
+    private final Color _inner;
+    private final Color _outer;
+    private final double _thickness;
+    private final Color _labelColor;
+    private final Font _font;
+    private final double _deviceScale;
+    private final int _phaseX;
+    private final int _phaseY;
+    private final int _hash;
+
+    private Key(
+        String label,
+        double radius,
+        Color inner,
+        Color outer,
+        double thickness,
+        Color labelColor,
+        Font font,
+        double deviceScale,
+        int phaseX,
+        int phaseY) {
+      _label = label;
+      _radius = radius;
+      _inner = inner;
+      _outer = outer;
+      _thickness = thickness;
+      _labelColor = labelColor;
+      _font = font;
+      _deviceScale = deviceScale;
+      _phaseX = phaseX;
+      _phaseY = phaseY;
+      _hash =
+          Objects.hash(
+              label,
+              radius,
+              inner,
+              outer,
+              thickness,
+              labelColor,
+              font,
+              deviceScale,
+              phaseX,
+              phaseY);
+    }
+
+    @Override
+    public int hashCode() {
+      return _hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key k = (Key) o;
+      return _hash == k._hash
+          && _phaseX == k._phaseX
+          && _phaseY == k._phaseY
+          && _radius == k._radius
+          && _thickness == k._thickness
+          && _deviceScale == k._deviceScale
+          && _label.equals(k._label)
+          && Objects.equals(_inner, k._inner)
+          && Objects.equals(_outer, k._outer)
+          && Objects.equals(_labelColor, k._labelColor)
+          && _font.equals(k._font);
+    }
+  }
+}
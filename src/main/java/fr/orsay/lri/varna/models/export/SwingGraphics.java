@@ -44,6 +44,25 @@ public class SwingGraphics implements VueVARNAGraphics {
     _g2d.drawString(res, (float) (x), (float) (y));
   }
 
+  /**
+   * Draws a nucleotide glyph through {@code cache}.
+   *
+   * @return {@code false} if the glyph could not be drawn that way
+   * @see SwingGlyphCache#draw
+   */
+  public boolean drawCachedGlyph(
+      SwingGlyphCache cache,
+      String label,
+      double x,
+      double y,
+      double radius,
+      Color inner,
+      Color outer,
+      double thickness,
+      Color labelColor) {
+    return !_debug && cache.draw(_g2d, label, x, y, radius, inner, outer, thickness, labelColor);
+  }
+
   public void draw(GeneralPath s) {
     _g2d.draw(s);
   }
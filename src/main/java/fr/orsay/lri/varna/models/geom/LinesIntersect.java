@@ -20,6 +20,14 @@ public class LinesIntersect {
   public static boolean linesIntersect(
       double x1, double y1, double x2, double y2, double x3, double y3, double x4, double y4) {
 
+    // Segments with disjoint bounding boxes cannot intersect. Rounding would otherwise make nearly
+    // collinear segments which are far apart look like they cross.
+    if (Math.max(x1, x2) < Math.min(x3, x4)
+        || Math.max(x3, x4) < Math.min(x1, x2)
+        || Math.max(y1, y2) < Math.min(y3, y4)
+        || Math.max(y3, y4) < Math.min(y1, y2)) {
+      return false;
+    }
     double denom = (y4 - y3) * (x2 - x1) - (x4 - x3) * (y2 - y1);
     if (denom == 0.0) { // Lines are parallel.
       return false;
@@ -79,5 +87,15 @@ public class LinesIntersect {
     test(0, 0, 0.5, 0.5, 1, 1, 2, 2, false);
     test(0, 0, 2, 2, 0, 2, 2, 0, true);
     test(0, 0, 2, 2, 4, 0, 3, 2, false);
+    test(
+        57.95925926530787,
+        11.532858599094586,
+        43.18961766949393,
+        14.151577203909245,
+        28.419976073679976,
+        16.770295808723905,
+        13.650334477866025,
+        19.389014413538565,
+        false);
   }
 }
@@ -0,0 +1,217 @@
+package fr.orsay.lri.varna.models.geom;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Uniform grid over an array of points, answering nearest-point and rectangle queries by looking
+ * only at the cells around the query. The grid covers the bounding box of the points with about
+ * one point per cell, so queries take constant time on average for evenly spread layouts.
+ *
+ * <p>The grid keeps a reference to the indexed array: after changing a point of it, {@link
+ * #update(int)} moves that point to its new cell. Points which are not finite are never returned.
+ * Queries return the same indices as a scan of the whole array in increasing order would: among
+ * equally distant points the one with the lowest index wins, and rectangle results are sorted.
+ */
+public class PointGrid {
+  private final Point2D.Double[] _points;
+  private final double _minX;
+  private final double _minY;
+  private final double _cellSize;
+  private final int _columns;
+  private final int _rows;
+  private final int[][] _cells;
+  private final int[] _cellCounts;
+  private final int[] _cellOf;
+
+  public PointGrid(Point2D.Double[] points) {
+    _points = points;
+    double minX = Double.POSITIVE_INFINITY;
+    double minY = Double.POSITIVE_INFINITY;
+    double maxX = Double.NEGATIVE_INFINITY;
+    double maxY = Double.NEGATIVE_INFINITY;
+    int indexed = 0;
+    for (Point2D.Double p : points) {
+      if (isFinite(p)) {
+        minX = Math.min(minX, p.x);
+        minY = Math.min(minY, p.y);
+        maxX = Math.max(maxX, p.x);
+        maxY = Math.max(maxY, p.y);
+        indexed++;
+      }
+    }
+    if (indexed == 0) {
+      minX = minY = maxX = maxY = 0;
+    }
+    double width = maxX - minX;
+    double height = maxY - minY;
+    int n = Math.max(1, indexed);
+    // About one point per cell, also when all points lie on a line
+    double cellSize = Math.max(Math.sqrt(width * height / n), Math.max(width, height) / n);
+    if (!(cellSize > 0) || Double.isInfinite(cellSize)) {
+      cellSize = 1.0;
+    }
+    _minX = minX;
+    _minY = minY;
+    _cellSize = cellSize;
+    // At most n + 1 cells along each side, since cellSize >= max(width, height) / n
+    _columns = (int) (width / cellSize) + 1;
+    _rows = (int) (height / cellSize) + 1;
+
+    _cellCounts = new int[_columns * _rows];
+    _cellOf = new int[points.length];
+    for (int i = 0; i < points.length; i++) {
+      _cellOf[i] = isFinite(points[i]) ? cellIndex(points[i].x, points[i].y) : -1;
+      if (_cellOf[i] != -1) {
+        _cellCounts[_cellOf[i]]++;
+      }
+    }
+    _cells = new int[_cellCounts.length][];
+    for (int c = 0; c < _cells.length; c++) {
+      _cells[c] = new int[_cellCounts[c]];
+      _cellCounts[c] = 0;
+    }
+    for (int i = 0; i < points.length; i++) {
+      if (_cellOf[i] != -1) {
+        _cells[_cellOf[i]][_cellCounts[_cellOf[i]]++] = i;
+      }
+    }
+  }
+
+  /** The indexed points. */
+  public Point2D.Double[] getPoints() {
+    return _points;
+  }
+
+  /**
+   * Moves point {@code i} to the cell of its current position.
+   *
+   * @return {@code false} if the point left the area covered by the grid, in which case the grid
+   *     must be rebuilt
+   */
+  public boolean update(int i) {
+    Point2D.Double p = _points[i];
+    int cell = -1;
+    if (isFinite(p)) {
+      double x = (p.x - _minX) / _cellSize;
+      double y = (p.y - _minY) / _cellSize;
+      if (x < 0 || y < 0 || x >= _columns || y >= _rows) {
+        return false;
+      }
+      cell = cellIndex(p.x, p.y);
+    }
+    if (cell == _cellOf[i]) {
+      return true;
+    }
+    if (_cellOf[i] != -1) {
+      int[] items = _cells[_cellOf[i]];
+      int count = --_cellCounts[_cellOf[i]];
+      for (int k = 0; k <= count; k++) {
+        if (items[k] == i) {
+          items[k] = items[count];
+          break;
+        }
+      }
+    }
+    if (cell != -1) {
+      if (_cellCounts[cell] == _cells[cell].length) {
+        _cells[cell] = Arrays.copyOf(_cells[cell], Math.max(4, 2 * _cells[cell].length));
+      }
+      _cells[cell][_cellCounts[cell]++] = i;
+    }
+    _cellOf[i] = cell;
+    return true;
+  }
+
+  /**
+   * Returns the index of the accepted point closest to (x, y), or -1 if no accepted point lies
+   * strictly closer than {@code maxDistance}, which may be {@link Double#POSITIVE_INFINITY}.
+   */
+  public int nearest(double x, double y, double maxDistance, IntPredicate accept) {
+    long column = (long) Math.floor((x - _minX) / _cellSize);
+    long row = (long) Math.floor((y - _minY) / _cellSize);
+    // Rings of cells around (x, y), from the first one reaching the grid to the last one
+    long firstRing =
+        Math.max(
+            Math.max(Math.max(0, -column), column - (_columns - 1)),
+            Math.max(-row, row - (_rows - 1)));
+    long lastRing =
+        Math.max(
+            Math.max(column, _columns - 1 - column), Math.max(row, _rows - 1 - row));
+    int best = -1;
+    double bestDistance = Double.MAX_VALUE;
+    for (long ring = firstRing; ring <= lastRing; ring++) {
+      // Every point of this ring is at least that far from (x, y)
+      double lowerBound = (ring - 1) * _cellSize;
+      if (lowerBound > bestDistance || lowerBound >= maxDistance) {
+        break;
+      }
+      for (long r = Math.max(0, row - ring); r <= Math.min(_rows - 1, row + ring); r++) {
+        boolean edgeRow = (r == row - ring) || (r == row + ring);
+        long step = edgeRow ? 1 : 2 * ring;
+        long fromColumn = edgeRow ? Math.max(0, column - ring) : column - ring;
+        long toColumn = edgeRow ? Math.min(_columns - 1, column + ring) : column + ring;
+        for (long c = fromColumn; c <= toColumn; c += step) {
+          if (c < 0 || c >= _columns) {
+            continue;
+          }
+          int cell = (int) (r * _columns + c);
+          int[] items = _cells[cell];
+          for (int k = 0; k < _cellCounts[cell]; k++) {
+            int i = items[k];
+            Point2D.Double p = _points[i];
+            double d = Math.sqrt(Math.pow(p.x - x, 2) + Math.pow(p.y - y, 2));
+            if (d < maxDistance
+                && (d < bestDistance || (d == bestDistance && i < best))
+                && accept.test(i)) {
+              best = i;
+              bestDistance = d;
+            }
+          }
+        }
+      }
+    }
+    return best;
+  }
+
+  /** Returns the sorted indices of the points selected by {@code accept} within the rectangle. */
+  public ArrayList<Integer> inRectangle(Rectangle2D area, IntPredicate accept) {
+    ArrayList<Integer> result = new ArrayList<Integer>();
+    int fromColumn = clamp((area.getMinX() - _minX) / _cellSize, _columns);
+    int toColumn = clamp((area.getMaxX() - _minX) / _cellSize, _columns);
+    int fromRow = clamp((area.getMinY() - _minY) / _cellSize, _rows);
+    int toRow = clamp((area.getMaxY() - _minY) / _cellSize, _rows);
+    for (int r = fromRow; r <= toRow; r++) {
+      for (int c = fromColumn; c <= toColumn; c++) {
+        int cell = r * _columns + c;
+        for (int k = 0; k < _cellCounts[cell]; k++) {
+          if (accept.test(_cells[cell][k])) {
+            result.add(_cells[cell][k]);
+          }
+        }
+      }
+    }
+    result.sort(null);
+    return result;
+  }
+
+  private int cellIndex(double x, double y) {
+    int column = clamp((x - _minX) / _cellSize, _columns);
+    int row = clamp((y - _minY) / _cellSize, _rows);
+    return row * _columns + column;
+  }
+
+  private static int clamp(double cell, int cells) {
+    if (!(cell > 0)) {
+      return 0;
+    }
+    return (int) Math.min(cells - 1, Math.floor(cell));
+  }
+
+  private static boolean isFinite(Point2D.Double p) {
+    return p != null && Double.isFinite(p.x) && Double.isFinite(p.y);
+  }
+}
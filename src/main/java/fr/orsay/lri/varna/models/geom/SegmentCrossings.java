@@ -0,0 +1,296 @@
+package fr.orsay.lri.varna.models.geom;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Finds the pairs of crossing segments among many, as decided by {@link
+ * LinesIntersect#linesIntersect(double, double, double, double, double, double, double, double)},
+ * without testing every pair. Segments are bucketed in a uniform grid over their bounding boxes,
+ * with cells about as large as a segment, and only segments sharing a cell are tested, so layouts
+ * made of short segments such as RNA backbones take about linear time instead of quadratic.
+ *
+ * <p>The result is the same as testing all pairs with that predicate, which rejects segments whose
+ * bounding boxes are apart. The boxes are widened here by a tiny tolerance so that no pair it may
+ * accept is missed. Segments with non-finite coordinates never intersect anything.
+ */
+public class SegmentCrossings {
+  /** Bounding boxes are widened by this fraction of the largest coordinate. */
+  private static final double TOLERANCE = 1e-9;
+
+  /** The grid has at most this many cells per segment. */
+  private static final int MAX_CELLS_PER_SEGMENT = 4;
+
+  public interface CrossingConsumer {
+    /** Receives two crossing segments, with {@code i < j}. */
+    void accept(int i, int j);
+  }
+
+  private final double[] _x1;
+  private final double[] _y1;
+  private final double[] _x2;
+  private final double[] _y2;
+  private final double[] _minX;
+  private final double[] _minY;
+  private final double[] _maxX;
+  private final double[] _maxY;
+
+  private final double _originX;
+  private final double _originY;
+  private final double _cellSize;
+  private final int _columns;
+  private final int _rows;
+  // Segments of cell c are _items[_cellStarts[c]] to _items[_cellStarts[c + 1] - 1], increasing
+  private final int[] _cellStarts;
+  private final int[] _items;
+
+  /** Indexes the segments from ({@code x1[i]}, {@code y1[i]}) to ({@code x2[i]}, {@code y2[i]}). */
+  public SegmentCrossings(double[] x1, double[] y1, double[] x2, double[] y2) {
+    int n = x1.length;
+    _x1 = x1;
+    _y1 = y1;
+    _x2 = x2;
+    _y2 = y2;
+    _minX = new double[n];
+    _minY = new double[n];
+    _maxX = new double[n];
+    _maxY = new double[n];
+
+    double minX = Double.POSITIVE_INFINITY;
+    double minY = Double.POSITIVE_INFINITY;
+    double maxX = Double.NEGATIVE_INFINITY;
+    double maxY = Double.NEGATIVE_INFINITY;
+    double sizes = 0;
+    int indexed = 0;
+    for (int i = 0; i < n; i++) {
+      if (isFinite(i)) {
+        _minX[i] = Math.min(x1[i], x2[i]);
+        _minY[i] = Math.min(y1[i], y2[i]);
+        _maxX[i] = Math.max(x1[i], x2[i]);
+        _maxY[i] = Math.max(y1[i], y2[i]);
+        minX = Math.min(minX, _minX[i]);
+        minY = Math.min(minY, _minY[i]);
+        maxX = Math.max(maxX, _maxX[i]);
+        maxY = Math.max(maxY, _maxY[i]);
+        sizes += Math.max(_maxX[i] - _minX[i], _maxY[i] - _minY[i]);
+        indexed++;
+      }
+    }
+    if (indexed == 0) {
+      minX = minY = maxX = maxY = 0;
+    }
+    double tolerance =
+        TOLERANCE
+            * Math.max(
+                1.0,
+                Math.max(
+                    Math.max(Math.abs(minX), Math.abs(maxX)),
+                    Math.max(Math.abs(minY), Math.abs(maxY))));
+    for (int i = 0; i < n; i++) {
+      if (isFinite(i)) {
+        _minX[i] -= tolerance;
+        _minY[i] -= tolerance;
+        _maxX[i] += tolerance;
+        _maxY[i] += tolerance;
+      }
+    }
+    double width = maxX - minX + 2 * tolerance;
+    double height = maxY - minY + 2 * tolerance;
+    int m = Math.max(1, indexed);
+    // Cells about as large as the average segment, but not many more cells than segments, also
+    // when all segments lie along a line
+    double cellSize =
+        Math.max(
+            sizes / m,
+            Math.max(
+                Math.sqrt(width * height / (MAX_CELLS_PER_SEGMENT * m)),
+                Math.max(width, height) / (MAX_CELLS_PER_SEGMENT * m)));
+    if (!(cellSize > 0) || Double.isInfinite(cellSize)) {
+      cellSize = 1.0;
+    }
+    _originX = minX - tolerance;
+    _originY = minY - tolerance;
+    _cellSize = cellSize;
+    _columns = (int) (width / cellSize) + 1;
+    _rows = (int) (height / cellSize) + 1;
+
+    // Counting, then filling the segments of each cell
+    _cellStarts = new int[_columns * _rows + 1];
+    for (int i = 0; i < n; i++) {
+      if (isFinite(i)) {
+        for (int r = row(_minY[i]); r <= row(_maxY[i]); r++) {
+          for (int c = column(_minX[i]); c <= column(_maxX[i]); c++) {
+            _cellStarts[r * _columns + c + 1]++;
+          }
+        }
+      }
+    }
+    for (int cell = 0; cell < _columns * _rows; cell++) {
+      _cellStarts[cell + 1] += _cellStarts[cell];
+    }
+    _items = new int[_cellStarts[_columns * _rows]];
+    int[] filled = new int[_columns * _rows];
+    for (int i = 0; i < n; i++) {
+      if (isFinite(i)) {
+        for (int r = row(_minY[i]); r <= row(_maxY[i]); r++) {
+          for (int c = column(_minX[i]); c <= column(_maxX[i]); c++) {
+            int cell = r * _columns + c;
+            _items[_cellStarts[cell] + filled[cell]++] = i;
+          }
+        }
+      }
+    }
+  }
+
+  /** Indexes the segments joining consecutive points of a polyline. */
+  public static SegmentCrossings ofPolyline(double[] x, double[] y) {
+    int n = Math.max(0, x.length - 1);
+    double[] x1 = new double[n];
+    double[] y1 = new double[n];
+    double[] x2 = new double[n];
+    double[] y2 = new double[n];
+    for (int i = 0; i < n; i++) {
+      x1[i] = x[i];
+      y1[i] = y[i];
+      x2[i] = x[i + 1];
+      y2[i] = y[i + 1];
+    }
+    return new SegmentCrossings(x1, y1, x2, y2);
+  }
+
+  /**
+   * Returns the number of crossings between non-consecutive segments of a polyline, that is the
+   * number of times it crosses itself, consecutive segments always sharing a point.
+   */
+  public static int countPolylineCrossings(double[] x, double[] y) {
+    int[] count = new int[1];
+    ofPolyline(x, y)
+        .forEachCrossing(
+            (i, j) -> {
+              if (j > i + 1) {
+                count[0]++;
+              }
+            });
+    return count[0];
+  }
+
+  /** Returns the number of pairs of crossing segments. */
+  public int countCrossings() {
+    int[] count = new int[1];
+    forEachCrossing((i, j) -> count[0]++);
+    return count[0];
+  }
+
+  /** Returns the pairs {@code {i, j}} of crossing segments, with {@code i < j}. */
+  public ArrayList<int[]> findCrossings() {
+    ArrayList<int[]> result = new ArrayList<int[]>();
+    forEachCrossing((i, j) -> result.add(new int[] {i, j}));
+    return result;
+  }
+
+  /** Gives each pair of crossing segments once to {@code consumer}, in no particular order. */
+  public void forEachCrossing(CrossingConsumer consumer) {
+    for (int cell = 0; cell < _columns * _rows; cell++) {
+      for (int a = _cellStarts[cell]; a < _cellStarts[cell + 1]; a++) {
+        int i = _items[a];
+        for (int b = a + 1; b < _cellStarts[cell + 1]; b++) {
+          int j = _items[b];
+          // A pair sharing several cells is only tested in the one holding the lower left corner
+          // of the intersection of their boxes
+          double left = Math.max(_minX[i], _minX[j]);
+          double bottom = Math.max(_minY[i], _minY[j]);
+          if (left <= Math.min(_maxX[i], _maxX[j])
+              && bottom <= Math.min(_maxY[i], _maxY[j])
+              && row(bottom) * _columns + column(left) == cell
+              && LinesIntersect.linesIntersect(
+                  _x1[i], _y1[i], _x2[i], _y2[i], _x1[j], _y1[j], _x2[j], _y2[j])) {
+            consumer.accept(i, j);
+          }
+        }
+      }
+    }
+  }
+
+  private int column(double x) {
+    return clamp((x - _originX) / _cellSize, _columns);
+  }
+
+  private int row(double y) {
+    return clamp((y - _originY) / _cellSize, _rows);
+  }
+
+  private static int clamp(double cell, int cells) {
+    if (!(cell > 0)) {
+      return 0;
+    }
+    return (int) Math.min(cells - 1, Math.floor(cell));
+  }
+
+  private boolean isFinite(int i) {
+    return Double.isFinite(_x1[i])
+        && Double.isFinite(_y1[i])
+        && Double.isFinite(_x2[i])
+        && Double.isFinite(_y2[i]);
+  }
+  // Number of crossings between non-consecutive segments of a polyline, testing all pairs
+  private static int countPolylineCrossingsOfAllPairs(double[] x, double[] y) {
+    int count = 0;
+    for (int i = 0; i < x.length - 1; i++) {
+      for (int j = i + 2; j < x.length - 1; j++) {
+        if (LinesIntersect.linesIntersect(
+            x[i], y[i], x[i + 1], y[i + 1], x[j], y[j], x[j + 1], y[j + 1])) {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  /** Compares {@link #countPolylineCrossings(double[], double[])} with testing all pairs. */
+  public static void main(String[] args) {
+    Random random = new Random(1);
+    int mismatches = 0;
+    for (int t = 0; t < 3000; t++) {
+      int n = 2 + random.nextInt(200);
+      double[] x = new double[n];
+      double[] y = new double[n];
+      double angle = random.nextDouble() * 2 * Math.PI;
+      for (int i = 0; i < n; i++) {
+        switch (t % 5) {
+          case 0:
+            // Scattered points
+            x[i] = random.nextDouble() * 100;
+            y[i] = random.nextDouble() * 100;
+            break;
+          case 1:
+            // Integer points, so that segments often touch or overlap
+            x[i] = random.nextInt(10);
+            y[i] = random.nextInt(10);
+            break;
+          case 2:
+            // Random walk with steps as long as RNA backbone segments
+            x[i] = (i > 0 ? x[i - 1] : 0) + random.nextGaussian() * 15;
+            y[i] = (i > 0 ? y[i - 1] : 0) + random.nextGaussian() * 15;
+            break;
+          case 3:
+            // Nearly collinear points, as along the strands of a helix
+            x[i] = 500 + Math.cos(angle) * 15 * i;
+            y[i] = 500 + Math.sin(angle) * 15 * i;
+            break;
+          default:
+            // Some points are not finite
+            x[i] = i % 7 == 0 ? Double.NaN : random.nextDouble();
+            y[i] = random.nextDouble();
+            break;
+        }
+      }
+      int expected = countPolylineCrossingsOfAllPairs(x, y);
+      int actual = countPolylineCrossings(x, y);
+      if (expected != actual) {
+        mismatches++;
+        System.out.println("polyline " + t + ": " + actual + " crossings instead of " + expected);
+      }
+    }
+    System.out.println(mismatches == 0 ? "All counts are correct" : mismatches + " INCORRECT");
+  }
+}
@@ -1,66 +0,0 @@
-/*
-VARNA is a tool for the automated drawing, visualization and annotation of the secondary structure of RNA, designed as a companion software for web servers and databases.
-Copyright (C) 2008  Kevin Darty, Alain Denise and Yann Ponty.
-electronic mail : Yann.Ponty@lri.fr
-paper mail : LRI, bat 490 Universit Paris-Sud 91405 Orsay Cedex France
-
-This file is part of VARNA version 3.1.
-VARNA version 3.1 is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
-as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
-
-VARNA version 3.1 is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
-without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
-See the GNU General Public License for more details.
-
-You should have received a copy of the GNU General Public License along with VARNA version 3.1.
-If not, see http://www.gnu.org/licenses.
-*/
-package fr.orsay.lri.varna.models.naView;
-
-public class Base {
-  private int mate;
-  private double x, y;
-  private boolean extracted;
-  private Region region = new Region();
-
-  public int getMate() {
-    return mate;
-  }
-
-  public void setMate(int mate) {
-    this.mate = mate;
-  }
-
-  public double getX() {
-    return x;
-  }
-
-  public void setX(double x) {
-    // System.out.println("  Base.setX()");
-    this.x = x;
-  }
-
-  public double getY() {
-    return y;
-  }
-
-  public void setY(double y) {
-    this.y = y;
-  }
-
-  public boolean isExtracted() {
-    return extracted;
-  }
-
-  public void setExtracted(boolean extracted) {
-    this.extracted = extracted;
-  }
-
-  public Region getRegion() {
-    return region;
-  }
-
-  public void setRegion(Region region) {
-    this.region = region;
-  }
-}
@@ -18,8 +18,9 @@ If not, see http://www.gnu.org/licenses.
 package fr.orsay.lri.varna.models.naView;
 
 public class Connection {
-  private Loop loop = new Loop();
-  private Region region = new Region();
+  private Loop loop;
+  // Index of the base pairing region in the NAView region table
+  private int region;
   // Start and end form the 1st base pair of the region.
   private int start, end;
   private double xrad, yrad, angle;
@@ -29,16 +30,6 @@ public class Connection {
   // True if the extruded segment must be drawn long.
   private boolean broken;
 
-  private boolean _isNull = false;
-
-  public boolean isNull() {
-    return _isNull;
-  }
-
-  public void setNull(boolean isNull) {
-    _isNull = isNull;
-  }
-
   public Loop getLoop() {
     return loop;
   }
@@ -47,11 +38,11 @@ public class Connection {
     this.loop = loop;
   }
 
-  public Region getRegion() {
+  public int getRegion() {
     return region;
   }
 
-  public void setRegion(Region region) {
+  public void setRegion(int region) {
     this.region = region;
   }
 
@@ -18,48 +18,25 @@ If not, see http://www.gnu.org/licenses.
 package fr.orsay.lri.varna.models.naView;
 
 import java.util.ArrayList;
-import java.util.Hashtable;
 
 public class Loop {
-  private int nconnection;
-  private ArrayList<Connection> connections = new ArrayList<Connection>();
-  private Hashtable<Integer, Connection> _connections = new Hashtable<Integer, Connection>();
+  private ArrayList<Connection> connections = new ArrayList<Connection>(2);
   private int number;
   private int depth;
   private boolean mark;
   private double x, y, radius;
 
   public int getNconnection() {
-    return nconnection;
-  }
-
-  public void setNconnection(int nconnection) {
-    this.nconnection = nconnection;
-  }
-
-  public void setConnection(int i, Connection c) {
-    Integer n = new Integer(i);
-    if (c != null) _connections.put(n, c);
-    else {
-      if (!_connections.containsKey(n)) {
-        _connections.put(n, new Connection());
-      }
-      _connections.get(i).setNull(true);
-    }
+    return connections.size();
   }
 
+  /** Returns the i-th connection of this loop, or null past the last one. */
   public Connection getConnection(int i) {
-    Integer n = new Integer(i);
-    if (!_connections.containsKey(n)) {
-      _connections.put(n, new Connection());
-    }
-    Connection c = _connections.get(n);
-    if (c.isNull()) return null;
-    else return c;
+    return i < connections.size() ? connections.get(i) : null;
   }
 
-  public void addConnection(int i, Connection c) {
-    _connections.put(_connections.size(), c);
+  public void addConnection(Connection c) {
+    connections.add(c);
   }
 
   public int getNumber() {
@@ -112,7 +89,7 @@ public class Loop {
 
   public String toString() {
     String result = "Loop:";
-    result += " nconnection " + nconnection;
+    result += " nconnection " + connections.size();
     result += " depth " + depth;
     return result;
   }
@@ -19,19 +19,24 @@ package fr.orsay.lri.varna.models.naView;
 
 import fr.orsay.lri.varna.exceptions.ExceptionNAViewAlgorithm;
 import fr.orsay.lri.varna.interfaces.InterfaceVARNAListener;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 
 public class NAView {
   private final double ANUM = 9999.0;
   private final int MAXITER = 500;
 
-  private ArrayList<Base> bases;
+  // Bases are numbered from 1 to nbase, base 0 being the origin closing the exterior loop
+  private int[] mates;
+  private double[] baseX, baseY;
+  private boolean[] extracted;
+  private int[] baseRegion;
   private int nbase, nregion, loop_count;
 
   private Loop root = new Loop();
   private ArrayList<Loop> loops;
 
-  private ArrayList<Region> regions;
+  private int[] regionStart1, regionEnd1, regionStart2, regionEnd2;
 
   private Radloop rlphead = new Radloop();
 
@@ -53,34 +58,41 @@ public class NAView {
   double HELIX_FACTOR = 0.6;
   double BACKBONE_DISTANCE = 27;
 
-  public int naview_xy_coordinates(
-      ArrayList<Short> pair_table2, ArrayList<Double> x, ArrayList<Double> y)
+  /**
+   * Computes the NAView layout of a secondary structure.
+   *
+   * @param pair_table the 0-based index of the partner of each base, or -1 for unpaired bases
+   * @param x receives the x coordinate of each base, must hold at least {@code pair_table.length}
+   *     values
+   * @param y receives the y coordinate of each base, must hold at least {@code pair_table.length}
+   *     values
+   * @return the number of bases laid out
+   * @throws ExceptionNAViewAlgorithm
+   */
+  public int naview_xy_coordinates(int[] pair_table, double[] x, double[] y)
       throws ExceptionNAViewAlgorithm {
     if (debug) System.out.println("naview_xy_coordinates");
-    if (pair_table2.isEmpty()) return 0;
-    int i;
-    ArrayList<Integer> pair_table = new ArrayList<Integer>(pair_table2.size() + 1);
-    pair_table.add(pair_table2.size());
-
-    for (int j = 0; j < pair_table2.size(); j++) {
-      pair_table.add(pair_table2.get(j) + 1);
+    if (pair_table.length == 0) return 0;
+    if (x.length < pair_table.length || y.length < pair_table.length) {
+      throw new IllegalArgumentException("Coordinate arrays are shorter than the pair table");
     }
+    int i;
 
     if (debug) {
       infoStructure(pair_table);
     }
     // length
-    nbase = pair_table.get(0);
-    bases = new ArrayList<Base>(nbase + 1);
-
-    for (int index = 0; index < bases.size(); index++) {
-      bases.add(new Base());
-    }
-
-    regions = new ArrayList<Region>();
-    for (int index = 0; index < nbase + 1; index++) {
-      regions.add(new Region());
-    }
+    nbase = pair_table.length;
+    mates = new int[nbase + 1];
+    baseX = new double[nbase + 1];
+    baseY = new double[nbase + 1];
+    extracted = new boolean[nbase + 1];
+    baseRegion = new int[nbase + 1];
+
+    regionStart1 = new int[nbase + 1];
+    regionEnd1 = new int[nbase + 1];
+    regionStart2 = new int[nbase + 1];
+    regionEnd2 = new int[nbase + 1];
 
     read_in_bases(pair_table);
 
@@ -93,10 +105,7 @@ public class NAView {
     if (debug) infoRegions();
 
     loop_count = 0;
-    loops = new ArrayList<Loop>(nbase + 1);
-    for (int index = 0; index < nbase + 1; index++) {
-      loops.add(new Loop());
-    }
+    loops = new ArrayList<Loop>();
 
     construct_loop(0);
 
@@ -111,17 +120,17 @@ public class NAView {
     traverse_loop(root, null);
 
     for (i = 0; i < nbase; i++) {
-      x.add(100 + BACKBONE_DISTANCE * bases.get(i + 1).getX());
-      y.add(100 + BACKBONE_DISTANCE * bases.get(i + 1).getY());
+      x[i] = 100 + BACKBONE_DISTANCE * baseX[i + 1];
+      y[i] = 100 + BACKBONE_DISTANCE * baseY[i + 1];
     }
 
     return nbase;
   }
 
-  private void infoStructure(ArrayList<Integer> pair_table) {
+  private void infoStructure(int[] pair_table) {
     System.out.println("structure:");
-    for (int j = 0; j < pair_table.size(); j++) {
-      System.out.print("#" + j + ":" + pair_table.get(j) + "\t");
+    for (int j = 0; j < pair_table.length; j++) {
+      System.out.print("#" + j + ":" + pair_table[j] + "\t");
       if (j % 10 == 0) System.out.println();
     }
     System.out.println();
@@ -129,8 +138,8 @@ public class NAView {
 
   private void infoBasesMate() {
     System.out.println("Bases mate:");
-    for (int index = 0; index < bases.size(); index++) {
-      System.out.print("#" + index + ":" + bases.get(index).getMate() + "\t");
+    for (int index = 0; index <= nbase; index++) {
+      System.out.print("#" + index + ":" + mates[index] + "\t");
       if (index % 10 == 0) System.out.println();
     }
     System.out.println();
@@ -138,16 +147,16 @@ public class NAView {
 
   private void infoRegions() {
     System.out.println("regions:");
-    for (int index = 0; index < regions.size(); index++) {
+    for (int index = 0; index < nregion; index++) {
       System.out.print(
           "("
-              + regions.get(index).getStart1()
+              + regionStart1[index]
               + ","
-              + regions.get(index).getStart2()
+              + regionStart2[index]
               + ";"
-              + regions.get(index).getEnd1()
+              + regionEnd1[index]
               + ","
-              + regions.get(index).getEnd2()
+              + regionEnd2[index]
               + ")\t\t");
       if (index % 5 == 0) System.out.println();
     }
@@ -156,8 +165,8 @@ public class NAView {
 
   private void infoBasesExtracted() {
     System.out.println("Bases extracted:");
-    for (int index = 0; index < bases.size(); index++) {
-      System.out.print("i=" + index + ":" + bases.get(index).isExtracted() + "\t");
+    for (int index = 0; index <= nbase; index++) {
+      System.out.print("i=" + index + ":" + extracted[index] + "\t");
       if (index % 5 == 0) System.out.println();
     }
     System.out.println();
@@ -175,30 +184,28 @@ public class NAView {
     System.out.println("\tnconnection=" + root.getNconnection());
   }
 
-  private void read_in_bases(ArrayList<Integer> pair_table) {
+  private void read_in_bases(int[] pair_table) {
     if (debug) System.out.println("read_in_bases");
 
     int i, npairs;
 
     // Set up an origin.
-    bases.add(new Base());
-    bases.get(0).setMate(0);
-    bases.get(0).setExtracted(false);
-    bases.get(0).setX(ANUM);
-    bases.get(0).setY(ANUM);
+    mates[0] = 0;
+    extracted[0] = false;
+    baseX[0] = ANUM;
+    baseY[0] = ANUM;
 
     for (npairs = 0, i = 1; i <= nbase; i++) {
-      bases.add(new Base());
-      bases.get(i).setExtracted(false);
-      bases.get(i).setX(ANUM);
-      bases.get(i).setY(ANUM);
-      bases.get(i).setMate(pair_table.get(i));
-      if ((int) pair_table.get(i) > i) npairs++;
+      extracted[i] = false;
+      baseX[i] = ANUM;
+      baseY[i] = ANUM;
+      mates[i] = pair_table[i - 1] + 1;
+      if (mates[i] > i) npairs++;
     }
     // must have at least 1 pair to avoid segfault
     if (npairs == 0) {
-      bases.get(1).setMate(nbase);
-      bases.get(nbase).setMate(1);
+      mates[1] = nbase;
+      mates[nbase] = 1;
     }
   }
 
@@ -208,35 +215,34 @@ public class NAView {
     if (debug) System.out.println("find_regions");
     int i, mate, nb1;
     nb1 = nbase + 1;
-    ArrayList<Boolean> mark = new ArrayList<Boolean>(nb1);
-    for (i = 0; i < nb1; i++) mark.add(false);
+    boolean[] mark = new boolean[nb1];
     nregion = 0;
     for (i = 0; i <= nbase; i++) {
-      if ((mate = bases.get(i).getMate()) != 0 && !mark.get(i)) {
-        regions.get(nregion).setStart1(i);
-        regions.get(nregion).setEnd2(mate);
-        mark.set(i, true);
-        mark.set(mate, true);
-        bases.get(i).setRegion(regions.get(nregion));
-        bases.get(mate).setRegion(regions.get(nregion));
-        for (i++, mate--; i < mate && bases.get(i).getMate() == mate; i++, mate--) {
-          mark.set(mate, true);
-          mark.set(i, true);
-          bases.get(i).setRegion(regions.get(nregion));
-          bases.get(mate).setRegion(regions.get(nregion));
+      if ((mate = mates[i]) != 0 && !mark[i]) {
+        regionStart1[nregion] = i;
+        regionEnd2[nregion] = mate;
+        mark[i] = true;
+        mark[mate] = true;
+        baseRegion[i] = nregion;
+        baseRegion[mate] = nregion;
+        for (i++, mate--; i < mate && mates[i] == mate; i++, mate--) {
+          mark[mate] = true;
+          mark[i] = true;
+          baseRegion[i] = nregion;
+          baseRegion[mate] = nregion;
         }
-        regions.get(nregion).setEnd1(--i);
-        regions.get(nregion).setStart2(mate + 1);
+        regionEnd1[nregion] = --i;
+        regionStart2[nregion] = mate + 1;
         if (debug) {
           if (nregion == 0) System.out.printf("\nRegions are:\n");
           System.out.printf(
               "Region %d is %d-%d and %d-%d with gap of %d.\n",
               nregion + 1,
-              regions.get(nregion).getStart1(),
-              regions.get(nregion).getEnd1(),
-              regions.get(nregion).getStart2(),
-              regions.get(nregion).getEnd2(),
-              regions.get(nregion).getStart2() - regions.get(nregion).getEnd1() + 1);
+              regionStart1[nregion],
+              regionEnd1[nregion],
+              regionStart2[nregion],
+              regionEnd2[nregion],
+              regionStart2[nregion] - regionEnd1[nregion] + 1);
         }
         nregion++;
       }
@@ -244,93 +250,132 @@ public class NAView {
   }
 
   /**
-   * Starting at residue ibase, recursively constructs the loop containing said base and all deeper
-   * bases.
+   * Starting at residue ibase, constructs the loop containing said base and all deeper bases. Inner
+   * loops are constructed depth-first using an explicit stack, so that the nesting depth of the
+   * structure is not limited by the size of the thread stack.
    *
    * @throws ExceptionNAViewAlgorithm
    */
   private Loop construct_loop(int ibase) throws ExceptionNAViewAlgorithm {
     if (debug) System.out.println("construct_loop");
-    int i, mate;
-    Loop retloop = new Loop(), lp = new Loop();
-    Connection cp = new Connection();
-    Region rp = new Region();
-    Radloop rlp = new Radloop();
-    retloop = loops.get(loop_count++);
-    retloop.setNconnection(0);
-    // System.out.println(""+ibase+" "+nbase);
-    // ArrayList<Connection> a = new ArrayList<Connection>(nbase + 1);
-    // retloop.setConnections(a);
-    //		for (int index = 0; index < nbase + 1; index++)
-    //			retloop.getConnections().add(new Connection());
-    // for (int index = 0; index < nbase + 1; index++)
-    //	retloop.addConnection(index,new Connection());
+    int i, mate, rp, inner;
+    boolean descended;
+    LoopFrame frame;
+    Loop constructed = null;
+    ArrayDeque<LoopFrame> stack = new ArrayDeque<LoopFrame>();
+    stack.push(new LoopFrame(new_loop(), ibase));
+    while (!stack.isEmpty()) {
+      frame = stack.peek();
+      i = frame.i;
+      if (constructed != null) {
+        // Back from the loop closed by the region starting at base i
+        connect_loops(frame.loop, constructed, i, baseRegion[i]);
+        constructed = null;
+        i = mates[i];
+        if (++i > nbase) i = 0;
+        if (i == frame.ibase) {
+          stack.pop();
+          constructed = frame.loop;
+          continue;
+        }
+      }
+      descended = false;
+      do {
+        if ((mate = mates[i]) != 0) {
+          rp = baseRegion[i];
+          if (!extracted[regionStart1[rp]]) {
+            if (i == regionStart1[rp]) {
+              extracted[regionStart1[rp]] = true;
+              extracted[regionEnd1[rp]] = true;
+              extracted[regionStart2[rp]] = true;
+              extracted[regionEnd2[rp]] = true;
+              inner = regionEnd1[rp] < nbase ? regionEnd1[rp] + 1 : 0;
+            } else if (i == regionStart2[rp]) {
+              extracted[regionStart2[rp]] = true;
+              extracted[regionEnd2[rp]] = true;
+              extracted[regionStart1[rp]] = true;
+              extracted[regionEnd1[rp]] = true;
+              inner = regionEnd2[rp] < nbase ? regionEnd2[rp] + 1 : 0;
+            } else {
+              throw new ExceptionNAViewAlgorithm(
+                  "naview:Error detected in construct_loop. i = "
+                      + i
+                      + " not found in region table.\n");
+            }
+            frame.i = i;
+            stack.push(new LoopFrame(new_loop(), inner));
+            descended = true;
+            break;
+          }
+          i = mate;
+        }
+        if (++i > nbase) i = 0;
+      } while (i != frame.ibase);
+      if (!descended) {
+        stack.pop();
+        constructed = frame.loop;
+      }
+    }
+    return constructed;
+  }
+
+  /** Allocates the next loop in construction order. */
+  private Loop new_loop() {
+    Loop retloop = new Loop();
+    Radloop rlp;
+    loops.add(retloop);
+    loop_count++;
     retloop.setDepth(0);
     retloop.setNumber(loop_count);
     retloop.setRadius(0.0);
     for (rlp = rlphead; rlp != null; rlp = rlp.getNext())
       if (rlp.getLoopnumber() == loop_count) retloop.setRadius(rlp.getRadius());
-    i = ibase;
-    do {
-      if ((mate = bases.get(i).getMate()) != 0) {
-        rp = bases.get(i).getRegion();
-        if (!bases.get(rp.getStart1()).isExtracted()) {
-          if (i == rp.getStart1()) {
-            bases.get(rp.getStart1()).setExtracted(true);
-            bases.get(rp.getEnd1()).setExtracted(true);
-            bases.get(rp.getStart2()).setExtracted(true);
-            bases.get(rp.getEnd2()).setExtracted(true);
-            lp = construct_loop(rp.getEnd1() < nbase ? rp.getEnd1() + 1 : 0);
-          } else if (i == rp.getStart2()) {
-            bases.get(rp.getStart2()).setExtracted(true);
-            bases.get(rp.getEnd2()).setExtracted(true);
-            bases.get(rp.getStart1()).setExtracted(true);
-            bases.get(rp.getEnd1()).setExtracted(true);
-            lp = construct_loop(rp.getEnd2() < nbase ? rp.getEnd2() + 1 : 0);
-          } else {
-            throw new ExceptionNAViewAlgorithm(
-                "naview:Error detected in construct_loop. i = "
-                    + i
-                    + " not found in region table.\n");
-          }
-          retloop.setNconnection(retloop.getNconnection() + 1);
-          cp = new Connection();
-          retloop.setConnection(retloop.getNconnection() - 1, cp);
-          retloop.setConnection(retloop.getNconnection(), null);
-          cp.setLoop(lp);
-          cp.setRegion(rp);
-          if (i == rp.getStart1()) {
-            cp.setStart(rp.getStart1());
-            cp.setEnd(rp.getEnd2());
-          } else {
-            cp.setStart(rp.getStart2());
-            cp.setEnd(rp.getEnd1());
-          }
-          cp.setExtruded(false);
-          cp.setBroken(false);
-          lp.setNconnection(lp.getNconnection() + 1);
-          cp = new Connection();
-          lp.setConnection(lp.getNconnection() - 1, cp);
-          lp.setConnection(lp.getNconnection(), null);
-          cp.setLoop(retloop);
-          cp.setRegion(rp);
-          if (i == rp.getStart1()) {
-            cp.setStart(rp.getStart2());
-            cp.setEnd(rp.getEnd1());
-          } else {
-            cp.setStart(rp.getStart1());
-            cp.setEnd(rp.getEnd2());
-          }
-          cp.setExtruded(false);
-          cp.setBroken(false);
-        }
-        i = mate;
-      }
-      if (++i > nbase) i = 0;
-    } while (i != ibase);
     return retloop;
   }
 
+  /** Links the outer loop retloop and the inner loop lp through region rp, entered at base i. */
+  private void connect_loops(Loop retloop, Loop lp, int i, int rp) {
+    Connection cp = new Connection();
+    retloop.addConnection(cp);
+    cp.setLoop(lp);
+    cp.setRegion(rp);
+    if (i == regionStart1[rp]) {
+      cp.setStart(regionStart1[rp]);
+      cp.setEnd(regionEnd2[rp]);
+    } else {
+      cp.setStart(regionStart2[rp]);
+      cp.setEnd(regionEnd1[rp]);
+    }
+    cp.setExtruded(false);
+    cp.setBroken(false);
+    cp = new Connection();
+    lp.addConnection(cp);
+    cp.setLoop(retloop);
+    cp.setRegion(rp);
+    if (i == regionStart1[rp]) {
+      cp.setStart(regionStart2[rp]);
+      cp.setEnd(regionEnd1[rp]);
+    } else {
+      cp.setStart(regionStart1[rp]);
+      cp.setEnd(regionEnd2[rp]);
+    }
+    cp.setExtruded(false);
+    cp.setBroken(false);
+  }
+
+  /** A loop under construction and the base at which its scan stopped to descend. */
+  private static class LoopFrame {
+    private final Loop loop;
+    private final int ibase;
+    private int i;
+
+    private LoopFrame(Loop loop, int ibase) {
+      this.loop = loop;
+      this.ibase = ibase;
+      this.i = ibase;
+    }
+  }
+
   /** Displays all the loops. */
   private void dump_loops() {
     System.out.println("dump_loops");
@@ -344,7 +389,7 @@ public class NAView {
       System.out.printf("Loop %d has %d connections:\n", il + 1, lp.getNconnection());
       for (int i = 0; (cp = lp.getConnection(i)) != null; i++) {
         ilp = (loops.indexOf(cp.getLoop())) + 1;
-        irp = (regions.indexOf(cp.getRegion())) + 1;
+        irp = cp.getRegion() + 1;
         System.out.printf("  Loop %d Region %d (%d-%d)\n", ilp, irp, cp.getStart(), cp.getEnd());
       }
     }
@@ -353,7 +398,7 @@ public class NAView {
   /** Find node of greatest branching that is deepest. */
   private void find_central_loop() {
     if (debug) System.out.println("find_central_loop");
-    Loop lp = new Loop();
+    Loop lp;
     int maxconn, maxdepth, i;
 
     determine_depths();
@@ -372,59 +417,96 @@ public class NAView {
     }
   }
 
-  /** Determine the depth of all loops. */
+  /**
+   * Determine the depth of all loops. Depth is defined as the minimum distance to a leaf loop where
+   * a leaf loop is one that has only one or no connections. As loops form a tree, all depths are
+   * found by a single breadth-first search started from every leaf.
+   */
   private void determine_depths() {
     if (debug) System.out.println("determine_depths");
-    Loop lp = new Loop();
-    int i, j;
+    Loop lp, next;
+    Connection cp;
+    int i;
+    ArrayDeque<Loop> queue = new ArrayDeque<Loop>();
 
     for (i = 0; i < loop_count; i++) {
       lp = loops.get(i);
-      for (j = 0; j < loop_count; j++) loops.get(j).setMark(false);
-      lp.setDepth(depth(lp));
+      if (lp.getNconnection() <= 1) {
+        lp.setDepth(0);
+        queue.add(lp);
+      } else {
+        lp.setDepth(-1);
+      }
+    }
+    while (!queue.isEmpty()) {
+      lp = queue.poll();
+      for (i = 0; (cp = lp.getConnection(i)) != null; i++) {
+        next = cp.getLoop();
+        if (next.getDepth() < 0) {
+          next.setDepth(lp.getDepth() + 1);
+          queue.add(next);
+        }
+      }
     }
   }
 
   /**
-   * Determines the depth of loop, lp. Depth is defined as the minimum distance to a leaf loop where
-   * a leaf loop is one that has only one or no connections.
+   * This is the workhorse of the display program. The algorithm is based on processing individual
+   * loops, visited depth-first from the root loop using an explicit stack. Each base pairing region
+   * is displayed using the direction given by the circle diagram, and the connections between the
+   * regions is drawn by equally spaced points. The radius of the loop is set to minimize the square
+   * error for lengths between sequential bases in the loops. The "correct" length for base links is
+   * 1. If the least squares fitting of the radius results in loops being less than 1/2 unit apart,
+   * then that segment is extruded.
+   *
+   * <p>The variable, anchor_connection, gives the connection to the loop processed at the previous
+   * level.
+   *
+   * @throws ExceptionNAViewAlgorithm
    */
-  private int depth(Loop lp) {
-    if (debug) System.out.println("depth");
-    int count, ret, d;
-
-    if (lp.getNconnection() <= 1) return 0;
-    if (lp.isMark()) return -1;
-    lp.setMark(true);
-    count = 0;
-    ret = 0;
-    for (int i = 0; lp.getConnection(i) != null; i++) {
-      d = depth(lp.getConnection(i).getLoop());
-      if (d >= 0) {
-        if (++count == 1) ret = d;
-        else if (ret > d) ret = d;
+  private void traverse_loop(Loop lp, Connection anchor_connection)
+      throws ExceptionNAViewAlgorithm {
+    if (debug) System.out.println("  traverse_loop");
+    TraversalFrame frame;
+    Connection cp;
+    ArrayDeque<TraversalFrame> stack = new ArrayDeque<TraversalFrame>();
+    stack.push(new TraversalFrame(lp, layout_loop(lp, anchor_connection)));
+    while (!stack.isEmpty()) {
+      frame = stack.peek();
+      if (frame.ic == frame.icroot) frame.ic++;
+      if (frame.ic < frame.loop.getNconnection()) {
+        cp = frame.loop.getConnection(frame.ic++);
+        generate_region(cp);
+        stack.push(new TraversalFrame(cp.getLoop(), layout_loop(cp.getLoop(), cp)));
+      } else {
+        stack.pop();
+        determine_loop_center(frame.loop);
       }
     }
-    lp.setMark(false);
-    return ret + 1;
+  }
+
+  /** A laid out loop and the next of its connections to descend into. */
+  private static class TraversalFrame {
+    private final Loop loop;
+    private final int icroot;
+    private int ic;
+
+    private TraversalFrame(Loop loop, int icroot) {
+      this.loop = loop;
+      this.icroot = icroot;
+      this.ic = 0;
+    }
   }
 
   /**
-   * This is the workhorse of the display program. The algorithm is recursive based on processing
-   * individual loops. Each base pairing region is displayed using the direction given by the circle
-   * diagram, and the connections between the regions is drawn by equally spaced points. The radius
-   * of the loop is set to minimize the square error for lengths between sequential bases in the
-   * loops. The "correct" length for base links is 1. If the least squares fitting of the radius
-   * results in loops being less than 1/2 unit apart, then that segment is extruded.
-   *
-   * <p>The variable, anchor_connection, gives the connection to the loop processed in an previous
-   * level of recursion.
+   * Places the connections and unpaired bases of loop lp around its circle.
    *
+   * @return the index of the connection anchoring lp to the previous level, or -1 for the root
    * @throws ExceptionNAViewAlgorithm
    */
-  private void traverse_loop(Loop lp, Connection anchor_connection)
+  private int layout_loop(Loop lp, Connection anchor_connection)
       throws ExceptionNAViewAlgorithm {
-    if (debug) System.out.println("  traverse_loop");
+    if (debug) System.out.println("  layout_loop");
     double xs, ys, xe, ye, xn, yn, angleinc, r;
     double radius, xc, yc, xo, yo, astart, aend, a;
     Connection cp, cpnext, acp, cpprev;
@@ -436,7 +518,7 @@ public class NAView {
     double midx, midy, nrx, nry, mx, my, vx, vy, dotmv, nmidx, nmidy;
     int icstart1, icup, icdown, icnext, direction;
     double dan, dx, dy, rr;
-    double cpx, cpy, cpnextx, cpnexty, cnx, cny, rcn, rc, lnx, lny, rl, ac, acn, sx, sy, dcp;
+    double cpx, cpy, cpnextx, cpnexty, cnx, cny, rcn, rc, lnx, lny, rl, ac, acn, dcp;
     int imaxloop = 0;
 
     angleinc = 2 * Math.PI / (nbase + 1);
@@ -471,8 +553,8 @@ public class NAView {
       radius = lp.getRadius() / RADIUS_REDUCTION_FACTOR;
       if (anchor_connection == null) xc = yc = 0.0;
       else {
-        xo = (bases.get(acp.getStart()).getX() + bases.get(acp.getEnd()).getX()) / 2.0;
-        yo = (bases.get(acp.getStart()).getY() + bases.get(acp.getEnd()).getY()) / 2.0;
+        xo = (baseX[acp.getStart()] + baseX[acp.getEnd()]) / 2.0;
+        yo = (baseY[acp.getStart()] + baseY[acp.getEnd()]) / 2.0;
         xc = xo - radius * acp.getXrad();
         yc = yo - radius * acp.getYrad();
       }
@@ -571,10 +653,10 @@ public class NAView {
               if (direction == 0) {
                 astart = cp.getAngle() - Math.asin(1.0 / 2.0 / radius);
                 aend = cp.getAngle() + Math.asin(1.0 / 2.0 / radius);
-                bases.get(cp.getStart()).setX(xc + radius * Math.cos(astart));
-                bases.get(cp.getStart()).setY(yc + radius * Math.sin(astart));
-                bases.get(cp.getEnd()).setX(xc + radius * Math.cos(aend));
-                bases.get(cp.getEnd()).setY(yc + radius * Math.sin(aend));
+                baseX[cp.getStart()] = xc + radius * Math.cos(astart);
+                baseY[cp.getStart()] = yc + radius * Math.sin(astart);
+                baseX[cp.getEnd()] = xc + radius * Math.cos(aend);
+                baseY[cp.getEnd()] = yc + radius * Math.sin(aend);
               } else if (direction < 0) {
                 j = ic + 1;
                 if (j >= lp.getNconnection()) j = 0;
@@ -596,10 +678,10 @@ public class NAView {
                 } else {
                   rl = 1.0;
                 }
-                bases.get(cp.getEnd()).setX(bases.get(cpnext.getStart()).getX() + rl * lnx);
-                bases.get(cp.getEnd()).setY(bases.get(cpnext.getStart()).getY() + rl * lny);
-                bases.get(cp.getStart()).setX(bases.get(cp.getEnd()).getX() + cpy);
-                bases.get(cp.getStart()).setY(bases.get(cp.getEnd()).getY() - cpx);
+                baseX[cp.getEnd()] = baseX[cpnext.getStart()] + rl * lnx;
+                baseY[cp.getEnd()] = baseY[cpnext.getStart()] + rl * lny;
+                baseX[cp.getStart()] = baseX[cp.getEnd()] + cpy;
+                baseY[cp.getStart()] = baseY[cp.getEnd()] - cpx;
               } else {
                 j = ic - 1;
                 if (j < 0) j = lp.getNconnection() - 1;
@@ -621,10 +703,10 @@ public class NAView {
                 } else {
                   rl = 1.0;
                 }
-                bases.get(cpnext.getStart()).setX(bases.get(cp.getEnd()).getX() + rl * lnx);
-                bases.get(cpnext.getStart()).setY(bases.get(cp.getEnd()).getY() + rl * lny);
-                bases.get(cpnext.getEnd()).setX(bases.get(cpnext.getStart()).getX() - cpnexty);
-                bases.get(cpnext.getEnd()).setY(bases.get(cpnext.getStart()).getY() + cpnextx);
+                baseX[cpnext.getStart()] = baseX[cp.getEnd()] + rl * lnx;
+                baseY[cpnext.getStart()] = baseY[cp.getEnd()] + rl * lny;
+                baseX[cpnext.getEnd()] = baseX[cpnext.getStart()] - cpnexty;
+                baseY[cpnext.getEnd()] = baseY[cpnext.getStart()] + cpnextx;
               }
             }
           }
@@ -658,10 +740,10 @@ public class NAView {
 
           cp = lp.getConnection(icstart);
           cpnext = lp.getConnection(icend);
-          dx = bases.get(cpnext.getEnd()).getX() - bases.get(cp.getStart()).getX();
-          dy = bases.get(cpnext.getEnd()).getY() - bases.get(cp.getStart()).getY();
-          midx = bases.get(cp.getStart()).getX() + dx / 2.0;
-          midy = bases.get(cp.getStart()).getY() + dy / 2.0;
+          dx = baseX[cpnext.getEnd()] - baseX[cp.getStart()];
+          dy = baseY[cpnext.getEnd()] - baseY[cp.getStart()];
+          midx = baseX[cp.getStart()] + dx / 2.0;
+          midy = baseY[cp.getStart()] + dy / 2.0;
           rr = Math.sqrt(dx * dx + dy * dy);
           mx = dx / rr;
           my = dy / rr;
@@ -680,12 +762,12 @@ public class NAView {
           // Determine which side of the bisector the center should
           // be.
 
-          dx = bases.get(cp.getStart()).getX() - xc;
-          dy = bases.get(cp.getStart()).getY() - yc;
+          dx = baseX[cp.getStart()] - xc;
+          dy = baseY[cp.getStart()] - yc;
           ac = Math.atan2(dy, dx);
           if (ac < 0.0) ac += 2 * Math.PI;
-          dx = bases.get(cpnext.getEnd()).getX() - xc;
-          dy = bases.get(cpnext.getEnd()).getY() - yc;
+          dx = baseX[cpnext.getEnd()] - xc;
+          dy = baseY[cpnext.getEnd()] - yc;
           acn = Math.atan2(dy, dx);
           if (acn < 0.0) acn += 2 * Math.PI;
           if (acn < ac) acn += 2 * Math.PI;
@@ -700,11 +782,11 @@ public class NAView {
             for (ic = icstart; ; ) {
               cp = lp.getConnection(ic);
               i = cp.getStart();
-              bases.get(i).setX(bases.get(i).getX() + nmidx - midx);
-              bases.get(i).setY(bases.get(i).getY() + nmidy - midy);
+              baseX[i] = baseX[i] + nmidx - midx;
+              baseY[i] = baseY[i] + nmidy - midy;
               i = cp.getEnd();
-              bases.get(i).setX(bases.get(i).getX() + nmidx - midx);
-              bases.get(i).setY(bases.get(i).getY() + nmidy - midy);
+              baseX[i] = baseX[i] + nmidx - midx;
+              baseY[i] = baseY[i] + nmidy - midy;
               if (ic == icend) break;
               if (++ic >= lp.getNconnection()) ic = 0;
             }
@@ -718,13 +800,13 @@ public class NAView {
         j = ic + 1;
         if (j >= lp.getNconnection()) j = 0;
         cpnext = lp.getConnection(j);
-        dx = bases.get(cp.getEnd()).getX() - xc;
-        dy = bases.get(cp.getEnd()).getY() - yc;
+        dx = baseX[cp.getEnd()] - xc;
+        dy = baseY[cp.getEnd()] - yc;
         rc = Math.sqrt(dx * dx + dy * dy);
         ac = Math.atan2(dy, dx);
         if (ac < 0.0) ac += 2 * Math.PI;
-        dx = bases.get(cpnext.getStart()).getX() - xc;
-        dy = bases.get(cpnext.getStart()).getY() - yc;
+        dx = baseX[cpnext.getStart()] - xc;
+        dy = baseY[cpnext.getStart()] - yc;
         rcn = Math.sqrt(dx * dx + dy * dy);
         acn = Math.atan2(dy, dx);
         if (acn < 0.0) acn += 2 * Math.PI;
@@ -752,20 +834,22 @@ public class NAView {
             if (i > nbase) i -= nbase + 1;
             a = ac + j * angleinc;
             rr = rc + (rcn - rc) * (a - ac) / dan;
-            bases.get(i).setX(xc + rr * Math.cos(a));
-            bases.get(i).setY(yc + rr * Math.sin(a));
+            baseX[i] = xc + rr * Math.cos(a);
+            baseY[i] = yc + rr * Math.sin(a);
           }
         }
       }
       break;
     }
-    for (ic = 0; ic < lp.getNconnection(); ic++) {
-      if (icroot != ic) {
-        cp = lp.getConnection(ic);
-        generate_region(cp);
-        traverse_loop(cp.getLoop(), cp);
-      }
-    }
+    return icroot;
+  }
+
+  /** Sets the center of loop lp to the mean position of its bases. */
+  private void determine_loop_center(Loop lp) {
+    Connection cp, cpnext;
+    int j, n, ic;
+    double sx, sy;
+
     n = 0;
     sx = 0.0;
     sy = 0.0;
@@ -775,14 +859,14 @@ public class NAView {
       cp = lp.getConnection(ic);
       cpnext = lp.getConnection(j);
       n += 2;
-      sx += bases.get(cp.getStart()).getX() + bases.get(cp.getEnd()).getX();
-      sy += bases.get(cp.getStart()).getY() + bases.get(cp.getEnd()).getY();
+      sx += baseX[cp.getStart()] + baseX[cp.getEnd()];
+      sy += baseY[cp.getStart()] + baseY[cp.getEnd()];
       if (!cp.isExtruded()) {
         for (j = cp.getEnd() + 1; j != cpnext.getStart(); j++) {
           if (j > nbase) j -= nbase + 1;
           n++;
-          sx += bases.get(j).getX();
-          sy += bases.get(j).getY();
+          sx += baseX[j];
+          sy += baseY[j];
         }
       }
     }
@@ -803,7 +887,7 @@ public class NAView {
     if (debug) System.out.println("  Determine_radius");
     double mindit, ci, dt, sumn, sumd, radius, dit;
     int i, j, end, start, imindit = 0;
-    Connection cp = new Connection(), cpnext = new Connection();
+    Connection cp, cpnext;
     double rt2_2 = 0.7071068;
 
     do {
@@ -900,30 +984,29 @@ public class NAView {
    */
   private void generate_region(Connection cp) throws ExceptionNAViewAlgorithm {
     if (debug) System.out.println("  Generate_region");
-    int l, start, end, i, mate;
-    Region rp;
+    int l, start, end, i, mate, rp;
 
     rp = cp.getRegion();
     l = 0;
-    if (cp.getStart() == rp.getStart1()) {
-      start = rp.getStart1();
-      end = rp.getEnd1();
+    if (cp.getStart() == regionStart1[rp]) {
+      start = regionStart1[rp];
+      end = regionEnd1[rp];
     } else {
-      start = rp.getStart2();
-      end = rp.getEnd2();
+      start = regionStart2[rp];
+      end = regionEnd2[rp];
     }
-    if (bases.get(cp.getStart()).getX() > ANUM - 100.0
-        || bases.get(cp.getEnd()).getX() > ANUM - 100.0) {
+    if (baseX[cp.getStart()] > ANUM - 100.0
+        || baseX[cp.getEnd()] > ANUM - 100.0) {
       throw new ExceptionNAViewAlgorithm(
           "Bad region passed to generate_region. Coordinates not defined.");
     }
     for (i = start + 1; i <= end; i++) {
       l++;
-      bases.get(i).setX(bases.get(cp.getStart()).getX() + HELIX_FACTOR * l * cp.getXrad());
-      bases.get(i).setY(bases.get(cp.getStart()).getY() + HELIX_FACTOR * l * cp.getYrad());
-      mate = bases.get(i).getMate();
-      bases.get(mate).setX(bases.get(cp.getEnd()).getX() + HELIX_FACTOR * l * cp.getXrad());
-      bases.get(mate).setY(bases.get(cp.getEnd()).getY() + HELIX_FACTOR * l * cp.getYrad());
+      baseX[i] = baseX[cp.getStart()] + HELIX_FACTOR * l * cp.getXrad();
+      baseY[i] = baseY[cp.getStart()] + HELIX_FACTOR * l * cp.getYrad();
+      mate = mates[i];
+      baseX[mate] = baseX[cp.getEnd()] + HELIX_FACTOR * l * cp.getXrad();
+      baseY[mate] = baseY[cp.getEnd()] + HELIX_FACTOR * l * cp.getYrad();
     }
   }
 
@@ -939,8 +1022,8 @@ public class NAView {
     double dx, dy, rr, midx, midy, xn, yn, nrx, nry, mx, my, a;
     int l, j, i;
 
-    dx = bases.get(end).getX() - bases.get(start).getX();
-    dy = bases.get(end).getY() - bases.get(start).getY();
+    dx = baseX[end] - baseX[start];
+    dy = baseY[end] - baseY[start];
     rr = Math.sqrt(dx * dx + dy * dy);
     l = end - start;
     if (l < 0) l += nbase + 1;
@@ -950,28 +1033,28 @@ public class NAView {
       for (j = 1; j < l; j++) {
         i = start + j;
         if (i > nbase) i -= nbase + 1;
-        bases.get(i).setX(bases.get(start).getX() + dx * (double) j / (double) l);
-        bases.get(i).setY(bases.get(start).getY() + dy * (double) j / (double) l);
+        baseX[i] = baseX[start] + dx * (double) j / (double) l;
+        baseY[i] = baseY[start] + dy * (double) j / (double) l;
       }
     } else {
       find_center_for_arc((l - 1), rr);
       dx /= rr;
       dy /= rr;
-      midx = bases.get(start).getX() + dx * rr / 2.0;
-      midy = bases.get(start).getY() + dy * rr / 2.0;
+      midx = baseX[start] + dx * rr / 2.0;
+      midy = baseY[start] + dy * rr / 2.0;
       xn = dy;
       yn = -dx;
       nrx = midx + _h * xn;
       nry = midy + _h * yn;
-      mx = bases.get(start).getX() - nrx;
-      my = bases.get(start).getY() - nry;
+      mx = baseX[start] - nrx;
+      my = baseY[start] - nry;
       rr = Math.sqrt(mx * mx + my * my);
       a = Math.atan2(my, mx);
       for (j = 1; j < l; j++) {
         i = start + j;
         if (i > nbase) i -= nbase + 1;
-        bases.get(i).setX(nrx + rr * Math.cos(a + j * angleinc));
-        bases.get(i).setY(nry + rr * Math.sin(a + j * angleinc));
+        baseX[i] = nrx + rr * Math.cos(a + j * angleinc);
+        baseY[i] = nry + rr * Math.sin(a + j * angleinc);
       }
     }
   }
@@ -1004,8 +1087,8 @@ public class NAView {
     }
     if (n == 2) construct_circle_segment(start, end);
     else {
-      dx = bases.get(end).getX() - bases.get(start).getX();
-      dy = bases.get(end).getY() - bases.get(start).getY();
+      dx = baseX[end] - baseX[start];
+      dy = baseY[end] - baseY[start];
       rr = Math.sqrt(dx * dx + dy * dy);
       dx /= rr;
       dy /= rr;
@@ -1014,10 +1097,10 @@ public class NAView {
         if (nstart > nbase) nstart -= nbase + 1;
         nend = end - 1;
         if (nend < 0) nend += nbase + 1;
-        bases.get(nstart).setX(bases.get(start).getX() + 0.5 * dx);
-        bases.get(nstart).setY(bases.get(start).getY() + 0.5 * dy);
-        bases.get(nend).setX(bases.get(end).getX() - 0.5 * dx);
-        bases.get(nend).setY(bases.get(end).getY() - 0.5 * dy);
+        baseX[nstart] = baseX[start] + 0.5 * dx;
+        baseY[nstart] = baseY[start] + 0.5 * dy;
+        baseX[nend] = baseX[end] - 0.5 * dx;
+        baseY[nend] = baseY[end] - 0.5 * dy;
         start = nstart;
         end = nend;
       }
@@ -1026,8 +1109,8 @@ public class NAView {
         construct_circle_segment(start, end);
         nstart = start + 1;
         if (nstart > nbase) nstart -= nbase + 1;
-        dx = bases.get(nstart).getX() - bases.get(start).getX();
-        dy = bases.get(nstart).getY() - bases.get(start).getY();
+        dx = baseX[nstart] - baseX[start];
+        dy = baseY[nstart] - baseY[start];
         a1 = Math.atan2(dy, dx);
         if (a1 < 0.0) a1 += 2 * Math.PI;
         dac = a1 - astart;
@@ -1035,8 +1118,8 @@ public class NAView {
         if (dac > Math.PI) collision = true;
         nend = end - 1;
         if (nend < 0) nend += nbase + 1;
-        dx = bases.get(nend).getX() - bases.get(end).getX();
-        dy = bases.get(nend).getY() - bases.get(end).getY();
+        dx = baseX[nend] - baseX[end];
+        dy = baseY[nend] - baseY[end];
         a2 = Math.atan2(dy, dx);
         if (a2 < 0.0) a2 += 2 * Math.PI;
         dac = aend1 - a2;
@@ -1044,12 +1127,12 @@ public class NAView {
         if (dac > Math.PI) collision = true;
         if (collision) {
           ac = minf2(aave, astart + 0.5);
-          bases.get(nstart).setX(bases.get(start).getX() + Math.cos(ac));
-          bases.get(nstart).setY(bases.get(start).getY() + Math.sin(ac));
+          baseX[nstart] = baseX[start] + Math.cos(ac);
+          baseY[nstart] = baseY[start] + Math.sin(ac);
           start = nstart;
           ac = maxf2(aave, aend2 - 0.5);
-          bases.get(nend).setX(bases.get(end).getX() + Math.cos(ac));
-          bases.get(nend).setY(bases.get(end).getY() + Math.sin(ac));
+          baseX[nend] = baseX[end] + Math.cos(ac);
+          baseY[nend] = baseY[end] + Math.sin(ac);
           end = nend;
           n -= 2;
         }
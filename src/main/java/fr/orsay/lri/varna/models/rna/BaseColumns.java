@@ -0,0 +1,46 @@
+package fr.orsay.lri.varna.models.rna;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Coordinates, loop centers and partner indices of bases, stored column-wise in primitive arrays.
+ * Each {@link ModeleBase} reads and writes its values at its own slot of a store, and {@link
+ * RNA#columns()} gathers the bases of an RNA into a single store, in order, so that bulk layout and
+ * export loops run over contiguous arrays instead of going through every base object.
+ */
+final class BaseColumns implements Serializable {
+  private static final long serialVersionUID = -3183406575939834212L;
+
+  final double[] _x;
+  final double[] _y;
+  final double[] _centerX;
+  final double[] _centerY;
+
+  /** The index of the partner of each base in the secondary structure, or -1. */
+  final int[] _partners;
+
+  BaseColumns(int size) {
+    _x = new double[size];
+    _y = new double[size];
+    _centerX = new double[size];
+    _centerY = new double[size];
+    _partners = new int[size];
+    Arrays.fill(_partners, -1);
+  }
+
+  /** Whether the bases are stored here, each one at its index in the list. */
+  boolean holds(ArrayList<ModeleBase> bases) {
+    if (bases.size() > _x.length) {
+      return false;
+    }
+    for (int i = 0; i < bases.size(); i++) {
+      ModeleBase mb = bases.get(i);
+      if (mb._columns != this || mb._slot != i) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
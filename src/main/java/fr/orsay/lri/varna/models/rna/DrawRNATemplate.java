@@ -21,6 +21,7 @@ import fr.orsay.lri.varna.models.templates.RNATemplate.RNATemplateElement.EdgeEn
 import fr.orsay.lri.varna.models.templates.RNATemplate.RNATemplateHelix;
 import fr.orsay.lri.varna.models.templates.RNATemplate.RNATemplateUnpairedSequence;
 import fr.orsay.lri.varna.models.templates.RNATemplateAlign;
+import fr.orsay.lri.varna.models.templates.RNATemplateCache;
 import fr.orsay.lri.varna.models.templates.RNATemplateDrawingAlgorithmException;
 import fr.orsay.lri.varna.models.templates.RNATemplateMapping;
 import fr.orsay.lri.varna.models.treealign.Tree;
@@ -119,7 +120,7 @@ public class DrawRNATemplate {
     } else if (helixLengthAdjustmentMethod == DrawRNATemplateMethod.HELIXTRANSLATE) {
       try {
         // Now we need to propagate this helices translations
-        Tree<RNANodeValueTemplate> templateAsTree = template.toTree();
+        Tree<RNANodeValueTemplate> templateAsTree = RNATemplateCache.getTree(template);
         translateVectors = computeHelixTranslations(templateAsTree, mapping, straightBulges);
 
       } catch (ExceptionInvalidRNATemplate e) {
@@ -24,7 +24,11 @@ import fr.orsay.lri.varna.utils.XMLUtils;
 import java.awt.Color;
 import java.awt.Font;
 import java.io.Serializable;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
 import javax.xml.transform.sax.TransformerHandler;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.AttributesImpl;
@@ -33,6 +37,10 @@ import org.xml.sax.helpers.AttributesImpl;
  * The display Style of a rna base with the base name font, the ouline, innerline, number and name
  * color
  *
+ * <p>Bases hold shared styles, obtained through {@link #intern()}, so that bases drawn alike use a
+ * single style object. A shared style cannot be modified: {@link ModeleBase#getStyleBase()} first
+ * gives the base its own copy, which can be.
+ *
  * @author darty
  */
 public class ModelBaseStyle implements Cloneable, Serializable {
@@ -44,6 +52,15 @@ public class ModelBaseStyle implements Cloneable, Serializable {
 
   private boolean _selected;
 
+  /** Whether this style is the interned one, used by bases, which must not be modified. */
+  private boolean _shared = false;
+
+  private static final Map<ModelBaseStyle, WeakReference<ModelBaseStyle>> INTERNED =
+      new WeakHashMap<ModelBaseStyle, WeakReference<ModelBaseStyle>>();
+
+  /** The shared style with default colors. */
+  public static final ModelBaseStyle DEFAULT = new ModelBaseStyle().intern();
+
   public static String XML_ELEMENT_NAME = "basestyle";
   public static String XML_VAR_OUTLINE_NAME = "outline";
   public static String XML_VAR_INNER_NAME = "inner";
@@ -65,6 +82,7 @@ public class ModelBaseStyle implements Cloneable, Serializable {
     hd.endElement("", "", XML_ELEMENT_NAME);
   }
 
+  /** Returns a modifiable copy of this style. */
   public ModelBaseStyle clone() {
     ModelBaseStyle result = new ModelBaseStyle();
     result._base_inner_color = this._base_inner_color;
@@ -75,6 +93,88 @@ public class ModelBaseStyle implements Cloneable, Serializable {
     return result;
   }
 
+  /**
+   * Returns the shared style equal to this one, which is this style itself if it is already shared.
+   * Equal styles are shared by all bases until they are no longer used.
+   */
+  public ModelBaseStyle intern() {
+    return _shared ? this : intern(this);
+  }
+
+  /** Whether this style is an interned one, which cannot be modified. */
+  public boolean isShared() {
+    return _shared;
+  }
+
+  private static synchronized ModelBaseStyle intern(ModelBaseStyle style) {
+    WeakReference<ModelBaseStyle> ref = INTERNED.get(style);
+    ModelBaseStyle result = (ref == null) ? null : ref.get();
+    if (result == null) {
+      result = style._shared ? style : style.clone();
+      result._shared = true;
+      INTERNED.put(result, new WeakReference<ModelBaseStyle>(result));
+    }
+    return result;
+  }
+
+  // Shared styles remain shared after deserialization
+  private Object readResolve() {
+    return _shared ? intern(this) : this;
+  }
+
+  private void checkModifiable() {
+    if (_shared) {
+      throw new UnsupportedOperationException(
+          "Shared base styles cannot be modified, use ModeleBase.getStyleBase() instead");
+    }
+  }
+
+  public ModelBaseStyle withBaseOutlineColor(Color c) {
+    ModelBaseStyle result = clone();
+    result._base_outline_color = c;
+    return result;
+  }
+
+  public ModelBaseStyle withBaseInnerColor(Color c) {
+    ModelBaseStyle result = clone();
+    result._base_inner_color = c;
+    return result;
+  }
+
+  public ModelBaseStyle withBaseNumberColor(Color c) {
+    ModelBaseStyle result = clone();
+    result._base_number_color = c;
+    return result;
+  }
+
+  public ModelBaseStyle withBaseNameColor(Color c) {
+    ModelBaseStyle result = clone();
+    result._base_name_color = c;
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof ModelBaseStyle)) {
+      return false;
+    }
+    ModelBaseStyle s = (ModelBaseStyle) o;
+    return _selected == s._selected
+        && Objects.equals(_base_outline_color, s._base_outline_color)
+        && Objects.equals(_base_inner_color, s._base_inner_color)
+        && Objects.equals(_base_number_color, s._base_number_color)
+        && Objects.equals(_base_name_color, s._base_name_color);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(
+        _base_outline_color, _base_inner_color, _base_number_color, _base_name_color, _selected);
+  }
+
   /**
    * Creates a new base style with default colors and font
    *
@@ -124,7 +224,13 @@ public class ModelBaseStyle implements Cloneable, Serializable {
     return _base_outline_color;
   }
 
+  /**
+   * Sets the outline color of this style.
+   *
+   * @throws UnsupportedOperationException if this style is {@link #isShared() shared}
+   */
   public void setBaseOutlineColor(Color _base_outline_color) {
+    checkModifiable();
     this._base_outline_color = _base_outline_color;
   }
 
@@ -132,7 +238,13 @@ public class ModelBaseStyle implements Cloneable, Serializable {
     return _base_inner_color;
   }
 
+  /**
+   * Sets the inner color of this style.
+   *
+   * @throws UnsupportedOperationException if this style is {@link #isShared() shared}
+   */
   public void setBaseInnerColor(Color _base_inner_color) {
+    checkModifiable();
     this._base_inner_color = _base_inner_color;
   }
 
@@ -140,7 +252,13 @@ public class ModelBaseStyle implements Cloneable, Serializable {
     return _base_number_color;
   }
 
+  /**
+   * Sets the number color of this style.
+   *
+   * @throws UnsupportedOperationException if this style is {@link #isShared() shared}
+   */
   public void setBaseNumberColor(Color _base_numbers_color) {
+    checkModifiable();
     this._base_number_color = _base_numbers_color;
   }
 
@@ -148,7 +266,13 @@ public class ModelBaseStyle implements Cloneable, Serializable {
     return _base_name_color;
   }
 
+  /**
+   * Sets the name color of this style.
+   *
+   * @throws UnsupportedOperationException if this style is {@link #isShared() shared}
+   */
   public void setBaseNameColor(Color _base_name_color) {
+    checkModifiable();
     this._base_name_color = _base_name_color;
   }
 
@@ -169,6 +293,11 @@ public class ModelBaseStyle implements Cloneable, Serializable {
     return result;
   }
 
+  /**
+   * Sets the colors given as {@code name=color} parameters separated by commas.
+   *
+   * @throws UnsupportedOperationException if this style is {@link #isShared() shared}
+   */
   public void assignParameters(String parametersValue)
       throws ExceptionModeleStyleBaseSyntaxError, ExceptionParameterError {
     if (parametersValue.isEmpty()) return;
@@ -85,11 +85,18 @@ public class ModeleBP implements Serializable, Comparable<ModeleBP> {
     _edge5 = edge5;
     _edge3 = edge3;
     _stericity = ster;
-    _style = new ModeleBPStyle();
+    _style = ModeleBPStyle.DEFAULT;
+  }
+
+  /** Returns a copy of this base pair, sharing its style, between two other bases. */
+  public ModeleBP clone(ModeleBase part5, ModeleBase part3) {
+    ModeleBP result = new ModeleBP(part5, part3, _edge5, _edge3, _stericity);
+    result._style = _style.intern();
+    return result;
   }
 
   public ModeleBP(String text) throws ExceptionModeleStyleBaseSyntaxError, ExceptionParameterError {
-    _style = new ModeleBPStyle();
+    _style = ModeleBPStyle.DEFAULT;
     assignParameters(text);
   }
 
@@ -105,11 +112,32 @@ public class ModeleBP implements Serializable, Comparable<ModeleBP> {
     _edge3 = e;
   }
 
+  /**
+   * Sets the style of this base-pair. It uses a shared style equal to the given one, so later
+   * changes of {@code e} do not affect it.
+   */
   public void setStyle(ModeleBPStyle e) {
-    _style = e;
+    _style = e.intern();
   }
 
+  /**
+   * Gets the style of this base-pair, which can be modified to restyle this base-pair alone: a
+   * style shared with other base-pairs is first replaced by a copy owned by this base-pair.
+   *
+   * @see #getStyleReadOnly()
+   */
   public ModeleBPStyle getStyle() {
+    if (_style.isShared()) {
+      _style = _style.clone();
+    }
+    return _style;
+  }
+
+  /**
+   * Gets the style of this base-pair without copying it, to read it. The style may be shared with
+   * other base-pairs, and then cannot be modified.
+   */
+  public ModeleBPStyle getStyleReadOnly() {
     return _style;
   }
 
@@ -239,14 +267,14 @@ public class ModeleBP implements Serializable, Comparable<ModeleBP> {
     for (int i = 0; i < namesArray.size(); i++) {
       if (namesArray.get(i).toLowerCase().equals(PARAM_COLOR)) {
         try {
-          _style.setCustomColor(ModelBaseStyle.getSafeColor(valuesArray.get(i)));
+          setStyle(_style.withCustomColor(ModelBaseStyle.getSafeColor(valuesArray.get(i))));
         } catch (NumberFormatException e) {
           throw new ExceptionParameterError(
               e.getMessage(), "Bad inner color Syntax:" + valuesArray.get(i));
         }
       } else if (namesArray.get(i).toLowerCase().equals(PARAM_THICKNESS)) {
         try {
-          _style.setThickness(Double.parseDouble(valuesArray.get(i)));
+          setStyle(_style.withThickness(Double.parseDouble(valuesArray.get(i))));
         } catch (NumberFormatException e) {
           throw new ExceptionParameterError(
               e.getMessage(), "Bad value for bp thickness:" + valuesArray.get(i));
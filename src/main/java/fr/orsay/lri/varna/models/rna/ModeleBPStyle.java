@@ -21,10 +21,21 @@ import fr.orsay.lri.varna.models.VARNAConfig;
 import fr.orsay.lri.varna.utils.XMLUtils;
 import java.awt.Color;
 import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
 import javax.xml.transform.sax.TransformerHandler;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.AttributesImpl;
 
+/**
+ * The display style of a base-pair: custom color, thickness and stacking arrow.
+ *
+ * <p>Base-pairs hold shared styles, obtained through {@link #intern()}, so that the many base-pairs
+ * drawn alike use a single style object. A shared style cannot be modified: {@link
+ * ModeleBP#getStyle()} first gives the base-pair its own copy, which can be.
+ */
 public class ModeleBPStyle implements Serializable {
 
   public static final double BENT_STACKING_CENTERED = 1.0;
@@ -45,6 +56,15 @@ public class ModeleBPStyle implements Serializable {
   private double _bent = 0.0;
   private double _stackingArrowGap = -1.0;
 
+  /** Whether this style is the interned one, used by base-pairs, which must not be modified. */
+  private boolean _shared = false;
+
+  private static final Map<ModeleBPStyle, WeakReference<ModeleBPStyle>> INTERNED =
+      new WeakHashMap<ModeleBPStyle, WeakReference<ModeleBPStyle>>();
+
+  /** The shared style of base-pairs drawn with the default color and thickness. */
+  public static final ModeleBPStyle DEFAULT = new ModeleBPStyle().intern();
+
   public static String XML_ELEMENT_NAME = "BPstyle";
   public static String XML_VAR_CUSTOM_STYLED_NAME = "custom";
   public static String XML_VAR_COLOR_NAME = "color";
@@ -71,7 +91,13 @@ public class ModeleBPStyle implements Serializable {
     return (_bent != 0.0);
   }
 
+  /**
+   * Sets the bending of stacking arrows of this style.
+   *
+   * @throws UnsupportedOperationException if this style is {@link #isShared() shared}
+   */
   public void setBent(double b) {
+    checkModifiable();
     _bent = b;
   }
 
@@ -80,18 +106,128 @@ public class ModeleBPStyle implements Serializable {
     else return def;
   }
 
+  /**
+   * Sets the gap of stacking arrows of this style.
+   *
+   * @throws UnsupportedOperationException if this style is {@link #isShared() shared}
+   */
   public void setStackingArrowGap(double stackingArrowGap) {
+    checkModifiable();
     _stackingArrowGap = stackingArrowGap;
   }
 
   public ModeleBPStyle() {}
 
+  /** Returns a modifiable copy of this style. */
+  public ModeleBPStyle clone() {
+    ModeleBPStyle result = new ModeleBPStyle();
+    result._isCustomColored = _isCustomColored;
+    result._color = _color;
+    result._thickness = _thickness;
+    result._bent = _bent;
+    result._stackingArrowGap = _stackingArrowGap;
+    return result;
+  }
+
+  /**
+   * Returns the shared style equal to this one, which is this style itself if it is already shared.
+   * Equal styles are shared by all base-pairs until they are no longer used.
+   */
+  public ModeleBPStyle intern() {
+    return _shared ? this : intern(this);
+  }
+
+  /** Whether this style is an interned one, which cannot be modified. */
+  public boolean isShared() {
+    return _shared;
+  }
+
+  private static synchronized ModeleBPStyle intern(ModeleBPStyle style) {
+    WeakReference<ModeleBPStyle> ref = INTERNED.get(style);
+    ModeleBPStyle result = (ref == null) ? null : ref.get();
+    if (result == null) {
+      result = style._shared ? style : style.clone();
+      result._shared = true;
+      INTERNED.put(result, new WeakReference<ModeleBPStyle>(result));
+    }
+    return result;
+  }
+
+  // Shared styles remain shared after deserialization
+  private Object readResolve() {
+    return _shared ? intern(this) : this;
+  }
+
+  private void checkModifiable() {
+    if (_shared) {
+      throw new UnsupportedOperationException(
+          "Shared base-pair styles cannot be modified, use ModeleBP.getStyle() instead");
+    }
+  }
+
+  public ModeleBPStyle withCustomColor(Color c) {
+    ModeleBPStyle result = clone();
+    result.setCustomColor(c);
+    return result;
+  }
+
+  public ModeleBPStyle withThickness(double thickness) {
+    ModeleBPStyle result = clone();
+    result.setThickness(thickness);
+    return result;
+  }
+
+  public ModeleBPStyle withBent(double b) {
+    ModeleBPStyle result = clone();
+    result.setBent(b);
+    return result;
+  }
+
+  public ModeleBPStyle withStackingArrowGap(double stackingArrowGap) {
+    ModeleBPStyle result = clone();
+    result.setStackingArrowGap(stackingArrowGap);
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof ModeleBPStyle)) {
+      return false;
+    }
+    ModeleBPStyle s = (ModeleBPStyle) o;
+    return _isCustomColored == s._isCustomColored
+        && Objects.equals(_color, s._color)
+        && Double.compare(_thickness, s._thickness) == 0
+        && Double.compare(_bent, s._bent) == 0
+        && Double.compare(_stackingArrowGap, s._stackingArrowGap) == 0;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(_isCustomColored, _color, _thickness, _bent, _stackingArrowGap);
+  }
+
+  /**
+   * Sets the custom color of this style.
+   *
+   * @throws UnsupportedOperationException if this style is {@link #isShared() shared}
+   */
   public void setCustomColor(Color c) {
+    checkModifiable();
     _isCustomColored = true;
     _color = c;
   }
 
+  /**
+   * Makes this style use the default color of base pairs.
+   *
+   * @throws UnsupportedOperationException if this style is {@link #isShared() shared}
+   */
   public void useDefaultColor() {
+    checkModifiable();
     _isCustomColored = false;
   }
 
@@ -123,7 +259,13 @@ public class ModeleBPStyle implements Serializable {
     else return def;
   }
 
+  /**
+   * Sets the thickness of this style.
+   *
+   * @throws UnsupportedOperationException if this style is {@link #isShared() shared}
+   */
   public void setThickness(double thickness) {
+    checkModifiable();
     _thickness = thickness;
   }
 }
@@ -28,6 +28,13 @@ public class ModeleBackbone implements Serializable {
     atts.clear();
   }
 
+  /** Returns a copy of this backbone, sharing its elements, which cannot be modified. */
+  public ModeleBackbone clone() {
+    ModeleBackbone result = new ModeleBackbone();
+    result.elems.putAll(elems);
+    return result;
+  }
+
   public void addElement(ModeleBackboneElement mbe) {
     elems.put(mbe.getIndex(), mbe);
   }
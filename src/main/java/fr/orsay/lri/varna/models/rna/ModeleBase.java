@@ -32,16 +32,20 @@ public abstract class ModeleBase implements Serializable, java.lang.Comparable<M
   private ModeleBP _BP;
 
   /** The base style. */
-  protected ModelBaseStyle _styleBase = new ModelBaseStyle();
+  protected ModelBaseStyle _styleBase = ModelBaseStyle.DEFAULT;
 
   /** TRUE if this InterfaceBase has to be colored, else FALSE. */
   protected Boolean _colorie = new Boolean(true);
 
-  /** The coordinate representation of this InterfaceBase on the final graphic. */
-  protected VARNAPoint _coords = new VARNAPoint();
+  /**
+   * The columns holding the coordinates of this InterfaceBase on the final graphic, its nearest
+   * loop center and its partner, at index {@code _slot}. Bases are normally stored in the columns
+   * of their RNA. A base outside of them has none while its values are the defaults (no position,
+   * no partner), and gets columns of its own when one of them is set.
+   */
+  BaseColumns _columns = null;
 
-  /** The nearest loop center of this InterfaceBase. */
-  protected VARNAPoint _center = new VARNAPoint();
+  int _slot = 0;
 
   /** The label of this base. */
   protected String _label = "";
@@ -59,11 +63,52 @@ public abstract class ModeleBase implements Serializable, java.lang.Comparable<M
   public abstract void setContent(String s);
 
   /**
-   * Gets this InterfaceBase style.
+   * Returns a copy of this base, sharing its style, with its own positions but without its base
+   * pair, which is attached by {@link RNA#clone()}.
+   */
+  public ModeleBase copy() {
+    return copy(null, 0);
+  }
+
+  /** Same as {@link #copy()}, but the copy is stored at {@code slot} of {@code columns}. */
+  abstract ModeleBase copy(BaseColumns columns, int slot);
+
+  /**
+   * Copies the attributes shared by all kinds of bases, except the base pair, into {@code mb}. It
+   * is first moved to {@code slot} of {@code columns}, unless they are {@code null}.
+   */
+  void copyTo(ModeleBase mb, BaseColumns columns, int slot) {
+    if (columns != null) {
+      mb.moveTo(columns, slot);
+    }
+    mb._styleBase = _styleBase.intern();
+    mb._colorie = _colorie;
+    mb.setCoords(getX(), getY());
+    mb.setCenter(getCenterX(), getCenterY());
+    mb._label = _label;
+    mb._value = _value;
+    mb._realIndex = _realIndex;
+  }
+
+  /**
+   * Gets this InterfaceBase style, which can be modified to restyle this base alone: a style shared
+   * with other bases is first replaced by a copy owned by this base.
    *
    * @return this InterfaceBase style.
+   * @see #getStyleBaseReadOnly()
    */
   public ModelBaseStyle getStyleBase() {
+    if (_styleBase.isShared()) {
+      _styleBase = _styleBase.clone();
+    }
+    return _styleBase;
+  }
+
+  /**
+   * Gets this InterfaceBase style without copying it, to read it. The style may be shared with
+   * other bases, and then cannot be modified.
+   */
+  public ModelBaseStyle getStyleBaseReadOnly() {
     return _styleBase;
   }
 
@@ -76,12 +121,13 @@ public abstract class ModeleBase implements Serializable, java.lang.Comparable<M
   }
 
   /**
-   * Sets this InterfaceBase style.
+   * Sets this InterfaceBase style. The base uses a shared style equal to the given one, so later
+   * changes of {@code base} do not affect it.
    *
    * @param base - This InterfaceBase new style.
    */
   public void setStyleBase(ModelBaseStyle base) {
-    _styleBase = new ModelBaseStyle(base);
+    _styleBase = base.intern();
   }
 
   /**
@@ -108,11 +154,53 @@ public abstract class ModeleBase implements Serializable, java.lang.Comparable<M
    * @return this InterfaceBase associated structure element.
    */
   public int getElementStructure() {
-    if (_BP == null) return -1;
-    else {
-      if (_BP.getPartner5() == this) return _BP.getPartner3().getIndex();
-      else return _BP.getPartner5().getIndex();
+    return (_columns == null) ? -1 : _columns._partners[_slot];
+  }
+
+  // Stores the index of the partner given by the base pair, read by getElementStructure()
+  private void updatePartner() {
+    int partner = -1;
+    if (_BP != null) {
+      if (_BP.getPartner5() == this) partner = _BP.getPartner3().getIndex();
+      else partner = _BP.getPartner5().getIndex();
     }
+    if (_columns == null) {
+      if (partner == -1) {
+        return;
+      }
+      ownColumns();
+    }
+    _columns._partners[_slot] = partner;
+  }
+
+  /** Moves the values of this base to slot {@code slot} of {@code columns}. */
+  void moveTo(BaseColumns columns, int slot) {
+    if (_columns == null) {
+      columns._x[slot] = 0.0;
+      columns._y[slot] = 0.0;
+      columns._centerX[slot] = 0.0;
+      columns._centerY[slot] = 0.0;
+      columns._partners[slot] = -1;
+    } else {
+      columns._x[slot] = _columns._x[_slot];
+      columns._y[slot] = _columns._y[_slot];
+      columns._centerX[slot] = _columns._centerX[_slot];
+      columns._centerY[slot] = _columns._centerY[_slot];
+      columns._partners[slot] = _columns._partners[_slot];
+    }
+    _columns = columns;
+    _slot = slot;
+  }
+
+  // Gives columns of its own to a base which has none, and so only default values
+  private void ownColumns() {
+    _columns = new BaseColumns(1);
+    _slot = 0;
+  }
+
+  // Whether a position is the default one, positive zero, which a base without columns has
+  private static boolean isDefault(double x, double y) {
+    return Double.doubleToRawLongBits(x) == 0L && Double.doubleToRawLongBits(y) == 0L;
   }
 
   /**
@@ -132,11 +220,13 @@ public abstract class ModeleBase implements Serializable, java.lang.Comparable<M
   public void setElementStructure(int structure, ModeleBP type) {
     //		_elementStructure = structure;
     _BP = type;
+    updatePartner();
   }
 
   public void removeElementStructure() {
     //		_elementStructure = -1;
     _BP = null;
+    updatePartner();
   }
 
   /**
@@ -155,6 +245,7 @@ public abstract class ModeleBase implements Serializable, java.lang.Comparable<M
    */
   public void setStyleBP(ModeleBP type) {
     _BP = type;
+    updatePartner();
   }
 
   public int getBaseNumber() {
@@ -166,21 +257,57 @@ public abstract class ModeleBase implements Serializable, java.lang.Comparable<M
   }
 
   public Point2D.Double getCoords() {
-    return new Point2D.Double(_coords.x, _coords.y);
+    return new Point2D.Double(getX(), getY());
+  }
+
+  public double getX() {
+    return (_columns == null) ? 0.0 : _columns._x[_slot];
+  }
+
+  public double getY() {
+    return (_columns == null) ? 0.0 : _columns._y[_slot];
   }
 
   public void setCoords(Point2D.Double coords) {
-    this._coords.x = coords.x;
-    this._coords.y = coords.y;
+    setCoords(coords.x, coords.y);
+  }
+
+  public void setCoords(double x, double y) {
+    if (_columns == null) {
+      if (isDefault(x, y)) {
+        return;
+      }
+      ownColumns();
+    }
+    _columns._x[_slot] = x;
+    _columns._y[_slot] = y;
   }
 
   public Point2D.Double getCenter() {
-    return new Point2D.Double(_center.x, _center.y);
+    return new Point2D.Double(getCenterX(), getCenterY());
+  }
+
+  public double getCenterX() {
+    return (_columns == null) ? 0.0 : _columns._centerX[_slot];
+  }
+
+  public double getCenterY() {
+    return (_columns == null) ? 0.0 : _columns._centerY[_slot];
   }
 
   public void setCenter(Point2D.Double center) {
-    this._center.x = center.x;
-    this._center.y = center.y;
+    setCenter(center.x, center.y);
+  }
+
+  public void setCenter(double x, double y) {
+    if (_columns == null) {
+      if (isDefault(x, y)) {
+        return;
+      }
+      ownColumns();
+    }
+    _columns._centerX[_slot] = x;
+    _columns._centerY[_slot] = y;
   }
 
   public String getLabel() {
@@ -196,8 +323,7 @@ public abstract class ModeleBase implements Serializable, java.lang.Comparable<M
   }
 
   public void setLabel(Point2D.Double center) {
-    this._center.x = center.x;
-    this._center.y = center.y;
+    setCenter(center);
   }
 
   public int compareTo(ModeleBase other) {
@@ -53,8 +53,8 @@ public class ModeleBaseNucleotide extends ModeleBase {
     XMLUtils.exportCDATAString(hd, _c);
     hd.endElement("", "", XML_VAR_CONTENT_NAME);
 
-    _coords.toXML(hd, XML_VAR_POSITION_NAME);
-    _center.toXML(hd, XML_VAR_CENTER_NAME);
+    new VARNAPoint(getCoords()).toXML(hd, XML_VAR_POSITION_NAME);
+    new VARNAPoint(getCenter()).toXML(hd, XML_VAR_CENTER_NAME);
     if (_colorie) {
       _styleBase.toXML(hd);
     }
@@ -77,7 +77,7 @@ public class ModeleBaseNucleotide extends ModeleBase {
    * @param index The index of this base
    */
   public ModeleBaseNucleotide(String s, int index) {
-    this(s, new ModelBaseStyle(), index);
+    this(s, ModelBaseStyle.DEFAULT, index);
   }
 
   /**
@@ -89,7 +89,7 @@ public class ModeleBaseNucleotide extends ModeleBase {
    *     numbering)
    */
   public ModeleBaseNucleotide(String s, int index, int baseNumber) {
-    this(s, new ModelBaseStyle(), index);
+    this(s, ModelBaseStyle.DEFAULT, index);
     _realIndex = baseNumber;
   }
 
@@ -126,7 +126,7 @@ public class ModeleBaseNucleotide extends ModeleBase {
         new Point2D.Double(),
         true,
         "",
-        new ModelBaseStyle(),
+        ModelBaseStyle.DEFAULT,
         -1,
         index);
   }
@@ -142,7 +142,7 @@ public class ModeleBaseNucleotide extends ModeleBase {
         new Point2D.Double(mb.getCenter().getX(), mb.getCenter().getY()),
         true,
         mb.getBase(),
-        mb.getStyleBase(),
+        mb.getStyleBaseReadOnly(),
         mb.getElementStructure(),
         index);
   }
@@ -157,19 +157,31 @@ public class ModeleBaseNucleotide extends ModeleBase {
       int index) {
     _colorie = colorie;
     _c = label;
-    _styleBase = mb;
-    _coords = new VARNAPoint(coords);
-    _center = new VARNAPoint(center);
+    _styleBase = mb.intern();
+    setCoords(coords);
+    setCenter(center);
     _index = index;
     _realIndex = index + 1;
     _value = 0.0;
   }
 
+  ModeleBaseNucleotide copy(BaseColumns columns, int slot) {
+    ModeleBaseNucleotide result = new ModeleBaseNucleotide(_index);
+    result._c = _c;
+    copyTo(result, columns, slot);
+    return result;
+  }
+
   public ModelBaseStyle getStyleBase() {
-    if (_colorie) return _styleBase;
+    if (_colorie) return super.getStyleBase();
     return new ModelBaseStyle();
   }
 
+  public ModelBaseStyle getStyleBaseReadOnly() {
+    if (_colorie) return _styleBase;
+    return ModelBaseStyle.DEFAULT;
+  }
+
   public String getBase() {
     return decode(_c);
   }
@@ -191,7 +203,14 @@ public class ModeleBaseNucleotide extends ModeleBase {
   }
 
   public String toString() {
-    return "" + this._realIndex + " (" + _index + ") (x,y):" + this._coords + " C:" + _center;
+    return ""
+        + this._realIndex
+        + " ("
+        + _index
+        + ") (x,y):"
+        + new VARNAPoint(getCoords())
+        + " C:"
+        + new VARNAPoint(getCenter());
   }
 
   private enum STATE_SPECIAL_CHARS_STATES {
@@ -80,8 +80,8 @@ public class ModeleBasesComparison extends ModeleBase {
     XMLUtils.exportCDATAString(hd, "" + _base2);
     hd.endElement("", "", XML_VAR_SECOND_CONTENT_NAME);
 
-    _coords.toXML(hd, XML_VAR_POSITION_NAME);
-    _center.toXML(hd, XML_VAR_CENTER_NAME);
+    new VARNAPoint(getCoords()).toXML(hd, XML_VAR_POSITION_NAME);
+    new VARNAPoint(getCenter()).toXML(hd, XML_VAR_CENTER_NAME);
     if (_colorie) {
       _styleBase.toXML(hd);
     }
@@ -140,7 +140,7 @@ public class ModeleBasesComparison extends ModeleBase {
         base1,
         base2,
         true,
-        new ModelBaseStyle(),
+        ModelBaseStyle.DEFAULT,
         -1,
         index);
   }
@@ -152,7 +152,7 @@ public class ModeleBasesComparison extends ModeleBase {
    * @param base2 - The second RNA' nitrogenous base
    */
   public ModeleBasesComparison(char base1, char base2, int elementStructure, int index) {
-    this(new Point2D.Double(), base1, base2, true, new ModelBaseStyle(), elementStructure, index);
+    this(new Point2D.Double(), base1, base2, true, ModelBaseStyle.DEFAULT, elementStructure, index);
   }
 
   /**
@@ -177,8 +177,8 @@ public class ModeleBasesComparison extends ModeleBase {
     _colorie = colorie;
     _base1 = base1;
     _base2 = base2;
-    _styleBase = mb;
-    _coords = new VARNAPoint(coords.getX(), coords.getY());
+    _styleBase = mb.intern();
+    setCoords(coords.getX(), coords.getY());
     _index = index;
   }
 
@@ -186,6 +186,15 @@ public class ModeleBasesComparison extends ModeleBase {
    * -> END CONSTRUCTORS <--
    */
 
+  ModeleBasesComparison copy(BaseColumns columns, int slot) {
+    ModeleBasesComparison result = new ModeleBasesComparison(_index);
+    result._base1 = _base1;
+    result._base2 = _base2;
+    result._appartenance = _appartenance;
+    copyTo(result, columns, slot);
+    return result;
+  }
+
   /*
    * GETTERS & SETTERS
    */
@@ -196,10 +205,15 @@ public class ModeleBasesComparison extends ModeleBase {
    * @return The display style associated to this comparison base.
    */
   public ModelBaseStyle getStyleBase() {
-    if (_colorie) return _styleBase;
+    if (_colorie) return super.getStyleBase();
     return new ModelBaseStyle();
   }
 
+  public ModelBaseStyle getStyleBaseReadOnly() {
+    if (_colorie) return _styleBase;
+    return ModelBaseStyle.DEFAULT;
+  }
+
   /**
    * Allows to know if this comparison base is colored.
    *
@@ -290,14 +304,18 @@ public class ModeleBasesComparison extends ModeleBase {
    *     2 if this base is related to the second RNA.
    */
   public void set_appartenance(int _appartenance) {
+    Color c;
     if (_appartenance == 0) {
-      this.getStyleBase().setBaseInnerColor(BOTH_RNA_COLOR);
+      c = BOTH_RNA_COLOR;
     } else if (_appartenance == 1) {
-      this.getStyleBase().setBaseInnerColor(FIRST_RNA_COLOR);
+      c = FIRST_RNA_COLOR;
     } else if (_appartenance == 2) {
-      this.getStyleBase().setBaseInnerColor(SECOND_RNA_COLOR);
+      c = SECOND_RNA_COLOR;
     } else {
-      this.getStyleBase().setBaseInnerColor(DEFAULT_RNA_COLOR);
+      c = DEFAULT_RNA_COLOR;
+    }
+    if (_colorie) {
+      setStyleBase(_styleBase.withBaseInnerColor(c));
     }
     this._appartenance = _appartenance;
   }
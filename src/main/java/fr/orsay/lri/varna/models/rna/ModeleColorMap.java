@@ -6,12 +6,26 @@ import java.util.Arrays;
 import java.util.Formatter;
 import java.util.Vector;
 
+/**
+ * A color map, blending colors between breakpoints sorted by value.
+ *
+ * <p>Breakpoints are stored in primitive arrays, in an immutable {@link Stops} object that is
+ * replaced whenever the map changes, so that lookups neither lock, box nor copy anything, and
+ * clones share it. Blended colors are kept in a small cache, so that repeated colors come back as
+ * the same {@link Color} instances. A lookup table of precomputed colors can also be enabled with
+ * {@link #setLookupTableSize(int)}, trading exactness for speed when coloring many values.
+ */
 public class ModeleColorMap implements Cloneable, Serializable {
   /** */
   private static final long serialVersionUID = 4055062096061553106L;
 
-  private Vector<Color> _map;
-  private Vector<Double> _values;
+  /** Number of blended colors cached, a power of two. */
+  private static final int BLEND_CACHE_SIZE = 256;
+
+  private volatile Stops _stops = new Stops(new double[0], new Color[0]);
+
+  /** Number of entries of the lookup table, or 0 to compute colors exactly. */
+  private int _lookupTableSize = 0;
 
   public static final Color DEFAULT_COLOR = Color.GREEN;
 
@@ -46,86 +60,200 @@ public class ModeleColorMap implements Cloneable, Serializable {
     }
   }
 
-  public ModeleColorMap() {
-    this(new Vector<Color>(), new Vector<Double>());
-  }
+  public ModeleColorMap() {}
 
   public ModeleColorMap(Vector<Color> map, Vector<Double> values) {
-    _map = map;
-    _values = values;
+    double[] v = new double[values.size()];
+    for (int i = 0; i < v.length; i++) {
+      v[i] = values.get(i);
+    }
+    _stops = new Stops(v, map.toArray(new Color[0]));
+  }
+
+  /**
+   * The breakpoints of a color map, sorted by value, with their colors both as objects and as
+   * packed RGB values. Never modified once built, except for its caches.
+   */
+  private static final class Stops implements Serializable {
+    private static final long serialVersionUID = -2906380281364542139L;
+
+    private final double[] _values;
+    private final Color[] _colors;
+    private final int[] _red;
+    private final int[] _green;
+    private final int[] _blue;
+
+    /** Blended colors, at index hash(RGB), or null. */
+    private transient Color[] _blended;
+
+    /** See ModeleColorMap.setLookupTableSize(). */
+    private transient volatile Color[] _lookupTable;
+
+    private Stops(double[] values, Color[] colors) {
+      _values = values;
+      _colors = colors;
+      _red = new int[colors.length];
+      _green = new int[colors.length];
+      _blue = new int[colors.length];
+      for (int i = 0; i < colors.length; i++) {
+        int rgb = colors[i].getRGB();
+        _red[i] = (rgb >> 16) & 0xFF;
+        _green[i] = (rgb >> 8) & 0xFF;
+        _blue[i] = rgb & 0xFF;
+      }
+    }
+
+    private int size() {
+      return _values.length;
+    }
+
+    private double getMinValue() {
+      return _values.length > 0 ? _values[0] : 0.0;
+    }
+
+    private double getMaxValue() {
+      return _values.length > 0 ? _values[_values.length - 1] : 0.0;
+    }
+
+    private Color getMinColor() {
+      return _colors.length > 0 ? _colors[0] : DEFAULT_COLOR;
+    }
+
+    private Color getMaxColor() {
+      return _colors.length > 0 ? _colors[_colors.length - 1] : DEFAULT_COLOR;
+    }
+
+    private Color getColorForValue(double val) {
+      if (val <= getMinValue()) {
+        return getMinColor();
+      } else if (val >= getMaxValue() || Double.isNaN(val)) {
+        return getMaxColor();
+      }
+      int offset = Arrays.binarySearch(_values, val);
+      if (offset >= 0) {
+        return _colors[offset];
+      }
+      int inspoint = (-offset) - 1;
+      if (inspoint == 0) {
+        return _colors[0];
+      }
+      double v1 = _values[inspoint];
+      double v2 = _values[inspoint - 1];
+      double blendCoeff = (v2 - val) / (v2 - v1);
+      return getColor(
+          (int) (blendCoeff * _red[inspoint] + (1.0 - blendCoeff) * _red[inspoint - 1]),
+          (int) (blendCoeff * _green[inspoint] + (1.0 - blendCoeff) * _green[inspoint - 1]),
+          (int) (blendCoeff * _blue[inspoint] + (1.0 - blendCoeff) * _blue[inspoint - 1]));
+    }
+
+    /** Returns an opaque color, the same instance as last time if it is still cached. */
+    private Color getColor(int red, int green, int blue) {
+      Color[] blended = _blended;
+      if (blended == null) {
+        blended = new Color[BLEND_CACHE_SIZE];
+        _blended = blended;
+      }
+      int rgb = 0xFF000000 | (red << 16) | (green << 8) | blue;
+      int slot = ((rgb * 0x9E3779B9) >>> 24) & (BLEND_CACHE_SIZE - 1);
+      Color c = blended[slot];
+      if (c == null || c.getRGB() != rgb) {
+        c = new Color(red, green, blue);
+        blended[slot] = c;
+      }
+      return c;
+    }
+
+    private Color[] getLookupTable(int size) {
+      Color[] table = _lookupTable;
+      if (table == null || table.length != size) {
+        table = new Color[size];
+        double min = getMinValue();
+        double max = getMaxValue();
+        for (int k = 0; k < size; k++) {
+          table[k] = getColorForValue(min + (max - min) * k / (size - 1));
+        }
+        _lookupTable = table;
+      }
+      return table;
+    }
   }
 
   public void addColor(double val, Color col) {
-    int offset = Arrays.binarySearch(_values.toArray(), val);
+    Stops stops = _stops;
+    int offset = Arrays.binarySearch(stops._values, val);
     if (offset < 0) {
       int inspoint = (-offset) - 1;
-      _map.insertElementAt(col, inspoint);
-      _values.insertElementAt(val, inspoint);
+      int n = stops.size();
+      double[] values = new double[n + 1];
+      Color[] colors = new Color[n + 1];
+      System.arraycopy(stops._values, 0, values, 0, inspoint);
+      System.arraycopy(stops._colors, 0, colors, 0, inspoint);
+      values[inspoint] = val;
+      colors[inspoint] = col;
+      System.arraycopy(stops._values, inspoint, values, inspoint + 1, n - inspoint);
+      System.arraycopy(stops._colors, inspoint, colors, inspoint + 1, n - inspoint);
+      _stops = new Stops(values, colors);
     }
   }
 
   public double getMinValue() {
-    if (_values.size() > 0) return _values.get(0);
-    return 0.0;
+    return _stops.getMinValue();
   }
 
   public double getMaxValue() {
-    if (_values.size() > 0) return _values.get(_values.size() - 1);
-    return 0.0;
+    return _stops.getMaxValue();
   }
 
   public Color getMinColor() {
-    if (_map.size() > 0) return _map.get(0);
-    return DEFAULT_COLOR;
+    return _stops.getMinColor();
   }
 
   public Color getMaxColor() {
-    if (_map.size() > 0) return _map.get(_map.size() - 1);
-    return DEFAULT_COLOR;
+    return _stops.getMaxColor();
   }
 
   public int getNumColors() {
-    return (_map.size());
+    return _stops.size();
   }
 
   public Color getColorAt(int i) {
-    return (_map.get(i));
+    return _stops._colors[i];
   }
 
   public Double getValueAt(int i) {
-    return (_values.get(i));
+    return _stops._values[i];
   }
 
   public Color getColorForValue(double val) {
-    Color result;
-    if (val <= getMinValue()) {
-      result = getMinColor();
-    } else if (val >= getMaxValue()) {
-      result = getMaxColor();
-    } else {
-      int offset = Arrays.binarySearch(_values.toArray(), val);
-      if (offset >= 0) {
-        result = _map.get(offset);
-      } else {
-        int inspoint = (-offset) - 1;
-        Color c1 = _map.get(inspoint);
-        double v1 = _values.get(inspoint);
-        if (inspoint > 0) {
-          Color c2 = _map.get(inspoint - 1);
-          double v2 = _values.get(inspoint - 1);
-          double blendCoeff = (v2 - val) / (v2 - v1);
-          result =
-              new Color(
-                  (int) (blendCoeff * c1.getRed() + (1.0 - blendCoeff) * c2.getRed()),
-                  (int) (blendCoeff * c1.getGreen() + (1.0 - blendCoeff) * c2.getGreen()),
-                  (int) (blendCoeff * c1.getBlue() + (1.0 - blendCoeff) * c2.getBlue()));
-
-        } else {
-          result = c1;
-        }
-      }
+    Stops stops = _stops;
+    int size = _lookupTableSize;
+    if (size == 0
+        || stops.size() < 2
+        || !(val > stops.getMinValue() && val < stops.getMaxValue())) {
+      return stops.getColorForValue(val);
     }
-    return result;
+    Color[] table = stops.getLookupTable(size);
+    double min = stops.getMinValue();
+    double max = stops.getMaxValue();
+    return table[(int) ((val - min) * (size - 1) / (max - min) + 0.5)];
+  }
+
+  /**
+   * Colors values from a table of precomputed colors, evenly spaced between the minimum and
+   * maximum values, instead of blending the colors of the nearest breakpoints each time. With 256
+   * or 4096 entries, values get the color of a value at most 1/510 or 1/8190 of the range away.
+   *
+   * @param size The number of entries, at least 2, or 0 to compute colors exactly (the default).
+   */
+  public void setLookupTableSize(int size) {
+    if (size != 0 && size < 2) {
+      throw new IllegalArgumentException("Lookup table size must be 0 or at least 2: " + size);
+    }
+    _lookupTableSize = size;
+  }
+
+  public int getLookupTableSize() {
+    return _lookupTableSize;
   }
 
   public static ModeleColorMap energyColorMap() {
@@ -245,17 +373,20 @@ public class ModeleColorMap implements Cloneable, Serializable {
     double spanBck = maxBck - minBck;
     if (newMax != newMin) {
       newMax = Math.max(newMax, newMin + 1.0);
-      for (int i = 0; i < _values.size(); i++) {
-        double valBck = _values.get(i);
-        _values.set(i, newMin + (newMax - newMin) * (valBck - minBck) / (spanBck));
+      Stops stops = _stops;
+      double[] values = new double[stops.size()];
+      for (int i = 0; i < values.length; i++) {
+        double valBck = stops._values[i];
+        values[i] = newMin + (newMax - newMin) * (valBck - minBck) / (spanBck);
       }
+      _stops = new Stops(values, stops._colors);
     }
   }
 
   public ModeleColorMap clone() {
     ModeleColorMap cm = new ModeleColorMap();
-    cm._map = (Vector<Color>) _map.clone();
-    cm._values = (Vector<Double>) _values.clone();
+    cm._stops = _stops;
+    cm._lookupTableSize = _lookupTableSize;
     return cm;
   }
 
@@ -275,7 +406,7 @@ public class ModeleColorMap implements Cloneable, Serializable {
       if (i != 0) f.format(",");
       f.format(
           "%.2f:#%02X%02X%02X",
-          _values.get(i), _map.get(i).getRed(), _map.get(i).getGreen(), _map.get(i).getBlue());
+          getValueAt(i), getColorAt(i).getRed(), getColorAt(i).getGreen(), getColorAt(i).getBlue());
     }
     return f.out().toString();
   }
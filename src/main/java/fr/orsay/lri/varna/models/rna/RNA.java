@@ -34,6 +34,7 @@ import fr.orsay.lri.varna.models.annotations.ChemProbAnnotation;
 import fr.orsay.lri.varna.models.annotations.HighlightRegionAnnotation;
 import fr.orsay.lri.varna.models.annotations.TextAnnotation;
 import fr.orsay.lri.varna.models.export.PSExport;
+import fr.orsay.lri.varna.models.export.RasterExport;
 import fr.orsay.lri.varna.models.export.SVGExport;
 import fr.orsay.lri.varna.models.export.SecStrDrawingProducer;
 import fr.orsay.lri.varna.models.export.TikzExport;
@@ -52,23 +53,29 @@ import java.awt.Point;
 import java.awt.geom.GeneralPath;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Serializable;
 import java.io.StreamTokenizer;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Set;
 import java.util.Stack;
@@ -119,7 +126,7 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
 
   public static final int DEFAULT_DRAW_MODE = DRAW_MODE_RADIATE;
 
-  public static int BASE_RADIUS = 10;
+  public static final int BASE_RADIUS = 10;
   public static final double LOOP_DISTANCE = 40.0; // distance between base
   // pairs in an helix
   public static final double BASE_PAIR_DISTANCE = 65.0; // distance between
@@ -137,15 +144,8 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
   public double CHEM_PROB_DOT_RADIUS = 6.;
   public static double CHEM_PROB_ARROW_THICKNESS = 2.0;
 
-  public static ArrayList<String> NormalBases = new ArrayList<String>();
-
-  {
-    NormalBases.add("a");
-    NormalBases.add("c");
-    NormalBases.add("g");
-    NormalBases.add("u");
-    NormalBases.add("t");
-  }
+  public static final List<String> NormalBases =
+      Collections.unmodifiableList(Arrays.asList("a", "c", "g", "u", "t"));
 
   public GeneralPath _debugShape = null;
 
@@ -160,18 +160,31 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
   /** the base list */
   private ArrayList<ModeleBase> _listeBases;
 
+  /** The columns last gathered from the bases by {@link #columns()}. */
+  private transient BaseColumns _columns;
+
   /** the strand list */
   StructureTemp _listStrands = new StructureTemp();
 
   /** Additional bonds and info can be specified here. */
   private ArrayList<ModeleBP> _structureAux = new ArrayList<ModeleBP>();
 
+  /** The additional bonds involving each base, indexed by base index. */
+  private transient HashMap<Integer, ArrayList<ModeleBP>> _structureAuxByBase =
+      new HashMap<Integer, ArrayList<ModeleBP>>();
+
+  /** The last added additional bond between each pair of bases, indexed by {@link #pairKey}. */
+  private transient HashMap<Long, ModeleBP> _structureAuxByPair = new HashMap<Long, ModeleBP>();
+
   private ArrayList<TextAnnotation> _listeAnnotations = new ArrayList<TextAnnotation>();
   private ArrayList<HighlightRegionAnnotation> _listeRegionHighlights =
       new ArrayList<HighlightRegionAnnotation>();
   private ArrayList<ChemProbAnnotation> _chemProbAnnotations = new ArrayList<ChemProbAnnotation>();
   private ModeleBackbone _backbone = new ModeleBackbone();
 
+  /** Indices of the bases whose number is drawn, or null to follow the numbering period. */
+  private BitSet _numberedBases = null;
+
   public static String XML_ELEMENT_NAME = "RNA";
   public static String XML_VAR_BASE_SPACING_NAME = "spacing";
   public static String XML_VAR_DRAWN_NAME = "drawn";
@@ -240,6 +253,20 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
     _backbone = b;
   }
 
+  public BitSet getNumberedBases() {
+    return _numberedBases;
+  }
+
+  /**
+   * Restricts base numbers to the given base indices instead of every {@code numPeriod}-th base. A
+   * non-positive numbering period still hides all numbers.
+   *
+   * @param numbered indices of the numbered bases, or {@code null} to follow the numbering period
+   */
+  public void setNumberedBases(BitSet numbered) {
+    _numberedBases = numbered;
+  }
+
   private transient ArrayList<InterfaceVARNAListener> _listeVARNAListener =
       new ArrayList<InterfaceVARNAListener>();
 
@@ -321,7 +348,7 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
   }
 
   public Color getBaseInnerColor(int i, VARNAConfig conf) {
-    Color result = _listeBases.get(i).getStyleBase().getBaseInnerColor();
+    Color result = _listeBases.get(i).getStyleBaseReadOnly().getBaseInnerColor();
     String res = _listeBases.get(i).getContent();
     if (conf._drawColorMap) {
       result = conf._cm.getColorForValue(_listeBases.get(i).getValue());
@@ -334,7 +361,7 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
   }
 
   public Color getBaseOuterColor(int i, VARNAConfig conf) {
-    Color result = _listeBases.get(i).getStyleBase().getBaseOutlineColor();
+    Color result = _listeBases.get(i).getStyleBaseReadOnly().getBaseOutlineColor();
     return result;
   }
 
@@ -357,7 +384,7 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
   }
 
   public Color getBaseNameColor(int i, VARNAConfig conf) {
-    Color result = _listeBases.get(i).getStyleBase().getBaseNameColor();
+    Color result = _listeBases.get(i).getStyleBaseReadOnly().getBaseNameColor();
     if (RNA.whiteLabelPreferrable(getBaseInnerColor(i, conf))) {
       result = Color.white;
     }
@@ -368,16 +395,17 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
   public Color getBasePairColor(ModeleBP bp, VARNAConfig conf) {
     Color bondColor = conf._bondColor;
     if (conf._useBaseColorsForBPs) {
-      bondColor = _listeBases.get(bp.getPartner5().getIndex()).getStyleBase().getBaseInnerColor();
+      bondColor =
+          _listeBases.get(bp.getPartner5().getIndex()).getStyleBaseReadOnly().getBaseInnerColor();
     }
     if (bp != null) {
-      bondColor = bp.getStyle().getColor(bondColor);
+      bondColor = bp.getStyleReadOnly().getColor(bondColor);
     }
     return bondColor;
   }
 
   public double getBasePairThickness(ModeleBP bp, VARNAConfig conf) {
-    double thickness = bp.getStyle().getThickness(conf._bpThickness);
+    double thickness = bp.getStyleReadOnly().getThickness(conf._bpThickness);
     return thickness;
   }
 
@@ -607,14 +635,14 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
     double gap =
         Math.min(
             style
-                .getStyle()
+                .getStyleReadOnly()
                 .getStackingArrowGap(getStackingArrowCenterGap(arrowLen, segmentLength, thickness)),
             maxGap);
     Point2D.Double centerPoint =
         new Point2D.Double((orig.x + dest.x) / 2.0, (orig.y + dest.y) / 2.0);
     Point2D.Double firstPartnerPoint = new Point2D.Double(orig.x + ux * gap, orig.y + uy * gap);
     Point2D.Double secondPartnerPoint = new Point2D.Double(dest.x - ux * gap, dest.y - uy * gap);
-    double bent = style.getStyle().getBent();
+    double bent = style.getStyleReadOnly().getBent();
     if (bent == ModeleBPStyle.BENT_STACKING_FIRST_PARTNER) {
       drawStackingArrowhead(out, orig, dest, firstPartnerPoint, arrowLen, thickness);
     } else if (bent == ModeleBPStyle.BENT_STACKING_SECOND_PARTNER) {
@@ -689,7 +717,7 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
         double cy = (dest.y + orig.y) / 2.0;
         out.drawLine(orig.x, orig.y, dest.x, dest.y, conf._bpThickness);
 
-        if (style.getStyle().isBent()) { // This is a hack to draw stacking interactions!
+        if (style.getStyleReadOnly().isBent()) { // This is a hack to draw stacking interactions!
           drawStackingInteraction(out, orig, dest, style, circleDiameter, thickness);
         } else if (p1 == p2) {
           drawSymbol(out, cx, cy, nx, ny, circleDiameter, style.isCIS(), p1, thickness);
@@ -789,6 +817,22 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
   private void saveRNA(String path, VARNAConfig conf, double scale, SecStrDrawingProducer out)
       throws ExceptionWritingForbidden {
     out.setScale(scale);
+    // The header needs the final bounding box, so the drawing is produced twice: a measuring pass,
+    // then a pass streamed straight to the file without keeping the document in memory.
+    out.startMeasuring();
+    produceDrawing(conf, scale, out);
+    try (Writer fout =
+        new BufferedWriter(
+            new OutputStreamWriter(new FileOutputStream(path), StandardCharsets.UTF_8))) {
+      out.startStreaming(fout);
+      produceDrawing(conf, scale, out);
+      out.finishStreaming();
+    } catch (IOException | UncheckedIOException e) {
+      throw new ExceptionWritingForbidden(e.getMessage());
+    }
+  }
+
+  private void produceDrawing(VARNAConfig conf, double scale, SecStrDrawingProducer out) {
     // Computing bounding boxes
     double EPSMargin = 40;
     double minX = Double.MAX_VALUE;
@@ -798,30 +842,29 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
 
     double x0, y0, x1, y1, xc, yc, xp, yp, dx, dy, norm;
 
+    BaseColumns cols = columns();
     for (int i = 0; i < _listeBases.size(); i++) {
-      minX = Math.min(minX, (_listeBases.get(i).getCoords().getX() - BASE_RADIUS - EPSMargin));
-      minY = Math.min(minY, -(_listeBases.get(i).getCoords().getY() - BASE_RADIUS - EPSMargin));
-      maxX = Math.max(maxX, (_listeBases.get(i).getCoords().getX() + BASE_RADIUS + EPSMargin));
-      maxY = Math.max(maxY, -(_listeBases.get(i).getCoords().getY() + BASE_RADIUS + EPSMargin));
+      minX = Math.min(minX, (cols._x[i] - BASE_RADIUS - EPSMargin));
+      minY = Math.min(minY, -(cols._y[i] - BASE_RADIUS - EPSMargin));
+      maxX = Math.max(maxX, (cols._x[i] + BASE_RADIUS + EPSMargin));
+      maxY = Math.max(maxY, -(cols._y[i] + BASE_RADIUS + EPSMargin));
     }
 
     // Rescaling everything
     Point2D.Double[] coords = new Point2D.Double[_listeBases.size()];
     Point2D.Double[] centers = new Point2D.Double[_listeBases.size()];
     for (int i = 0; i < _listeBases.size(); i++) {
-      xp = (_listeBases.get(i).getCoords().getX() - minX);
-      yp = -(_listeBases.get(i).getCoords().getY() - minY);
+      xp = (cols._x[i] - minX);
+      yp = -(cols._y[i] - minY);
       coords[i] = new Point2D.Double(xp, yp);
 
-      Point2D.Double centerBck = getCenter(i);
+      Point2D.Double centerBck = new Point2D.Double(cols._centerX[i], cols._centerY[i]);
       if (get_drawMode() == RNA.DRAW_MODE_NAVIEW || get_drawMode() == RNA.DRAW_MODE_RADIATE) {
-        if ((_listeBases.get(i).getElementStructure() != -1)
-            && i < _listeBases.size() - 1
-            && i > 1) {
+        if ((cols._partners[i] != -1) && i < _listeBases.size() - 1 && i > 1) {
           ModeleBase b1 = get_listeBases().get(i - 1);
           ModeleBase b2 = get_listeBases().get(i + 1);
-          int j1 = b1.getElementStructure();
-          int j2 = b2.getElementStructure();
+          int j1 = cols._partners[i - 1];
+          int j2 = cols._partners[i + 1];
           if ((j1 == -1) ^ (j2 == -1)) {
             // alors la position du nombre associé doit etre
             // décalé
@@ -831,13 +874,9 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
             Point2D.Double c2 = b2.getCenter();
 
             centerBck.x =
-                _listeBases.get(i).getCoords().x
-                    + (c1.x - a1.x) / c1.distance(a1)
-                    + (c2.x - a2.x) / c2.distance(a2);
+                cols._x[i] + (c1.x - a1.x) / c1.distance(a1) + (c2.x - a2.x) / c2.distance(a2);
             centerBck.y =
-                _listeBases.get(i).getCoords().y
-                    + (c1.y - a1.y) / c1.distance(a1)
-                    + (c2.y - a2.y) / c2.distance(a2);
+                cols._y[i] + (c1.y - a1.y) / c1.distance(a1) + (c2.y - a2.y) / c2.distance(a2);
           }
         }
       }
@@ -863,8 +902,8 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
         y1 = p2.y;
         Point2D.Double vn = new Point2D.Double();
         double dist = p1.distance(p2);
-        int a = _listeBases.get(i - 1).getElementStructure();
-        int b = _listeBases.get(i).getElementStructure();
+        int a = cols._partners[i - 1];
+        int b = cols._partners[i];
         BackboneType bt = _backbone.getTypeBefore(i);
         boolean consecutivePair = (a == i) && (b == i - 1);
 
@@ -1050,7 +1089,7 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
       }
       ModeleBase mb = _listeBases.get(i);
       if (this.isNumberDrawn(mb, conf._numPeriod)) {
-        out.setColor(mb.getStyleBase().getBaseNumberColor());
+        out.setColor(mb.getStyleBaseReadOnly().getBaseNumberColor());
         x0 = coords[i].x;
         y0 = coords[i].y;
         x1 = centers[i].x;
@@ -1090,17 +1129,6 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
     if (!getName().isEmpty()) {
       out.drawText((maxX - minX) / 2.0, yTitle, getName());
     }
-
-    OutputStreamWriter fout;
-
-    try {
-      fout = new OutputStreamWriter(new FileOutputStream(path), "UTF-8");
-
-      fout.write(out.export());
-      fout.close();
-    } catch (IOException e) {
-      throw new ExceptionWritingForbidden(e.getMessage());
-    }
   }
 
   Point2D.Double buildCaptionPosition(ModeleBase mb, double heightEstimate, VARNAConfig conf) {
@@ -1248,6 +1276,7 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
 
   public boolean isNumberDrawn(ModeleBase mb, int numPeriod) {
     if (numPeriod <= 0) return false;
+    if (_numberedBases != null) return _numberedBases.get(mb.getIndex());
     return ((mb.getIndex() == 0)
         || ((mb.getBaseNumber()) % numPeriod == 0)
         || (mb.getIndex() == get_listeBases().size() - 1));
@@ -1273,6 +1302,35 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
     saveRNA(path, conf, 0.5, out);
   }
 
+  /**
+   * Draws the RNA into an image about {@code width} pixels wide. Only Java2D is used, so no
+   * component needs to be created and this works in headless mode.
+   *
+   * @param conf The drawing options
+   * @param width The width of the image, in pixels
+   * @return The drawing of the RNA
+   */
+  public BufferedImage renderRNAImage(VARNAConfig conf, double width) {
+    RasterExport out = new RasterExport();
+    // Measures the drawing at scale 1 to find the scale giving the requested width
+    out.setScale(1.0);
+    out.startMeasuring();
+    produceDrawing(conf, 1.0, out);
+    double scale = width / Math.max(1.0, out.getBoundingBox().width);
+    out.setScale(scale);
+    out.startMeasuring();
+    produceDrawing(conf, scale, out);
+    try {
+      out.startStreaming(Writer.nullWriter());
+      produceDrawing(conf, scale, out);
+      out.finishStreaming();
+    } catch (IOException e) {
+      // Cannot happen when writing to a null writer
+      throw new UncheckedIOException(e);
+    }
+    return out.getImage();
+  }
+
   public Rectangle2D.Double getBBox() {
     Rectangle2D.Double result = new Rectangle2D.Double(10, 10, 10, 10);
     double minx, maxx, miny, maxy;
@@ -1280,11 +1338,12 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
     miny = Double.MAX_VALUE;
     maxx = -Double.MAX_VALUE;
     maxy = -Double.MAX_VALUE;
+    BaseColumns c = columns();
     for (int i = 0; i < _listeBases.size(); i++) {
-      minx = Math.min(_listeBases.get(i).getCoords().getX() - BASE_RADIUS, minx);
-      miny = Math.min(_listeBases.get(i).getCoords().getY() - BASE_RADIUS, miny);
-      maxx = Math.max(_listeBases.get(i).getCoords().getX() + BASE_RADIUS, maxx);
-      maxy = Math.max(_listeBases.get(i).getCoords().getY() + BASE_RADIUS, maxy);
+      minx = Math.min(c._x[i] - BASE_RADIUS, minx);
+      miny = Math.min(c._y[i] - BASE_RADIUS, miny);
+      maxx = Math.max(c._x[i] + BASE_RADIUS, maxx);
+      maxy = Math.max(c._y[i] + BASE_RADIUS, maxy);
     }
     result.x = minx;
     result.y = miny;
@@ -1304,7 +1363,7 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
 
   public void setCoord(int index, double x, double y) {
     if (index < _listeBases.size()) {
-      _listeBases.get(index).setCoords(new Point2D.Double(x, y));
+      _listeBases.get(index).setCoords(x, y);
     }
   }
 
@@ -2123,17 +2182,12 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
     } else {
       drawLoop(0, _listeBases.size() - 1, 0, 0, dirAngle, coords, centers, angles, straightBulges);
     }
+    BaseColumns c = columns();
     for (int i = 0; i < _listeBases.size(); i++) {
-      _listeBases
-          .get(i)
-          .setCoords(
-              new Point2D.Double(
-                  coords[i].x * _spaceBetweenBases, coords[i].y * _spaceBetweenBases));
-      _listeBases
-          .get(i)
-          .setCenter(
-              new Point2D.Double(
-                  centers[i].x * _spaceBetweenBases, centers[i].y * _spaceBetweenBases));
+      c._x[i] = coords[i].x * _spaceBetweenBases;
+      c._y[i] = coords[i].y * _spaceBetweenBases;
+      c._centerX[i] = centers[i].x * _spaceBetweenBases;
+      c._centerY[i] = centers[i].y * _spaceBetweenBases;
     }
 
     // TODO
@@ -2145,46 +2199,43 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
     _drawMode = DRAW_MODE_NAVIEW;
     _drawn = true;
 
-    ArrayList<Double> X = new ArrayList<Double>(_listeBases.size());
-    ArrayList<Double> Y = new ArrayList<Double>(_listeBases.size());
-    ArrayList<Short> pair_table = new ArrayList<Short>(_listeBases.size());
+    BaseColumns c = columns();
+    double[] X = new double[_listeBases.size()];
+    double[] Y = new double[_listeBases.size()];
+    int[] pair_table = Arrays.copyOf(c._partners, _listeBases.size());
 
-    for (int i = 0; i < _listeBases.size(); i++) {
-      pair_table.add(Short.valueOf(String.valueOf(_listeBases.get(i).getElementStructure())));
-    }
     NAView naView = new NAView();
     naView.naview_xy_coordinates(pair_table, X, Y);
 
     // Updating individual base positions
     for (int i = 0; i < _listeBases.size(); i++) {
-      _listeBases
-          .get(i)
-          .setCoords(
-              new Point2D.Double(
-                  X.get(i) * 2.5 * conf._spaceBetweenBases,
-                  Y.get(i) * 2.5 * conf._spaceBetweenBases));
+      c._x[i] = X[i] * 2.5 * conf._spaceBetweenBases;
+      c._y[i] = Y[i] * 2.5 * conf._spaceBetweenBases;
     }
 
-    // Updating centers
+    // Updating centers, unpaired bases pointing towards the center of their loop
+    ArrayList<Vector<Integer>> loops = getAllLoopBases();
+    Point2D.Double[] loopCenters = new Point2D.Double[_listeBases.size()];
     for (int i = 0; i < _listeBases.size(); i++) {
-      int indicePartner = _listeBases.get(i).getElementStructure();
+      int indicePartner = c._partners[i];
       if (indicePartner != -1) {
-        Point2D.Double base = _listeBases.get(i).getCoords();
-        Point2D.Double partner = _listeBases.get(indicePartner).getCoords();
-        _listeBases
-            .get(i)
-            .setCenter(new Point2D.Double((base.x + partner.x) / 2.0, (base.y + partner.y) / 2.0));
+        c._centerX[i] = (c._x[i] + c._x[indicePartner]) / 2.0;
+        c._centerY[i] = (c._y[i] + c._y[indicePartner]) / 2.0;
       } else {
-        Vector<Integer> loop = getLoopBases(i);
-        double tmpx = 0.0;
-        double tmpy = 0.0;
-        for (int j = 0; j < loop.size(); j++) {
-          int partner = loop.elementAt(j);
-          Point2D.Double loopmember = _listeBases.get(partner).getCoords();
-          tmpx += loopmember.x;
-          tmpy += loopmember.y;
+        Vector<Integer> loop = loops.get(i);
+        int first = loop.elementAt(0);
+        if (loopCenters[first] == null) {
+          double tmpx = 0.0;
+          double tmpy = 0.0;
+          for (int j = 0; j < loop.size(); j++) {
+            int partner = loop.elementAt(j);
+            tmpx += c._x[partner];
+            tmpy += c._y[partner];
+          }
+          loopCenters[first] = new Point2D.Double(tmpx / loop.size(), tmpy / loop.size());
         }
-        _listeBases.get(i).setCenter(new Point2D.Double(tmpx / loop.size(), tmpy / loop.size()));
+        c._centerX[i] = loopCenters[first].x;
+        c._centerY[i] = loopCenters[first].y;
       }
     }
   }
@@ -2310,7 +2361,36 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
     setRNA(seq.toArray(new String[seq.size()]), str, baseIndex);
   }
 
+  /**
+   * Sets the RNA from a pair table whose pseudoknot orders are already known, so that neither a
+   * dot-bracket string is parsed nor the structure is planarized again.
+   *
+   * @param seq - The nucleotide of each base
+   * @param str - The 0-based partner of each base, or -1 if the base is unpaired
+   * @param pseudoknotOrders - The pseudoknot order of each base pair, stored at the index of its 5'
+   *     base: pairs of order 0 form the main structure, the others become auxiliary base pairs
+   * @throws ExceptionFileFormatOrSyntax
+   */
+  public void setRNA(String[] seq, int[] str, int[] pseudoknotOrders)
+      throws ExceptionFileFormatOrSyntax {
+    dotBracket = "";
+    setBases(seq, str, 1);
+    str = correctReciprocity(str);
+    int[] planarSubset = new int[str.length];
+    for (int i = 0; i < str.length; i++) {
+      int j = str[i];
+      boolean main = (j != -1) && pseudoknotOrders[Math.min(i, j)] == 0;
+      planarSubset[i] = main ? j : -1;
+    }
+    applyStruct(str, planarSubset, pseudoknotOrders);
+  }
+
   public void setRNA(String[] seq, int[] str, int baseIndex) throws ExceptionFileFormatOrSyntax {
+    setBases(seq, str, baseIndex);
+    applyStruct(str);
+  }
+
+  private void setBases(String[] seq, int[] str, int baseIndex) {
     clearAnnotations();
     _listeBases = new ArrayList<ModeleBase>();
     if (seq.length != str.length) {
@@ -2340,7 +2420,7 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
     for (int i = 0; i < str.length; i++) {
       _listeBases.add(new ModeleBaseNucleotide(seq[i], i, baseIndex + i));
     }
-    applyStruct(str);
+    columns();
   }
 
   /**
@@ -2378,6 +2458,7 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
       _listeBases.add(mb);
       j += 2;
     }
+    columns();
     for (int i = 0; i < size; i++) {
       if (array_struct[i] != -1) {
         this.addBPNow(i, array_struct[i], 0);
@@ -2582,6 +2663,31 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
     return result;
   }
 
+  /**
+   * Computes the loop of every unpaired base at once, walking each loop a single time.
+   *
+   * @return for each base index, the loop containing that base as returned by {@link
+   *     #getLoopBases(int)} for the first unpaired base of the loop, or <code>null</code> for
+   *     paired bases. All the unpaired bases of a loop share the same vector.
+   */
+  public ArrayList<Vector<Integer>> getAllLoopBases() {
+    ArrayList<Vector<Integer>> result = new ArrayList<Vector<Integer>>(_listeBases.size());
+    for (int i = 0; i < _listeBases.size(); i++) {
+      result.add(null);
+    }
+    for (int i = 0; i < _listeBases.size(); i++) {
+      if (_listeBases.get(i).getElementStructure() == -1 && result.get(i) == null) {
+        Vector<Integer> loop = getLoopBases(i);
+        for (int j : loop) {
+          if (_listeBases.get(j).getElementStructure() == -1) {
+            result.set(j, loop);
+          }
+        }
+      }
+    }
+    return result;
+  }
+
   /**
    * Returns the RNA secondary structure displayed by this panel as a well-parenthesized word,
    * accordingly to the DBN format
@@ -2776,12 +2882,8 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
   }
 
   public int[] getNonCrossingStruct() {
-    int[] result = new int[_listeBases.size()];
     // Adding "planar" base-pairs
-    for (int i = 0; i < _listeBases.size(); i++) {
-      result[i] = _listeBases.get(i).getElementStructure();
-    }
-    return result;
+    return Arrays.copyOf(columns()._partners, _listeBases.size());
   }
 
   public int[] getNonOverlappingStruct() {
@@ -2934,11 +3036,14 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
       planarSubset = planarizeFromDotBracket(str);
       pseudoknotOrders = analyzePseudoknotOrders(str);
     }
+    applyStruct(str, planarSubset, pseudoknotOrders);
+  }
 
+  private void applyStruct(int[] str, int[] planarSubset, int[] pseudoknotOrders) {
     if (treatIsolatedAsNonPlanar) {
       planarSubset = RNA.removeIsolatedFromMainStructure(planarSubset);
     }
-    _structureAux.clear();
+    clearAuxBPs();
 
     for (int i = 0; i < planarSubset.length; i++) {
       if (str[i] > i) {
@@ -3005,6 +3110,31 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
     return _listeBases;
   }
 
+  /**
+   * Returns the columns holding the coordinates, centers and partners of the bases, each base at
+   * its index. The bases are first moved to new columns if the list changed since the last call.
+   */
+  BaseColumns columns() {
+    if (_columns == null || !_columns.holds(_listeBases)) {
+      BaseColumns columns = new BaseColumns(_listeBases.size());
+      for (int i = 0; i < _listeBases.size(); i++) {
+        _listeBases.get(i).moveTo(columns, i);
+      }
+      _columns = columns;
+    }
+    return _columns;
+  }
+
+  /** Returns the x coordinates of the bases, in a new array. */
+  public double[] getXCoords() {
+    return Arrays.copyOf(columns()._x, _listeBases.size());
+  }
+
+  /** Returns the y coordinates of the bases, in a new array. */
+  public double[] getYCoords() {
+    return Arrays.copyOf(columns()._y, _listeBases.size());
+  }
+
   public int getSize() {
     return _listeBases.size();
   }
@@ -3259,10 +3389,92 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
    * public boolean getDrawn() { return _drawn; }
    */
 
+  /**
+   * Returns the additional bonds of this RNA. The list must not be modified directly, as the
+   * per-base index of these bonds would then be out of date: use {@link #addBPAux(int, int,
+   * ModeleBP)} and {@link #removeBP(ModeleBP)} instead.
+   */
   public ArrayList<ModeleBP> getStructureAux() {
     return _structureAux;
   }
 
+  private static long pairKey(int index5, int index3) {
+    return ((long) index5 << 32) | (index3 & 0xFFFFFFFFL);
+  }
+
+  private void registerAuxBP(ModeleBP msbp) {
+    int i = msbp.getPartner5().getIndex();
+    int j = msbp.getPartner3().getIndex();
+    _structureAux.add(msbp);
+    indexAuxBP(i, msbp);
+    if (j != i) {
+      indexAuxBP(j, msbp);
+    }
+    _structureAuxByPair.put(pairKey(i, j), msbp);
+  }
+
+  private void indexAuxBP(int index, ModeleBP msbp) {
+    ArrayList<ModeleBP> bps = _structureAuxByBase.get(index);
+    if (bps == null) {
+      bps = new ArrayList<ModeleBP>(2);
+      _structureAuxByBase.put(index, bps);
+    }
+    bps.add(msbp);
+  }
+
+  private boolean unregisterAuxBP(ModeleBP msbp) {
+    int i = msbp.getPartner5().getIndex();
+    int j = msbp.getPartner3().getIndex();
+    ArrayList<ModeleBP> bps = _structureAuxByBase.get(i);
+    if (bps == null || !bps.remove(msbp)) {
+      return false;
+    }
+    if (bps.isEmpty()) {
+      _structureAuxByBase.remove(i);
+    }
+    if (j != i) {
+      bps = _structureAuxByBase.get(j);
+      bps.remove(msbp);
+      if (bps.isEmpty()) {
+        _structureAuxByBase.remove(j);
+      }
+    }
+    _structureAux.remove(msbp);
+
+    // Fall back to an older bond between the same bases, if any
+    long key = pairKey(i, j);
+    if (_structureAuxByPair.get(key) == msbp) {
+      _structureAuxByPair.remove(key);
+      bps = _structureAuxByBase.get(i);
+      if (bps != null) {
+        for (ModeleBP bp : bps) {
+          if (bp.getPartner5().getIndex() == i && bp.getPartner3().getIndex() == j) {
+            _structureAuxByPair.put(key, bp);
+          }
+        }
+      }
+    }
+    return true;
+  }
+
+  private void clearAuxBPs() {
+    _structureAux.clear();
+    _structureAuxByBase.clear();
+    _structureAuxByPair.clear();
+  }
+
+  // The indexes of the additional bonds are not serialized, but rebuilt in the same order
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    _structureAuxByBase = new HashMap<Integer, ArrayList<ModeleBP>>();
+    _structureAuxByPair = new HashMap<Long, ModeleBP>();
+    ArrayList<ModeleBP> structureAux = new ArrayList<ModeleBP>(_structureAux);
+    _structureAux.clear();
+    for (ModeleBP msbp : structureAux) {
+      registerAuxBP(msbp);
+    }
+  }
+
   /**
    * Translates a base number into its corresponding index. Although both should be unique, base
    * numbers are not necessarily contiguous, and indices should be preferred for any reasonably
@@ -3341,9 +3553,7 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
   }
 
   public void removeBP(ModeleBP ms) {
-    if (_structureAux.contains(ms)) {
-      _structureAux.remove(ms);
-    } else {
+    if (!unregisterAuxBP(ms)) {
       ModeleBase m5 = ms.getPartner5();
       ModeleBase m3 = ms.getPartner3();
       int i = m5.getIndex();
@@ -3374,7 +3584,7 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
     ModeleBase part5 = _listeBases.get(i);
     ModeleBase part3 = _listeBases.get(j);
     ModeleBP msbp = new ModeleBP(part5, part3);
-    msbp.getStyle().setCustomColor(pseudoknotColors[pseudoknotOrder]);
+    msbp.setStyle(msbp.getStyleReadOnly().withCustomColor(getPseudoknotColor(pseudoknotOrder)));
     addBPnow(i, j, msbp);
   }
 
@@ -3400,11 +3610,16 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
     part3.setElementStructure(i, msbp);
   }
 
+  // Levels beyond the palette cycle through it again
+  private Color getPseudoknotColor(int pseudoknotOrder) {
+    return pseudoknotColors[Math.max(0, pseudoknotOrder) % pseudoknotColors.length];
+  }
+
   public void addBPAux(int i, int j, int pseudoknotOrder) {
     ModeleBase part5 = _listeBases.get(i);
     ModeleBase part3 = _listeBases.get(j);
     ModeleBP msbp = new ModeleBP(part5, part3);
-    msbp.getStyle().setCustomColor(pseudoknotColors[pseudoknotOrder]);
+    msbp.setStyle(msbp.getStyleReadOnly().withCustomColor(getPseudoknotColor(pseudoknotOrder)));
     addBPAux(i, j, msbp);
   }
 
@@ -3418,7 +3633,7 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
     ModeleBase part3 = _listeBases.get(j);
     msbp.setPartner5(part5);
     msbp.setPartner3(part3);
-    _structureAux.add(msbp);
+    registerAuxBP(msbp);
   }
 
   public ArrayList<ModeleBP> getBPsAt(int i) {
@@ -3426,12 +3641,7 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
     if (_listeBases.get(i).getElementStructure() != -1) {
       result.add(_listeBases.get(i).getStyleBP());
     }
-    for (int k = 0; k < _structureAux.size(); k++) {
-      ModeleBP bp = _structureAux.get(k);
-      if ((bp.getPartner5().getIndex() == i) || (bp.getPartner3().getIndex() == i)) {
-        result.add(bp);
-      }
-    }
+    result.addAll(getAuxBPs(i));
     return result;
   }
 
@@ -3445,11 +3655,9 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
     if (_listeBases.get(i).getElementStructure() == j) {
       result = _listeBases.get(i).getStyleBP();
     }
-    for (int k = 0; k < _structureAux.size(); k++) {
-      ModeleBP bp = _structureAux.get(k);
-      if ((bp.getPartner5().getIndex() == i) && (bp.getPartner3().getIndex() == j)) {
-        result = bp;
-      }
+    ModeleBP aux = _structureAuxByPair.get(pairKey(i, j));
+    if (aux != null) {
+      result = aux;
     }
     return result;
   }
@@ -3482,40 +3690,38 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
   }
 
   public ArrayList<ModeleBP> getAuxBPs(int i) {
-    ArrayList<ModeleBP> result = new ArrayList<ModeleBP>();
-    for (ModeleBP bp : _structureAux) {
-      if ((bp.getPartner5().getIndex() == i) || (bp.getPartner3().getIndex() == i)) {
-        result.add(bp);
-      }
+    ArrayList<ModeleBP> bps = _structureAuxByBase.get(i);
+    if (bps == null) {
+      return new ArrayList<ModeleBP>();
     }
-    return result;
+    return new ArrayList<ModeleBP>(bps);
   }
 
   public void setBaseInnerColor(Color c) {
     for (int i = 0; i < _listeBases.size(); i++) {
       ModeleBase mb = _listeBases.get(i);
-      mb.getStyleBase().setBaseInnerColor(c);
+      mb.setStyleBase(mb.getStyleBaseReadOnly().withBaseInnerColor(c));
     }
   }
 
   public void setBaseNumbersColor(Color c) {
     for (int i = 0; i < _listeBases.size(); i++) {
       ModeleBase mb = _listeBases.get(i);
-      mb.getStyleBase().setBaseNumberColor(c);
+      mb.setStyleBase(mb.getStyleBaseReadOnly().withBaseNumberColor(c));
     }
   }
 
   public void setBaseNameColor(Color c) {
     for (int i = 0; i < _listeBases.size(); i++) {
       ModeleBase mb = _listeBases.get(i);
-      mb.getStyleBase().setBaseNameColor(c);
+      mb.setStyleBase(mb.getStyleBaseReadOnly().withBaseNameColor(c));
     }
   }
 
   public void setBaseOutlineColor(Color c) {
     for (int i = 0; i < _listeBases.size(); i++) {
       ModeleBase mb = _listeBases.get(i);
-      mb.getStyleBase().setBaseOutlineColor(c);
+      mb.setStyleBase(mb.getStyleBaseReadOnly().withBaseOutlineColor(c));
     }
   }
 
@@ -3938,20 +4144,131 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
     }
   }
 
+  /**
+   * Returns a deep copy of this RNA: bases, base pairs, styles, annotations and backbone are
+   * duplicated, preserving which objects they share, while immutable values such as colors, fonts
+   * and backbone elements are shared with this RNA. Listeners are not copied.
+   */
   public RNA clone() {
-    try {
-      ByteArrayOutputStream out = new ByteArrayOutputStream();
-      ObjectOutputStream oout = new ObjectOutputStream(out);
-      oout.writeObject(this);
+    RNA result = new RNA(_name);
+    new StructuralCopy(result).copyFrom(this);
+    return result;
+  }
+
+  /**
+   * Copies the object graph of an RNA, mapping each base, base pair and list of bases to a single
+   * copy so that the copies refer to each other as the originals do.
+   */
+  private static final class StructuralCopy {
+    private final RNA _copy;
+    private final IdentityHashMap<ModeleBase, ModeleBase> _bases =
+        new IdentityHashMap<ModeleBase, ModeleBase>();
+    private final IdentityHashMap<ModeleBP, ModeleBP> _bps =
+        new IdentityHashMap<ModeleBP, ModeleBP>();
+    private final IdentityHashMap<ArrayList<ModeleBase>, ArrayList<ModeleBase>> _lists =
+        new IdentityHashMap<ArrayList<ModeleBase>, ArrayList<ModeleBase>>();
+
+    private StructuralCopy(RNA copy) {
+      _copy = copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void copyFrom(RNA rna) {
+      RNA copy = _copy;
+      copy._debugShape = (rna._debugShape == null) ? null : (GeneralPath) rna._debugShape.clone();
+      copy._drawMode = rna._drawMode;
+      copy._drawn = rna._drawn;
+      copy._id = rna._id;
+      copy._bpHeightIncrement = rna._bpHeightIncrement;
+      copy.CHEM_PROB_DIST = rna.CHEM_PROB_DIST;
+      copy.CHEM_PROB_BASE_LENGTH = rna.CHEM_PROB_BASE_LENGTH;
+      copy.CHEM_PROB_ARROW_HEIGHT = rna.CHEM_PROB_ARROW_HEIGHT;
+      copy.CHEM_PROB_ARROW_WIDTH = rna.CHEM_PROB_ARROW_WIDTH;
+      copy.CHEM_PROB_TRIANGLE_WIDTH = rna.CHEM_PROB_TRIANGLE_WIDTH;
+      copy.CHEM_PROB_PIN_SEMIDIAG = rna.CHEM_PROB_PIN_SEMIDIAG;
+      copy.CHEM_PROB_DOT_RADIUS = rna.CHEM_PROB_DOT_RADIUS;
+      copy.treatIsolatedAsNonPlanar = rna.treatIsolatedAsNonPlanar;
+      copy.dotBracket = rna.dotBracket;
+      copy._strandEndsAnnotated = rna._strandEndsAnnotated;
+      copy._numberedBases =
+          (rna._numberedBases == null) ? null : (BitSet) rna._numberedBases.clone();
+      copy._backbone = rna._backbone.clone();
+
+      // Bases are copied straight into the columns of the copy
+      int size = rna._listeBases.size();
+      BaseColumns columns = new BaseColumns(size);
+      copy._listeBases = new ArrayList<ModeleBase>(size);
+      for (int i = 0; i < size; i++) {
+        ModeleBase mb = rna._listeBases.get(i);
+        ModeleBase result = _bases.get(mb);
+        if (result == null) {
+          result = mb.copy(columns, i);
+          _bases.put(mb, result);
+        }
+        copy._listeBases.add(result);
+      }
+      copy._columns = columns;
+      for (ModeleBase mb : rna._listeBases) {
+        if (mb.getStyleBP() != null) {
+          base(mb).setStyleBP(bp(mb.getStyleBP()));
+        }
+      }
+      for (ModeleBP msbp : rna._structureAux) {
+        copy.registerAuxBP(bp(msbp));
+      }
+
+      for (TextAnnotation ta : rna._listeAnnotations) {
+        Object anchor = ta.getAncrage();
+        switch (ta.getType()) {
+          case BASE:
+            anchor = base((ModeleBase) anchor);
+            break;
+          case POSITION:
+            anchor = new VARNAPoint(((VARNAPoint) anchor).x, ((VARNAPoint) anchor).y);
+            break;
+          default:
+            anchor = list((ArrayList<ModeleBase>) anchor);
+            break;
+        }
+        copy._listeAnnotations.add(ta.clone(anchor));
+      }
+      for (HighlightRegionAnnotation hra : rna._listeRegionHighlights) {
+        copy._listeRegionHighlights.add(hra.clone(list(hra.getBases())));
+      }
+      for (ChemProbAnnotation cpa : rna._chemProbAnnotations) {
+        copy._chemProbAnnotations.add(
+            cpa.clone(base(cpa.getFirstBase()), base(cpa.getSecondBase())));
+      }
+    }
 
-      ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(out.toByteArray()));
-      return (RNA) in.readObject();
-    } catch (Exception e) {
-      throw new RuntimeException(
-          "cannot clone class ["
-              + this.getClass().getName()
-              + "] via serialization: "
-              + e.toString());
+    private ModeleBase base(ModeleBase mb) {
+      ModeleBase result = _bases.get(mb);
+      if (result == null && mb != null) {
+        result = mb.copy();
+        _bases.put(mb, result);
+      }
+      return result;
+    }
+
+    private ModeleBP bp(ModeleBP msbp) {
+      ModeleBP result = _bps.get(msbp);
+      if (result == null) {
+        result = msbp.clone(base(msbp.getPartner5()), base(msbp.getPartner3()));
+        _bps.put(msbp, result);
+      }
+      return result;
+    }
+
+    private ArrayList<ModeleBase> list(ArrayList<ModeleBase> bases) {
+      ArrayList<ModeleBase> result = _lists.get(bases);
+      if (result == null && bases != null) {
+        result = new ArrayList<ModeleBase>(bases.size());
+        for (ModeleBase mb : bases) {
+          result.add(base(mb));
+        }
+        _lists.put(bases, result);
+      }
+      return result;
     }
   }
 
@@ -4148,8 +4465,8 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
       ModeleBase b1 = _listeBases.get(i);
       for (int j = i + 1; j < _listeBases.size(); j++) {
         ModeleBase b2 = _listeBases.get(j);
-        Point2D.Double p1 = b1._coords.toPoint2D();
-        Point2D.Double p2 = b2._coords.toPoint2D();
+        Point2D.Double p1 = b1.getCoords();
+        Point2D.Double p2 = b2.getCoords();
         double dist = p1.distance(p2);
         if (dist > maxDist) {
           maxDist = dist;
@@ -4237,11 +4554,12 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
   }
 
   public void rescale(double d) {
-    for (ModeleBase mb : _listeBases) {
-      mb._coords.x *= d;
-      mb._coords.y *= d;
-      mb._center.x *= d;
-      mb._center.y *= d;
+    BaseColumns c = columns();
+    for (int i = 0; i < _listeBases.size(); i++) {
+      c._x[i] *= d;
+      c._y[i] *= d;
+      c._centerX[i] *= d;
+      c._centerY[i] *= d;
     }
   }
 
@@ -4258,6 +4576,6 @@ public class RNA extends InterfaceVARNAObservable implements Serializable {
       final ModeleBP.Stericity ster) {
     final ModeleBase part5 = _listeBases.get(i);
     final ModeleBase part3 = _listeBases.get(j);
-    _structureAux.add(new ModeleBP(part5, part3, edge5, edge3, ster));
+    registerAuxBP(new ModeleBP(part5, part3, edge5, edge3, ster));
   }
 }
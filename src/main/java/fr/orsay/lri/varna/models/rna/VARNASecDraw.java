@@ -758,7 +758,7 @@ public class VARNASecDraw {
     }
   }
 
-  public static Random _rnd = new Random();
+  private final Random _rnd = new Random();
 
   private static int MAX_NUM_DIR = 8;
 
@@ -53,7 +53,7 @@ public class BatchBenchmark {
           ExceptionNAViewAlgorithm,
           IOException {
     // load template
-    RNATemplate template = RNATemplate.fromXMLFile(templatePath);
+    RNATemplate template = RNATemplateCache.getTemplate(templatePath);
 
     // load RNA
     RNA rna = loadRNA(rnaPath);
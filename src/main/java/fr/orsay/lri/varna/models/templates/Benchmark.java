@@ -1,8 +1,8 @@
 package fr.orsay.lri.varna.models.templates;
 
-import fr.orsay.lri.varna.models.geom.LinesIntersect;
+import fr.orsay.lri.varna.models.geom.SegmentCrossings;
 import fr.orsay.lri.varna.models.rna.RNA;
-import java.awt.geom.Line2D;
+import java.awt.geom.Point2D;
 import java.util.Arrays;
 
 /**
@@ -35,23 +35,12 @@ public class Benchmark {
   }
 
   private void computeAll() {
+    double[] x = rna.getXCoords();
+    double[] y = rna.getYCoords();
+    int[] partners = rna.getNonCrossingStruct();
+
     // Compute number of backbone crossings
-    {
-      int n = rna.getSize();
-      Line2D.Double[] lines = new Line2D.Double[n - 1];
-      for (int i = 0; i < n - 1; i++) {
-        lines[i] = new Line2D.Double(rna.getCoords(i), rna.getCoords(i + 1));
-      }
-      int intersectLines = 0;
-      for (int i = 0; i < n - 1; i++) {
-        for (int j = i + 2; j < n - 1; j++) {
-          if (LinesIntersect.linesIntersect(lines[i], lines[j])) {
-            intersectLines++;
-          }
-        }
-      }
-      backboneCrossings = intersectLines;
-    }
+    backboneCrossings = SegmentCrossings.countPolylineCrossings(x, y);
 
     // Stats about distances between consecutive bases not both part of an helix
     {
@@ -59,11 +48,11 @@ public class Benchmark {
       double sum = 0;
       int count = 0;
       for (int i = 0; i < n - 1; i++) {
-        int indexOfAssociatedBase1 = rna.getBaseAt(i).getElementStructure();
-        int indexOfAssociatedBase2 = rna.getBaseAt(i + 1).getElementStructure();
+        int indexOfAssociatedBase1 = partners[i];
+        int indexOfAssociatedBase2 = partners[i + 1];
         if (indexOfAssociatedBase1 != -1 || indexOfAssociatedBase2 != -1) {
           // If they are not both associated (ie. not part of an helix)
-          sum += rna.getBaseAt(i).getCoords().distance(rna.getBaseAt(i + 1).getCoords());
+          sum += Point2D.distance(x[i], y[i], x[i + 1], y[i + 1]);
           count++;
         }
       }
@@ -76,7 +65,7 @@ public class Benchmark {
       double distances[] = new double[n - 1];
       for (int i = 0; i < n - 1; i++) {
         // If they are not both associated (ie. not part of an helix)
-        distances[i] = rna.getBaseAt(i).getCoords().distance(rna.getBaseAt(i + 1).getCoords());
+        distances[i] = Point2D.distance(x[i], y[i], x[i + 1], y[i + 1]);
       }
       Arrays.sort(distances);
       double median = distances[distances.length / 2];
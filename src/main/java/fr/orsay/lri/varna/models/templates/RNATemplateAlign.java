@@ -335,9 +335,11 @@ public class RNATemplateAlign {
       RNA rna, RNATemplate template) throws RNATemplateDrawingAlgorithmException {
     try {
       Tree<RNANodeValue2> rnaAsTree = RNATree2.RNATree2FromRNA(rna);
-      Tree<RNANodeValueTemplate> templateAsTree = template.toTree();
+      Tree<RNANodeValueTemplate> templateAsTree = RNATemplateCache.getTree(template);
       TreeAlign<RNANodeValue2, RNANodeValueTemplate> treeAlign =
           new TreeAlign<RNANodeValue2, RNANodeValueTemplate>(new RNANodeValue2TemplateDistance());
+      // The distance has no state, so it can be called from several threads
+      treeAlign.setParallel(true);
       TreeAlignResult<RNANodeValue2, RNANodeValueTemplate> result =
           treeAlign.align(rnaAsTree, templateAsTree);
       return result;
@@ -0,0 +1,161 @@
+package fr.orsay.lri.varna.models.templates;
+
+import fr.orsay.lri.varna.exceptions.ExceptionInvalidRNATemplate;
+import fr.orsay.lri.varna.exceptions.ExceptionXmlLoading;
+import fr.orsay.lri.varna.models.treealign.Tree;
+import java.io.File;
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Templates loaded from XML files, with their tree form, shared by the whole process so that
+ * drawing many RNAs like the same few templates parses each file and builds each tree only once.
+ *
+ * <p>Files are keyed by their canonical path, and loaded again when their modification time or
+ * length changes. The least recently used files are forgotten once more than {@link #getMaxSize()}
+ * are held. Templates returned by {@link #getTemplate(File)} are shared and must not be modified;
+ * load a template with {@link RNATemplate#fromXMLFile(File)} to edit it. All methods may be called
+ * from several threads.
+ */
+public class RNATemplateCache {
+  private static final int DEFAULT_MAX_SIZE = 32;
+
+  private static int _maxSize = DEFAULT_MAX_SIZE;
+
+  // In least recently used order, guarded by _files
+  private static final LinkedHashMap<String, Entry> _files =
+      new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+  // The entries of the templates loaded by this cache, guarded by _files
+  private static final Map<RNATemplate, Entry> _templates =
+      new IdentityHashMap<RNATemplate, Entry>();
+
+  private RNATemplateCache() {}
+
+  /**
+   * Returns the template of an XML file, parsing it only if it was not loaded yet or was modified
+   * since.
+   */
+  public static RNATemplate getTemplate(File file) throws ExceptionXmlLoading {
+    String path;
+    try {
+      path = file.getCanonicalPath();
+    } catch (IOException e) {
+      path = file.getAbsolutePath();
+    }
+    long lastModified = file.lastModified();
+    long length = file.length();
+    Entry entry;
+    synchronized (_files) {
+      entry = _files.get(path);
+      if (entry == null || entry._lastModified != lastModified || entry._length != length) {
+        if (entry != null) {
+          _files.remove(path);
+          forget(entry);
+        }
+        entry = new Entry(lastModified, length);
+        _files.put(path, entry);
+        evict();
+      }
+    }
+    // Other files can be loaded meanwhile, only callers of this one wait for it
+    synchronized (entry) {
+      if (entry._template == null) {
+        try {
+          entry._template = RNATemplate.fromXMLFile(file);
+        } catch (ExceptionXmlLoading e) {
+          synchronized (_files) {
+            if (_files.get(path) == entry) {
+              _files.remove(path);
+            }
+          }
+          throw e;
+        }
+        synchronized (_files) {
+          if (_files.get(path) == entry) {
+            _templates.put(entry._template, entry);
+          }
+        }
+      }
+      return entry._template;
+    }
+  }
+
+  /**
+   * Returns the tree form of a template, as given by {@link RNATemplate#toTree()}. It is built once
+   * for templates returned by {@link #getTemplate(File)}, and must then not be modified. Other
+   * templates may have changed since the last call, so their tree is built every time.
+   */
+  public static Tree<RNANodeValueTemplate> getTree(RNATemplate template)
+      throws ExceptionInvalidRNATemplate {
+    Entry entry;
+    synchronized (_files) {
+      entry = _templates.get(template);
+    }
+    if (entry == null) {
+      return template.toTree();
+    }
+    synchronized (entry) {
+      if (entry._tree == null) {
+        entry._tree = template.toTree();
+      }
+      return entry._tree;
+    }
+  }
+
+  public static int getMaxSize() {
+    synchronized (_files) {
+      return _maxSize;
+    }
+  }
+
+  /** Sets how many files are held at most. */
+  public static void setMaxSize(int maxSize) {
+    synchronized (_files) {
+      _maxSize = Math.max(1, maxSize);
+      evict();
+    }
+  }
+
+  /** Forgets all files, for instance after templates were edited in place. */
+  public static void clear() {
+    synchronized (_files) {
+      _files.clear();
+      _templates.clear();
+    }
+  }
+
+  // Called with _files held
+  private static void evict() {
+    Iterator<Entry> it = _files.values().iterator();
+    while (_files.size() > _maxSize && it.hasNext()) {
+      Entry entry = it.next();
+      it.remove();
+      forget(entry);
+    }
+  }
+
+  // Called with _files held, once the entry is no longer in _files
+  private static void forget(Entry entry) {
+    if (entry != null && entry._template != null) {
+      _templates.remove(entry._template);
+    }
+  }
+
+  private static final class Entry {
+    private final long _lastModified;
+    private final long _length;
+    // Set once with the entry held, read by forget() without it
+    private volatile RNATemplate _template;
+    // Guarded by the entry
+    private Tree<RNANodeValueTemplate> _tree;
+
+    private Entry(long lastModified, long length) {
+      _lastModified = lastModified;
+      _length = length;
+    }
+  }
+}
@@ -1,6 +1,8 @@
 package fr.orsay.lri.varna.models.treealign;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 /**
  * Tree alignment algorithm. This class implements the tree alignment algorithm for ordered trees
@@ -45,11 +47,37 @@ public class TreeAlign<ValueType1, ValueType2> {
 
     /** Values of nodes. */
     public ValueType[] values;
+
+    /** subtreeSizes[i] is the number of nodes in the subtree rooted at i. */
+    public int[] subtreeSizes;
+
+    /** heights[i] is the height of the subtree rooted at i, 0 for a leaf. */
+    public int[] heights;
+
+    /**
+     * Where the forests of children of each node are stored in the rows of Aligner.DF1 and
+     * Aligner.DF2: for every node i, the forests made of its children s to p take the entries
+     * forestOffsets[children[i][s]] to forestOffsets[children[i][s]] + m_i - s, where m_i is the
+     * degree of i. The root has no offset.
+     */
+    public int[] forestOffsets;
+
+    /** The total number of entries described by forestOffsets. */
+    public int forestsLength;
   }
 
   /** The distance function between labels. */
   private TreeAlignLabelDistanceAsymmetric<ValueType1, ValueType2> labelDist;
 
+  /** Nodes whose subtree sizes differ by a greater ratio are not aligned, see setBandRatio(). */
+  private double bandRatio = Double.POSITIVE_INFINITY;
+
+  /** Whether pairs of nodes are aligned on several threads, see setParallel(). */
+  private boolean parallel = false;
+
+  /** In parallel, each task computes at least this many pairs of nodes. */
+  private static final int MIN_PAIRS_PER_TASK = 16;
+
   /**
    * Create a TreeAlignSymmetric object, which can align trees. The distance function will be called
    * only once on every pair of nodes. The result is then kept in a matrix, so you need not manage
@@ -63,6 +91,43 @@ public class TreeAlign<ValueType1, ValueType2> {
     this.labelDist = labelDist;
   }
 
+  /**
+   * Restrict the alignment to pairs of nodes whose subtrees have similar sizes: a node of T1 is
+   * never aligned with a node of T2 if one of their subtrees has more than ratio times as many
+   * nodes as the other (the roots are always aligned). The other pairs are neither computed nor
+   * stored, which saves time and memory on large trees, but the alignment found may then no longer
+   * be optimal. By default the ratio is infinite, so that the alignment is exact.
+   *
+   * @param ratio The maximum ratio between subtree sizes, at least 1.
+   */
+  public void setBandRatio(double ratio) {
+    if (!(ratio >= 1)) {
+      throw new IllegalArgumentException("Band ratio must be at least 1: " + ratio);
+    }
+    bandRatio = ratio;
+  }
+
+  public double getBandRatio() {
+    return bandRatio;
+  }
+
+  /**
+   * Compute the distances between subtrees on several threads (in the common fork/join pool). A
+   * pair of nodes only depends on the pairs of their children, so all pairs of nodes whose subtree
+   * heights have the same sum are computed at once, one such wave after the other. Every pair is
+   * computed exactly as in sequential mode, so the distance and the alignment are the same. The
+   * label distance is then called from several threads at once, so it must be thread-safe.
+   *
+   * @param parallel Whether to use several threads, false by default.
+   */
+  public void setParallel(boolean parallel) {
+    this.parallel = parallel;
+  }
+
+  public boolean isParallel() {
+    return parallel;
+  }
+
   private class ConvertTreeToArray<ValueType> {
     private int nextNodeIndex = 0;
     private TreeData<ValueType> treeData;
@@ -103,6 +168,16 @@ public class TreeAlign<ValueType1, ValueType2> {
       siblingIndexes[siblingNumber] = myIndex;
       // Record my children indexes
       treeData.children[myIndex] = childrenIndexes;
+      // Compute my subtree size and where the forests of my children are stored
+      treeData.subtreeSizes[myIndex] = 1;
+      treeData.heights[myIndex] = 0;
+      for (int t = 0; t < numberOfChildren; t++) {
+        treeData.subtreeSizes[myIndex] += treeData.subtreeSizes[childrenIndexes[t]];
+        treeData.heights[myIndex] =
+            Math.max(treeData.heights[myIndex], treeData.heights[childrenIndexes[t]] + 1);
+        treeData.forestOffsets[childrenIndexes[t]] = treeData.forestsLength;
+        treeData.forestsLength += numberOfChildren - t + 1;
+      }
     }
 
     /**
@@ -122,12 +197,22 @@ public class TreeAlign<ValueType1, ValueType2> {
       treeData.children = new int[treeData.size][];
       treeData.degrees = new int[treeData.size];
       treeData.values = (ValueType[]) new Object[treeData.size];
+      treeData.subtreeSizes = new int[treeData.size];
+      treeData.heights = new int[treeData.size];
+      treeData.forestOffsets = new int[treeData.size];
+      treeData.forestsLength = 0;
       int rootIndex[] = new int[1];
       convertTreeToArrayAux(treeData.tree, rootIndex, 0);
     }
   }
 
-  /** For arrays that take at least O(|T1|*|T2|) we take care not to use too big data types. */
+  /**
+   * For arrays that take at least O(|T1|*|T2|) we take care not to use too big data types. The
+   * forest distance tables of each pair of nodes are computed in a reused buffer, and only their
+   * last row or column, which is all that later pairs read, is kept. Which term gave the min in a
+   * forest distance table is only needed to build the alignment, for the few tables it goes
+   * through, so these decisions are computed again at that time.
+   */
   private class Aligner {
     /** The first tree. */
     private TreeData<ValueType1> treeData1;
@@ -136,34 +221,18 @@ public class TreeAlign<ValueType1, ValueType2> {
     private TreeData<ValueType2> treeData2;
 
     /**
-     * DF1[i][j_t] is DFL for (i,j,s,t) with s=0. See description of DFL in
-     * Aligner.computeAlignmentP1(). DF1 and DF2 are the "big" arrays, ie. those that may the space
-     * complexity what it is.
+     * DF1[i] holds the last row of DFL for (i,j,s,t) with s=0 (see description of DFL in
+     * Aligner.computeForestDistances()), for every node j_t of the second tree which is child t of
+     * its father j: DF1[i][forestOffsets[j_t] + qr] is DFL[m_i][qr]. DF1[i] is null if node i was
+     * aligned with no node of the second tree, see setBandRatio().
      */
-    private float[][][][] DF1;
+    private float[][] DF1;
 
     /**
-     * DF2[j][i_s] is DFL for (i,j,s,t) with t=0. See description of DFL in
-     * Aligner.computeAlignmentP1().
+     * DF2[j] holds the last column of DFL for (i,j,s,t) with t=0, for every node i_s of the first
+     * tree which is child s of its father i: DF2[j][forestOffsets[i_s] + pr] is DFL[pr][n_j].
      */
-    private float[][][][] DF2;
-
-    /**
-     * This arrays have the same shape as respectively DF1. They are used to remember which term in
-     * the minimum won, so that we can compute the alignment. Decision1 is a case number (< 10) and
-     * Decision2 is a child index, hence the types.
-     */
-    private byte[][][][] DF1Decisions1;
-
-    private short[][][][] DF1Decisions2;
-
-    /**
-     * This arrays have the same shape as respectively DF2. They are used to remember which term in
-     * the minimum won, so that we can compute the alignment.
-     */
-    private byte[][][][] DF2Decisions1;
-
-    private short[][][][] DF2Decisions2;
+    private float[][] DF2;
 
     /**
      * Distances between subtrees. DT[i][j] is the distance between the subtree rooted at i in the
@@ -179,11 +248,11 @@ public class TreeAlign<ValueType1, ValueType2> {
 
     private short[][] DTDecisions2;
 
-    /**
-     * Distances between labels. DL[i][j] is the distance labelDist.f(value(T1[i]), value(T2[i])).
-     * By convention, we say that value(T1[|T1|]) = null and value(T2[|T2|]) = null
-     */
-    private float[][] DL;
+    /** DL1[i] is the distance labelDist.f(value(T1[i]), null), ie. the cost of deleting i. */
+    private float[] DL1;
+
+    /** DL2[j] is the distance labelDist.f(null, value(T2[j])), ie. the cost of inserting j. */
+    private float[] DL2;
 
     /**
      * DET1[i] is the distance between the empty tree and T1[i] (the subtree rooted at node i in the
@@ -203,43 +272,42 @@ public class TreeAlign<ValueType1, ValueType2> {
     /** Same as DEF1, but for second tree. */
     private float[] DEF2;
 
+    /** The DFL buffer, large enough for any pair of nodes. */
+    private float[][] DFLBuffer;
+
+    /** The decisions of the DFL tables needed to build the alignment, by tableKey(). */
+    private HashMap<Long, ForestDecisions> forestDecisions = new HashMap<Long, ForestDecisions>();
+
     /**
+     * Fills DFL for (i,j,s,t) and, if they are not null, its decision tables.
+     *
      * @param i node in T1
      * @param s number of first child of i to consider
      * @param m_i degree of i
      * @param j node in T2
      * @param t number of first child of j to consider
      * @param n_j degree of j
-     * @param DFx which array to fill (DF1 or DF2)
+     * @param DFL DFL[pr][qr] is D(F1[i_s, i_p], F2[j_t, j_q]) where p=s+pr-1 and q=t+qr-1 (ie.
+     *     pr=p-s+1 and qr=q-t+1) By convention, F1[i_s, i_{s-1}] and F2[j_t, j_{t-1}] are the empty
+     *     forests. Said differently, DFL[pr][qr] is the distance between the forest of the pr first
+     *     children of i, starting with child s (first child is s = 0), and the forest of the qr
+     *     first children of j, starting with child t (first child is t = 0).
+     * @param DFLDecisions1 Same shape as DFL, but to remember which term gave the min, so that we
+     *     can later compute the alignment.
+     * @param DFLDecisions2 Same as DFLDecisions1, for the child index of the cut.
      */
-    private void computeAlignmentP1(int i, int s, int m_i, int j, int t, int n_j, int DFx) {
-      /**
-       * DFL[pr][qr] is D(F1[i_s, i_p], F2[j_t, j_q]) where p=s+pr-1 and q=t+qr-1 (ie. pr=p-s+1 and
-       * qr=q-t+1) By convention, F1[i_s, i_{s-1}] and F2[j_t, j_{t-1}] are the empty forests. Said
-       * differently, DFL[pr][qr] is the distance between the forest of the pr first children of i,
-       * starting with child s (first child is s = 0), and the forest of the qr first children of j,
-       * starting with child t (first child is t = 0). This array is allocated for a fixed value of
-       * (i,j,s,t).
-       */
-      float[][] DFL;
-
-      /**
-       * Same shape as DFL, but to remember which term gave the min, so that we can later compute
-       * the alignment.
-       */
-      byte[][] DFLDecisions1;
-      short[][] DFLDecisions2;
-
-      DFL = new float[m_i - s + 2][n_j - t + 2];
+    private void computeForestDistances(
+        int i,
+        int s,
+        int m_i,
+        int j,
+        int t,
+        int n_j,
+        float[][] DFL,
+        byte[][] DFLDecisions1,
+        short[][] DFLDecisions2) {
       DFL[0][0] = 0; // D(empty forest, empty forest) = 0
 
-      DFLDecisions1 = new byte[m_i - s + 2][n_j - t + 2];
-      DFLDecisions2 = new short[m_i - s + 2][n_j - t + 2];
-
-      // Compute indexes of i_s and j_t because we will need them
-      int i_s = m_i != 0 ? treeData1.children[i][s] : -1;
-      int j_t = n_j != 0 ? treeData2.children[j][t] : -1;
-
       for (int p = s; p < m_i; p++) {
         DFL[p - s + 1][0] = DFL[p - s][0] + DET1[treeData1.children[i][p]];
       }
@@ -250,6 +318,7 @@ public class TreeAlign<ValueType1, ValueType2> {
 
       for (int p = s; p < m_i; p++) {
         int i_p = treeData1.children[i][p];
+        float[] DF1_i_p = DF1[i_p];
         for (int q = t; q < n_j; q++) {
           int j_q = treeData2.children[j][q];
 
@@ -287,19 +356,20 @@ public class TreeAlign<ValueType1, ValueType2> {
           // Lemma 3 - Case: We cut the T1 forest and match the first part
           // with the T2 forest except the rightmost tree, and we match the second
           // part with the T2 rightmost tree's forest of children
-          {
+          float[] DF2_j_q = DF2[j_q];
+          if (DF2_j_q != null) {
             float minCandidate = Float.POSITIVE_INFINITY;
             int best_k = -1;
             for (int k = s; k < p; k++) {
               float d =
                   DFL[k - s][q - t]
-                      + DF2[j_q][treeData1.children[i][k]][p - k + 1][treeData2.degrees[j_q]];
+                      + DF2_j_q[treeData1.forestOffsets[treeData1.children[i][k]] + p - k + 1];
               if (d < minCandidate) {
                 minCandidate = d;
                 best_k = k;
               }
             }
-            minCandidate += DL[treeData1.size][j_q];
+            minCandidate += DL2[j_q];
             if (minCandidate < min) {
               min = minCandidate;
               decision1 = 4;
@@ -308,19 +378,19 @@ public class TreeAlign<ValueType1, ValueType2> {
           }
 
           // Lemma 3 - Case: Syemmetric of preivous case
-          {
+          if (DF1_i_p != null) {
             float minCandidate = Float.POSITIVE_INFINITY;
             int best_k = -1;
             for (int k = t; k < q; k++) {
               float d =
                   DFL[p - s][k - t]
-                      + DF1[i_p][treeData2.children[j][k]][treeData1.degrees[i_p]][q - k + 1];
+                      + DF1_i_p[treeData2.forestOffsets[treeData2.children[j][k]] + q - k + 1];
               if (d < minCandidate) {
                 minCandidate = d;
                 best_k = k;
               }
             }
-            minCandidate += DL[i_p][treeData2.size];
+            minCandidate += DL1[i_p];
             if (minCandidate < min) {
               min = minCandidate;
               decision1 = 5;
@@ -329,21 +399,210 @@ public class TreeAlign<ValueType1, ValueType2> {
           }
 
           DFL[p - s + 1][q - t + 1] = min;
-          DFLDecisions1[p - s + 1][q - t + 1] = (byte) decision1;
-          DFLDecisions2[p - s + 1][q - t + 1] = (short) decision2;
+          if (DFLDecisions1 != null) {
+            DFLDecisions1[p - s + 1][q - t + 1] = (byte) decision1;
+            DFLDecisions2[p - s + 1][q - t + 1] = (short) decision2;
+          }
         }
       }
+    }
 
-      // Copy references to DFL to persistent arrays
-      if (DFx == 2) {
-        DF2[j][i_s] = DFL;
-        DF2Decisions1[j][i_s] = DFLDecisions1;
-        DF2Decisions2[j][i_s] = DFLDecisions2;
-      } else {
-        DF1[i][j_t] = DFL;
-        DF1Decisions1[i][j_t] = DFLDecisions1;
-        DF1Decisions2[i][j_t] = DFLDecisions2;
+    /** Returns whether node i of T1 may be aligned with node j of T2, see setBandRatio(). */
+    private boolean inBand(int i, int j) {
+      if (bandRatio == Double.POSITIVE_INFINITY
+          || (i == treeData1.size - 1 && j == treeData2.size - 1)) {
+        return true;
       }
+      int size1 = treeData1.subtreeSizes[i];
+      int size2 = treeData2.subtreeSizes[j];
+      return Math.max(size1, size2) <= bandRatio * Math.min(size1, size2);
+    }
+
+    /**
+     * Computes DT[i][j] and the last rows and columns of the DFL tables of (i,j), once all pairs of
+     * their children are computed. The rows they go to must have been allocated by
+     * allocateForestRows().
+     *
+     * @param DFL A buffer for DFL, large enough for any pair of nodes.
+     */
+    private void computePair(int i, int j, float[][] DFL) {
+      int m_i = treeData1.degrees[i];
+      int n_j = treeData2.degrees[j];
+
+      if (!inBand(i, j)) {
+        DT[i][j] = Float.POSITIVE_INFINITY;
+        return;
+      }
+
+      // Compute f(value(i), value(j)) once, as its computation may take long.
+      float DL =
+          (float)
+              labelDist.f((ValueType1) treeData1.values[i], (ValueType2) treeData2.values[j]);
+
+      for (int s = 0; s < m_i; s++) {
+        computeForestDistances(i, s, m_i, j, 0, n_j, DFL, null, null);
+        int offset = treeData1.forestOffsets[treeData1.children[i][s]];
+        for (int pr = 0; pr <= m_i - s; pr++) {
+          DF2[j][offset + pr] = DFL[pr][n_j];
+        }
+      }
+
+      for (int t = 0; t < n_j; t++) {
+        computeForestDistances(i, 0, m_i, j, t, n_j, DFL, null, null);
+        int offset = treeData2.forestOffsets[treeData2.children[j][t]];
+        for (int qr = 0; qr <= n_j - t; qr++) {
+          DF1[i][offset + qr] = DFL[m_i][qr];
+        }
+      }
+
+      DT[i][j] = Float.POSITIVE_INFINITY;
+      // Lemma 2 - Case: Root is (blank, j)
+      {
+        float minCandidate = Float.POSITIVE_INFINITY;
+        int best_r = -1;
+        for (int r = 0; r < n_j; r++) {
+          float d = DT[i][treeData2.children[j][r]] - DET2[treeData2.children[j][r]];
+          if (d < minCandidate) {
+            minCandidate = d;
+            best_r = r;
+          }
+        }
+        minCandidate += DET2[j];
+        if (minCandidate < DT[i][j]) {
+          DT[i][j] = minCandidate;
+          DTDecisions1[i][j] = 1;
+          DTDecisions2[i][j] = (short) best_r;
+        }
+      }
+      // Lemma 2 - Case: Root is (i, blank)
+      {
+        float minCandidate = Float.POSITIVE_INFINITY;
+        int best_r = -1;
+        for (int r = 0; r < m_i; r++) {
+          float d = DT[treeData1.children[i][r]][j] - DET1[treeData1.children[i][r]];
+          if (d < minCandidate) {
+            minCandidate = d;
+            best_r = r;
+          }
+        }
+        minCandidate += DET1[i];
+        if (minCandidate < DT[i][j]) {
+          DT[i][j] = minCandidate;
+          DTDecisions1[i][j] = 2;
+          DTDecisions2[i][j] = (short) best_r;
+        }
+      }
+      // Lemma 2 - Case: Root is (i,j)
+      {
+        float minCandidate;
+        if (n_j != 0) {
+          minCandidate =
+              DF1[i][treeData2.forestOffsets[treeData2.children[j][0]] + n_j];
+        } else {
+          if (m_i != 0) {
+            minCandidate =
+                DF2[j][treeData1.forestOffsets[treeData1.children[i][0]] + m_i];
+          } else {
+            minCandidate = 0; // D(empty forest, empty forest) = 0
+          }
+        }
+        minCandidate += DL;
+        if (minCandidate < DT[i][j]) {
+          DT[i][j] = minCandidate;
+          DTDecisions1[i][j] = 3;
+        }
+      }
+    }
+
+    /** Allocates the rows of DF1 and DF2 that computePair(i, j) writes to. */
+    private void allocateForestRows(int i, int j) {
+      if (!inBand(i, j)) {
+        return;
+      }
+      if (treeData1.degrees[i] > 0 && DF2[j] == null) {
+        DF2[j] = newForestRow(treeData1.forestsLength);
+      }
+      if (treeData2.degrees[j] > 0 && DF1[i] == null) {
+        DF1[i] = newForestRow(treeData2.forestsLength);
+      }
+    }
+
+    /**
+     * Returns the nodes of the tree sorted by the height of their subtree: nodes of height h are
+     * result[h][0], result[h][1], ... in increasing order.
+     */
+    private int[][] nodesByHeight(TreeData<?> treeData) {
+      int maxHeight = treeData.heights[treeData.size - 1];
+      int[] counts = new int[maxHeight + 1];
+      for (int i = 0; i < treeData.size; i++) {
+        counts[treeData.heights[i]]++;
+      }
+      int[][] result = new int[maxHeight + 1][];
+      for (int h = 0; h <= maxHeight; h++) {
+        result[h] = new int[counts[h]];
+        counts[h] = 0;
+      }
+      for (int i = 0; i < treeData.size; i++) {
+        int h = treeData.heights[i];
+        result[h][counts[h]++] = i;
+      }
+      return result;
+    }
+
+    /** Computes all pairs of nodes, wave after wave, each wave on several threads. */
+    private void alignInParallel() {
+      int[][] nodes1 = nodesByHeight(treeData1);
+      int[][] nodes2 = nodesByHeight(treeData2);
+      int maxHeight1 = nodes1.length - 1;
+      int maxHeight2 = nodes2.length - 1;
+      int parallelism = ForkJoinPool.getCommonPoolParallelism();
+      // A single worker would only add overhead
+      int tasksPerWave = parallelism > 1 ? 4 * parallelism : 1;
+      for (int wave = 0; wave <= maxHeight1 + maxHeight2; wave++) {
+        int count = 0;
+        for (int h1 = Math.max(0, wave - maxHeight2); h1 <= Math.min(maxHeight1, wave); h1++) {
+          count += nodes1[h1].length * nodes2[wave - h1].length;
+        }
+        int[] pairs1 = new int[count];
+        int[] pairs2 = new int[count];
+        count = 0;
+        for (int h1 = Math.max(0, wave - maxHeight2); h1 <= Math.min(maxHeight1, wave); h1++) {
+          for (int i : nodes1[h1]) {
+            for (int j : nodes2[wave - h1]) {
+              // Rows are shared by pairs of the wave, so they are allocated beforehand
+              allocateForestRows(i, j);
+              pairs1[count] = i;
+              pairs2[count] = j;
+              count++;
+            }
+          }
+        }
+        int tasks = Math.min(tasksPerWave, (count + MIN_PAIRS_PER_TASK - 1) / MIN_PAIRS_PER_TASK);
+        if (tasks <= 1) {
+          for (int k = 0; k < count; k++) {
+            computePair(pairs1[k], pairs2[k], DFLBuffer);
+          }
+        } else {
+          int pairs = count;
+          IntStream.range(0, tasks)
+              .parallel()
+              .forEach(
+                  task -> {
+                    float[][] DFL = new float[treeData1.degree + 1][treeData2.degree + 1];
+                    int from = (int) ((long) task * pairs / tasks);
+                    int to = (int) ((long) (task + 1) * pairs / tasks);
+                    for (int k = from; k < to; k++) {
+                      computePair(pairs1[k], pairs2[k], DFL);
+                    }
+                  });
+        }
+      }
+    }
+
+    private float[] newForestRow(int length) {
+      float[] row = new float[length];
+      Arrays.fill(row, Float.POSITIVE_INFINITY);
+      return row;
     }
 
     public float align() throws TreeAlignException {
@@ -354,19 +613,15 @@ public class TreeAlign<ValueType1, ValueType2> {
       DT = new float[treeData1.size][treeData2.size];
       DTDecisions1 = new byte[treeData1.size][treeData2.size];
       DTDecisions2 = new short[treeData1.size][treeData2.size];
-      DL = new float[treeData1.size + 1][treeData2.size + 1];
+      DL1 = new float[treeData1.size];
+      DL2 = new float[treeData2.size];
       DET1 = new float[treeData1.size];
       DET2 = new float[treeData2.size];
       DEF1 = new float[treeData1.size];
       DEF2 = new float[treeData2.size];
-      DF1 = new float[treeData1.size][treeData2.size][][];
-      DF1Decisions1 = new byte[treeData1.size][treeData2.size][][];
-      DF1Decisions2 = new short[treeData1.size][treeData2.size][][];
-      DF2 = new float[treeData2.size][treeData1.size][][];
-      DF2Decisions1 = new byte[treeData2.size][treeData1.size][][];
-      DF2Decisions2 = new short[treeData2.size][treeData1.size][][];
-
-      DL[treeData1.size][treeData2.size] = (float) labelDist.f(null, null);
+      DF1 = new float[treeData1.size][];
+      DF2 = new float[treeData2.size][];
+      DFLBuffer = new float[treeData1.degree + 1][treeData2.degree + 1];
 
       for (int i = 0; i < treeData1.size; i++) {
         int m_i = treeData1.degrees[i];
@@ -374,8 +629,8 @@ public class TreeAlign<ValueType1, ValueType2> {
         for (int k = 0; k < m_i; k++) {
           DEF1[i] += DET1[treeData1.children[i][k]];
         }
-        DL[i][treeData2.size] = (float) labelDist.f((ValueType1) treeData1.values[i], null);
-        DET1[i] = DEF1[i] + DL[i][treeData2.size];
+        DL1[i] = (float) labelDist.f((ValueType1) treeData1.values[i], null);
+        DET1[i] = DEF1[i] + DL1[i];
       }
 
       for (int j = 0; j < treeData2.size; j++) {
@@ -384,85 +639,17 @@ public class TreeAlign<ValueType1, ValueType2> {
         for (int k = 0; k < n_j; k++) {
           DEF2[j] += DET2[treeData2.children[j][k]];
         }
-        DL[treeData1.size][j] = (float) labelDist.f(null, (ValueType2) treeData2.values[j]);
-        DET2[j] = DEF2[j] + DL[treeData1.size][j];
+        DL2[j] = (float) labelDist.f(null, (ValueType2) treeData2.values[j]);
+        DET2[j] = DEF2[j] + DL2[j];
       }
 
-      for (int i = 0; i < treeData1.size; i++) {
-        int m_i = treeData1.degrees[i];
-        for (int j = 0; j < treeData2.size; j++) {
-          int n_j = treeData2.degrees[j];
-
-          // Precompute f(value(i), value(j)) and keep the result
-          // to avoid calling f on the same values several times.
-          // This is important in case the computation of f takes
-          // long.
-          DL[i][j] =
-              (float)
-                  labelDist.f((ValueType1) treeData1.values[i], (ValueType2) treeData2.values[j]);
-
-          for (int s = 0; s < m_i; s++) {
-            computeAlignmentP1(i, s, m_i, j, 0, n_j, 2);
-          }
-
-          for (int t = 0; t < n_j; t++) {
-            computeAlignmentP1(i, 0, m_i, j, t, n_j, 1);
-          }
-
-          DT[i][j] = Float.POSITIVE_INFINITY;
-          // Lemma 2 - Case: Root is (blank, j)
-          {
-            float minCandidate = Float.POSITIVE_INFINITY;
-            int best_r = -1;
-            for (int r = 0; r < n_j; r++) {
-              float d = DT[i][treeData2.children[j][r]] - DET2[treeData2.children[j][r]];
-              if (d < minCandidate) {
-                minCandidate = d;
-                best_r = r;
-              }
-            }
-            minCandidate += DET2[j];
-            if (minCandidate < DT[i][j]) {
-              DT[i][j] = minCandidate;
-              DTDecisions1[i][j] = 1;
-              DTDecisions2[i][j] = (short) best_r;
-            }
-          }
-          // Lemma 2 - Case: Root is (i, blank)
-          {
-            float minCandidate = Float.POSITIVE_INFINITY;
-            int best_r = -1;
-            for (int r = 0; r < m_i; r++) {
-              float d = DT[treeData1.children[i][r]][j] - DET1[treeData1.children[i][r]];
-              if (d < minCandidate) {
-                minCandidate = d;
-                best_r = r;
-              }
-            }
-            minCandidate += DET1[i];
-            if (minCandidate < DT[i][j]) {
-              DT[i][j] = minCandidate;
-              DTDecisions1[i][j] = 2;
-              DTDecisions2[i][j] = (short) best_r;
-            }
-          }
-          // Lemma 2 - Case: Root is (i,j)
-          {
-            float minCandidate;
-            if (n_j != 0) {
-              minCandidate = DF1[i][treeData2.children[j][0]][m_i][n_j];
-            } else {
-              if (m_i != 0) {
-                minCandidate = DF2[j][treeData1.children[i][0]][m_i][n_j];
-              } else {
-                minCandidate = 0; // D(empty forest, empty forest) = 0
-              }
-            }
-            minCandidate += DL[i][j];
-            if (minCandidate < DT[i][j]) {
-              DT[i][j] = minCandidate;
-              DTDecisions1[i][j] = 3;
-            }
+      if (parallel) {
+        alignInParallel();
+      } else {
+        for (int i = 0; i < treeData1.size; i++) {
+          for (int j = 0; j < treeData2.size; j++) {
+            allocateForestRows(i, j);
+            computePair(i, j, DFLBuffer);
           }
         }
       }
@@ -478,6 +665,35 @@ public class TreeAlign<ValueType1, ValueType2> {
       treeData2.tree = T2;
     }
 
+    /** Which term gave the min in each cell of DFL for (i,j,s,t). */
+    private class ForestDecisions {
+      private byte[][] decisions1;
+      private short[][] decisions2;
+    }
+
+    /**
+     * Computes again DFL for (i,j,s,t), this time remembering which term gave the min. The
+     * computation only reads tables which are kept, so it gives the same decisions as when the
+     * distance was computed. Results are kept, as a table may be read several times.
+     */
+    private ForestDecisions getForestDecisions(int i, int s, int j, int t) {
+      long key =
+          (((long) i * treeData2.size + j) * (treeData1.degree + 1) + s) * (treeData2.degree + 1)
+              + t;
+      ForestDecisions decisions = forestDecisions.get(key);
+      if (decisions == null) {
+        int m_i = treeData1.degrees[i];
+        int n_j = treeData2.degrees[j];
+        decisions = new ForestDecisions();
+        decisions.decisions1 = new byte[m_i - s + 1][n_j - t + 1];
+        decisions.decisions2 = new short[m_i - s + 1][n_j - t + 1];
+        computeForestDistances(
+            i, s, m_i, j, t, n_j, DFLBuffer, decisions.decisions1, decisions.decisions2);
+        forestDecisions.put(key, decisions);
+      }
+      return decisions;
+    }
+
     /**
      * Align F1[i_s,i_p] with F2[j_t,j_q]. If p = s-1, by convention it means F1[i_s,i_p] = empty
      * forest. Idem for q=t-1.
@@ -500,16 +716,12 @@ public class TreeAlign<ValueType1, ValueType2> {
           }
           return result;
         } else { // both forests are non-empty
-          int decision1, k;
-          if (s == 0) {
-            decision1 = DF1Decisions1[i][treeData2.children[j][t]][p - s + 1][q - t + 1];
-            k = DF1Decisions2[i][treeData2.children[j][t]][p - s + 1][q - t + 1];
-          } else if (t == 0) {
-            decision1 = DF2Decisions1[j][treeData1.children[i][s]][p - s + 1][q - t + 1];
-            k = DF2Decisions2[j][treeData1.children[i][s]][p - s + 1][q - t + 1];
-          } else {
+          if (s != 0 && t != 0) {
             throw (new Error("TreeAlignSymmetric bug: both s and t are non-zero"));
           }
+          ForestDecisions decisions = getForestDecisions(i, s, j, t);
+          int decision1 = decisions.decisions1[p - s + 1][q - t + 1];
+          int k = decisions.decisions2[p - s + 1][q - t + 1];
           switch (decision1) {
             case 1:
               {
@@ -27,7 +27,12 @@ import java.io.StringReader;
 import java.net.URL;
 import java.net.URLConnection;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.Hashtable;
+import java.util.IdentityHashMap;
+import java.util.Set;
 import java.util.Stack;
 import java.util.Vector;
 import org.xml.sax.Attributes;
@@ -423,56 +428,27 @@ public class RNAMLParser extends DefaultHandler {
       result[i] = -1;
     }
 
-    short[][] tab = new short[length][length];
-    short[][] backtrack = new short[length][length];
-    int theta = 3;
-
-    for (int i = 0; i < result.length; i++) {
-      for (int j = i; j < Math.min(i + theta, result.length); j++) {
-        tab[i][j] = 0;
-        backtrack[i][j] = -1;
-      }
-    }
-    for (int n = theta; n < length; n++) {
-      for (int i = 0; i < length - n; i++) {
-        int j = i + n;
-        tab[i][j] = tab[i + 1][j];
-        backtrack[i][j] = -1;
-        int k = str[i];
-        if ((k != -1) && (k <= j) && (i < k)) {
-          int tmp = 1;
-          if (i + 1 <= k - 1) {
-            tmp += tab[i + 1][k - 1];
-          }
-          if (k + 1 <= j) {
-            tmp += tab[k + 1][j];
-          }
-          if (tmp > tab[i][j]) {
-            tab[i][j] = (short) tmp;
-            backtrack[i][j] = (short) k;
-          }
-        }
+    int nbPairs = 0;
+    for (int i = 0; i < length; i++) {
+      if (str[i] > i && str[i] < length) {
+        nbPairs++;
       }
     }
-    Stack<Point> intervals = new Stack<Point>();
-    intervals.add(new Point(0, length - 1));
-    while (!intervals.empty()) {
-      Point p = intervals.pop();
-      if (p.x <= p.y) {
-        if (backtrack[p.x][p.y] == -1) {
-          result[p.x] = -1;
-          intervals.push(new Point(p.x + 1, p.y));
-        } else {
-          int i = p.x;
-          int j = p.y;
-          int k = backtrack[p.x][p.y];
-          result[i] = k;
-          result[k] = i;
-          intervals.push(new Point(i + 1, k - 1));
-          intervals.push(new Point(k + 1, j));
-        }
+    int[] pairStart = new int[nbPairs];
+    int[] pairEnd = new int[nbPairs];
+    int numPair = 0;
+    for (int i = 0; i < length; i++) {
+      if (str[i] > i && str[i] < length) {
+        pairStart[numPair] = i;
+        pairEnd[numPair] = str[i];
+        numPair++;
       }
     }
+
+    for (int q : planarSubset(length, pairStart, pairEnd)) {
+      result[pairStart[q]] = pairEnd[q];
+      result[pairEnd[q]] = pairStart[q];
+    }
     return result;
   }
 
@@ -493,76 +469,177 @@ public class RNAMLParser extends DefaultHandler {
     }
     // System.err.println(index2BPs);
 
-    short[][] tab = new short[length][length];
-    short[][] backtrack = new short[length][length];
-    int theta = 3;
-
+    // Candidate pairs, by 5' base then in input order
+    ArrayList<ModeleBP> candidates = new ArrayList<ModeleBP>();
     for (int i = 0; i < length; i++) {
-      for (int j = i; j < Math.min(i + theta, length); j++) {
-        tab[i][j] = 0;
-        backtrack[i][j] = -1;
-      }
-    }
-    for (int n = theta; n < length; n++) {
-      for (int i = 0; i < length - n; i++) {
-        int j = i + n;
-        tab[i][j] = tab[i + 1][j];
-        backtrack[i][j] = -1;
-        if (index2BPs.containsKey(i)) {
-          ArrayList<ModeleBP> vi = index2BPs.get(i);
-          // System.err.print(".");
-          for (int numBP = 0; numBP < vi.size(); numBP++) {
-            ModeleBP mb = vi.get(numBP);
-            int k = mb.getPartner3().getIndex();
-            if ((k != -1) && (k <= j) && (i < k)) {
-              int tmp = 1;
-              if (i + 1 <= k - 1) {
-                tmp += tab[i + 1][k - 1];
-              }
-              if (k + 1 <= j) {
-                tmp += tab[k + 1][j];
-              }
-              if (tmp > tab[i][j]) {
-                tab[i][j] = (short) tmp;
-                backtrack[i][j] = (short) numBP;
-              }
-            }
+      if (index2BPs.containsKey(i)) {
+        for (ModeleBP mb : index2BPs.get(i)) {
+          int k = mb.getPartner3().getIndex();
+          if ((i < k) && (k < length)) {
+            candidates.add(mb);
           }
         }
       }
     }
-    // System.err.println("DP table: "+tab[0][length-1]);
+    int[] pairStart = new int[candidates.size()];
+    int[] pairEnd = new int[candidates.size()];
+    for (int q = 0; q < candidates.size(); q++) {
+      pairStart[q] = candidates.get(q).getPartner5().getIndex();
+      pairEnd[q] = candidates.get(q).getPartner3().getIndex();
+    }
+
+    // Base pairs only compare equal to themselves
+    Set<ModeleBP> planarSet = Collections.newSetFromMap(new IdentityHashMap<ModeleBP, Boolean>());
+    for (int q : planarSubset(length, pairStart, pairEnd)) {
+      ModeleBP mb = candidates.get(q);
+      planar.add(mb);
+      planarSet.add(mb);
+    }
 
-    // Backtracking
+    // Remaining base pairs
+    for (int i : index2BPs.keySet()) {
+      ArrayList<ModeleBP> vi = index2BPs.get(i);
+      for (ModeleBP mb : vi) {
+        if (!planarSet.contains(mb)) {
+          others.add(mb);
+        }
+      }
+    }
+  }
+
+  // Minimal distance between the ends of an interval for it to contain a base pair
+  private static final int PLANARIZE_THETA = 3;
+
+  /**
+   * Chooses a maximum subset of non-crossing base pairs.
+   *
+   * <p>This evaluates the usual interval dynamic programming: the best score of {@code [i, j]}
+   * is the best of skipping {@code i}, or pairing {@code i} with some {@code k <= j} and adding the
+   * best scores of {@code [i + 1, k - 1]} and {@code [k + 1, j]}, intervals shorter than {@link
+   * #PLANARIZE_THETA} scoring zero. Ties are resolved as before, preferring to skip {@code i}, then
+   * the first of the pairs of {@code i}. Instead of a {@code length * length} table, only the
+   * columns {@code j} ending an inner interval or the whole sequence are evaluated, one at a time,
+   * and the score of the interval enclosed by each pair is kept. This uses {@code O(length +
+   * pairs)} memory and {@code O(length * pairs)} time.
+   *
+   * @param length Number of bases
+   * @param pairStart 5' base of each pair, in ascending order
+   * @param pairEnd 3' base of each pair, greater than its 5' base and less than {@code length}
+   * @return The indices of the chosen pairs, in backtracking order
+   */
+  private static ArrayList<Integer> planarSubset(int length, int[] pairStart, int[] pairEnd) {
+    int nbPairs = pairStart.length;
+    ArrayList<Integer> chosen = new ArrayList<Integer>();
+    if (length == 0) {
+      return chosen;
+    }
+    // Pairs of each 5' base are pairs firstPair[i] to firstPair[i + 1] - 1
+    int[] firstPair = new int[length + 1];
+    for (int q = 0; q < nbPairs; q++) {
+      firstPair[pairStart[q] + 1]++;
+    }
+    for (int i = 0; i < length; i++) {
+      firstPair[i + 1] += firstPair[i];
+    }
+    // Pairs whose inner interval ends at column c are pairs byEnd[firstByEnd[c]...]
+    int[] firstByEnd = new int[length + 1];
+    for (int q = 0; q < nbPairs; q++) {
+      firstByEnd[pairEnd[q]]++;
+    }
+    for (int c = 0; c < length; c++) {
+      firstByEnd[c + 1] += firstByEnd[c];
+    }
+    int[] byEnd = new int[nbPairs];
+    int[] nextByEnd = Arrays.copyOf(firstByEnd, length);
+    for (int q = 0; q < nbPairs; q++) {
+      byEnd[nextByEnd[pairEnd[q] - 1]++] = q;
+    }
+    BitSet columns = new BitSet(length);
+    columns.set(length - 1);
+    for (int q = 0; q < nbPairs; q++) {
+      columns.set(pairEnd[q] - 1);
+    }
+
+    int[] inner = new int[nbPairs];
+    int[] column = new int[length];
+    for (int c = columns.nextSetBit(0); c >= 0; c = columns.nextSetBit(c + 1)) {
+      computePlanarizeColumn(c, column, inner, firstPair, pairEnd);
+      for (int e = firstByEnd[c]; e < firstByEnd[c + 1]; e++) {
+        int q = byEnd[e];
+        inner[q] = (pairStart[q] + 1 <= c) ? column[pairStart[q] + 1] : 0;
+      }
+    }
+
+    // Backtracking. The intervals sharing a column are all visited before any interval popped
+    // later, so each column is evaluated once again at most.
+    int current = -1;
     Stack<Point> intervals = new Stack<Point>();
     intervals.add(new Point(0, length - 1));
     while (!intervals.empty()) {
       Point p = intervals.pop();
-      if (p.x <= p.y) {
-        if (backtrack[p.x][p.y] == -1) {
-          intervals.push(new Point(p.x + 1, p.y));
+      int j = p.y;
+      if (p.x <= j && j != current) {
+        computePlanarizeColumn(j, column, inner, firstPair, pairEnd);
+        current = j;
+      }
+      int i = p.x;
+      while (i <= j) {
+        int q = bestPlanarizePair(i, j, column, inner, firstPair, pairEnd);
+        if (q == -1) {
+          i++;
         } else {
-          int i = p.x;
-          int j = p.y;
-          int nb = backtrack[p.x][p.y];
-          ModeleBP mb = index2BPs.get(i).get(nb);
-          int k = mb.getPartner3().getIndex();
-          planar.add(mb);
-          intervals.push(new Point(i + 1, k - 1));
-          intervals.push(new Point(k + 1, j));
+          chosen.add(q);
+          intervals.push(new Point(i + 1, pairEnd[q] - 1));
+          i = pairEnd[q] + 1;
         }
       }
     }
+    return chosen;
+  }
 
-    // Remaining base pairs
-    for (int i : index2BPs.keySet()) {
-      ArrayList<ModeleBP> vi = index2BPs.get(i);
-      for (ModeleBP mb : vi) {
-        if (!planar.contains(mb)) {
-          others.add(mb);
+  /** Fills {@code column[0..c]} with the best scores of the intervals ending at {@code c}. */
+  private static void computePlanarizeColumn(
+      int c, int[] column, int[] inner, int[] firstPair, int[] pairEnd) {
+    for (int i = c; i >= 0; i--) {
+      if (c - i < PLANARIZE_THETA) {
+        column[i] = 0;
+      } else {
+        int q = bestPlanarizePair(i, c, column, inner, firstPair, pairEnd);
+        column[i] = (q == -1) ? column[i + 1] : pairScore(q, c, column, inner, pairEnd);
+      }
+    }
+  }
+
+  /**
+   * Returns the pair of {@code i} chosen for the interval {@code [i, j]}, or -1 if {@code i} is
+   * left unpaired. Needs the scores of the intervals {@code [i + 1, j]} to {@code [j, j]}.
+   */
+  private static int bestPlanarizePair(
+      int i, int j, int[] column, int[] inner, int[] firstPair, int[] pairEnd) {
+    if (j - i < PLANARIZE_THETA) {
+      return -1;
+    }
+    int best = column[i + 1];
+    int result = -1;
+    for (int q = firstPair[i]; q < firstPair[i + 1]; q++) {
+      if (pairEnd[q] <= j) {
+        int tmp = pairScore(q, j, column, inner, pairEnd);
+        if (tmp > best) {
+          best = tmp;
+          result = q;
         }
       }
     }
+    return result;
+  }
+
+  private static int pairScore(int q, int j, int[] column, int[] inner, int[] pairEnd) {
+    int k = pairEnd[q];
+    int tmp = 1 + inner[q];
+    if (k + 1 <= j) {
+      tmp += column[k + 1];
+    }
+    return tmp;
   }
 
   private void postProcess() {
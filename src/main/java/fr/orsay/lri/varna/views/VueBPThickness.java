@@ -51,7 +51,9 @@ public class VueBPThickness implements ChangeListener {
             JSlider.HORIZONTAL,
             1,
             100,
-            (int) (msbp.get(0).getStyle().getThickness(VARNAConfig.DEFAULT_BP_THICKNESS) * FACTOR));
+            (int)
+                (msbp.get(0).getStyleReadOnly().getThickness(VARNAConfig.DEFAULT_BP_THICKNESS)
+                    * FACTOR));
     _thicknessSlider.setMajorTickSpacing(10);
     _thicknessSlider.setPaintTicks(true);
     _thicknessSlider.setPaintLabels(false);
@@ -59,7 +61,8 @@ public class VueBPThickness implements ChangeListener {
 
     JLabel thicknessLabel =
         new JLabel(
-            String.valueOf(msbp.get(0).getStyle().getThickness(VARNAConfig.DEFAULT_BP_THICKNESS)));
+            String.valueOf(
+                msbp.get(0).getStyleReadOnly().getThickness(VARNAConfig.DEFAULT_BP_THICKNESS)));
     thicknessLabel.setPreferredSize(new Dimension(50, thicknessLabel.getPreferredSize().height));
     _thicknessSlider.addChangeListener(new ControleurSliderLabel(thicknessLabel, 1.0 / FACTOR));
     _thicknessSlider.addChangeListener(this);
@@ -77,13 +80,15 @@ public class VueBPThickness implements ChangeListener {
   private void backupThicknesses() {
     for (int i = 0; i < _msbp.size(); i++) {
       this._backupThicknesses.add(
-          _msbp.get(i).getStyle().getThickness(VARNAConfig.DEFAULT_BP_THICKNESS));
+          _msbp.get(i).getStyleReadOnly().getThickness(VARNAConfig.DEFAULT_BP_THICKNESS));
     }
   }
 
   public void restoreThicknesses() {
     for (int i = 0; i < _msbp.size(); i++) {
-      _msbp.get(i).getStyle().setThickness(_backupThicknesses.get(i));
+      _msbp
+          .get(i)
+          .setStyle(_msbp.get(i).getStyleReadOnly().withThickness(_backupThicknesses.get(i)));
     }
   }
 
@@ -100,8 +105,9 @@ public class VueBPThickness implements ChangeListener {
   }
 
   public void stateChanged(ChangeEvent e) {
+    double thickness = ((double) _thicknessSlider.getValue()) / FACTOR;
     for (int i = 0; i < _msbp.size(); i++) {
-      _msbp.get(i).getStyle().setThickness(((double) _thicknessSlider.getValue()) / FACTOR);
+      _msbp.get(i).setStyle(_msbp.get(i).getStyleReadOnly().withThickness(thickness));
     }
     _vp.repaint();
   }
@@ -813,9 +813,9 @@ public class VueUI {
             JColorChooser.showDialog(
                 _vp,
                 "Choose custom base pair color",
-                msbp.getStyle().getColor(_vp.getConfig()._bondColor));
+                msbp.getStyleReadOnly().getColor(_vp.getConfig()._bondColor));
         if (c != null) {
-          msbp.getStyle().setCustomColor(c);
+          msbp.setStyle(msbp.getStyleReadOnly().withCustomColor(c));
           _vp.repaint();
         }
       }
@@ -2,39 +2,61 @@ package pl.poznan.put.varna;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import fr.orsay.lri.varna.exceptions.ExceptionFileFormatOrSyntax;
+import fr.orsay.lri.varna.exceptions.ExceptionUnmatchedClosingParentheses;
 import fr.orsay.lri.varna.models.VARNAConfig;
 import fr.orsay.lri.varna.models.rna.*;
+import fr.orsay.lri.varna.models.rna.ModeleBackboneElement.BackboneType;
 import java.awt.*;
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.List;
 import java.util.stream.Collectors;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import pl.poznan.put.structure.formats.*;
 import pl.poznan.put.varna.model.BasePair;
 import pl.poznan.put.varna.model.Nucleotide;
+import pl.poznan.put.varna.model.PseudoknotOrderStrategy;
 import pl.poznan.put.varna.model.Stacking;
 import pl.poznan.put.varna.model.StackingArrowPlacementParseResult;
 import pl.poznan.put.varna.model.StructureData;
 
 public class AdvancedDrawer {
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
   public static void main(String[] args) {
-    if (args.length != 1) {
-      System.err.println("Usage: java pl.poznan.put.varna.AdvancedDrawer <path_to_json_file>");
+    if (args.length >= 1 && "--batch".equals(args[0])) {
+      runBatch(args);
+      return;
+    }
+    List<String> positional = new ArrayList<>();
+    PseudoknotOrderOptions pseudoknotOrderOptions = new PseudoknotOrderOptions();
+    try {
+      for (int i = 0; i < args.length; i++) {
+        if (!args[i].startsWith("--")) {
+          positional.add(args[i]);
+        } else if (i + 1 >= args.length) {
+          throw new IllegalArgumentException("Missing value for option " + args[i]);
+        } else if (pseudoknotOrderOptions.accept(args[i], args[i + 1])) {
+          i++;
+        } else {
+          throw new IllegalArgumentException("Unknown option " + args[i]);
+        }
+      }
+    } catch (IllegalArgumentException e) {
+      System.err.println("Error: " + e.getMessage());
+      printUsage();
+      System.exit(1);
+    }
+    if (positional.size() < 1 || positional.size() > 2) {
+      printUsage();
       System.exit(1);
     }
 
-    String jsonFilePath = args[0];
+    String jsonFilePath = positional.get(0);
     File jsonFile = new File(jsonFilePath);
 
     if (!jsonFile.exists() || !jsonFile.isFile()) {
@@ -42,160 +64,369 @@ public class AdvancedDrawer {
       System.exit(1);
     }
 
-    ObjectMapper objectMapper = new ObjectMapper();
-    StructureData structureData;
+    // Default output filename
+    String outputFilename = positional.size() == 2 ? positional.get(1) : "output.svg";
+    boolean rendered =
+        render(
+            jsonFile.toPath(),
+            Paths.get(outputFilename),
+            pseudoknotOrderOptions.toAssigner(),
+            System.out,
+            System.err);
+    if (!rendered) {
+      System.exit(1);
+    }
+  }
+
+  private static void printUsage() {
+    System.err.println(
+        "Usage: java pl.poznan.put.varna.AdvancedDrawer <path_to_json_file> [<output_svg_file>]"
+            + " [<pseudoknot_order_options>]");
+    System.err.println(
+        "       java pl.poznan.put.varna.AdvancedDrawer --batch <directory|glob|manifest>"
+            + " [--output-dir <directory>] [--threads <count>|virtual] [--max-in-flight <count>]"
+            + " [<pseudoknot_order_options>]");
+    System.err.println(
+        "Pseudoknot order options, overriding the JSON fields: --pseudoknot-order"
+            + " <exact|greedy|first-fit> --pseudoknot-order-time-budget <milliseconds>");
+  }
 
+  // Renders every input of a batch in this JVM, reporting failures without aborting the batch
+  private static void runBatch(String[] args) {
+    Path outputDir = null;
+    int threads = 1;
+    int maxInFlight = 0;
+    PseudoknotOrderOptions pseudoknotOrderOptions = new PseudoknotOrderOptions();
     try {
-      structureData = objectMapper.readValue(jsonFile, StructureData.class);
-      System.out.println("Successfully parsed and validated JSON file: " + jsonFilePath);
-
-      // Parse colors after loading
-      if (structureData.nucleotides != null) {
-        for (Nucleotide n : structureData.nucleotides) {
-          n.parsedOutlineColor = parseColor(n.outlineColor);
-          n.parsedInnerColor = parseColor(n.innerColor);
-          n.parsedNameColor = parseColor(n.nameColor);
-        }
+      if (args.length < 2 || args[1].startsWith("--")) {
+        throw new IllegalArgumentException("Missing batch input after --batch");
       }
-      if (structureData.basePairs != null) {
-        for (BasePair bp : structureData.basePairs) {
-          bp.parsedColor = parseColor(bp.color);
+      for (int i = 2; i < args.length; i += 2) {
+        if (i + 1 >= args.length) {
+          throw new IllegalArgumentException("Missing value for option " + args[i]);
         }
-      }
-      if (structureData.stackings != null) {
-        for (pl.poznan.put.varna.model.Stacking s : structureData.stackings) {
-          s.parsedColor = parseColor(s.color);
+        String value = args[i + 1];
+        switch (args[i]) {
+          case "--output-dir":
+            outputDir = Paths.get(value);
+            break;
+          case "--threads":
+            threads =
+                "virtual".equalsIgnoreCase(value)
+                    ? BatchRenderer.VIRTUAL_THREADS
+                    : parsePositive(args[i], value);
+            break;
+          case "--max-in-flight":
+            maxInFlight = parsePositive(args[i], value);
+            break;
+          default:
+            if (!pseudoknotOrderOptions.accept(args[i], value)) {
+              throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
         }
       }
+    } catch (IllegalArgumentException e) {
+      System.err.println("Error: " + e.getMessage());
+      printUsage();
+      System.exit(1);
+    }
 
-      System.out.println("Parsed data summary: " + structureData);
-
-      // Create BpSeq object and DotBracket from canonical pairs
-      BpSeq bpSeq = null;
-      DotBracket dotBracket = null;
-      try {
-        bpSeq = createBpSeqFromStructureData(structureData);
-        Converter converter = ImmutableDefaultConverter.of();
-        dotBracket = converter.convert(bpSeq);
-        System.out.println("Generated BpSeq and DotBracket structure from canonical pairs.");
-        // System.out.println("Dot-Bracket:\n" + dotBracket); // Optional: print dot bracket
-      } catch (IllegalArgumentException e) {
-        System.err.println("Error creating base secondary structure: " + e.getMessage());
-        System.exit(1); // Exit if we can't form the base structure
-      }
+    List<RenderJob> jobs;
+    try {
+      jobs = RenderJob.expand(args[1], outputDir);
+    } catch (IOException e) {
+      System.err.println("Error: Cannot read batch input " + args[1] + ": " + e.getMessage());
+      System.exit(1);
+      return;
+    }
+    if (jobs.isEmpty()) {
+      System.err.println("Warning: No input files found for batch input: " + args[1]);
+      return;
+    }
 
-      // Proceed with VARNA drawing if bpSeq and dotBracket were created
-      if (bpSeq != null && dotBracket != null) {
-        try {
-          // 1. Get sequence string
-          String sequence = bpSeq.sequence();
-          // 2. Get dot-bracket structure string
-          String structure = dotBracket.structure();
-
-          // 3. Create RNA object (using canonical structure initially)
-          RNA rna = new RNA(true); // true enables auxiliary base pairs
-          rna.setRNA(sequence, structure);
-
-          // 4. Add non-canonical pairs and apply colors
-          Map<Integer, Integer> idToIndexMap = createIdToIndexMap(structureData);
-          applyCustomizations(rna, structureData, idToIndexMap); // Renamed method call
-
-          // 5. Configure and Draw
-          VARNAConfig config = new VARNAConfig();
-          config._numPeriod = 1;
-
-          if (structureData.bpStyle != null && !structureData.bpStyle.isBlank()) {
-            VARNAConfig.BP_STYLE parsedStyle = VARNAConfig.BP_STYLE.getStyle(structureData.bpStyle);
-            if (parsedStyle != null) {
-              config._mainBPStyle = parsedStyle;
-            } else {
-              System.err.println(
-                  "Warning: Invalid bpStyle '"
-                      + structureData.bpStyle
-                      + "'. Using default LW. Valid options: none, simple, rnaviz, lw, lwalt");
-            }
-          }
+    BatchRenderer renderer =
+        new BatchRenderer(threads, maxInFlight, pseudoknotOrderOptions.toAssigner());
+    List<RenderJob> failed = renderer.run(jobs);
 
-          System.out.println("Calculating RNA layout...");
-          int drawMode = RNA.DRAW_MODE_NAVIEW; // Default
-          if (structureData.drawingAlgorithm != null) {
-            String algo = structureData.drawingAlgorithm.toUpperCase();
-            switch (algo) {
-              case "CIRCULAR":
-                drawMode = RNA.DRAW_MODE_CIRCULAR;
-                break;
-              case "RADIATE":
-                drawMode = RNA.DRAW_MODE_RADIATE;
-                break;
-              case "LINEAR":
-                drawMode = RNA.DRAW_MODE_LINEAR;
-                break;
-              case "VARNA_VIEW":
-                drawMode = RNA.DRAW_MODE_VARNA_VIEW;
-                break;
-              case "NAVIEW":
-                drawMode = RNA.DRAW_MODE_NAVIEW;
-                break;
-              default:
-                System.err.println(
-                    "Warning: Unknown drawing algorithm '"
-                        + structureData.drawingAlgorithm
-                        + "'. Using default NAVIEW.");
-                break;
-            }
-          }
-          rna.drawRNA(drawMode, config);
+    System.out.println(
+        "Batch finished: "
+            + (jobs.size() - failed.size())
+            + " of "
+            + jobs.size()
+            + " structure(s) rendered successfully.");
+    if (!failed.isEmpty()) {
+      System.err.println("Failed inputs:");
+      for (RenderJob job : failed) {
+        System.err.println("  " + job.getInput());
+      }
+      System.exit(1);
+    }
+  }
 
-          // 6. Save SVG
-          String outputFilename = "output.svg"; // Default output filename
-          System.out.println("Saving RNA visualization to: " + outputFilename);
-          rna.saveRNASVG(outputFilename, config);
-          System.out.println("Initial SVG saved successfully.");
+  private static int parsePositive(String option, String value) {
+    try {
+      int parsed = Integer.parseInt(value);
+      if (parsed > 0) {
+        return parsed;
+      }
+    } catch (NumberFormatException e) {
+      // Reported below
+    }
+    throw new IllegalArgumentException(
+        "Invalid value '" + value + "' for option " + option + ". Expected a positive integer.");
+  }
 
-          // 7. Post-process SVG to remove discontinuous backbone lines and filter text labels
-          try {
-            postProcessSvg(outputFilename, structureData); // Renamed method call
-            System.out.println("SVG post-processed successfully.");
-          } catch (Exception xmlException) {
-            System.err.println("Error during SVG post-processing:");
-            xmlException.printStackTrace();
-          }
-        } catch (Exception e) {
-          // Catch other potential exceptions during RNA processing/drawing
-          System.err.println("An unexpected error occurred during RNA processing/drawing:");
-          e.printStackTrace();
-        }
+  // Pseudoknot order command line options, which replace the corresponding JSON fields when given
+  private static final class PseudoknotOrderOptions {
+    private PseudoknotOrderStrategy strategy;
+    private long timeBudgetMillis;
+
+    private boolean accept(String option, String value) {
+      switch (option) {
+        case "--pseudoknot-order":
+          strategy =
+              PseudoknotOrderStrategy.parse(value)
+                  .orElseThrow(
+                      () ->
+                          new IllegalArgumentException(
+                              "Invalid value '"
+                                  + value
+                                  + "' for option "
+                                  + option
+                                  + ". Expected exact, greedy or first-fit."));
+          return true;
+        case "--pseudoknot-order-time-budget":
+          timeBudgetMillis = parsePositive(option, value);
+          return true;
+        default:
+          return false;
       }
+    }
+
+    // null when no option was given, so that each input's JSON fields apply
+    private PseudoknotOrderAssigner toAssigner() {
+      if (strategy == null && timeBudgetMillis == 0) {
+        return null;
+      }
+      return new PseudoknotOrderAssigner(
+          strategy != null ? strategy : PseudoknotOrderStrategy.EXACT, timeBudgetMillis);
+    }
+  }
+
+  /**
+   * Parses a single JSON input and renders it to an SVG file. All errors are reported on the
+   * standard error stream.
+   *
+   * @return {@code true} if the SVG was written successfully
+   */
+  public static boolean render(Path jsonFile, Path outputFile) {
+    return render(jsonFile, outputFile, System.out, System.err);
+  }
 
+  /**
+   * Same as {@link #render(Path, Path)}, but progress and errors are reported on the given streams
+   * so that concurrent renders do not interleave their messages.
+   */
+  public static boolean render(Path jsonFile, Path outputFile, PrintStream out, PrintStream err) {
+    return render(jsonFile, outputFile, null, out, err);
+  }
+
+  /**
+   * Same as {@link #render(Path, Path, PrintStream, PrintStream)}, but pseudoknot orders are
+   * assigned by {@code pseudoknotOrder} instead of the strategy named in the JSON file, unless it
+   * is {@code null}.
+   */
+  public static boolean render(
+      Path jsonFile,
+      Path outputFile,
+      PseudoknotOrderAssigner pseudoknotOrder,
+      PrintStream out,
+      PrintStream err) {
+    String jsonFilePath = jsonFile.toString();
+    StructureData structureData;
+
+    try {
+      structureData = OBJECT_MAPPER.readValue(jsonFile.toFile(), StructureData.class);
+      out.println("Successfully parsed and validated JSON file: " + jsonFilePath);
     } catch (InvalidFormatException e) {
       // Handle errors specifically related to invalid enum values (validation failure)
-      System.err.println("Error: Invalid value found in JSON file: " + jsonFilePath);
-      System.err.println(
+      err.println("Error: Invalid value found in JSON file: " + jsonFilePath);
+      err.println(
           "Invalid value: '" + e.getValue() + "' for field: " + e.getPathReference());
       // Provide context about allowed values if it's one of our enums
       if (e.getTargetType().equals(ModeleBP.Stericity.class)) {
-        System.err.println(
+        err.println(
             "Allowed values for stericity are: "
                 + Arrays.stream(ModeleBP.Stericity.values())
                     .map(Enum::name)
                     .collect(Collectors.joining(", ")));
       } else if (e.getTargetType().equals(ModeleBP.Edge.class)) {
-        System.err.println(
+        err.println(
             "Allowed values for edge types are: "
                 + Arrays.stream(ModeleBP.Edge.values())
                     .map(Enum::name)
                     .collect(Collectors.joining(", ")));
       }
-      System.exit(1);
+      return false;
     } catch (IOException e) {
       // Handle other general IO/parsing errors
-      System.err.println("Error reading or parsing JSON file: " + jsonFilePath);
-      System.exit(1);
+      err.println("Error reading or parsing JSON file: " + jsonFilePath);
+      return false;
+    }
+
+    try {
+      RNA rna = createRNA(structureData, pseudoknotOrder, out, err);
+      if (rna == null) {
+        return false; // We can't form the base structure
+      }
+
+      // 5. Configure and Draw
+      VARNAConfig config = new VARNAConfig();
+      config._numPeriod = 1;
+
+      if (structureData.bpStyle != null && !structureData.bpStyle.isBlank()) {
+        VARNAConfig.BP_STYLE parsedStyle = VARNAConfig.BP_STYLE.getStyle(structureData.bpStyle);
+        if (parsedStyle != null) {
+          config._mainBPStyle = parsedStyle;
+        } else {
+          err.println(
+              "Warning: Invalid bpStyle '"
+                  + structureData.bpStyle
+                  + "'. Using default LW. Valid options: none, simple, rnaviz, lw, lwalt");
+        }
+      }
+
+      out.println("Calculating RNA layout...");
+      int drawMode = RNA.DRAW_MODE_NAVIEW; // Default
+      if (structureData.drawingAlgorithm != null) {
+        String algo = structureData.drawingAlgorithm.toUpperCase();
+        switch (algo) {
+          case "CIRCULAR":
+            drawMode = RNA.DRAW_MODE_CIRCULAR;
+            break;
+          case "RADIATE":
+            drawMode = RNA.DRAW_MODE_RADIATE;
+            break;
+          case "LINEAR":
+            drawMode = RNA.DRAW_MODE_LINEAR;
+            break;
+          case "VARNA_VIEW":
+            drawMode = RNA.DRAW_MODE_VARNA_VIEW;
+            break;
+          case "NAVIEW":
+            drawMode = RNA.DRAW_MODE_NAVIEW;
+            break;
+          default:
+            err.println(
+                "Warning: Unknown drawing algorithm '"
+                    + structureData.drawingAlgorithm
+                    + "'. Using default NAVIEW.");
+            break;
+        }
+      }
+      rna.drawRNA(drawMode, config);
+
+      // 6. Save SVG
+      String outputFilename = outputFile.toString();
+      out.println("Saving RNA visualization to: " + outputFilename);
+      Path outputDir = outputFile.toAbsolutePath().getParent();
+      if (outputDir != null) {
+        Files.createDirectories(outputDir);
+      }
+      rna.saveRNASVG(outputFilename, config);
+      out.println("SVG saved successfully.");
+    } catch (Exception e) {
+      // Catch other potential exceptions during RNA processing/drawing
+      err.println("An unexpected error occurred during RNA processing/drawing:");
+      e.printStackTrace(err);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Builds the RNA described by a parsed JSON file. Canonical base pairs form its secondary
+   * structure, while the remaining base pairs, stackings, colors, strand breaks and label filtering
+   * are applied on top of it. The RNA is not drawn yet.
+   *
+   * @return the RNA, or {@code null} if the canonical base pairs do not form a valid secondary
+   *     structure
+   */
+  public static RNA createRNA(StructureData structureData, PrintStream out, PrintStream err)
+      throws ExceptionUnmatchedClosingParentheses, ExceptionFileFormatOrSyntax {
+    return createRNA(structureData, null, out, err);
+  }
+
+  /**
+   * Same as {@link #createRNA(StructureData, PrintStream, PrintStream)}, but pseudoknot orders are
+   * assigned by {@code pseudoknotOrder} instead of the strategy named in {@code structureData},
+   * unless it is {@code null}.
+   */
+  public static RNA createRNA(
+      StructureData structureData,
+      PseudoknotOrderAssigner pseudoknotOrder,
+      PrintStream out,
+      PrintStream err)
+      throws ExceptionUnmatchedClosingParentheses, ExceptionFileFormatOrSyntax {
+    // Parse colors after loading
+    if (structureData.nucleotides != null) {
+      for (Nucleotide n : structureData.nucleotides) {
+        n.parsedOutlineColor = parseColor(n.outlineColor, err);
+        n.parsedInnerColor = parseColor(n.innerColor, err);
+        n.parsedNameColor = parseColor(n.nameColor, err);
+      }
+    }
+    if (structureData.basePairs != null) {
+      for (BasePair bp : structureData.basePairs) {
+        bp.parsedColor = parseColor(bp.color, err);
+      }
+    }
+    if (structureData.stackings != null) {
+      for (pl.poznan.put.varna.model.Stacking s : structureData.stackings) {
+        s.parsedColor = parseColor(s.color, err);
+      }
     }
+
+    out.println("Parsed data summary: " + structureData);
+
+    // Create the pair table and assign pseudoknot orders to canonical pairs
+    String[] sequence;
+    int[] pairTable;
+    int[] pseudoknotOrders;
+    try {
+      pairTable = createPairTableFromStructureData(structureData, err);
+      sequence = createSequenceFromStructureData(structureData);
+      if (pseudoknotOrder == null) {
+        pseudoknotOrder = PseudoknotOrderAssigner.fromStructureData(structureData, err);
+      }
+      pseudoknotOrders = pseudoknotOrder.assign(sequence, pairTable, err);
+      out.println(
+          "Assigned pseudoknot orders to canonical pairs using the "
+              + pseudoknotOrder.getStrategy().getJsonValue()
+              + " strategy.");
+    } catch (IllegalArgumentException e) {
+      err.println("Error creating base secondary structure: " + e.getMessage());
+      return null;
+    }
+
+    // 3. Create RNA object (using canonical structure initially)
+    RNA rna = new RNA(true); // true enables auxiliary base pairs
+    rna.setRNA(sequence, pairTable, pseudoknotOrders);
+
+    // 4. Add non-canonical pairs and apply colors
+    Map<Integer, Integer> idToIndexMap = createIdToIndexMap(structureData);
+    applyCustomizations(rna, structureData, idToIndexMap, err);
+    // Remove discontinuous backbone lines and filter residue labels while drawing
+    applyStrandBreaksAndLabels(rna, structureData, out, err);
+    return rna;
   }
 
   // Utility method to parse color strings
   public static Optional<Color> parseColor(String colorString) {
+    return parseColor(colorString, System.err);
+  }
+
+  public static Optional<Color> parseColor(String colorString, PrintStream err) {
     if (colorString == null || colorString.isEmpty()) {
       return Optional.empty();
     }
@@ -220,15 +451,16 @@ public class AdvancedDrawer {
                 Integer.parseInt(rgb[2].trim())));
       }
     } catch (NumberFormatException e) {
-      System.err.println("Warning: Could not parse color string: " + colorString);
+      err.println("Warning: Could not parse color string: " + colorString);
       return Optional.empty();
     }
-    System.err.println("Warning: Unknown color format: " + colorString);
+    err.println("Warning: Unknown color format: " + colorString);
     return Optional.empty();
   }
 
-  private static BpSeq createBpSeqFromStructureData(StructureData structureData)
-      throws IllegalArgumentException {
+  // Map each 0-based index to its canonical pairing partner's 0-based index, or -1
+  private static int[] createPairTableFromStructureData(
+      StructureData structureData, PrintStream err) throws IllegalArgumentException {
     if (structureData == null
         || structureData.nucleotides == null
         || structureData.nucleotides.isEmpty()) {
@@ -251,7 +483,6 @@ public class AdvancedDrawer {
       }
     }
 
-    // Map 0-based index to its pairing partner's 0-based index
     int[] pairMap = new int[n];
     Arrays.fill(pairMap, -1); // -1 indicates unpaired
 
@@ -265,7 +496,7 @@ public class AdvancedDrawer {
           if (index1 != null && index2 != null) {
             // Check for conflicts
             if (pairMap[index1] != -1 || pairMap[index2] != -1) {
-              System.err.println(
+              err.println(
                   "Warning: Conflicting canonical base pair involving nucleotides with IDs "
                       + bp.id1
                       + " and "
@@ -276,7 +507,7 @@ public class AdvancedDrawer {
             pairMap[index1] = index2;
             pairMap[index2] = index1;
           } else {
-            System.err.println(
+            err.println(
                 "Warning: Could not find index for nucleotide IDs "
                     + bp.id1
                     + " or "
@@ -287,15 +518,15 @@ public class AdvancedDrawer {
       }
     }
 
-    // Build the BpSeq string representation: "index character pair_index" (1-based indexing)
-    StringBuilder bpSeqString = new StringBuilder();
-    for (int i = 0; i < n; i++) {
+    return pairMap;
+  }
+
+  // One nucleotide character per base, throws if one is missing
+  private static String[] createSequenceFromStructureData(StructureData structureData)
+      throws IllegalArgumentException {
+    String[] sequence = new String[structureData.nucleotides.size()];
+    for (int i = 0; i < sequence.length; i++) {
       Nucleotide nucleotide = structureData.nucleotides.get(i);
-      // BpSeq format uses 1-based indexing for sequence position and pair position
-      int seqIndex = i + 1;
-      // BpSeq uses 0 for unpaired, otherwise 1-based index of partner
-      int pairIndex = (pairMap[i] == -1) ? 0 : pairMap[i] + 1;
-      // Get the character, throw error if null/empty
       String character = nucleotide.character;
       if (character == null || character.isEmpty()) {
         throw new IllegalArgumentException(
@@ -306,19 +537,9 @@ public class AdvancedDrawer {
                 + ") is missing its character ('char' field).");
       }
       // Ensure single character for standard BpSeq (take first char if multi)
-      char bpSeqChar = character.charAt(0);
-
-      bpSeqString
-          .append(seqIndex)
-          .append(" ")
-          .append(bpSeqChar)
-          .append(" ")
-          .append(pairIndex)
-          .append("\n");
+      sequence[i] = character.length() == 1 ? character : character.substring(0, 1);
     }
-
-    // Parse the string using BioCommons
-    return ImmutableBpSeq.fromString(bpSeqString.toString());
+    return sequence;
   }
 
   // Helper method to create the ID to 0-based index map
@@ -337,21 +558,21 @@ public class AdvancedDrawer {
 
   // Method to add non-canonical base pairs and apply colors/thickness to nucleotides and base pairs
   private static void applyCustomizations(
-      RNA rna, StructureData structureData, Map<Integer, Integer> idToIndexMap) {
+      RNA rna, StructureData structureData, Map<Integer, Integer> idToIndexMap, PrintStream err) {
 
     StackingArrowPlacementParseResult stackingArrowPlacement =
         structureData.parseStackingArrowPlacement();
     if (structureData.stackingArrowPlacement != null
         && !structureData.stackingArrowPlacement.isBlank()
         && stackingArrowPlacement.usedDefault()) {
-      System.err.println(
+      err.println(
           "Warning: Invalid stackingArrowPlacement '"
               + structureData.stackingArrowPlacement
               + "'. Falling back to centered.");
     }
     Double stackingArrowGap = structureData.stackingArrowGap;
     if (stackingArrowGap != null && stackingArrowGap <= 0.0) {
-      System.err.println(
+      err.println(
           "Warning: Invalid stackingArrowGap '"
               + structureData.stackingArrowGap
               + "'. Falling back to default gap.");
@@ -371,7 +592,7 @@ public class AdvancedDrawer {
           String key = Math.min(index1, index2) + "-" + Math.max(index1, index2);
           bpDataMap.put(key, bpData);
         } else {
-          System.err.println(
+          err.println(
               "Warning: Skipping creation of lookup key for base pair involving missing nucleotide"
                   + " IDs: "
                   + bpData.id1
@@ -392,7 +613,7 @@ public class AdvancedDrawer {
             try {
               rna.addBPAux(index1, index2, bpData.edge5, bpData.edge3, bpData.stericity);
             } catch (Exception e) {
-              System.err.println(
+              err.println(
                   "Warning: Failed to add non-canonical base pair between indices "
                       + (index1 + 1)
                       + " and "
@@ -415,12 +636,8 @@ public class AdvancedDrawer {
       BasePair bpData = bpDataMap.get(key);
 
       if (bpData != null) {
-        // Get or create the style object
-        ModeleBPStyle style = modeleBP.getStyle();
-        if (style == null) {
-          style = new ModeleBPStyle();
-          modeleBP.setStyle(style);
-        }
+        // Styles are shared between base pairs: customize a copy and set it afterwards
+        ModeleBPStyle style = modeleBP.getStyleReadOnly().clone();
 
         // Apply color if present
         bpData.getParsedColor().ifPresent(style::setCustomColor);
@@ -431,10 +648,11 @@ public class AdvancedDrawer {
             style.setThickness(bpData.thickness);
           } catch (NumberFormatException e) {
             // This shouldn't happen if thickness is Double, but good practice
-            System.err.println(
+            err.println(
                 "Warning: Invalid thickness format for pair " + key + ": " + bpData.thickness);
           }
         }
+        modeleBP.setStyle(style);
       }
     }
 
@@ -448,7 +666,7 @@ public class AdvancedDrawer {
             // VARNA uses 0-based indexing for getBaseAt()
             ModeleBase modeleBase = rna.getBaseAt(index);
             if (modeleBase != null) {
-              ModelBaseStyle style = modeleBase.getStyleBase();
+              ModelBaseStyle style = modeleBase.getStyleBaseReadOnly().clone();
               String numberLabel = nucData.getNumberLabel();
               if (!numberLabel.isEmpty()) {
                 modeleBase.setLabel(numberLabel);
@@ -457,18 +675,19 @@ public class AdvancedDrawer {
               nucData.getParsedOutlineColor().ifPresent(style::setBaseOutlineColor);
               nucData.getParsedInnerColor().ifPresent(style::setBaseInnerColor);
               nucData.getParsedNameColor().ifPresent(style::setBaseNameColor);
+              modeleBase.setStyleBase(style);
             } else {
-              System.err.println(
+              err.println(
                   "Warning: Could not find ModeleBase object for nucleotide index "
                       + index
                       + " to apply color.");
             }
           } catch (IndexOutOfBoundsException e) {
-            System.err.println(
+            err.println(
                 "Warning: Index out of bounds when trying to get ModeleBase at index " + index);
           }
         } else {
-          System.err.println(
+          err.println(
               "Warning: Could not find index for nucleotide ID " + nucData.id + " to apply color.");
         }
       }
@@ -491,8 +710,8 @@ public class AdvancedDrawer {
                     ModeleBP.Edge.SUGAR,
                     ModeleBP.Stericity.TRANS);
 
-            // Get the style object (ModeleBP constructor creates a default style)
-            ModeleBPStyle style = stackingBP.getStyle();
+            // Customize a copy of the default style, shared by the other base pairs
+            ModeleBPStyle style = stackingBP.getStyleReadOnly().clone();
 
             // Apply color if present
             stackingData.getParsedColor().ifPresent(style::setCustomColor);
@@ -502,7 +721,7 @@ public class AdvancedDrawer {
               try {
                 style.setThickness(stackingData.thickness);
               } catch (NumberFormatException e) {
-                System.err.println(
+                err.println(
                     "Warning: Invalid thickness format for stacking "
                         + stackingData.id1
                         + "-"
@@ -516,13 +735,14 @@ public class AdvancedDrawer {
             if (stackingArrowGap != null) {
               style.setStackingArrowGap(stackingArrowGap);
             }
+            stackingBP.setStyle(style);
 
             // Add the configured ModeleBP as an auxiliary base pair.
             // This method will set the partners on stackingBP.
             rna.addBPAux(index1, index2, stackingBP);
 
           } catch (Exception e) {
-            System.err.println(
+            err.println(
                 "Warning: Failed to add or style stacking interaction between nucleotide IDs "
                     + stackingData.id1
                     + " and "
@@ -533,10 +753,10 @@ public class AdvancedDrawer {
                     + index2
                     + "): "
                     + e.getMessage());
-            e.printStackTrace(); // For more detailed debugging
+            e.printStackTrace(err); // For more detailed debugging
           }
         } else {
-          System.err.println(
+          err.println(
               "Warning: Skipping stacking interaction due to missing nucleotide IDs: "
                   + stackingData.id1
                   + ", "
@@ -546,20 +766,20 @@ public class AdvancedDrawer {
     }
   }
 
-  // Method to parse SVG, remove discontinuous backbone lines, and filter text labels
-  private static void postProcessSvg(String svgFilePath, StructureData structureData)
-      throws Exception {
+  // Method to break the backbone at strand ends and select which residue labels are drawn
+  private static void applyStrandBreaksAndLabels(
+      RNA rna, StructureData structureData, PrintStream out, PrintStream err) {
     if (structureData == null
         || structureData.nucleotides == null
         || structureData.nucleotides.isEmpty()) {
       // No data to process
-      System.err.println("Warning: No nucleotide data found for SVG post-processing.");
+      err.println("Warning: No nucleotide data found for strand breaks and labels.");
       return;
     }
 
     // 1. Find indices BEFORE which a discontinuity occurs
     Set<Integer> discontinuityIndices = new TreeSet<>();
-    Set<Integer> labelsToKeep = new HashSet<>();
+    BitSet labelsToKeep = new BitSet(structureData.nucleotides.size());
     Set<Integer> tenPrefixLabelsKept = new HashSet<>();
 
     // Honor explicit strand breaks (0-based index of the last nucleotide of each strand)
@@ -569,9 +789,9 @@ public class AdvancedDrawer {
             && breakIndex >= 0
             && breakIndex < structureData.nucleotides.size() - 1) {
           discontinuityIndices.add(breakIndex);
-          labelsToKeep.add(breakIndex);
-          labelsToKeep.add(breakIndex + 1);
-          System.out.println(
+          labelsToKeep.set(breakIndex);
+          labelsToKeep.set(breakIndex + 1);
+          out.println(
               "Honoring explicit strand break after index "
                   + breakIndex
                   + " (number "
@@ -589,9 +809,9 @@ public class AdvancedDrawer {
         Optional<Integer> nextPrefix = next.getNumberPrefix();
         if (isNumberingDiscontinuous(currentPrefix, nextPrefix)) {
           discontinuityIndices.add(i); // Add the index of the nucleotide BEFORE the break
-          labelsToKeep.add(i);
-          labelsToKeep.add(i + 1);
-          System.out.println(
+          labelsToKeep.set(i);
+          labelsToKeep.set(i + 1);
+          out.println(
               "Detected numbering discontinuity between index "
                   + i
                   + " (number "
@@ -603,170 +823,37 @@ public class AdvancedDrawer {
                   + ")");
         }
         if (shouldKeepTenthLabel(currentPrefix, tenPrefixLabelsKept)) {
-          labelsToKeep.add(i);
+          labelsToKeep.set(i);
         }
       }
     }
     Nucleotide lastNucleotide = structureData.nucleotides.get(structureData.nucleotides.size() - 1);
     if (lastNucleotide != null
         && shouldKeepTenthLabel(lastNucleotide.getNumberPrefix(), tenPrefixLabelsKept)) {
-      labelsToKeep.add(structureData.nucleotides.size() - 1);
+      labelsToKeep.set(structureData.nucleotides.size() - 1);
     }
-    labelsToKeep.add(0); // Always keep the first nucleotide label
-    labelsToKeep.add(structureData.nucleotides.size() - 1); // Always keep the last nucleotide label
+    labelsToKeep.set(0); // Always keep the first nucleotide label
+    labelsToKeep.set(structureData.nucleotides.size() - 1); // Always keep the last nucleotide label
 
     if (discontinuityIndices.isEmpty()) {
-      System.out.println("No numbering discontinuities found.");
-    }
-
-    // 2. Parse the SVG file
-    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-    // Disable external DTD loading to prevent XXE attacks and network issues
-    factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
-    factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
-    factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
-    // Keep DOCTYPE declaration parsing enabled (if present) but prevent external fetching
-    factory.setExpandEntityReferences(false); // Also recommended for security
-
-    DocumentBuilder builder = factory.newDocumentBuilder();
-    Document doc = builder.parse(new File(svgFilePath));
-    doc.getDocumentElement().normalize();
-
-    // 3. Find all backbone lines
-    NodeList childNodes = doc.getDocumentElement().getChildNodes();
-    List<Element> backboneElements = new ArrayList<>();
-    for (int i = 0;
-        i < childNodes.getLength()
-            && backboneElements.size() < structureData.nucleotides.size() - 1;
-        i++) {
-      Node node = childNodes.item(i);
-      if (node.getNodeType() == Node.ELEMENT_NODE) {
-        Element element = (Element) node;
-        backboneElements.add(element);
-      }
+      out.println("No numbering discontinuities found.");
     }
 
-    // Safety check: Ensure number of backbone lines matches expectation (n-1)
-    if (backboneElements.size() != structureData.nucleotides.size() - 1) {
-      System.err.println(
-          "Warning: Expected "
-              + (structureData.nucleotides.size() - 1)
-              + " backbone lines, but found "
-              + backboneElements.size()
-              + ". SVG modification might be incorrect.");
-      // Decide whether to proceed or abort. For now, let's proceed with caution.
-    }
-
-    // 4. Identify and remove lines corresponding to discontinuities
-    // Iterate in descending order of indices to avoid index shifting issues during removal
-    List<Element> linesToRemove = new ArrayList<>();
-    System.out.println("--- Identifying Backbone Lines to Remove ---");
-    System.out.println("Discontinuity indices (line before break): " + discontinuityIndices);
-    System.out.println("Total backbone lines found: " + backboneElements.size());
-
-    // Convert to a list sorted descending for safe in-place DOM removal
-    List<Integer> sortedDesc =
-        discontinuityIndices.stream()
-            .sorted(Comparator.reverseOrder())
-            .collect(Collectors.toList());
-
-    for (int indexToRemove : sortedDesc) {
-      if (indexToRemove >= 0 && indexToRemove < backboneElements.size()) {
-        Element lineElement = backboneElements.get(indexToRemove);
-        System.out.println(
-            "  Marking for removal: Line index "
-                + indexToRemove
-                + ", Element: "
-                + lineElement.getAttribute("x1")
-                + ","
-                + lineElement.getAttribute("y1")
-                + " -> "
-                + lineElement.getAttribute("x2")
-                + ","
-                + lineElement.getAttribute("y2")); // Log coordinates
-        linesToRemove.add(lineElement);
-      } else {
-        System.err.println(
-            "Warning: Calculated discontinuity index "
-                + indexToRemove
-                + " is out of bounds for the found backbone lines (size: "
-                + backboneElements.size()
-                + "). Skipping removal.");
-      }
+    // 2. Mark the backbone after each discontinuity index so that it is not drawn
+    out.println("Discontinuity indices (line before break): " + discontinuityIndices);
+    for (int index : discontinuityIndices) {
+      rna.getBackbone()
+          .addElement(new ModeleBackboneElement(index, BackboneType.DISCONTINUOUS_TYPE));
     }
 
-    // Perform removal
-    int removedCount = 0;
-    for (Element line : linesToRemove) {
-      Node parent = line.getParentNode();
-      if (parent != null) {
-        parent.removeChild(line);
-        removedCount++;
-      }
-    }
-    System.out.println("Removed " + removedCount + " backbone line(s) due to discontinuities.");
-
-    // 5. Find pairs of text and line elements that correspond to numbered labels
-    NodeList lineNodes = doc.getElementsByTagName("line");
-    List<Element> numberLines = new ArrayList<>();
-    for (int i = 0; i < lineNodes.getLength(); i++) {
-      Node node = lineNodes.item(i);
-      if (node.getNodeType() == Node.ELEMENT_NODE) {
-        Element element = (Element) node;
-        // Check if the line has the specific stroke attribute for backbone lines
-        if ("rgb(25%, 25%, 25%)".equals(element.getAttribute("stroke"))) {
-          numberLines.add(element);
-        }
-      }
-    }
-    NodeList textNodes = doc.getElementsByTagName("text");
-    List<Element> numberTexts = new ArrayList<>();
-    for (int i = 0; i < textNodes.getLength(); i++) {
-      Node node = textNodes.item(i);
-      if (node.getNodeType() == Node.ELEMENT_NODE) {
-        Element element = (Element) node;
-        // Check if the line has the specific stroke attribute for backbone lines
-        if ("rgb(25%, 25%, 25%)".equals(element.getAttribute("fill"))) {
-          numberTexts.add(element);
-        }
-      }
-    }
-
-    // Safety check: Ensure number of label lines and texts matches
-    if (numberLines.size() != numberTexts.size()) {
-      System.err.println(
-          "Warning: Number of label lines ("
-              + numberLines.size()
-              + ") does not match number of label texts ("
-              + numberTexts.size()
-              + "). SVG modification might be incorrect.");
-      // Decide whether to proceed or abort. For now, let's proceed with caution.
-    }
-
-    // Perform removal
-    removedCount = 0;
-    for (int i = 0; i < numberLines.size(); i++) {
-      if (!labelsToKeep.contains(i)) {
-        Element line = numberLines.get(i);
-        Element text = numberTexts.get(i);
-        Node parentLine = line.getParentNode();
-        Node parentText = text.getParentNode();
-        if (parentLine != null && parentText != null) {
-          parentLine.removeChild(line);
-          parentText.removeChild(text);
-          removedCount++;
-        }
-      }
-    }
-    System.out.println(
-        "Removed " + removedCount + " label line(s) and text(s) based on numbering rules.");
-
-    // --- Write the modified DOM back to the SVG file ---
-    TransformerFactory transformerFactory = TransformerFactory.newInstance();
-    Transformer transformer = transformerFactory.newTransformer();
-    DOMSource source = new DOMSource(doc);
-    StreamResult result = new StreamResult(new File(svgFilePath));
-    transformer.transform(source, result);
+    // 3. Only draw the selected residue labels
+    rna.setNumberedBases(labelsToKeep);
+    out.println(
+        "Keeping "
+            + labelsToKeep.cardinality()
+            + " of "
+            + structureData.nucleotides.size()
+            + " residue label(s) based on numbering rules.");
   }
 
   private static boolean isNumberingDiscontinuous(
@@ -0,0 +1,174 @@
+package pl.poznan.put.varna;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Renders a list of {@link RenderJob}s, either sequentially or on a worker pool.
+ *
+ * <p>With a pool, at most {@code maxInFlight} structures are being rendered or waiting to be
+ * reported at any time, which bounds the memory held by finished but not yet reported renders.
+ * Messages of each render are buffered and printed, together with its outcome, in input order.
+ */
+public final class BatchRenderer {
+  /** Pool size value selecting one virtual thread per structure instead of a fixed pool. */
+  public static final int VIRTUAL_THREADS = -1;
+
+  private final int threads;
+  private final int maxInFlight;
+  private final PseudoknotOrderAssigner pseudoknotOrder;
+
+  /**
+   * @param threads number of worker threads, {@code 1} for sequential rendering or {@link
+   *     #VIRTUAL_THREADS}
+   * @param maxInFlight maximum number of submitted but not yet reported structures; values below
+   *     one select twice the number of worker threads
+   */
+  public BatchRenderer(int threads, int maxInFlight) {
+    this(threads, maxInFlight, null);
+  }
+
+  /**
+   * @param threads number of worker threads, {@code 1} for sequential rendering or {@link
+   *     #VIRTUAL_THREADS}
+   * @param maxInFlight maximum number of submitted but not yet reported structures; values below
+   *     one select twice the number of worker threads
+   * @param pseudoknotOrder assigns pseudoknot orders of every structure, {@code null} to use the
+   *     strategy named in each input
+   */
+  public BatchRenderer(int threads, int maxInFlight, PseudoknotOrderAssigner pseudoknotOrder) {
+    this.threads = threads;
+    this.pseudoknotOrder = pseudoknotOrder;
+    int workers = threads == VIRTUAL_THREADS ? Runtime.getRuntime().availableProcessors() : threads;
+    this.maxInFlight = maxInFlight > 0 ? maxInFlight : 2 * Math.max(1, workers);
+  }
+
+  /**
+   * Renders all jobs and reports each of them in input order.
+   *
+   * @return the jobs which failed to render
+   */
+  public List<RenderJob> run(List<RenderJob> jobs) {
+    if (threads == 1) {
+      return runSequentially(jobs);
+    }
+
+    List<RenderJob> failed = new ArrayList<>();
+    ExecutorService executor = createExecutor();
+    try {
+      Deque<Future<Result>> inFlight = new ArrayDeque<>();
+      for (RenderJob job : jobs) {
+        if (inFlight.size() >= maxInFlight) {
+          report(inFlight.removeFirst(), failed);
+        }
+        inFlight.addLast(executor.submit(() -> renderBuffered(job)));
+      }
+      while (!inFlight.isEmpty()) {
+        report(inFlight.removeFirst(), failed);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    return failed;
+  }
+
+  private List<RenderJob> runSequentially(List<RenderJob> jobs) {
+    List<RenderJob> failed = new ArrayList<>();
+    for (RenderJob job : jobs) {
+      System.out.println("=== Rendering " + job + " ===");
+      if (!render(job, System.out, System.err)) {
+        failed.add(job);
+      }
+    }
+    return failed;
+  }
+
+  private ExecutorService createExecutor() {
+    if (threads == VIRTUAL_THREADS) {
+      try {
+        // Looked up reflectively so that the project still targets Java 11
+        Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        return (ExecutorService) factory.invoke(null);
+      } catch (ReflectiveOperationException e) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        System.err.println(
+            "Warning: Virtual threads are not supported by this Java runtime. Using "
+                + processors
+                + " platform threads instead.");
+        return Executors.newFixedThreadPool(processors);
+      }
+    }
+    return Executors.newFixedThreadPool(threads);
+  }
+
+  private Result renderBuffered(RenderJob job) {
+    ByteArrayOutputStream outBuffer = new ByteArrayOutputStream();
+    ByteArrayOutputStream errBuffer = new ByteArrayOutputStream();
+    boolean success;
+    try (PrintStream out = new PrintStream(outBuffer, true, StandardCharsets.UTF_8);
+        PrintStream err = new PrintStream(errBuffer, true, StandardCharsets.UTF_8)) {
+      success = render(job, out, err);
+    }
+    return new Result(
+        job,
+        success,
+        outBuffer.toString(StandardCharsets.UTF_8),
+        errBuffer.toString(StandardCharsets.UTF_8));
+  }
+
+  private boolean render(RenderJob job, PrintStream out, PrintStream err) {
+    try {
+      return AdvancedDrawer.render(job.getInput(), job.getOutput(), pseudoknotOrder, out, err);
+    } catch (RuntimeException | Error e) {
+      // Keep the batch going even if a single structure breaks the renderer
+      err.println("An unexpected error occurred while rendering " + job.getInput() + ":");
+      e.printStackTrace(err);
+      return false;
+    }
+  }
+
+  private static void report(Future<Result> future, List<RenderJob> failed) {
+    Result result;
+    try {
+      result = future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for a render to finish", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Render task failed unexpectedly", e.getCause());
+    }
+
+    System.out.println("=== Rendering " + result.job + " ===");
+    System.out.print(result.out);
+    System.out.flush();
+    System.err.print(result.err);
+    System.err.flush();
+    if (!result.success) {
+      failed.add(result.job);
+    }
+  }
+
+  private static final class Result {
+    private final RenderJob job;
+    private final boolean success;
+    private final String out;
+    private final String err;
+
+    private Result(RenderJob job, boolean success, String out, String err) {
+      this.job = job;
+      this.success = success;
+      this.out = out;
+      this.err = err;
+    }
+  }
+}
@@ -0,0 +1,147 @@
+package pl.poznan.put.varna;
+
+import fr.orsay.lri.varna.models.VARNAConfig;
+import fr.orsay.lri.varna.models.annotations.ChemProbAnnotation;
+import fr.orsay.lri.varna.models.annotations.HighlightRegionAnnotation;
+import fr.orsay.lri.varna.models.annotations.TextAnnotation;
+import fr.orsay.lri.varna.models.rna.ModeleBP;
+import fr.orsay.lri.varna.models.rna.ModeleBPStyle;
+import fr.orsay.lri.varna.models.rna.ModeleBackboneElement;
+import fr.orsay.lri.varna.models.rna.ModeleBase;
+import fr.orsay.lri.varna.models.rna.RNA;
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.BitSet;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamResult;
+import org.xml.sax.SAXException;
+
+/**
+ * Checks that {@link RNA#clone()} gives the same RNA as the serialization round trip it replaced,
+ * on an RNA with auxiliary base pairs, annotations, numbered bases and custom styles, and that the
+ * clone shares nothing mutable with the original. Exits with status 1 on the first difference.
+ */
+public final class CloneTesterApp {
+  private CloneTesterApp() {
+    super();
+  }
+
+  public static void main(final String[] args) throws Exception {
+    final RNA rna = createRNA();
+    final String original = describe(rna);
+    final String serialized = describe(serializedCopy(rna));
+
+    final RNA clone = rna.clone();
+    check("serialized copy", original, serialized);
+    check("clone", serialized, describe(clone));
+
+    clone.getBaseAt(0).setCoords(new Point2D.Double(-1.0, -1.0));
+    clone.getBaseAt(1).getStyleBase().setBaseInnerColor(Color.BLUE);
+    clone.getBaseAt(3).getStyleBase().setBaseOutlineColor(Color.BLUE);
+    clone.getBaseAt(2).getStyleBP().getStyle().setBent(2.0);
+    clone.getAnnotations().get(0).setText("changed");
+    clone.getNumberedBases().set(1);
+    check("original after changing the clone", original, describe(rna));
+
+    System.out.println("The clone is the same as the serialized copy");
+    System.exit(0);
+  }
+
+  private static RNA createRNA() throws Exception {
+    final RNA rna = new RNA(true);
+    rna.setName("clone test");
+    rna.setRNA("GGGAAACCCAGCUUCGGCUGAAAGGGAUUUCCC", "(((...)))((((....))))[[[...]]]...");
+    rna.addBPAux(3, 26, ModeleBP.Edge.HOOGSTEEN, ModeleBP.Edge.SUGAR, ModeleBP.Stericity.TRANS);
+    rna.addBPAux(4, 13, ModeleBP.Edge.SUGAR, ModeleBP.Edge.WC, ModeleBP.Stericity.CIS);
+    rna.drawRNARadiate(new VARNAConfig());
+
+    final ModeleBase base = rna.getBaseAt(1);
+    base.setStyleBase(base.getStyleBaseReadOnly().withBaseInnerColor(Color.RED));
+    rna.getBaseAt(3).getStyleBase().setBaseOutlineColor(Color.RED);
+    final ModeleBP bp = rna.getBaseAt(2).getStyleBP();
+    bp.setStyle(bp.getStyleReadOnly().withThickness(3.0).withCustomColor(Color.GREEN));
+
+    final BitSet numbered = new BitSet();
+    numbered.set(0);
+    numbered.set(10);
+    rna.setNumberedBases(numbered);
+    rna.getBackbone()
+        .addElement(
+            new ModeleBackboneElement(8, ModeleBackboneElement.BackboneType.DISCONTINUOUS_TYPE));
+
+    final ArrayList<ModeleBase> helix = new ArrayList<ModeleBase>();
+    for (int i = 9; i < 13; i++) {
+      helix.add(rna.getBaseAt(i));
+    }
+    rna.addAnnotation(new TextAnnotation("base", rna.getBaseAt(0)));
+    rna.addAnnotation(new TextAnnotation("position", 12.5, 34.5));
+    rna.addAnnotation(new TextAnnotation("helix", helix, TextAnnotation.AnchorType.HELIX));
+    rna.addHighlightRegion(new HighlightRegionAnnotation(helix));
+    rna.addChemProbAnnotation(new ChemProbAnnotation(rna.getBaseAt(4), rna.getBaseAt(5)));
+    return rna;
+  }
+
+  private static RNA serializedCopy(final RNA rna) throws IOException, ClassNotFoundException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(rna);
+    }
+    try (ObjectInputStream in =
+        new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      return (RNA) in.readObject();
+    }
+  }
+
+  private static String describe(final RNA rna)
+      throws SAXException, TransformerConfigurationException {
+    final StringWriter xml = new StringWriter();
+    final TransformerHandler hd =
+        ((SAXTransformerFactory) SAXTransformerFactory.newInstance()).newTransformerHandler();
+    hd.setResult(new StreamResult(xml));
+    hd.startDocument();
+    rna.toXML(hd);
+    hd.endDocument();
+
+    final StringBuilder result = new StringBuilder(xml.toString());
+    result.append('\n').append(rna.getStructDBN(true));
+    result.append('\n').append(rna.getListeBasesToString());
+    result.append('\n').append(rna.getNumberedBases());
+    for (int i = 0; i < rna.getSize(); i++) {
+      final ModeleBase mb = rna.getBaseAt(i);
+      result.append('\n').append(mb.getCoords()).append(' ').append(mb.getCenter());
+      result.append(' ').append(mb.getStyleBaseReadOnly().getBaseInnerColor());
+      result.append(' ').append(mb.getStyleBaseReadOnly().getBaseOutlineColor());
+      if (mb.getStyleBP() != null) {
+        final ModeleBPStyle style = mb.getStyleBP().getStyleReadOnly();
+        result.append(' ').append(mb.getStyleBP()).append(' ').append(style.getBent());
+        result.append(' ').append(style.getThickness(1.0));
+        result.append(' ').append(style.getCustomColor());
+      }
+    }
+    return result.toString();
+  }
+
+  private static void check(final String what, final String expected, final String actual) {
+    if (expected.equals(actual)) {
+      return;
+    }
+    int i = 0;
+    while (i < Math.min(expected.length(), actual.length())
+        && expected.charAt(i) == actual.charAt(i)) {
+      i++;
+    }
+    System.err.println("The " + what + " differs at character " + i + ":");
+    System.err.println(expected.substring(i, Math.min(expected.length(), i + 80)));
+    System.err.println(actual.substring(i, Math.min(actual.length(), i + 80)));
+    System.exit(1);
+  }
+}
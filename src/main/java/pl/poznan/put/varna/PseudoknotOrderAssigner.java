@@ -0,0 +1,299 @@
+package pl.poznan.put.varna;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import pl.poznan.put.structure.formats.BpSeq;
+import pl.poznan.put.structure.formats.DotBracket;
+import pl.poznan.put.structure.formats.ImmutableBpSeq;
+import pl.poznan.put.structure.formats.ImmutableDefaultConverter;
+import pl.poznan.put.structure.formats.ImmutableEntry;
+import pl.poznan.put.varna.model.PseudoknotOrderStrategy;
+import pl.poznan.put.varna.model.StructureData;
+
+/**
+ * Assigns bracket levels (pseudoknot orders) to a table of canonical base pairs. Pairs of level 0
+ * form the main, nested structure and each further level is nested on its own.
+ *
+ * <p>With a time budget, the exact strategy runs on a background thread and is abandoned in favour
+ * of {@link PseudoknotOrderStrategy#GREEDY} once the budget is spent. The converter cannot be
+ * interrupted, so an abandoned computation still finishes in the background, but the render no
+ * longer waits for it. At most one such computation per processor runs at a time, and the greedy
+ * strategy is used right away when none is free. The greedy and first-fit strategies take {@code
+ * O(n log n)} time and ignore the budget.
+ */
+public final class PseudoknotOrderAssigner {
+  /** The strategy used so far: exact, without time limit. */
+  public static final PseudoknotOrderAssigner DEFAULT =
+      new PseudoknotOrderAssigner(PseudoknotOrderStrategy.EXACT, 0);
+
+  private static final String OPENING_BRACKETS = "([{<ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+  // Rejects tasks when all threads are busy, abandoned computations included
+  private static final ExecutorService EXACT_EXECUTOR =
+      new ThreadPoolExecutor(
+          0,
+          Runtime.getRuntime().availableProcessors(),
+          60L,
+          TimeUnit.SECONDS,
+          new SynchronousQueue<Runnable>(),
+          runnable -> {
+            Thread thread = new Thread(runnable, "pseudoknot-order");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private final PseudoknotOrderStrategy strategy;
+  private final long timeBudgetMillis;
+
+  /**
+   * @param strategy the strategy to use
+   * @param timeBudgetMillis the time after which the exact strategy falls back to the greedy one,
+   *     {@code 0} for no limit
+   */
+  public PseudoknotOrderAssigner(PseudoknotOrderStrategy strategy, long timeBudgetMillis) {
+    this.strategy = strategy;
+    this.timeBudgetMillis = timeBudgetMillis;
+  }
+
+  /**
+   * Reads the {@code pseudoknotOrder} and {@code pseudoknotOrderTimeBudget} fields of a JSON input,
+   * warning about invalid values and replacing them with the defaults.
+   */
+  public static PseudoknotOrderAssigner fromStructureData(
+      StructureData structureData, PrintStream err) {
+    PseudoknotOrderStrategy strategy = PseudoknotOrderStrategy.EXACT;
+    if (structureData.pseudoknotOrder != null && !structureData.pseudoknotOrder.isBlank()) {
+      strategy =
+          PseudoknotOrderStrategy.parse(structureData.pseudoknotOrder)
+              .orElseGet(
+                  () -> {
+                    err.println(
+                        "Warning: Invalid pseudoknotOrder '"
+                            + structureData.pseudoknotOrder
+                            + "'. Using default exact. Valid options: exact, greedy, first-fit");
+                    return PseudoknotOrderStrategy.EXACT;
+                  });
+    }
+
+    long timeBudgetMillis = 0;
+    Long budget = structureData.pseudoknotOrderTimeBudget;
+    if (budget != null) {
+      if (budget > 0) {
+        timeBudgetMillis = budget;
+      } else {
+        err.println(
+            "Warning: Invalid pseudoknotOrderTimeBudget "
+                + budget
+                + ". Expected a positive number of milliseconds. Using no time budget.");
+      }
+    }
+    return new PseudoknotOrderAssigner(strategy, timeBudgetMillis);
+  }
+
+  public PseudoknotOrderStrategy getStrategy() {
+    return strategy;
+  }
+
+  public long getTimeBudgetMillis() {
+    return timeBudgetMillis;
+  }
+
+  /**
+   * @param sequence the nucleotide of each base
+   * @param pairTable the 0-based partner of each base, or -1
+   * @return the level of each base pair, stored at the index of its 5' base, -1 elsewhere
+   */
+  public int[] assign(String[] sequence, int[] pairTable, PrintStream err) {
+    switch (strategy) {
+      case GREEDY:
+        return greedyByStemLength(pairTable);
+      case FIRST_FIT:
+        return firstFit(pairTable);
+      default:
+        return timeBudgetMillis > 0
+            ? exactWithinBudget(sequence, pairTable, err)
+            : exact(sequence, pairTable);
+    }
+  }
+
+  private int[] exactWithinBudget(String[] sequence, int[] pairTable, PrintStream err) {
+    Future<int[]> future;
+    try {
+      future = EXACT_EXECUTOR.submit(() -> exact(sequence, pairTable));
+    } catch (RejectedExecutionException e) {
+      err.println(
+          "Warning: Too many exact pseudoknot order assignments are still running."
+              + " Using the greedy strategy instead.");
+      return greedyByStemLength(pairTable);
+    }
+    try {
+      return future.get(timeBudgetMillis, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      future.cancel(true);
+      err.println(
+          "Warning: Exact pseudoknot order assignment exceeded its time budget of "
+              + timeBudgetMillis
+              + " ms. Using the greedy strategy instead.");
+    } catch (InterruptedException e) {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      err.println("Warning: Interrupted during exact pseudoknot order assignment. Using greedy.");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException("Pseudoknot order assignment failed", e.getCause());
+    }
+    return greedyByStemLength(pairTable);
+  }
+
+  private static int[] exact(String[] sequence, int[] pairTable) {
+    // BpSeq entries use 1-based indexing for sequence position and pair position, 0 for unpaired
+    List<BpSeq.Entry> entries = new ArrayList<>(sequence.length);
+    for (int i = 0; i < sequence.length; i++) {
+      entries.add(ImmutableEntry.of(i + 1, pairTable[i] + 1, sequence[i].charAt(0)));
+    }
+    DotBracket dotBracket = ImmutableDefaultConverter.of().convert(ImmutableBpSeq.of(entries));
+
+    String structure = dotBracket.structure();
+    int[] orders = new int[pairTable.length];
+    for (int i = 0; i < pairTable.length; i++) {
+      orders[i] = (i < pairTable[i]) ? OPENING_BRACKETS.indexOf(structure.charAt(i)) : -1;
+    }
+    return orders;
+  }
+
+  // Places stems (maximal runs of stacked pairs), longest first, on the lowest level they fit in
+  private static int[] greedyByStemLength(int[] pairTable) {
+    int n = pairTable.length;
+    int[] stemStart = new int[n];
+    int[] stemLength = new int[n];
+    int stems = 0;
+    for (int i = 0; i < n; i++) {
+      int j = pairTable[i];
+      if (j > i && !(i > 0 && j + 1 < n && pairTable[i - 1] == j + 1)) {
+        int length = 1;
+        while (i + length < j - length && pairTable[i + length] == j - length) {
+          length++;
+        }
+        stemStart[stems] = i;
+        stemLength[stems] = length;
+        stems++;
+      }
+    }
+
+    // Longest stems first, ties broken by 5' position
+    Integer[] order = new Integer[stems];
+    for (int s = 0; s < stems; s++) {
+      order[s] = s;
+    }
+    Arrays.sort(
+        order, (a, b) -> stemLength[a] != stemLength[b] ? stemLength[b] - stemLength[a] : a - b);
+
+    int[] orders = new int[n];
+    Arrays.fill(orders, -1);
+    List<Level> levels = new ArrayList<>();
+    for (int s : order) {
+      int i = stemStart[s];
+      int level = lowestFittingLevel(levels, i, pairTable[i], n);
+      for (int k = 0; k < stemLength[s]; k++) {
+        levels.get(level).add(i + k, pairTable[i + k]);
+        orders[i + k] = level;
+      }
+    }
+    return orders;
+  }
+
+  // Places base pairs in 5' to 3' order on the lowest level they fit in
+  private static int[] firstFit(int[] pairTable) {
+    int n = pairTable.length;
+    int[] orders = new int[n];
+    Arrays.fill(orders, -1);
+    List<Level> levels = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      int j = pairTable[i];
+      if (j > i) {
+        int level = lowestFittingLevel(levels, i, j, n);
+        levels.get(level).add(i, j);
+        orders[i] = level;
+      }
+    }
+    return orders;
+  }
+
+  private static int lowestFittingLevel(List<Level> levels, int i, int j, int n) {
+    for (int level = 0; level < levels.size(); level++) {
+      if (levels.get(level).fits(i, j)) {
+        return level;
+      }
+    }
+    levels.add(new Level(n));
+    return levels.size() - 1;
+  }
+
+  /**
+   * A nested set of base pairs, stored as +1 at each 5' base and -1 at each 3' base in a segment
+   * tree of sums and minimal prefix sums. A pair (i, j) crosses none of the set's pairs if and only
+   * if the bases strictly between i and j are balanced: their sum is 0 and no prefix is negative.
+   */
+  private static final class Level {
+    private final int size;
+    private final int[] sum;
+    private final int[] minPrefix;
+
+    private Level(int n) {
+      int capacity = 1;
+      while (capacity < n) {
+        capacity <<= 1;
+      }
+      size = capacity;
+      sum = new int[2 * size];
+      minPrefix = new int[2 * size];
+    }
+
+    private void add(int i, int j) {
+      set(i, 1);
+      set(j, -1);
+    }
+
+    private void set(int position, int value) {
+      int node = position + size;
+      sum[node] = value;
+      minPrefix[node] = Math.min(0, value);
+      for (node >>= 1; node > 0; node >>= 1) {
+        sum[node] = sum[2 * node] + sum[2 * node + 1];
+        minPrefix[node] = Math.min(minPrefix[2 * node], sum[2 * node] + minPrefix[2 * node + 1]);
+      }
+    }
+
+    private boolean fits(int i, int j) {
+      int leftSum = 0;
+      int leftMin = 0;
+      int rightSum = 0;
+      int rightMin = 0;
+      for (int l = i + 1 + size, r = j + size; l < r; l >>= 1, r >>= 1) {
+        if ((l & 1) == 1) {
+          leftMin = Math.min(leftMin, leftSum + minPrefix[l]);
+          leftSum += sum[l];
+          l++;
+        }
+        if ((r & 1) == 1) {
+          r--;
+          rightMin = Math.min(minPrefix[r], sum[r] + rightMin);
+          rightSum += sum[r];
+        }
+      }
+      return leftSum + rightSum == 0 && Math.min(leftMin, leftSum + rightMin) >= 0;
+    }
+  }
+}
@@ -0,0 +1,157 @@
+package pl.poznan.put.varna;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/** A single input JSON file together with the SVG file it should be rendered to. */
+public final class RenderJob {
+  private static final String GLOB_CHARACTERS = "*?[{";
+
+  private final Path input;
+  private final Path output;
+
+  public RenderJob(Path input, Path output) {
+    this.input = input;
+    this.output = output;
+  }
+
+  public Path getInput() {
+    return input;
+  }
+
+  public Path getOutput() {
+    return output;
+  }
+
+  /**
+   * Expands a batch specification into render jobs. The specification is either a directory (every
+   * {@code *.json} file directly inside it), a glob pattern such as {@code data/**.json}, or a
+   * manifest file with one input per line. A specification naming an existing file or directory is
+   * never taken as a glob, even if it contains wildcard characters such as {@code [}.
+   *
+   * <p>For directories and globs each output is named after its input with the {@code .json}
+   * extension replaced by {@code .svg}, placed in {@code outputDir} (keeping the path relative to
+   * the directory or the non-wildcard prefix of the glob) or next to the input when {@code
+   * outputDir} is {@code null}. Manifest lines are either {@code input} or {@code
+   * input<TAB>output}; blank lines and lines starting with {@code #} are ignored, and relative
+   * paths are resolved against the directory containing the manifest.
+   */
+  public static List<RenderJob> expand(String spec, Path outputDir) throws IOException {
+    Path path = Paths.get(spec);
+    if (isGlob(spec) && !Files.exists(path)) {
+      return fromGlob(spec, outputDir);
+    }
+
+    if (Files.isDirectory(path)) {
+      return fromDirectory(path, outputDir);
+    }
+    if (Files.isRegularFile(path)) {
+      return fromManifest(path, outputDir);
+    }
+    throw new IOException("Batch input is neither a directory, a glob nor a manifest: " + spec);
+  }
+
+  public static List<RenderJob> fromDirectory(Path directory, Path outputDir) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files
+          .filter(Files::isRegularFile)
+          .filter(p -> p.getFileName().toString().toLowerCase().endsWith(".json"))
+          .sorted()
+          .map(p -> new RenderJob(p, defaultOutput(directory, p, outputDir)))
+          .collect(Collectors.toList());
+    }
+  }
+
+  public static List<RenderJob> fromGlob(String pattern, Path outputDir) throws IOException {
+    Path base = globBase(pattern);
+    PathMatcher matcher =
+        FileSystems.getDefault().getPathMatcher("glob:" + Paths.get(pattern).normalize());
+    try (Stream<Path> files = Files.walk(base)) {
+      return files
+          .filter(Files::isRegularFile)
+          .filter(p -> matcher.matches(p.normalize()))
+          .sorted()
+          .map(p -> new RenderJob(p, defaultOutput(base, p, outputDir)))
+          .collect(Collectors.toList());
+    }
+  }
+
+  public static List<RenderJob> fromManifest(Path manifest, Path outputDir) throws IOException {
+    Path manifestDir = manifest.toAbsolutePath().getParent();
+    List<RenderJob> jobs = new ArrayList<>();
+    int lineNumber = 0;
+    for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+      lineNumber++;
+      String trimmed = line.trim();
+      if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+        continue;
+      }
+
+      String[] columns = trimmed.split("\t");
+      if (columns.length > 2) {
+        throw new IOException(
+            "Invalid manifest line " + lineNumber + " in " + manifest + ": " + line);
+      }
+      Path input = manifestDir.resolve(columns[0].trim());
+      Path output =
+          columns.length == 2
+              ? manifestDir.resolve(columns[1].trim())
+              : defaultOutput(input.getParent(), input, outputDir);
+      jobs.add(new RenderJob(input, output));
+    }
+    return jobs;
+  }
+
+  private static boolean isGlob(String spec) {
+    for (int i = 0; i < spec.length(); i++) {
+      if (GLOB_CHARACTERS.indexOf(spec.charAt(i)) >= 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // The deepest directory in the pattern that does not contain any wildcard
+  private static Path globBase(String pattern) throws IOException {
+    Path normalized = Paths.get(pattern).normalize();
+    Path base = normalized.isAbsolute() ? normalized.getRoot() : Paths.get("");
+    for (Path element : normalized) {
+      if (isGlob(element.toString())) {
+        break;
+      }
+      base = base.resolve(element);
+    }
+    if (base.toString().isEmpty()) {
+      return Paths.get(".");
+    }
+    if (!Files.isDirectory(base)) {
+      throw new IOException("No such directory: " + base);
+    }
+    return base;
+  }
+
+  private static Path defaultOutput(Path base, Path input, Path outputDir) {
+    String name = input.getFileName().toString();
+    int dot = name.lastIndexOf('.');
+    String svgName = (dot > 0 ? name.substring(0, dot) : name) + ".svg";
+    if (outputDir == null) {
+      return input.resolveSibling(svgName);
+    }
+    Path relative = base == null ? input.getFileName() : base.relativize(input);
+    return outputDir.resolve(relative).resolveSibling(svgName);
+  }
+
+  @Override
+  public String toString() {
+    return input + " -> " + output;
+  }
+}
@@ -0,0 +1,48 @@
+package pl.poznan.put.varna.model;
+
+import java.util.Locale;
+import java.util.Optional;
+
+/** How bracket levels (pseudoknot orders) are assigned to the canonical base pairs. */
+public enum PseudoknotOrderStrategy {
+  /** BioCommons' default converter, which optimizes the levels but may be slow on dense inputs. */
+  EXACT("exact"),
+  /** Stems in decreasing length order, each one on the lowest level it does not cross. */
+  GREEDY("greedy"),
+  /** Base pairs in 5' to 3' order, each one on the lowest level it does not cross. */
+  FIRST_FIT("first-fit");
+
+  private final String jsonValue;
+
+  PseudoknotOrderStrategy(String jsonValue) {
+    this.jsonValue = jsonValue;
+  }
+
+  public String getJsonValue() {
+    return jsonValue;
+  }
+
+  public static Optional<PseudoknotOrderStrategy> parse(String value) {
+    if (value == null || value.isBlank()) {
+      return Optional.empty();
+    }
+
+    String normalized = value.trim().toLowerCase(Locale.ROOT).replace('_', '-').replace(' ', '-');
+    switch (normalized) {
+      case "exact":
+      case "default":
+      case "optimal":
+        return Optional.of(EXACT);
+      case "greedy":
+      case "stem-length":
+      case "greedy-by-stem-length":
+        return Optional.of(GREEDY);
+      case "first-fit":
+      case "firstfit":
+      case "first":
+        return Optional.of(FIRST_FIT);
+      default:
+        return Optional.empty();
+    }
+  }
+}
@@ -30,11 +30,25 @@ public class StructureData {
   /**
    * Zero-based indices of nucleotides after which the backbone is discontinuous (i.e. the last
    * nucleotide of each strand except the final one). When present, these are honored in addition to
-   * the numbering-discontinuity heuristic during SVG post-processing.
+   * the numbering-discontinuity heuristic when drawing.
    */
   @JsonProperty("strandBreaks")
   public List<Integer> strandBreaks;
 
+  /**
+   * Strategy assigning bracket levels to canonical base pairs: {@code exact} (default), {@code
+   * greedy} (by stem length) or {@code first-fit}.
+   */
+  @JsonProperty("pseudoknotOrder")
+  public String pseudoknotOrder;
+
+  /**
+   * Milliseconds after which the {@code exact} pseudoknot order strategy is abandoned in favour of
+   * {@code greedy}. No limit when absent.
+   */
+  @JsonProperty("pseudoknotOrderTimeBudget")
+  public Long pseudoknotOrderTimeBudget;
+
   public StackingArrowPlacementParseResult parseStackingArrowPlacement() {
     if (stackingArrowPlacement == null || stackingArrowPlacement.isBlank()) {
       return StackingArrowPlacementParseResult.fallback(StackingArrowPlacement.CENTERED);
@@ -66,6 +80,11 @@ public class StructureData {
         + '\''
         + ", strandBreaks="
         + (strandBreaks != null ? strandBreaks : "[]")
+        + ", pseudoknotOrder='"
+        + pseudoknotOrder
+        + '\''
+        + ", pseudoknotOrderTimeBudget="
+        + pseudoknotOrderTimeBudget
         + ", stackings="
         + (stackings != null ? stackings.size() : 0)
         + " items"